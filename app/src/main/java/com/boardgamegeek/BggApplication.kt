@@ -13,6 +13,11 @@ import com.boardgamegeek.extensions.*
 import com.boardgamegeek.pref.SyncPrefs
 import com.boardgamegeek.util.CrashReportingTree
 import com.boardgamegeek.util.RemoteConfig
+import com.boardgamegeek.util.StartupOrchestrator
+import com.boardgamegeek.util.StartupOrchestrator.Stage.CRITICAL
+import com.boardgamegeek.util.StartupOrchestrator.Stage.DEFERRED
+import com.boardgamegeek.util.ThumbnailStore
+import com.boardgamegeek.util.ThumbnailStoreDownloader
 import com.boardgamegeek.work.PlayUploadWorker
 import com.boardgamegeek.work.SyncCollectionWorker
 import com.boardgamegeek.work.SyncPlaysWorker
@@ -26,6 +31,7 @@ import com.squareup.picasso.Picasso
 import dagger.hilt.android.HiltAndroidApp
 import okhttp3.OkHttpClient
 import timber.log.Timber
+import java.io.File
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 import javax.inject.Named
@@ -36,6 +42,9 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
     @Named("withCache")
     lateinit var httpClient: OkHttpClient
 
+    @Inject
+    lateinit var thumbnailStore: ThumbnailStore
+
     @Inject
     lateinit var workerFactory: HiltWorkerFactory
 
@@ -44,15 +53,30 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
             .setWorkerFactory(workerFactory)
             .build()
 
+    /**
+     * Kept so [StartupOrchestrator.require] can run lazy initializers after startup.
+     */
+    lateinit var startup: StartupOrchestrator
+        private set
+
     override fun onCreate() {
         super.onCreate()
-        enableStrictMode()
-        initializeStetho()
-        initializeFirebase()
-        initializeTimber()
-        initializePicasso()
-        migrateData()
+        // workers and messages can post notifications before the app is idle, and crashes should be reported from the start
+        startup = StartupOrchestrator({ File(filesDir, STARTUP_TRACE_FILE_NAME) })
+            .add("strictMode", CRITICAL) { enableStrictMode() }
+            .add("timber", CRITICAL) { initializeTimber() }
+            .add("crashlytics", CRITICAL, listOf("timber")) { initializeCrashlytics() }
+            .add("remoteConfig", CRITICAL) { RemoteConfig.init() }
+            .add("picasso", CRITICAL) { initializePicasso() }
+            .add("preferences", CRITICAL) { migrateData() }
+            .add("notificationChannels", CRITICAL) { createNotificationChannels() }
+            .add("stetho", DEFERRED) { initializeStetho() }
+            .add("messaging", DEFERRED, listOf("timber")) { initializeMessaging() }
+            .add("periodicWork", DEFERRED, listOf("remoteConfig", "preferences", "notificationChannels")) { enqueuePeriodicWork() }
+        startup.start()
+    }
 
+    private fun enqueuePeriodicWork() {
         WorkManager.getInstance(this).enqueueUniquePeriodicWork(
             SyncCollectionWorker.UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, PeriodicWorkRequestBuilder<SyncCollectionWorker>(1, TimeUnit.DAYS)
                 .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 15, TimeUnit.MINUTES)
@@ -82,7 +106,7 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
             )
     }
 
-    private fun initializeFirebase() {
+    private fun initializeCrashlytics() {
         if (BuildConfig.DEBUG) {
             FirebaseCrashlytics.getInstance().setCrashlyticsCollectionEnabled(false)
         } else {
@@ -92,7 +116,9 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
                 if (it.isNotBlank()) firebase.setUserId(it.hashCode().toString())
             }
         }
-        RemoteConfig.init()
+    }
+
+    private fun initializeMessaging() {
         FirebaseMessaging.getInstance().token.addOnCompleteListener { task: Task<String?> ->
             if (task.isSuccessful) {
                 Timber.i("Firebase token is %s", task.result)
@@ -124,7 +150,7 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
     private fun initializePicasso() {
         Picasso.setSingletonInstance(
             Picasso.Builder(this)
-                .downloader(OkHttp3Downloader(httpClient))
+                .downloader(ThumbnailStoreDownloader(thumbnailStore, OkHttp3Downloader(httpClient)))
                 .build()
         )
     }
@@ -153,8 +179,11 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
         }
     }
 
-    private fun migrateData() {
+    private fun createNotificationChannels() {
         if (VERSION.SDK_INT >= VERSION_CODES.O) NotificationChannels.create(applicationContext)
+    }
+
+    private fun migrateData() {
         migrateCollectionStatusSettings()
         SyncPrefs.migrate(this)
     }
@@ -169,4 +198,8 @@ class BggApplication : MultiDexApplication(), Configuration.Provider {
             }
         }
     }
+
+    companion object {
+        private const val STARTUP_TRACE_FILE_NAME = "startup_trace.csv"
+    }
 }
@@ -1,5 +1,6 @@
 package com.boardgamegeek.db
 
+import android.content.ContentProviderOperation
 import android.content.ContentValues
 import android.content.Context
 import androidx.core.database.getIntOrNull
@@ -89,6 +90,24 @@ class ArtistDao(private val context: Context) {
     suspend fun loadCollection(artistId: Int, sortBy: CollectionDao.SortType = CollectionDao.SortType.RATING) =
         collectionDao.loadLinkedCollection(Artists.buildArtistCollectionUri(artistId), sortBy)
 
+    /**
+     * Loads the collection linked to every artist, keyed by artist ID.
+     */
+    suspend fun loadCollections(sortBy: CollectionDao.SortType = CollectionDao.SortType.RATING) =
+        collectionDao.loadLinkedCollections(Artists.buildArtistsCollectionUri(), Artists.Columns.ARTIST_ID, sortBy)
+
+    suspend fun updateWhitmoreScores(scores: Map<Int, Int>) = withContext(Dispatchers.IO) {
+        val timestamp = System.currentTimeMillis()
+        val batch = arrayListOf<ContentProviderOperation>()
+        scores.forEach { (id, score) ->
+            batch += ContentProviderOperation.newUpdate(Artists.buildArtistUri(id))
+                .withValue(Artists.Columns.WHITMORE_SCORE, score)
+                .withValue(Artists.Columns.ARTIST_STATS_UPDATED_TIMESTAMP, timestamp)
+                .build()
+        }
+        context.contentResolver.applyBatch(batch, "Whitmore scores for ${scores.size} artists")
+    }
+
     suspend fun upsert(artistId: Int, values: ContentValues): Int = withContext(Dispatchers.IO) {
         val resolver = context.contentResolver
         val uri = Artists.buildArtistUri(artistId)
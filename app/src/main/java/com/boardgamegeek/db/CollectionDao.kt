@@ -1,9 +1,9 @@
 package com.boardgamegeek.db
 
+import android.content.ContentProviderOperation
 import android.content.ContentResolver
 import android.content.ContentValues
 import android.content.Context
-import android.content.SharedPreferences
 import android.database.Cursor
 import android.graphics.Color
 import android.net.Uri
@@ -16,9 +16,13 @@ import com.boardgamegeek.entities.BriefGameEntity
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.entities.CollectionItemGameEntity
 import com.boardgamegeek.extensions.*
+import com.boardgamegeek.pref.PreferenceSnapshot
 import com.boardgamegeek.provider.BggContract.*
 import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Companion.COLLATE_NOCASE
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
+import com.boardgamegeek.provider.BggContract.Companion.QUERY_KEY_LIMIT
+import com.boardgamegeek.provider.BggDatabase.Tables
 import com.boardgamegeek.util.FileUtils
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
@@ -28,7 +32,6 @@ import java.util.*
 
 class CollectionDao(private val context: Context) {
     private val resolver = context.contentResolver
-    private val prefs: SharedPreferences by lazy { context.preferences() }
 
     suspend fun load(internalId: Long): CollectionItemEntity? = withContext(Dispatchers.IO) {
         if (internalId != INVALID_ID.toLong()) {
@@ -52,6 +55,192 @@ class CollectionDao(private val context: Context) {
         }
     }
 
+    /**
+     * The rank of each game owned in the collection, keyed by game ID. If a game is owned more than once, the rank
+     * comes from the first item.
+     */
+    suspend fun loadOwnedGameRanks(): Map<Int, Int> = withContext(Dispatchers.IO) {
+        resolver.loadList(
+            Collection.CONTENT_URI,
+            arrayOf(Games.Columns.GAME_ID, Games.Columns.GAME_RANK),
+            "${Collection.Columns.STATUS_OWN.isTrue()} AND ${Collection.Columns.COLLECTION_DELETE_TIMESTAMP.whereZeroOrNull()}",
+        ) {
+            it.getInt(0) to (it.getIntOrNull(1) ?: CollectionItemEntity.RANK_UNKNOWN)
+        }.distinctBy { it.first }.toMap()
+    }
+
+    /**
+     * A collection item's position in a list's order: the value of each of the list's sort columns, as text, and the
+     * placeholder that binds it back as the type SQLite returned it as.
+     */
+    data class ListItemKey(val values: List<String>, val placeholders: List<String>)
+
+    data class ListItemsPage(val items: List<CollectionItemEntity>, val firstKey: ListItemKey?, val lastKey: ListItemKey?)
+
+    /**
+     * Loads up to [pageSize] of the items to show in the collection list next to the [key], in the order of the
+     * [sortColumns], with only the columns needed to display, sort, and act on a row. Ties are broken by the sort name
+     * and then the internal ID, so every item has a key of its own to seek to, rather than skipping over an offset.
+     * Deleted items are never included.
+     */
+    suspend fun loadListItemsPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortColumns: List<SortColumn>,
+        key: ListItemKey?,
+        direction: PageDirection,
+        pageSize: Int,
+    ): ListItemsPage = withContext(Dispatchers.IO) {
+        val order = sortColumns + listTieBreakColumns
+        val reverse = direction == PageDirection.BEFORE
+        val (keySelection, keyArgs) = if (key == null) null to emptyArray<String>() else {
+            order.zip(key.placeholders) { column, placeholder -> SortColumn(column.expression, column.isDescending, placeholder) }
+                .keySelection(key.values, reverse, direction == PageDirection.FROM)
+        }
+        val uri = Collection.CONTENT_URI.buildUpon().appendQueryParameter(QUERY_KEY_LIMIT, pageSize.toString()).build()
+        val keys = mutableListOf<ListItemKey>()
+        val items = resolver.loadList(
+            uri,
+            listItemProjection + order.map { it.expression },
+            listOfNotNull(listItemSelection(selection), keySelection).joinToString(" AND "),
+            selectionArgs + keyArgs,
+            order.orderBy(reverse),
+        ) {
+            keys += it.toListItemKey(listItemProjection.size, order.size)
+            it.toListItemEntity()
+        }
+        if (reverse) ListItemsPage(items.asReversed(), keys.lastOrNull(), keys.firstOrNull())
+        else ListItemsPage(items, keys.firstOrNull(), keys.lastOrNull())
+    }
+
+    suspend fun countListItems(selection: String, selectionArgs: Array<String>): Int = withContext(Dispatchers.IO) {
+        resolver.queryInt(Collection.CONTENT_URI, "COUNT(*)", 0, listItemSelection(selection), selectionArgs)
+    }
+
+    suspend fun loadRandomListItem(selection: String, selectionArgs: Array<String>): CollectionItemEntity? = withContext(Dispatchers.IO) {
+        resolver.loadEntity(
+            Collection.CONTENT_URI.buildUpon().appendQueryParameter(QUERY_KEY_LIMIT, "1").build(),
+            listItemProjection,
+            listItemSelection(selection),
+            selectionArgs,
+            "RANDOM()",
+        ) {
+            it.toListItemEntity()
+        }
+    }
+
+    /**
+     * The items with any of the statuses the user syncs, which is what the default view shows when it isn't filtered by
+     * status.
+     */
+    fun syncedStatusesSelection() = "(${linkedCollectionSelection().ifEmpty { "0" }})"
+
+    private fun listItemSelection(selection: String) =
+        "${Collection.Columns.COLLECTION_DELETE_TIMESTAMP.whereZeroOrNull()} AND ($selection)"
+
+    /**
+     * The default sort, which breaks ties in every other sort, then the internal ID, which is unique.
+     */
+    private val listTieBreakColumns = listOf(
+        SortColumn("IFNULL(${Collection.Columns.COLLECTION_SORT_NAME},'')$COLLATE_NOCASE", false),
+        SortColumn("${Tables.COLLECTION}.${BaseColumns._ID}", false, SortColumn.INTEGER_PLACEHOLDER),
+    )
+
+    private val listItemProjection = arrayOf(
+        BaseColumns._ID,
+        Collection.Columns.GAME_ID,
+        Collection.Columns.COLLECTION_NAME,
+        Collection.Columns.COLLECTION_SORT_NAME,
+        Games.Columns.GAME_NAME,
+        Games.Columns.YEAR_PUBLISHED,
+        Collection.Columns.COLLECTION_YEAR_PUBLISHED,
+        Collection.Columns.COLLECTION_THUMBNAIL_URL,
+        Collection.Columns.COLLECTION_HERO_IMAGE_URL,
+        Games.Columns.STARRED,
+        Games.Columns.CUSTOM_PLAYER_SORT, // 10
+        Collection.Columns.RATING,
+        Games.Columns.STATS_AVERAGE,
+        Games.Columns.STATS_BAYES_AVERAGE,
+        Games.Columns.STATS_AVERAGE_WEIGHT,
+        Games.Columns.GAME_RANK,
+        Games.Columns.NUM_PLAYS,
+        Games.Columns.PLAYING_TIME,
+        Games.Columns.MINIMUM_AGE,
+        Collection.Columns.STATUS_WISHLIST_PRIORITY,
+        Games.Columns.LAST_VIEWED, // 20
+        Collection.Columns.LAST_MODIFIED,
+        Plays.Columns.MAX_DATE,
+        Collection.Columns.PRIVATE_INFO_ACQUISITION_DATE,
+        Collection.Columns.PRIVATE_INFO_ACQUIRED_FROM,
+        Collection.Columns.PRIVATE_INFO_INVENTORY_LOCATION,
+        Collection.Columns.PRIVATE_INFO_PRICE_PAID_CURRENCY,
+        Collection.Columns.PRIVATE_INFO_PRICE_PAID,
+        Collection.Columns.PRIVATE_INFO_CURRENT_VALUE_CURRENCY,
+        Collection.Columns.PRIVATE_INFO_CURRENT_VALUE,
+    )
+
+    /**
+     * Reads the values of the [count] sort columns projected from [firstIndex] on.
+     */
+    private fun Cursor.toListItemKey(firstIndex: Int, count: Int): ListItemKey {
+        val values = mutableListOf<String>()
+        val placeholders = mutableListOf<String>()
+        for (index in firstIndex until firstIndex + count) {
+            when (getType(index)) {
+                Cursor.FIELD_TYPE_INTEGER -> {
+                    values += getLong(index).toString()
+                    placeholders += SortColumn.INTEGER_PLACEHOLDER
+                }
+                Cursor.FIELD_TYPE_FLOAT -> {
+                    values += getDouble(index).toString()
+                    placeholders += SortColumn.REAL_PLACEHOLDER
+                }
+                else -> {
+                    // every sort column defaults its nulls, so anything else is text
+                    values += getStringOrNull(index).orEmpty()
+                    placeholders += "?"
+                }
+            }
+        }
+        return ListItemKey(values, placeholders)
+    }
+
+    private fun Cursor.toListItemEntity(): CollectionItemEntity {
+        val dateFormat = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
+        return CollectionItemEntity(
+            internalId = getLong(0),
+            gameId = getInt(1),
+            collectionName = getStringOrNull(2).orEmpty(),
+            sortName = getStringOrNull(3).orEmpty(),
+            gameName = getStringOrNull(4).orEmpty(),
+            gameYearPublished = getIntOrNull(5) ?: CollectionItemEntity.YEAR_UNKNOWN,
+            collectionYearPublished = getIntOrNull(6) ?: CollectionItemEntity.YEAR_UNKNOWN,
+            thumbnailUrl = getStringOrNull(7).orEmpty(),
+            heroImageUrl = getStringOrNull(8).orEmpty(),
+            isFavorite = getBoolean(9),
+            arePlayersCustomSorted = getBoolean(10),
+            rating = getDoubleOrNull(11) ?: 0.0,
+            averageRating = getDoubleOrNull(12) ?: 0.0,
+            geekRating = getDoubleOrNull(13) ?: 0.0,
+            averageWeight = getDoubleOrNull(14) ?: 0.0,
+            rank = getIntOrNull(15) ?: CollectionItemEntity.RANK_UNKNOWN,
+            numberOfPlays = getIntOrNull(16) ?: 0,
+            playingTime = getIntOrNull(17) ?: 0,
+            minimumAge = getIntOrNull(18) ?: 0,
+            wishListPriority = getIntOrNull(19) ?: CollectionItemEntity.WISHLIST_PRIORITY_UNKNOWN,
+            lastViewedDate = getLongOrNull(20) ?: 0L,
+            lastModifiedDate = getLongOrNull(21) ?: 0L,
+            lastPlayDate = getStringOrNull(22).orEmpty().toMillis(dateFormat),
+            acquisitionDate = getStringOrNull(23).orEmpty().toMillis(dateFormat),
+            acquiredFrom = getStringOrNull(24).orEmpty(),
+            inventoryLocation = getStringOrNull(25).orEmpty(),
+            pricePaidCurrency = getStringOrNull(26).orEmpty(),
+            pricePaid = getDoubleOrNull(27) ?: 0.0,
+            currentValueCurrency = getStringOrNull(28).orEmpty(),
+            currentValue = getDoubleOrNull(29) ?: 0.0,
+        )
+    }
+
     private fun entityFromCursor(cursor: Cursor): CollectionItemEntity {
         val playDateFormat = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
         val acquisitionDateFormat = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
@@ -134,71 +323,95 @@ class CollectionDao(private val context: Context) {
 
     suspend fun loadLinkedCollection(uri: Uri, sortBy: SortType = SortType.RATING): List<BriefGameEntity> =
         withContext(Dispatchers.IO) {
-            val selection = prefs.getSyncStatusesOrDefault().map {
-                when (it) {
-                    COLLECTION_STATUS_OWN -> Collection.Columns.STATUS_OWN.isTrue()
-                    COLLECTION_STATUS_PREVIOUSLY_OWNED -> Collection.Columns.STATUS_PREVIOUSLY_OWNED.isTrue()
-                    COLLECTION_STATUS_PREORDERED -> Collection.Columns.STATUS_PREORDERED.isTrue()
-                    COLLECTION_STATUS_FOR_TRADE -> Collection.Columns.STATUS_FOR_TRADE.isTrue()
-                    COLLECTION_STATUS_WANT_IN_TRADE -> Collection.Columns.STATUS_WANT.isTrue()
-                    COLLECTION_STATUS_WANT_TO_BUY -> Collection.Columns.STATUS_WANT_TO_BUY.isTrue()
-                    COLLECTION_STATUS_WANT_TO_PLAY -> Collection.Columns.STATUS_WANT_TO_PLAY.isTrue()
-                    COLLECTION_STATUS_WISHLIST -> Collection.Columns.STATUS_WISHLIST.isTrue()
-                    COLLECTION_STATUS_RATED -> Collection.Columns.RATING.greaterThanZero()
-                    COLLECTION_STATUS_PLAYED -> Games.Columns.NUM_PLAYS.greaterThanZero()
-                    COLLECTION_STATUS_COMMENTED -> Collection.Columns.COMMENT.notBlank()
-                    COLLECTION_STATUS_HAS_PARTS -> Collection.Columns.HASPARTS_LIST.notBlank()
-                    COLLECTION_STATUS_WANT_PARTS -> Collection.Columns.WANTPARTS_LIST.notBlank()
-                    else -> ""
-                }
-            }.filter { it.isNotBlank() }.joinToString(" OR ")
-
-            val sortByName = Games.Columns.GAME_SORT_NAME.collateNoCase().ascending()
-            val sortOrder = when (sortBy) {
-                SortType.NAME -> sortByName
-                SortType.RATING -> Collection.Columns.RATING.descending()
-                    .plus(", ${Games.Columns.STARRED}").descending()
-                    .plus(", $sortByName")
-            }
             context.contentResolver.loadList(
                 uri,
-                arrayOf(
-                    BaseColumns._ID,
-                    Collection.Columns.GAME_ID,
-                    Games.Columns.GAME_NAME,
-                    Collection.Columns.COLLECTION_NAME,
-                    Games.Columns.YEAR_PUBLISHED,
-                    Collection.Columns.COLLECTION_YEAR_PUBLISHED,
-                    Collection.Columns.COLLECTION_THUMBNAIL_URL,
-                    Games.Columns.THUMBNAIL_URL,
-                    Games.Columns.HERO_IMAGE_URL,
-                    Collection.Columns.RATING,
-                    Games.Columns.STARRED,
-                    Games.Columns.SUBTYPE,
-                    Games.Columns.NUM_PLAYS,
-                ),
-                selection,
+                linkedCollectionProjection,
+                linkedCollectionSelection(),
                 emptyArray(),
-                sortOrder
+                linkedCollectionSortOrder(sortBy)
             ) {
-                BriefGameEntity(
-                    it.getLong(0),
-                    it.getInt(1),
-                    it.getStringOrNull(2).orEmpty(),
-                    it.getStringOrNull(3).orEmpty(),
-                    it.getIntOrNull(4) ?: BriefGameEntity.YEAR_UNKNOWN,
-                    it.getIntOrNull(5) ?: BriefGameEntity.YEAR_UNKNOWN,
-                    it.getStringOrNull(6).orEmpty(),
-                    it.getStringOrNull(7).orEmpty(),
-                    it.getStringOrNull(8).orEmpty(),
-                    it.getDoubleOrNull(9) ?: 0.0,
-                    it.getBoolean(10),
-                    it.getStringOrNull(11).toSubtype(),
-                    it.getIntOrNull(12) ?: 0
-                )
+                it.toBriefGameEntity()
             }
         }
 
+    /**
+     * Loads the collection linked to every designer, artist, or publisher in a single query, keyed by the [idColumn] of
+     * the person or company. Each list is in the same order as [loadLinkedCollection] would return it.
+     */
+    suspend fun loadLinkedCollections(uri: Uri, idColumn: String, sortBy: SortType = SortType.RATING): Map<Int, List<BriefGameEntity>> =
+        withContext(Dispatchers.IO) {
+            context.contentResolver.loadList(
+                uri,
+                arrayOf(idColumn) + linkedCollectionProjection,
+                linkedCollectionSelection(),
+                emptyArray(),
+                "$idColumn ASC, ${linkedCollectionSortOrder(sortBy)}"
+            ) {
+                it.getInt(0) to it.toBriefGameEntity(1)
+            }.groupBy({ it.first }, { it.second })
+        }
+
+    private fun linkedCollectionSelection() = PreferenceSnapshot.of(context).syncStatuses.map {
+        when (it) {
+            COLLECTION_STATUS_OWN -> Collection.Columns.STATUS_OWN.isTrue()
+            COLLECTION_STATUS_PREVIOUSLY_OWNED -> Collection.Columns.STATUS_PREVIOUSLY_OWNED.isTrue()
+            COLLECTION_STATUS_PREORDERED -> Collection.Columns.STATUS_PREORDERED.isTrue()
+            COLLECTION_STATUS_FOR_TRADE -> Collection.Columns.STATUS_FOR_TRADE.isTrue()
+            COLLECTION_STATUS_WANT_IN_TRADE -> Collection.Columns.STATUS_WANT.isTrue()
+            COLLECTION_STATUS_WANT_TO_BUY -> Collection.Columns.STATUS_WANT_TO_BUY.isTrue()
+            COLLECTION_STATUS_WANT_TO_PLAY -> Collection.Columns.STATUS_WANT_TO_PLAY.isTrue()
+            COLLECTION_STATUS_WISHLIST -> Collection.Columns.STATUS_WISHLIST.isTrue()
+            COLLECTION_STATUS_RATED -> Collection.Columns.RATING.greaterThanZero()
+            COLLECTION_STATUS_PLAYED -> Games.Columns.NUM_PLAYS.greaterThanZero()
+            COLLECTION_STATUS_COMMENTED -> Collection.Columns.COMMENT.notBlank()
+            COLLECTION_STATUS_HAS_PARTS -> Collection.Columns.HASPARTS_LIST.notBlank()
+            COLLECTION_STATUS_WANT_PARTS -> Collection.Columns.WANTPARTS_LIST.notBlank()
+            else -> ""
+        }
+    }.filter { it.isNotBlank() }.joinToString(" OR ")
+
+    private fun linkedCollectionSortOrder(sortBy: SortType): String {
+        val sortByName = Games.Columns.GAME_SORT_NAME.collateNoCase().ascending()
+        return when (sortBy) {
+            SortType.NAME -> sortByName
+            SortType.RATING -> Collection.Columns.RATING.descending()
+                .plus(", ${Games.Columns.STARRED}").descending()
+                .plus(", $sortByName")
+        }
+    }
+
+    private val linkedCollectionProjection = arrayOf(
+        BaseColumns._ID,
+        Collection.Columns.GAME_ID,
+        Games.Columns.GAME_NAME,
+        Collection.Columns.COLLECTION_NAME,
+        Games.Columns.YEAR_PUBLISHED,
+        Collection.Columns.COLLECTION_YEAR_PUBLISHED,
+        Collection.Columns.COLLECTION_THUMBNAIL_URL,
+        Games.Columns.THUMBNAIL_URL,
+        Games.Columns.HERO_IMAGE_URL,
+        Collection.Columns.RATING,
+        Games.Columns.STARRED,
+        Games.Columns.SUBTYPE,
+        Games.Columns.NUM_PLAYS,
+    )
+
+    private fun Cursor.toBriefGameEntity(offset: Int = 0) = BriefGameEntity(
+        getLong(offset),
+        getInt(offset + 1),
+        getStringOrNull(offset + 2).orEmpty(),
+        getStringOrNull(offset + 3).orEmpty(),
+        getIntOrNull(offset + 4) ?: BriefGameEntity.YEAR_UNKNOWN,
+        getIntOrNull(offset + 5) ?: BriefGameEntity.YEAR_UNKNOWN,
+        getStringOrNull(offset + 6).orEmpty(),
+        getStringOrNull(offset + 7).orEmpty(),
+        getStringOrNull(offset + 8).orEmpty(),
+        getDoubleOrNull(offset + 9) ?: 0.0,
+        getBoolean(offset + 10),
+        getStringOrNull(offset + 11).toSubtype(),
+        getIntOrNull(offset + 12) ?: 0
+    )
+
     suspend fun loadUnupdatedItems(gamesPerFetch: Int = 0) = withContext(Dispatchers.IO) {
         val games = mutableMapOf<Int, String>()
         val limit = if (gamesPerFetch > 0) " LIMIT $gamesPerFetch" else ""
@@ -299,6 +512,56 @@ class CollectionDao(private val context: Context) {
         item.collectionId to internalId
     }
 
+    /**
+     * Saves the [items] and their games in a single batch, as [saveItem] would one at a time. Dirty items are skipped.
+     * Returns the number of items saved.
+     */
+    suspend fun saveItems(
+        items: List<Pair<CollectionItemEntity, CollectionItemGameEntity>>,
+        updatedTimestamp: Long,
+        includeStats: Boolean = true,
+        includePrivateInfo: Boolean = true,
+        isBrief: Boolean = false
+    ): Int = withContext(Dispatchers.IO) {
+        val batch = arrayListOf<ContentProviderOperation>()
+        val savedGameIds = mutableSetOf<Int>()
+        var count = 0
+        items.forEach { (item, game) ->
+            val candidate = SyncCandidate.find(resolver, item.collectionId, item.gameId)
+            if (candidate.dirtyTimestamp != NOT_DIRTY) {
+                Timber.i("Local copy of the collection item '${item.gameName}' [ID=${item.gameId}] is dirty, skipping sync.")
+            } else {
+                val gameUri = Games.buildGameUri(item.gameId)
+                val gameValues = toGameValues(game, includeStats, isBrief, updatedTimestamp)
+                batch += if (item.gameId in savedGameIds || resolver.rowExists(gameUri)) {
+                    gameValues.remove(Games.Columns.GAME_ID)
+                    if (isBrief) {
+                        gameValues.remove(Games.Columns.GAME_NAME)
+                        gameValues.remove(Games.Columns.GAME_SORT_NAME)
+                    }
+                    ContentProviderOperation.newUpdate(gameUri).withValues(gameValues).build()
+                } else {
+                    ContentProviderOperation.newInsert(Games.CONTENT_URI).withValues(gameValues).build()
+                }
+                savedGameIds += item.gameId
+
+                val values = toCollectionValues(item, includeStats, includePrivateInfo, isBrief, updatedTimestamp)
+                batch += if (candidate.internalId != INVALID_ID.toLong()) {
+                    removeDirtyValues(values, candidate)
+                    val uri = Collection.buildUri(candidate.internalId)
+                    if (!isBrief) maybeDeleteThumbnail(values, uri)
+                    ContentProviderOperation.newUpdate(uri).withValues(values).build()
+                } else {
+                    ContentProviderOperation.newInsert(Collection.CONTENT_URI).withValues(values).build()
+                }
+                count++
+            }
+        }
+        resolver.applyBatch(batch, "$count collection items")
+        Timber.i("Saved $count of ${items.size} collection items")
+        count
+    }
+
     private fun toGameValues(
         game: CollectionItemGameEntity,
         includeStats: Boolean,
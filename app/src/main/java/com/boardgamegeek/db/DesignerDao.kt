@@ -1,5 +1,6 @@
 package com.boardgamegeek.db
 
+import android.content.ContentProviderOperation
 import android.content.ContentValues
 import android.content.Context
 import androidx.core.database.getIntOrNull
@@ -89,6 +90,24 @@ class DesignerDao(private val context: Context) {
     suspend fun loadCollection(designerId: Int, sortBy: CollectionDao.SortType = CollectionDao.SortType.RATING) =
         collectionDao.loadLinkedCollection(Designers.buildDesignerCollectionUri(designerId), sortBy)
 
+    /**
+     * Loads the collection linked to every designer, keyed by designer ID.
+     */
+    suspend fun loadCollections(sortBy: CollectionDao.SortType = CollectionDao.SortType.RATING) =
+        collectionDao.loadLinkedCollections(Designers.buildDesignersCollectionUri(), Designers.Columns.DESIGNER_ID, sortBy)
+
+    suspend fun updateWhitmoreScores(scores: Map<Int, Int>) = withContext(Dispatchers.IO) {
+        val timestamp = System.currentTimeMillis()
+        val batch = arrayListOf<ContentProviderOperation>()
+        scores.forEach { (id, score) ->
+            batch += ContentProviderOperation.newUpdate(Designers.buildDesignerUri(id))
+                .withValue(Designers.Columns.WHITMORE_SCORE, score)
+                .withValue(Designers.Columns.DESIGNER_STATS_UPDATED_TIMESTAMP, timestamp)
+                .build()
+        }
+        context.contentResolver.applyBatch(batch, "Whitmore scores for ${scores.size} designers")
+    }
+
     suspend fun upsert(designerId: Int, values: ContentValues): Int = withContext(Dispatchers.IO) {
         val resolver = context.contentResolver
         val uri = Designers.buildDesignerUri(designerId)
@@ -14,11 +14,15 @@ import androidx.core.database.getDoubleOrNull
 import androidx.core.database.getIntOrNull
 import androidx.core.database.getLongOrNull
 import androidx.core.database.getStringOrNull
+import androidx.core.os.bundleOf
 import com.boardgamegeek.entities.*
 import com.boardgamegeek.extensions.*
 import com.boardgamegeek.provider.BggContract.*
 import com.boardgamegeek.provider.BggContract.Collection
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
+import com.boardgamegeek.provider.BggContract.Companion.EXTRA_GAME_IDS
+import com.boardgamegeek.provider.BggContract.Companion.METHOD_INDEX_SEARCH_SUGGESTIONS
+import com.boardgamegeek.provider.BggContract.Companion.METHOD_VERIFY_GAME_PLAY_STATS
 import com.boardgamegeek.provider.BggContract.Companion.PATH_ARTISTS
 import com.boardgamegeek.provider.BggContract.Companion.PATH_CATEGORIES
 import com.boardgamegeek.provider.BggContract.Companion.PATH_DESIGNERS
@@ -396,13 +400,31 @@ class GameDao(private val context: Context) {
         context.contentResolver.queryStrings(Games.buildColorsUri(gameId), GameColors.Columns.COLOR).filterNot { it.isBlank() }
     }
 
-    suspend fun loadPlayColors(): List<Pair<Int, String>> = withContext(Dispatchers.IO) {
-        context.contentResolver.loadList(
+    /**
+     * Hands each game's play colors to [action], one game at a time in game ID order, without loading every color into
+     * memory. [onProgress] receives the number of color rows read so far and the total.
+     */
+    suspend fun streamPlayColors(
+        onProgress: (current: Int, max: Int) -> Unit = { _, _ -> },
+        action: suspend (gameId: Int, colors: List<String>) -> Unit,
+    ) = withContext(Dispatchers.IO) {
+        var gameId = INVALID_ID
+        val colors = mutableListOf<String>()
+        resolver.forEachRow(
             GameColors.CONTENT_URI,
             arrayOf(GameColors.Columns.GAME_ID, GameColors.Columns.COLOR),
+            sortOrder = "${GameColors.Columns.GAME_ID} ASC, ${GameColors.DEFAULT_SORT}",
         ) {
-            (it.getIntOrNull(0) ?: INVALID_ID) to it.getStringOrNull(1).orEmpty()
+            onProgress(it.position, it.count)
+            val id = it.getIntOrNull(0) ?: INVALID_ID
+            if (id != gameId) {
+                if (colors.isNotEmpty()) action(gameId, colors.toList())
+                gameId = id
+                colors.clear()
+            }
+            colors += it.getStringOrNull(1).orEmpty()
         }
+        if (colors.isNotEmpty()) action(gameId, colors.toList())
     }
 
     suspend fun loadGamesForPlayStats(
@@ -478,13 +500,42 @@ class GameDao(private val context: Context) {
         resolver.update(Games.buildGameUri(gameId), values, null, null)
     }
 
-    suspend fun save(game: GameEntity, updateTime: Long) = withContext(Dispatchers.IO) {
-        if (game.name.isBlank()) {
-            Timber.w("Missing name from game ID=${game.id}")
-        } else {
+    /**
+     * Rebuilds the last played date and play count of the games with [gameIds] from the plays table if they're out of
+     * step. Returns the number of games that needed repair.
+     */
+    suspend fun verifyPlayStats(gameIds: Set<Int>): Int = withContext(Dispatchers.IO) {
+        if (gameIds.isEmpty()) return@withContext 0
+        val extras = bundleOf(EXTRA_GAME_IDS to gameIds.toIntArray())
+        resolver.call(Games.CONTENT_URI, METHOD_VERIFY_GAME_PLAY_STATS, null, extras)?.getInt(METHOD_VERIFY_GAME_PLAY_STATS) ?: 0
+    }
+
+    suspend fun save(game: GameEntity, updateTime: Long) = save(listOf(game), updateTime)
+
+    /**
+     * Saves the games, and their designers, artists, etc., in a single batch (and therefore a single transaction).
+     */
+    suspend fun save(games: List<GameEntity>, updateTime: Long) = withContext(Dispatchers.IO) {
+        val gamesToSave = games.filter { game ->
+            game.name.isNotBlank().also { if (!it) Timber.w("Missing name from game ID=${game.id}") }
+        }
+        if (gamesToSave.isEmpty()) return@withContext
+
+        val batch = arrayListOf<ContentProviderOperation>()
+        batch += createReferenceBatch(gamesToSave.flatMap { it.designers }, Designers.CONTENT_URI, Designers.Columns.DESIGNER_ID, Designers.Columns.DESIGNER_NAME)
+        batch += createReferenceBatch(gamesToSave.flatMap { it.artists }, Artists.CONTENT_URI, Artists.Columns.ARTIST_ID, Artists.Columns.ARTIST_NAME)
+        batch += createReferenceBatch(gamesToSave.flatMap { it.publishers }, Publishers.CONTENT_URI, Publishers.Columns.PUBLISHER_ID, Publishers.Columns.PUBLISHER_NAME)
+        batch += createReferenceBatch(gamesToSave.flatMap { it.categories }, Categories.CONTENT_URI, Categories.Columns.CATEGORY_ID, Categories.Columns.CATEGORY_NAME)
+        batch += createReferenceBatch(gamesToSave.flatMap { it.mechanics }, Mechanics.CONTENT_URI, Mechanics.Columns.MECHANIC_ID, Mechanics.Columns.MECHANIC_NAME)
+
+        val gameIdsWithNewCredits = mutableListOf<Int>()
+        val internalIds = gamesToSave.map { game ->
             Timber.i("Saving game ${game.name} [${game.id}]")
 
-            val batch = arrayListOf<ContentProviderOperation>()
+            val designersBatch = createAssociationBatch(game.id, game.designers, PATH_DESIGNERS, GamesDesigners.DESIGNER_ID)
+            val publishersBatch = createAssociationBatch(game.id, game.publishers, PATH_PUBLISHERS, GamesPublishers.PUBLISHER_ID)
+            // the search suggestions index credits, so the game's are indexed again once they're saved
+            if (designersBatch.isNotEmpty() || publishersBatch.isNotEmpty()) gameIdsWithNewCredits += game.id
 
             val cpoBuilder: Builder
             val values = toValues(game, updateTime)
@@ -505,20 +556,20 @@ class GameDao(private val context: Context) {
             batch += createPlayerPollBatch(game.id, game.playerPoll)
             batch += createExpansionsBatch(game.id, game.expansions)
 
-            saveReference(game.designers, Designers.CONTENT_URI, Designers.Columns.DESIGNER_ID, Designers.Columns.DESIGNER_NAME)
-            saveReference(game.artists, Artists.CONTENT_URI, Artists.Columns.ARTIST_ID, Artists.Columns.ARTIST_NAME)
-            saveReference(game.publishers, Publishers.CONTENT_URI, Publishers.Columns.PUBLISHER_ID, Publishers.Columns.PUBLISHER_NAME)
-            saveReference(game.categories, Categories.CONTENT_URI, Categories.Columns.CATEGORY_ID, Categories.Columns.CATEGORY_NAME)
-            saveReference(game.mechanics, Mechanics.CONTENT_URI, Mechanics.Columns.MECHANIC_ID, Mechanics.Columns.MECHANIC_NAME)
-
-            batch += createAssociationBatch(game.id, game.designers, PATH_DESIGNERS, GamesDesigners.DESIGNER_ID)
+            batch += designersBatch
             batch += createAssociationBatch(game.id, game.artists, PATH_ARTISTS, GamesArtists.ARTIST_ID)
-            batch += createAssociationBatch(game.id, game.publishers, PATH_PUBLISHERS, GamesPublishers.PUBLISHER_ID)
+            batch += publishersBatch
             batch += createAssociationBatch(game.id, game.categories, PATH_CATEGORIES, GamesCategories.CATEGORY_ID)
             batch += createAssociationBatch(game.id, game.mechanics, PATH_MECHANICS, GamesMechanics.MECHANIC_ID)
+            internalId
+        }
 
-            resolver.applyBatch(batch, "Game ${game.name} [${game.id}]")
-            val dateTime = DateUtils.formatDateTime(context, updateTime, DateUtils.FORMAT_SHOW_DATE or DateUtils.FORMAT_SHOW_TIME)
+        resolver.applyBatch(batch, "Games ${gamesToSave.joinToString { "${it.name} [${it.id}]" }}")
+        if (gameIdsWithNewCredits.isNotEmpty()) {
+            resolver.call(Games.CONTENT_URI, METHOD_INDEX_SEARCH_SUGGESTIONS, null, bundleOf(EXTRA_GAME_IDS to gameIdsWithNewCredits.toIntArray()))
+        }
+        val dateTime = DateUtils.formatDateTime(context, updateTime, DateUtils.FORMAT_SHOW_DATE or DateUtils.FORMAT_SHOW_TIME)
+        gamesToSave.zip(internalIds).forEach { (game, internalId) ->
             if (internalId == INVALID_ID.toLong()) {
                 Timber.i("Inserted game ${game.name} [${game.id}] at $dateTime")
             } else {
@@ -739,9 +790,9 @@ class GameDao(private val context: Context) {
     /**
      * Upsert each ID/name pair.
      */
-    private fun saveReference(newLinks: List<Pair<Int, String>>, baseUri: Uri, idColumn: String, nameColumn: String) {
+    private fun createReferenceBatch(newLinks: List<Pair<Int, String>>, baseUri: Uri, idColumn: String, nameColumn: String): ArrayList<ContentProviderOperation> {
         val batch = arrayListOf<ContentProviderOperation>()
-        for ((id, name) in newLinks) {
+        for ((id, name) in newLinks.distinctBy { it.first }) {
             val uri = baseUri.buildUpon().appendPath(id.toString()).build()
             batch += if (resolver.rowExists(uri)) {
                 ContentProviderOperation.newUpdate(uri).withValue(nameColumn, name).build()
@@ -754,7 +805,7 @@ class GameDao(private val context: Context) {
                 ).build()
             }
         }
-        resolver.applyBatch(batch, "Saving ${baseUri.lastPathSegment}")
+        return batch
     }
 
     private fun createAssociationBatch(
@@ -786,4 +837,26 @@ class GameDao(private val context: Context) {
             }
         }
     }
+
+    /**
+     * Replaces the colors of each game in [colorsByGame] in a single batch. Games that aren't in the database are skipped.
+     */
+    suspend fun updateColors(colorsByGame: Map<Int, List<String>>) = withContext(Dispatchers.IO) {
+        if (colorsByGame.isEmpty()) return@withContext
+        val existingGameIds = resolver.queryInts(
+            Games.CONTENT_URI,
+            Games.Columns.GAME_ID,
+            "${Tables.GAMES}.${Games.Columns.GAME_ID} IN (${colorsByGame.keys.joinToString { "?" }})",
+            colorsByGame.keys.map { it.toString() }.toTypedArray(),
+        ).toSet()
+        val batch = arrayListOf<ContentProviderOperation>()
+        colorsByGame.filterKeys { it in existingGameIds }.forEach { (gameId, colors) ->
+            val gameColorsUri = Games.buildColorsUri(gameId)
+            batch += ContentProviderOperation.newDelete(gameColorsUri).build()
+            colors.filter { it.isNotBlank() }.forEach {
+                batch += ContentProviderOperation.newInsert(gameColorsUri).withValue(GameColors.Columns.COLOR, it).build()
+            }
+        }
+        resolver.applyBatch(batch, "Colors for ${existingGameIds.size} games")
+    }
 }
@@ -1,9 +1,15 @@
 package com.boardgamegeek.db
 
 import android.content.Context
-import com.boardgamegeek.BggApplication
+import androidx.core.database.getStringOrNull
+import com.boardgamegeek.extensions.ensureHttpsScheme
+import com.boardgamegeek.extensions.loadList
+import com.boardgamegeek.extensions.queryStrings
 import com.boardgamegeek.provider.BggContract.Avatars
+import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Games
 import com.boardgamegeek.provider.BggContract.Thumbnails
+import com.boardgamegeek.provider.BggDatabase.Tables
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 
@@ -15,4 +21,24 @@ class ImageDao(private val context: Context) {
     suspend fun deleteThumbnails() = withContext(Dispatchers.IO) {
         context.contentResolver.delete(Thumbnails.CONTENT_URI, null, null)
     }
+
+    /**
+     * The thumbnails shown in the collection and plays lists: those of collection items first, then those of played
+     * games.
+     */
+    suspend fun loadThumbnailUrls(): List<String> = withContext(Dispatchers.IO) {
+        val collectionUrls = context.contentResolver.loadList(
+            Collection.CONTENT_URI,
+            arrayOf(Collection.Columns.COLLECTION_THUMBNAIL_URL, Games.Columns.THUMBNAIL_URL),
+        ) {
+            listOf(it.getStringOrNull(0), it.getStringOrNull(1))
+        }.flatten()
+        val playedGameUrls = context.contentResolver.queryStrings(
+            Games.CONTENT_URI,
+            Games.Columns.THUMBNAIL_URL,
+            "${Tables.GAMES}.${Games.Columns.NUM_PLAYS}>0",
+            sortOrder = "${Tables.GAMES}.${Games.Columns.NUM_PLAYS} DESC",
+        )
+        (collectionUrls + playedGameUrls).mapNotNull { it.ensureHttpsScheme() }.filter { it.isNotBlank() }.distinct()
+    }
 }
@@ -0,0 +1,55 @@
+package com.boardgamegeek.db
+
+/**
+ * Which way to load a page from its key when paging by keyset, i.e. by seeking to the sort values of the row at the edge
+ * of the last page rather than skipping over an offset.
+ */
+enum class PageDirection {
+    /** From the key on, including it */
+    FROM,
+
+    /** After the key */
+    AFTER,
+
+    /** Before the key, still returned in the query's order */
+    BEFORE,
+}
+
+/**
+ * A SQL expression a page is sorted by. Key values are bound in its [placeholder], which casts them when the expression
+ * isn't text; otherwise SQLite compares a number to a bound string as less than it.
+ */
+class SortColumn(val expression: String, val isDescending: Boolean, val placeholder: String = "?") {
+    companion object {
+        const val INTEGER_PLACEHOLDER = "CAST(? AS INTEGER)"
+        const val REAL_PLACEHOLDER = "CAST(? AS REAL)"
+    }
+}
+
+/**
+ * The ORDER BY clause of this order, or of its reverse when loading the page [PageDirection.BEFORE] a key.
+ */
+fun List<SortColumn>.orderBy(reverse: Boolean) =
+    joinToString { if (it.isDescending != reverse) "${it.expression} DESC" else "${it.expression} ASC" }
+
+/**
+ * Builds a selection of the rows after (or before, when [reverse]d) the key [values] in this order, e.g.
+ * `a<? OR (a=? AND (b<? OR (b=? AND c<?)))`. Only the last column is compared [inclusive]ly.
+ */
+fun List<SortColumn>.keySelection(values: List<String>, reverse: Boolean, inclusive: Boolean): Pair<String, Array<String>> {
+    var selection = ""
+    val args = ArrayDeque<String>()
+    for (index in indices.reversed()) {
+        val column = this[index]
+        val operator = (if (column.isDescending != reverse) "<" else ">") + if (inclusive && index == lastIndex) "=" else ""
+        if (index == lastIndex) {
+            selection = "${column.expression}$operator${column.placeholder}"
+            args.addFirst(values[index])
+        } else {
+            selection = "(${column.expression}$operator${column.placeholder} OR (${column.expression}=${column.placeholder} AND $selection))"
+            args.addFirst(values[index])
+            args.addFirst(values[index])
+        }
+    }
+    return selection to args.toTypedArray()
+}
@@ -4,6 +4,7 @@ import android.content.ContentProviderOperation
 import android.content.ContentResolver
 import android.content.ContentValues
 import android.content.Context
+import android.database.Cursor
 import android.net.Uri
 import android.provider.BaseColumns
 import androidx.core.content.contentValuesOf
@@ -15,6 +16,8 @@ import com.boardgamegeek.entities.*
 import com.boardgamegeek.extensions.*
 import com.boardgamegeek.provider.BggContract.*
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
+import com.boardgamegeek.provider.BggContract.Companion.QUERY_KEY_LIMIT
+import com.boardgamegeek.provider.BggDatabase.Tables
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import timber.log.Timber
@@ -166,62 +169,173 @@ class PlayDao(private val context: Context) {
             PlaysSortBy.UPDATED_DATE -> Plays.Columns.UPDATE_TIMESTAMP.descending()
             PlaysSortBy.DELETED_DATE -> Plays.Columns.DELETE_TIMESTAMP.descending()
         }
-        context.contentResolver.loadList(
-            uri,
-            arrayOf(
-                BaseColumns._ID,
-                Plays.Columns.PLAY_ID,
-                Plays.Columns.DATE,
-                Plays.Columns.OBJECT_ID,
-                Plays.Columns.ITEM_NAME,
-                Plays.Columns.QUANTITY,
-                Plays.Columns.LENGTH,
-                Plays.Columns.LOCATION,
-                Plays.Columns.INCOMPLETE,
-                Plays.Columns.NO_WIN_STATS,
-                Plays.Columns.COMMENTS,
-                Plays.Columns.SYNC_TIMESTAMP,
-                Plays.Columns.PLAYER_COUNT,
-                Plays.Columns.DIRTY_TIMESTAMP,
-                Plays.Columns.UPDATE_TIMESTAMP,
-                Plays.Columns.DELETE_TIMESTAMP,
-                Plays.Columns.START_TIME,
-                Games.Columns.IMAGE_URL,
-                Games.Columns.THUMBNAIL_URL,
-                Games.Columns.HERO_IMAGE_URL,
-                Games.Columns.UPDATED_PLAYS,
-            ),
-            selection.first,
-            selection.second,
-            sortOrder,
-        ) {
-            val internalId = it.getLong(0)
-            val players = if (includePlayers) loadPlayers(internalId) else null
-            PlayEntity(
-                internalId = internalId,
-                playId = it.getInt(1),
-                rawDate = it.getString(2),
-                gameId = it.getInt(3),
-                gameName = it.getString(4),
-                quantity = it.getIntOrNull(5) ?: 1,
-                length = it.getIntOrNull(6) ?: 0,
-                location = it.getStringOrNull(7).orEmpty(),
-                incomplete = it.getInt(8) == 1,
-                noWinStats = it.getInt(9) == 1,
-                comments = it.getStringOrNull(10).orEmpty(),
-                syncTimestamp = it.getLong(11),
-                initialPlayerCount = it.getInt(12),
-                dirtyTimestamp = it.getLong(13),
-                updateTimestamp = it.getLong(14),
-                deleteTimestamp = it.getLong(15),
-                startTime = it.getLong(16),
-                imageUrl = it.getStringOrNull(17).orEmpty(),
-                thumbnailUrl = it.getStringOrNull(18).orEmpty(),
-                heroImageUrl = it.getStringOrNull(19).orEmpty(),
-                updatedPlaysTimestamp = it.getLongOrNull(20) ?: 0L,
-                _players = players,
-            )
+        context.contentResolver.loadList(uri, playProjection, selection.first, selection.second, sortOrder) {
+            it.toPlayEntity(includePlayers)
+        }
+    }
+
+    /**
+     * The plays a list shows, and the order it shows them in. Null if there can't be any plays to show.
+     */
+    data class PlaysQuery(
+        val uri: Uri,
+        val selection: Pair<String?, Array<String>?>,
+        val sortBy: PlaysSortBy = PlaysSortBy.DATE,
+    )
+
+    /**
+     * A play's position in the order of a [PlaysQuery]: the value it's sorted by, then its date and play ID, as the lists
+     * have always been sorted, and finally its internal ID to break ties between plays that haven't been synced.
+     */
+    data class PlaysPageKey(val sortValue: String, val date: String, val playId: Int, val internalId: Long)
+
+    data class PlaysPage(val plays: List<PlayEntity>, val firstKey: PlaysPageKey?, val lastKey: PlaysPageKey?)
+
+    fun createPlaysQuery(sortBy: PlaysSortBy) = PlaysQuery(Plays.CONTENT_URI, createPlaySelectionAndArgs(), sortBy)
+
+    fun createPendingPlaysQuery() = PlaysQuery(Plays.CONTENT_URI, createPendingPlaySelectionAndArgs())
+
+    fun createDraftPlaysQuery() = PlaysQuery(Plays.CONTENT_URI, createDraftPlaySelectionAndArgs())
+
+    fun createGamePlaysQuery(gameId: Int) =
+        if (gameId == INVALID_ID) null else PlaysQuery(Plays.CONTENT_URI, createGamePlaySelectionAndArgs(gameId))
+
+    fun createLocationPlaysQuery(locationName: String) = PlaysQuery(Plays.CONTENT_URI, createLocationPlaySelectionAndArgs(locationName))
+
+    fun createUsernamePlaysQuery(username: String) =
+        if (username.isBlank()) null else PlaysQuery(Plays.buildPlayersByPlayUri(), createUsernamePlaySelectionAndArgs(username))
+
+    fun createPlayerNamePlaysQuery(playerName: String) =
+        if (playerName.isBlank()) null else PlaysQuery(Plays.buildPlayersByPlayUri(), createPlayerNamePlaySelectionAndArgs(playerName))
+
+    /**
+     * Loads up to [pageSize] plays next to the [key] in the query's order. Rather than skipping over an offset, this
+     * seeks to the key, so every page takes about as long to load as the first, and pages don't shift when plays are
+     * added or removed before them.
+     */
+    suspend fun loadPlaysPage(query: PlaysQuery, key: PlaysPageKey?, direction: PageDirection, pageSize: Int): PlaysPage =
+        withContext(Dispatchers.IO) {
+            val order = pageOrder(query.sortBy)
+            val reverse = direction == PageDirection.BEFORE
+            val (keySelection, keyArgs) = if (key == null) null to emptyArray<String>() else {
+                val values = listOf(key.sortValue, key.date, key.playId.toString(), key.internalId.toString()).takeLast(order.size)
+                order.keySelection(values, reverse, direction == PageDirection.FROM)
+            }
+            val selection = listOfNotNull(query.selection.first?.let { "($it)" }, keySelection).joinToString(" AND ")
+            val uri = query.uri.buildUpon().appendQueryParameter(QUERY_KEY_LIMIT, pageSize.toString()).build()
+            val keys = mutableListOf<PlaysPageKey>()
+            val plays = context.contentResolver.loadList(
+                uri,
+                playProjection,
+                selection.ifEmpty { null },
+                query.selection.second.orEmpty() + keyArgs,
+                order.orderBy(reverse),
+            ) {
+                it.toPlayEntity().also { play ->
+                    keys += PlaysPageKey(play.sortValue(query.sortBy), it.getString(2).orEmpty(), play.playId, play.internalId)
+                }
+            }
+            if (reverse) PlaysPage(plays.asReversed(), keys.lastOrNull(), keys.firstOrNull())
+            else PlaysPage(plays, keys.firstOrNull(), keys.lastOrNull())
+        }
+
+    /**
+     * Returns the total quantity of the plays the query matches in a single row, without loading them. The players'
+     * queries are grouped by play, so they're summed over the plays their players select instead.
+     */
+    suspend fun sumQuantity(query: PlaysQuery): Int = withContext(Dispatchers.IO) {
+        val selection = if (query.uri == Plays.CONTENT_URI) query.selection.first else {
+            val playerSelection = query.selection.first?.let { " WHERE $it" }.orEmpty()
+            "${Tables.PLAYS}.${BaseColumns._ID} IN (SELECT ${Tables.PLAY_PLAYERS}.${PlayPlayers.Columns._PLAY_ID} FROM ${Tables.PLAY_PLAYERS_JOIN_PLAYS}$playerSelection)"
         }
+        context.contentResolver.loadEntity(
+            Plays.CONTENT_URI,
+            arrayOf("SUM(IFNULL(${Tables.PLAYS}.${Plays.Columns.QUANTITY},1))"),
+            selection,
+            query.selection.second,
+        ) { it.getInt(0) } ?: 0
+    }
+
+    /**
+     * The columns to sort by. The sorted value is normalized so that it can be compared with the value in a page key.
+     */
+    private fun pageOrder(sortBy: PlaysSortBy): List<SortColumn> {
+        val sortColumn = when (sortBy) {
+            PlaysSortBy.DATE -> null
+            PlaysSortBy.LOCATION -> SortColumn("IFNULL(${Tables.PLAYS}.${Plays.Columns.LOCATION},'')", false)
+            PlaysSortBy.GAME -> SortColumn("IFNULL(${Tables.PLAYS}.${Plays.Columns.ITEM_NAME},'')", false)
+            PlaysSortBy.LENGTH -> SortColumn("IFNULL(${Tables.PLAYS}.${Plays.Columns.LENGTH},0)", true, SortColumn.INTEGER_PLACEHOLDER)
+            PlaysSortBy.UPDATED_DATE -> SortColumn("IFNULL(${Tables.PLAYS}.${Plays.Columns.UPDATE_TIMESTAMP},0)", true, SortColumn.INTEGER_PLACEHOLDER)
+            PlaysSortBy.DELETED_DATE -> SortColumn("IFNULL(${Tables.PLAYS}.${Plays.Columns.DELETE_TIMESTAMP},0)", true, SortColumn.INTEGER_PLACEHOLDER)
+        }
+        return listOfNotNull(
+            sortColumn,
+            SortColumn("${Tables.PLAYS}.${Plays.Columns.DATE}", true),
+            SortColumn("IFNULL(${Tables.PLAYS}.${Plays.Columns.PLAY_ID},0)", true, SortColumn.INTEGER_PLACEHOLDER),
+            SortColumn("${Tables.PLAYS}.${BaseColumns._ID}", true, SortColumn.INTEGER_PLACEHOLDER),
+        )
+    }
+
+    private fun PlayEntity.sortValue(sortBy: PlaysSortBy) = when (sortBy) {
+        PlaysSortBy.DATE -> ""
+        PlaysSortBy.LOCATION -> location
+        PlaysSortBy.GAME -> gameName
+        PlaysSortBy.LENGTH -> length.toString()
+        PlaysSortBy.UPDATED_DATE -> updateTimestamp.toString()
+        PlaysSortBy.DELETED_DATE -> deleteTimestamp.toString()
+    }
+
+    private val playProjection = arrayOf(
+        BaseColumns._ID,
+        Plays.Columns.PLAY_ID,
+        Plays.Columns.DATE,
+        Plays.Columns.OBJECT_ID,
+        Plays.Columns.ITEM_NAME,
+        Plays.Columns.QUANTITY,
+        Plays.Columns.LENGTH,
+        Plays.Columns.LOCATION,
+        Plays.Columns.INCOMPLETE,
+        Plays.Columns.NO_WIN_STATS,
+        Plays.Columns.COMMENTS,
+        Plays.Columns.SYNC_TIMESTAMP,
+        Plays.Columns.PLAYER_COUNT,
+        Plays.Columns.DIRTY_TIMESTAMP,
+        Plays.Columns.UPDATE_TIMESTAMP,
+        Plays.Columns.DELETE_TIMESTAMP,
+        Plays.Columns.START_TIME,
+        Games.Columns.IMAGE_URL,
+        Games.Columns.THUMBNAIL_URL,
+        Games.Columns.HERO_IMAGE_URL,
+        Games.Columns.UPDATED_PLAYS,
+    )
+
+    private suspend fun Cursor.toPlayEntity(includePlayers: Boolean = false): PlayEntity {
+        val internalId = getLong(0)
+        val players = if (includePlayers) loadPlayers(internalId) else null
+        return PlayEntity(
+            internalId = internalId,
+            playId = getInt(1),
+            rawDate = getString(2),
+            gameId = getInt(3),
+            gameName = getString(4),
+            quantity = getIntOrNull(5) ?: 1,
+            length = getIntOrNull(6) ?: 0,
+            location = getStringOrNull(7).orEmpty(),
+            incomplete = getInt(8) == 1,
+            noWinStats = getInt(9) == 1,
+            comments = getStringOrNull(10).orEmpty(),
+            syncTimestamp = getLong(11),
+            initialPlayerCount = getInt(12),
+            dirtyTimestamp = getLong(13),
+            updateTimestamp = getLong(14),
+            deleteTimestamp = getLong(15),
+            startTime = getLong(16),
+            imageUrl = getStringOrNull(17).orEmpty(),
+            thumbnailUrl = getStringOrNull(18).orEmpty(),
+            heroImageUrl = getStringOrNull(19).orEmpty(),
+            updatedPlaysTimestamp = getLongOrNull(20) ?: 0L,
+            _players = players,
+        )
     }
 
     private fun createPlaySelectionAndArgs() =
@@ -479,42 +593,58 @@ class PlayDao(private val context: Context) {
         UPDATED, INSERTED, DIRTY, ERROR, UNCHANGED
     }
 
-    suspend fun save(play: PlayEntity, startTime: Long = System.currentTimeMillis()): SaveStatus = withContext(Dispatchers.IO) {
-        val candidate = PlaySyncCandidate.find(context.contentResolver, play.playId)
-        when {
-            !play.isSynced -> {
-                Timber.i("Can't sync a play without a play ID.")
-                SaveStatus.ERROR
-            }
-
-            candidate == null || candidate.internalId == INVALID_ID.toLong() -> {
-                upsert(play, INVALID_ID.toLong())
-                SaveStatus.INSERTED
-            }
-
-            candidate.isDirty -> {
-                Timber.i("Not saving during the sync; local play is modified.")
-                SaveStatus.DIRTY
+    /**
+     * Saves a page of plays from a sync. Stored plays are looked up in one query, and the unchanged ones (those whose
+     * sync fingerprint matches) only have their sync timestamp updated, in one statement. The fingerprint is stored in
+     * the sync_hash_code column, which held a 32-bit hash before, so each play is rewritten once after upgrading.
+     */
+    suspend fun saveFromSync(plays: List<PlayEntity>, startTime: Long = System.currentTimeMillis()): List<SaveStatus> =
+        withContext(Dispatchers.IO) {
+            val candidates = PlaySyncCandidate.find(context.contentResolver, plays.map { it.playId })
+            val unchangedInternalIds = mutableListOf<Long>()
+            val statuses = plays.map { play ->
+                val candidate = candidates[play.playId]
+                when {
+                    !play.isSynced -> {
+                        Timber.i("Can't sync a play without a play ID.")
+                        SaveStatus.ERROR
+                    }
+                    candidate == null || candidate.internalId == INVALID_ID.toLong() -> {
+                        upsert(play, INVALID_ID.toLong())
+                        SaveStatus.INSERTED
+                    }
+                    candidate.isDirty -> {
+                        Timber.i("Not saving during the sync; local play is modified.")
+                        SaveStatus.DIRTY
+                    }
+                    else -> {
+                        val syncFingerprint = play.generateSyncFingerprint()
+                        if (candidate.syncFingerprint == syncFingerprint) {
+                            unchangedInternalIds += candidate.internalId
+                            SaveStatus.UNCHANGED
+                        } else {
+                            upsert(play, candidate.internalId, syncFingerprint)
+                            SaveStatus.UPDATED
+                        }
+                    }
+                }
             }
-
-            candidate.syncHashCode == play.generateSyncHashCode() -> {
+            unchangedInternalIds.chunked(MAX_SQL_VARIABLES).forEach { internalIds ->
                 context.contentResolver.update(
-                    Plays.buildPlayUri(candidate.internalId),
+                    Plays.CONTENT_URI,
                     contentValuesOf(Plays.Columns.SYNC_TIMESTAMP to startTime),
-                    null,
-                    null
+                    "${BaseColumns._ID} IN (${internalIds.joinToString(",") { "?" }})",
+                    internalIds.map { it.toString() }.toTypedArray(),
                 )
-                SaveStatus.UNCHANGED
-            }
-
-            else -> {
-                upsert(play, candidate.internalId)
-                SaveStatus.UPDATED
             }
+            statuses
         }
-    }
 
-    suspend fun upsert(play: PlayEntity, internalId: Long = play.internalId): Long = withContext(Dispatchers.IO) {
+    suspend fun upsert(
+        play: PlayEntity,
+        internalId: Long = play.internalId,
+        syncFingerprint: Long = play.generateSyncFingerprint(),
+    ): Long = withContext(Dispatchers.IO) {
         val batch = arrayListOf<ContentProviderOperation>()
 
         val values = contentValuesOf(
@@ -531,7 +661,7 @@ class PlayDao(private val context: Context) {
             Plays.Columns.PLAYER_COUNT to play.players.size,
             Plays.Columns.SYNC_TIMESTAMP to play.syncTimestamp,
             Plays.Columns.START_TIME to if (play.length > 0) 0 else play.startTime,
-            Plays.Columns.SYNC_HASH_CODE to play.generateSyncHashCode(),
+            Plays.Columns.SYNC_HASH_CODE to syncFingerprint,
             Plays.Columns.DELETE_TIMESTAMP to play.deleteTimestamp,
             Plays.Columns.UPDATE_TIMESTAMP to play.updateTimestamp,
             Plays.Columns.DIRTY_TIMESTAMP to play.dirtyTimestamp,
@@ -819,6 +949,92 @@ class PlayDao(private val context: Context) {
         return selection to selectionArgs
     }
 
+    /**
+     * Renames the player without a username in every play. Returns the internal IDs of the plays ready to upload.
+     */
+    suspend fun renamePlayer(oldName: String, newName: String): List<Long> {
+        val selection = "${PlayPlayers.Columns.USER_NAME.whereNullOrBlank()} AND ${PlayPlayers.Columns.NAME}=?"
+        return updatePlayers(contentValuesOf(PlayPlayers.Columns.NAME to newName), selection, arrayOf(oldName))
+    }
+
+    /**
+     * Sets the username of the player without one in every play. Returns the internal IDs of the plays ready to upload.
+     */
+    suspend fun addUsernameToPlayer(playerName: String, username: String): List<Long> {
+        val selection = "${PlayPlayers.Columns.USER_NAME.whereNullOrBlank()} AND ${PlayPlayers.Columns.NAME}=?"
+        return updatePlayers(contentValuesOf(PlayPlayers.Columns.USER_NAME to username), selection, arrayOf(playerName))
+    }
+
+    /**
+     * Names the user [nickName] in every play. Returns the internal IDs of the plays ready to upload.
+     */
+    suspend fun updateNickName(username: String, nickName: String): List<Long> {
+        val selection = "${PlayPlayers.Columns.USER_NAME}=? AND (${PlayPlayers.Columns.NAME} IS NULL OR ${PlayPlayers.Columns.NAME}!=?)"
+        return updatePlayers(contentValuesOf(PlayPlayers.Columns.NAME to nickName), selection, arrayOf(username, nickName))
+    }
+
+    /**
+     * Updates the players matching the [selection] in every play not pending deletion.
+     */
+    private suspend fun updatePlayers(values: ContentValues, selection: String, selectionArgs: Array<String>): List<Long> {
+        val playSelection = "${Tables.PLAYS}.${BaseColumns._ID} IN (SELECT ${PlayPlayers.Columns._PLAY_ID} FROM ${Tables.PLAY_PLAYERS} WHERE $selection)"
+        val playerSelection = "$selection AND ${PlayPlayers.Columns._PLAY_ID} IN (SELECT ${BaseColumns._ID} FROM ${Tables.PLAYS} WHERE ${Plays.Columns.DELETE_TIMESTAMP.whereZeroOrNull()})"
+        return updatePlays(
+            playSelection,
+            selectionArgs,
+            ContentProviderOperation.newUpdate(Plays.buildPlayersUri())
+                .withSelection(playerSelection, selectionArgs)
+                .withValues(values)
+                .build()
+        )
+    }
+
+    /**
+     * Moves every play not pending deletion to the new location. Returns the internal IDs of the plays ready to upload.
+     */
+    suspend fun renameLocation(oldLocationName: String, newLocationName: String): List<Long> {
+        val (selection, selectionArgs) = createLocationPlaySelectionAndArgs(oldLocationName)
+        return updatePlays(
+            selection,
+            selectionArgs,
+            ContentProviderOperation.newUpdate(Plays.CONTENT_URI)
+                .withSelection(selection, selectionArgs)
+                .withValue(Plays.Columns.LOCATION, newLocationName)
+                .build()
+        )
+    }
+
+    /**
+     * Applies the [operation] to the plays matching the [selection] (not pending deletion), with set-based updates in a
+     * single transaction. Plays not already pending an update are marked as updated, so they'll be uploaded. Returns
+     * the internal IDs of the plays that aren't being edited, which can be uploaded right away.
+     */
+    private suspend fun updatePlays(
+        selection: String,
+        selectionArgs: Array<String>,
+        operation: ContentProviderOperation,
+    ): List<Long> = withContext(Dispatchers.IO) {
+        val activeSelection = "$selection AND ${Plays.Columns.DELETE_TIMESTAMP.whereZeroOrNull()}"
+        val internalIds = context.contentResolver.loadList(
+            Plays.CONTENT_URI,
+            arrayOf(BaseColumns._ID),
+            "$activeSelection AND ${Plays.Columns.DIRTY_TIMESTAMP.whereZeroOrNull()}",
+            selectionArgs,
+        ) { it.getLong(0) }
+        val batch = arrayListOf(
+            ContentProviderOperation.newUpdate(Plays.CONTENT_URI)
+                .withSelection(
+                    "$activeSelection AND ${Plays.Columns.UPDATE_TIMESTAMP.whereZeroOrNull()} AND ${Plays.Columns.DIRTY_TIMESTAMP.whereZeroOrNull()}",
+                    selectionArgs
+                )
+                .withValue(Plays.Columns.UPDATE_TIMESTAMP, System.currentTimeMillis())
+                .build(),
+            operation,
+        )
+        context.contentResolver.applyBatch(batch)
+        internalIds
+    }
+
     suspend fun update(internalId: Long, values: ContentValues): Boolean = withContext(Dispatchers.IO) {
         val rowsUpdated = context.contentResolver.update(Plays.buildPlayUri(internalId), values, null, null)
         if (rowsUpdated == 1) {
@@ -832,7 +1048,7 @@ class PlayDao(private val context: Context) {
 
     data class PlaySyncCandidate(
         val internalId: Long = INVALID_ID.toLong(),
-        val syncHashCode: Int = 0,
+        val syncFingerprint: Long? = null,
         private val deleteTimestamp: Long = 0L,
         private val updateTimestamp: Long = 0L,
         private val dirtyTimestamp: Long = 0L,
@@ -841,33 +1057,39 @@ class PlayDao(private val context: Context) {
             get() = dirtyTimestamp > 0 || deleteTimestamp > 0 || updateTimestamp > 0
 
         companion object {
-            suspend fun find(resolver: ContentResolver, playId: Int): PlaySyncCandidate? = withContext(Dispatchers.IO) {
-                if (playId <= 0) {
-                    Timber.i("Can't sync a play without a play ID.")
-                    null
-                } else {
-                    resolver.loadEntity(
+            /**
+             * Finds the stored plays with the given [playIds], keyed by play ID.
+             */
+            suspend fun find(resolver: ContentResolver, playIds: List<Int>): Map<Int, PlaySyncCandidate> = withContext(Dispatchers.IO) {
+                playIds.filter { it > 0 }.distinct().chunked(MAX_SQL_VARIABLES).flatMap { chunk ->
+                    resolver.loadList(
                         Plays.CONTENT_URI,
                         arrayOf(
+                            Plays.Columns.PLAY_ID,
                             BaseColumns._ID,
                             Plays.Columns.SYNC_HASH_CODE,
                             Plays.Columns.DELETE_TIMESTAMP,
                             Plays.Columns.UPDATE_TIMESTAMP,
                             Plays.Columns.DIRTY_TIMESTAMP,
                         ),
-                        "${Plays.Columns.PLAY_ID}=?",
-                        arrayOf(playId.toString()),
+                        "${Plays.Columns.PLAY_ID} IN (${chunk.joinToString(",") { "?" }})",
+                        chunk.map { it.toString() }.toTypedArray(),
                     ) {
-                        PlaySyncCandidate(
-                            internalId = it.getLongOrNull(0) ?: INVALID_ID.toLong(),
-                            syncHashCode = it.getIntOrNull(1) ?: 0,
-                            deleteTimestamp = it.getLongOrNull(2) ?: 0L,
-                            updateTimestamp = it.getLongOrNull(3) ?: 0L,
-                            dirtyTimestamp = it.getLongOrNull(4) ?: 0L,
+                        it.getInt(0) to PlaySyncCandidate(
+                            internalId = it.getLongOrNull(1) ?: INVALID_ID.toLong(),
+                            syncFingerprint = it.getLongOrNull(2),
+                            deleteTimestamp = it.getLongOrNull(3) ?: 0L,
+                            updateTimestamp = it.getLongOrNull(4) ?: 0L,
+                            dirtyTimestamp = it.getLongOrNull(5) ?: 0L,
                         )
                     }
-                }
+                }.toMap()
             }
         }
     }
+
+    companion object {
+        // SQLite's default limit on host parameters in a statement
+        private const val MAX_SQL_VARIABLES = 999
+    }
 }
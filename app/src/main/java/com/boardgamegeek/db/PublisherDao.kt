@@ -1,5 +1,6 @@
 package com.boardgamegeek.db
 
+import android.content.ContentProviderOperation
 import android.content.ContentValues
 import android.content.Context
 import androidx.core.database.getIntOrNull
@@ -91,6 +92,24 @@ class PublisherDao(private val context: Context) {
     suspend fun loadCollection(publisherId: Int, sortBy: CollectionDao.SortType = CollectionDao.SortType.RATING) =
         collectionDao.loadLinkedCollection(Publishers.buildCollectionUri(publisherId), sortBy)
 
+    /**
+     * Loads the collection linked to every publisher, keyed by publisher ID.
+     */
+    suspend fun loadCollections(sortBy: CollectionDao.SortType = CollectionDao.SortType.RATING) =
+        collectionDao.loadLinkedCollections(Publishers.buildPublishersCollectionUri(), Publishers.Columns.PUBLISHER_ID, sortBy)
+
+    suspend fun updateWhitmoreScores(scores: Map<Int, Int>) = withContext(Dispatchers.IO) {
+        val timestamp = System.currentTimeMillis()
+        val batch = arrayListOf<ContentProviderOperation>()
+        scores.forEach { (id, score) ->
+            batch += ContentProviderOperation.newUpdate(Publishers.buildPublisherUri(id))
+                .withValue(Publishers.Columns.WHITMORE_SCORE, score)
+                .withValue(Publishers.Columns.PUBLISHER_STATS_UPDATED_TIMESTAMP, timestamp)
+                .build()
+        }
+        context.contentResolver.applyBatch(batch, "Whitmore scores for ${scores.size} publishers")
+    }
+
     suspend fun upsert(publisherId: Int, values: ContentValues): Int = withContext(Dispatchers.IO) {
         val resolver = context.contentResolver
         val uri = Publishers.buildPublisherUri(publisherId)
@@ -6,6 +6,7 @@ import android.content.Context
 import android.net.Uri
 import android.provider.BaseColumns
 import androidx.core.content.contentValuesOf
+import androidx.core.database.getIntOrNull
 import androidx.core.database.getLongOrNull
 import androidx.core.database.getStringOrNull
 import com.boardgamegeek.auth.Authenticator
@@ -17,6 +18,7 @@ import com.boardgamegeek.provider.BggContract.Avatars
 import com.boardgamegeek.provider.BggContract.Buddies
 import com.boardgamegeek.provider.BggContract.Companion.COLLATE_NOCASE
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
+import com.boardgamegeek.provider.BggDatabase.Tables
 import com.boardgamegeek.util.FileUtils
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
@@ -95,25 +97,66 @@ class UserDao(private val context: Context) {
     suspend fun saveUser(user: UserEntity, updateTime: Long = System.currentTimeMillis()): UserEntity =
         withContext(Dispatchers.IO) {
             if (user.userName.isNotBlank()) {
-                val values = contentValuesOf(
-                    Buddies.Columns.UPDATED to updateTime,
-                    Buddies.Columns.UPDATED_LIST to updateTime
-                )
                 val oldSyncHashCode = context.contentResolver.queryInt(Buddies.buildBuddyUri(user.userName), Buddies.Columns.SYNC_HASH_CODE)
-                val newSyncHashCode = user.generateSyncHashCode()
-                if (oldSyncHashCode != newSyncHashCode) {
-                    values.put(Buddies.Columns.BUDDY_ID, user.id)
-                    values.put(Buddies.Columns.BUDDY_NAME, user.userName)
-                    values.put(Buddies.Columns.BUDDY_FIRSTNAME, user.firstName)
-                    values.put(Buddies.Columns.BUDDY_LASTNAME, user.lastName)
-                    values.put(Buddies.Columns.AVATAR_URL, user.avatarUrl)
-                    values.put(Buddies.Columns.SYNC_HASH_CODE, newSyncHashCode)
-                }
-                val internalId = upsert(values, user.userName, user.id)
+                val internalId = upsert(user.toValues(updateTime, oldSyncHashCode), user.userName, user.id)
                 user.copy(internalId = internalId, updatedTimestamp = updateTime)
             } else user
         }
 
+    /**
+     * Saves the [users] in a single batch, as [saveUser] would one at a time. Returns the number of users saved.
+     */
+    suspend fun saveUsers(users: List<UserEntity>, updateTime: Long = System.currentTimeMillis()): Int = withContext(Dispatchers.IO) {
+        val savableUsers = users.filter { it.userName.isNotBlank() }
+        if (savableUsers.isEmpty()) return@withContext 0
+        val resolver = context.contentResolver
+        val existingUsers = resolver.loadList(
+            Buddies.CONTENT_URI,
+            arrayOf(Buddies.Columns.BUDDY_NAME, Buddies.Columns.SYNC_HASH_CODE, Buddies.Columns.AVATAR_URL),
+            "${Buddies.Columns.BUDDY_NAME} IN (${savableUsers.joinToString { "?" }})",
+            savableUsers.map { it.userName }.toTypedArray(),
+        ) {
+            it.getStringOrNull(0).orEmpty() to ((it.getIntOrNull(1) ?: 0) to it.getStringOrNull(2).orEmpty())
+        }.toMap()
+        val batch = arrayListOf<ContentProviderOperation>()
+        val oldAvatarUrls = mutableListOf<String>()
+        savableUsers.forEach { user ->
+            val existingUser = existingUsers[user.userName]
+            val values = user.toValues(updateTime, existingUser?.first)
+            batch += if (existingUser != null) {
+                values.remove(Buddies.Columns.BUDDY_NAME)
+                if (values.containsKey(Buddies.Columns.AVATAR_URL) && existingUser.second != user.avatarUrl) oldAvatarUrls += existingUser.second
+                ContentProviderOperation.newUpdate(Buddies.buildBuddyUri(user.userName)).withValues(values).build()
+            } else {
+                values.put(Buddies.Columns.BUDDY_NAME, user.userName)
+                ContentProviderOperation.newInsert(Buddies.CONTENT_URI).withValues(values).build()
+            }
+        }
+        resolver.applyBatch(batch, "${savableUsers.size} users")
+        oldAvatarUrls.forEach { deleteAvatar(it) }
+        savableUsers.size
+    }
+
+    /**
+     * The columns saved for this user, including its details only when they've changed since the [oldSyncHashCode].
+     */
+    private fun UserEntity.toValues(updateTime: Long, oldSyncHashCode: Int?): ContentValues {
+        val values = contentValuesOf(
+            Buddies.Columns.UPDATED to updateTime,
+            Buddies.Columns.UPDATED_LIST to updateTime
+        )
+        val newSyncHashCode = generateSyncHashCode()
+        if (oldSyncHashCode != newSyncHashCode) {
+            values.put(Buddies.Columns.BUDDY_ID, id)
+            values.put(Buddies.Columns.BUDDY_NAME, userName)
+            values.put(Buddies.Columns.BUDDY_FIRSTNAME, firstName)
+            values.put(Buddies.Columns.BUDDY_LASTNAME, lastName)
+            values.put(Buddies.Columns.AVATAR_URL, avatarUrl)
+            values.put(Buddies.Columns.SYNC_HASH_CODE, newSyncHashCode)
+        }
+        return values
+    }
+
     suspend fun saveBuddy(buddy: BriefBuddyEntity) = withContext(Dispatchers.IO) {
         if (buddy.id != INVALID_ID && buddy.userName.isNotBlank()) {
             val values = contentValuesOf(
@@ -151,12 +194,14 @@ class UserDao(private val context: Context) {
         if (values.containsKey(Buddies.Columns.AVATAR_URL)) {
             val newAvatarUrl: String = values.getAsString(Buddies.Columns.AVATAR_URL).orEmpty()
             val oldAvatarUrl = context.contentResolver.queryString(uri, Buddies.Columns.AVATAR_URL)
-            if (newAvatarUrl != oldAvatarUrl) {
-                val avatarFileName = FileUtils.getFileNameFromUrl(oldAvatarUrl)
-                if (avatarFileName.isNotBlank()) {
-                    context.contentResolver.delete(Avatars.buildUri(avatarFileName), null, null)
-                }
-            }
+            if (newAvatarUrl != oldAvatarUrl) deleteAvatar(oldAvatarUrl)
+        }
+    }
+
+    private fun deleteAvatar(avatarUrl: String?) {
+        val avatarFileName = FileUtils.getFileNameFromUrl(avatarUrl)
+        if (avatarFileName.isNotBlank()) {
+            context.contentResolver.delete(Avatars.buildUri(avatarFileName), null, null)
         }
     }
 
@@ -172,6 +217,79 @@ class UserDao(private val context: Context) {
         )
     }
 
+    /**
+     * Hands each user's non-blank colors to [action], one user at a time, without loading every color into memory.
+     * Colors of names that aren't in the users table are skipped. [onProgress] receives the number of color rows read
+     * so far and the total.
+     */
+    suspend fun streamColors(
+        onProgress: (current: Int, max: Int) -> Unit = { _, _ -> },
+        action: suspend (username: String, colors: List<Pair<Int, String>>) -> Unit,
+    ) = withContext(Dispatchers.IO) {
+        var username: String? = null
+        val colors = mutableListOf<Pair<Int, String>>()
+        context.contentResolver.forEachRow(
+            BggContract.PlayerColors.CONTENT_URI,
+            arrayOf(
+                BggContract.PlayerColors.Columns.PLAYER_NAME,
+                BggContract.PlayerColors.Columns.PLAYER_COLOR_SORT_ORDER,
+                BggContract.PlayerColors.Columns.PLAYER_COLOR,
+            ),
+            "${BggContract.PlayerColors.Columns.PLAYER_TYPE}=? AND ${BggContract.PlayerColors.Columns.PLAYER_NAME} IN (SELECT ${Buddies.Columns.BUDDY_NAME} FROM ${Tables.BUDDIES})",
+            arrayOf(BggContract.PlayerColors.TYPE_USER.toString()),
+            BggContract.PlayerColors.DEFAULT_SORT,
+        ) {
+            onProgress(it.position, it.count)
+            val name = it.getStringOrNull(0).orEmpty()
+            if (name != username) {
+                username?.let { previous -> if (colors.isNotEmpty()) action(previous, colors.toList()) }
+                username = name
+                colors.clear()
+            }
+            val color = it.getStringOrNull(2).orEmpty()
+            if (color.isNotBlank()) colors += (it.getIntOrNull(1) ?: 0) to color
+        }
+        username?.let { if (colors.isNotEmpty()) action(it, colors.toList()) }
+    }
+
+    /**
+     * Sets the colors of each user in [colorsByUser] in a single batch. Users that aren't in the database are skipped.
+     */
+    suspend fun updateColors(colorsByUser: Map<String, List<Pair<Int, String>>>) = withContext(Dispatchers.IO) {
+        if (colorsByUser.isEmpty()) return@withContext
+        val resolver = context.contentResolver
+        val placeholders = colorsByUser.keys.joinToString { "?" }
+        val existingUsernames = resolver.queryStrings(
+            Buddies.CONTENT_URI,
+            Buddies.Columns.BUDDY_NAME,
+            "${Buddies.Columns.BUDDY_NAME} IN ($placeholders)",
+            colorsByUser.keys.toTypedArray(),
+        ).toSet()
+        val existingColors = resolver.loadList(
+            BggContract.PlayerColors.CONTENT_URI,
+            arrayOf(BggContract.PlayerColors.Columns.PLAYER_NAME, BggContract.PlayerColors.Columns.PLAYER_COLOR_SORT_ORDER),
+            "${BggContract.PlayerColors.Columns.PLAYER_TYPE}=? AND ${BggContract.PlayerColors.Columns.PLAYER_NAME} IN ($placeholders)",
+            arrayOf(BggContract.PlayerColors.TYPE_USER.toString()) + colorsByUser.keys,
+        ) {
+            it.getStringOrNull(0).orEmpty() to (it.getIntOrNull(1) ?: 0)
+        }.toSet()
+        val batch = arrayListOf<ContentProviderOperation>()
+        colorsByUser.filterKeys { it in existingUsernames }.forEach { (username, colors) ->
+            colors.filter { it.second.isNotBlank() }.forEach { (sort, color) ->
+                val builder = if ((username to sort) in existingColors) {
+                    ContentProviderOperation
+                        .newUpdate(BggContract.PlayerColors.buildUserUri(username, sort))
+                } else {
+                    ContentProviderOperation
+                        .newInsert(BggContract.PlayerColors.buildUserUri(username))
+                        .withValue(BggContract.PlayerColors.Columns.PLAYER_COLOR_SORT_ORDER, sort)
+                }
+                batch.add(builder.withValue(BggContract.PlayerColors.Columns.PLAYER_COLOR, color).build())
+            }
+        }
+        resolver.applyBatch(batch, "Colors for ${existingUsernames.size} users")
+    }
+
     suspend fun updateColors(username: String, colors: List<Pair<Int, String>>) = withContext(Dispatchers.IO) {
         if (context.contentResolver.rowExists(Buddies.buildBuddyUri(username))) {
             val batch = arrayListOf<ContentProviderOperation>()
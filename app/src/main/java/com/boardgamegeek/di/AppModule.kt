@@ -5,7 +5,11 @@ import com.boardgamegeek.io.BggAjaxApi
 import com.boardgamegeek.io.BggService
 import com.boardgamegeek.io.GeekdoApi
 import com.boardgamegeek.io.PhpApi
+import com.boardgamegeek.io.RequestScheduler
 import com.boardgamegeek.repository.*
+import com.boardgamegeek.util.ResponseCache
+import com.boardgamegeek.util.SyncMetricsRecorder
+import com.boardgamegeek.util.ThumbnailStore
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -48,7 +52,8 @@ object AppModule {
 
     @Provides
     @Singleton
-    fun provideForumRepository(@ApplicationContext context: Context, @Named("noAuth") api: BggService) = ForumRepository(context, api)
+    fun provideForumRepository(@ApplicationContext context: Context, @Named("noAuth") api: BggService, responseCache: ResponseCache) =
+        ForumRepository(context, api, responseCache)
 
     @Provides
     @Singleton
@@ -62,15 +67,17 @@ object AppModule {
 
     @Provides
     @Singleton
-    fun provideGeekListRepository(@Named("noAuth") api: BggService, ajaxApi: BggAjaxApi) = GeekListRepository(api, ajaxApi)
+    fun provideGeekListRepository(@Named("noAuth") api: BggService, ajaxApi: BggAjaxApi, responseCache: ResponseCache) =
+        GeekListRepository(api, ajaxApi, responseCache)
 
     @Provides
     @Singleton
-    fun provideHotnessRepository(@Named("noAuth") api: BggService) = HotnessRepository(api)
+    fun provideHotnessRepository(@Named("noAuth") api: BggService, responseCache: ResponseCache) = HotnessRepository(api, responseCache)
 
     @Provides
     @Singleton
-    fun provideImageRepository(@ApplicationContext context: Context, geekdoApi: GeekdoApi) = ImageRepository(context, geekdoApi)
+    fun provideImageRepository(@ApplicationContext context: Context, geekdoApi: GeekdoApi, thumbnailStore: ThumbnailStore) =
+        ImageRepository(context, geekdoApi, thumbnailStore)
 
     @Provides
     @Singleton
@@ -87,11 +94,24 @@ object AppModule {
 
     @Provides
     @Singleton
-    fun provideSearchRepository(@Named("noAuth") api: BggService) = SearchRepository(api)
+    fun provideResponseCache(@ApplicationContext context: Context) = ResponseCache(context)
 
     @Provides
     @Singleton
-    fun provideTopGameRepository() = TopGameRepository()
+    fun provideSearchRepository(@Named("noAuth") api: BggService, responseCache: ResponseCache) = SearchRepository(api, responseCache)
+
+    @Provides
+    @Singleton
+    fun provideSyncMetricsRecorder(@ApplicationContext context: Context, scheduler: RequestScheduler) = SyncMetricsRecorder(context, scheduler)
+
+    @Provides
+    @Singleton
+    fun provideThumbnailStore(@ApplicationContext context: Context, @Named("withRetry") httpClient: OkHttpClient) =
+        ThumbnailStore(context, httpClient)
+
+    @Provides
+    @Singleton
+    fun provideTopGameRepository(responseCache: ResponseCache) = TopGameRepository(responseCache)
 
     @Provides
     @Singleton
@@ -37,7 +37,7 @@ object NetworkModule {
         .readTimeout(HTTP_REQUEST_TIMEOUT_SEC, TimeUnit.SECONDS)
         .writeTimeout(HTTP_REQUEST_TIMEOUT_SEC, TimeUnit.SECONDS)
         .addInterceptor(UserAgentInterceptor())
-        .addInterceptor(RetryInterceptor(true))
+        .addNetworkInterceptor(TrafficCountingInterceptor())
         .addLoggingInterceptor()
         .build()
 
@@ -50,10 +50,20 @@ object NetworkModule {
         .writeTimeout(HTTP_REQUEST_TIMEOUT_SEC, TimeUnit.SECONDS)
         .addInterceptor(UserAgentInterceptor(context))
         .addInterceptor(AuthInterceptor(context))
-        .addInterceptor(RetryInterceptor(true))
+        .addNetworkInterceptor(TrafficCountingInterceptor())
         .addLoggingInterceptor()
         .build()
 
+    /**
+     * For requests made with OkHttp directly, which don't go through [RequestScheduler] and its retries.
+     */
+    @Provides
+    @Singleton
+    @Named("withRetry")
+    fun provideHttpClientWithRetry(@Named("noAuth") httpClient: OkHttpClient): OkHttpClient = httpClient.newBuilder()
+        .addInterceptor(RetryInterceptor(true))
+        .build()
+
     @Provides
     @Singleton
     @Named("withCache")
@@ -62,6 +72,7 @@ object NetworkModule {
         .readTimeout(HTTP_REQUEST_TIMEOUT_SEC, TimeUnit.SECONDS)
         .writeTimeout(HTTP_REQUEST_TIMEOUT_SEC, TimeUnit.SECONDS)
         .addInterceptor(UserAgentInterceptor(context))
+        .addNetworkInterceptor(TrafficCountingInterceptor())
         .addLoggingInterceptor()
         .cache(Cache(File(context.cacheDir, "http"), 10 * 1024 * 1024))
         .build()
@@ -75,9 +86,14 @@ object NetworkModule {
         .writeTimeout(HTTP_REQUEST_TIMEOUT_SEC, TimeUnit.SECONDS)
         .addInterceptor(UserAgentInterceptor())
         .addInterceptor(RetryInterceptor(false))
+        .addNetworkInterceptor(TrafficCountingInterceptor())
         .addLoggingInterceptor()
         .build()
 
+    @Provides
+    @Singleton
+    fun provideRequestScheduler() = RequestScheduler()
+
     private fun OkHttpClient.Builder.addLoggingInterceptor() = apply {
         if (BuildConfig.DEBUG) {
             addInterceptor(HttpLoggingInterceptor { message ->
@@ -92,49 +108,54 @@ object NetworkModule {
     @Provides
     @Singleton
     @Named("noAuth")
-    fun provideBggService(@Named("noAuth") httpClient: OkHttpClient): BggService = Retrofit.Builder()
+    fun provideBggService(@Named("noAuth") httpClient: OkHttpClient, scheduler: RequestScheduler): BggService = Retrofit.Builder()
         .baseUrl("https://boardgamegeek.com/")
+        .addConverterFactory(TimingConverterFactory())
         .addConverterFactory(EnumConverterFactory())
         .addConverterFactory(SimpleXmlConverterFactory.createNonStrict())
-        .client(httpClient)
+        .callFactory(scheduler.callFactory(httpClient))
         .build()
         .create(BggService::class.java)
 
     @Provides
     @Singleton
     @Named("withAuth")
-    fun createForXmlWithAuth(@Named("withAuth") httpClient: OkHttpClient): BggService = Retrofit.Builder()
+    fun createForXmlWithAuth(@Named("withAuth") httpClient: OkHttpClient, scheduler: RequestScheduler): BggService = Retrofit.Builder()
         .baseUrl("https://boardgamegeek.com/")
+        .addConverterFactory(TimingConverterFactory())
         .addConverterFactory(EnumConverterFactory())
         .addConverterFactory(SimpleXmlConverterFactory.createNonStrict())
-        .client(httpClient)
+        .callFactory(scheduler.callFactory(httpClient))
         .build()
         .create(BggService::class.java)
 
     @Provides
     @Singleton
-    fun provideBggAjaxApi(@Named("noAuth") httpClient: OkHttpClient): BggAjaxApi = Retrofit.Builder()
+    fun provideBggAjaxApi(@Named("noAuth") httpClient: OkHttpClient, scheduler: RequestScheduler): BggAjaxApi = Retrofit.Builder()
         .baseUrl("https://boardgamegeek.com/")
+        .addConverterFactory(TimingConverterFactory())
         .addConverterFactory(EnumConverterFactory())
         .addConverterFactory(GsonConverterFactory.create())
-        .client(httpClient)
+        .callFactory(scheduler.callFactory(httpClient))
         .build()
         .create(BggAjaxApi::class.java)
 
     @Provides
     @Singleton
-    fun provideGeekdoApi(@Named("noAuth") httpClient: OkHttpClient): GeekdoApi = Retrofit.Builder()
-        .client(httpClient)
+    fun provideGeekdoApi(@Named("noAuth") httpClient: OkHttpClient, scheduler: RequestScheduler): GeekdoApi = Retrofit.Builder()
+        .callFactory(scheduler.callFactory(httpClient))
         .baseUrl("https://api.geekdo.com")
+        .addConverterFactory(TimingConverterFactory())
         .addConverterFactory(GsonConverterFactory.create())
         .build()
         .create(GeekdoApi::class.java)
 
     @Provides
     @Singleton
-    fun providePhpApi(@Named("withAuth") httpClient: OkHttpClient): PhpApi = Retrofit.Builder()
-        .client(httpClient)
+    fun providePhpApi(@Named("withAuth") httpClient: OkHttpClient, scheduler: RequestScheduler): PhpApi = Retrofit.Builder()
+        .callFactory(scheduler.callFactory(httpClient))
         .baseUrl("https://boardgamegeek.com")
+        .addConverterFactory(TimingConverterFactory())
         .addConverterFactory(BggUploadConverterFactory.create())
         .addConverterFactory(GsonConverterFactory.create())
         .build()
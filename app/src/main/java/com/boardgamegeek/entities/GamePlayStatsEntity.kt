@@ -0,0 +1,352 @@
+package com.boardgamegeek.entities
+
+import com.boardgamegeek.extensions.cdf
+import com.boardgamegeek.extensions.formatList
+import java.text.SimpleDateFormat
+import java.util.*
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+import kotlin.time.Duration.Companion.milliseconds
+
+/**
+ * Play statistics for a single game. Everything is calculated up front, in one pass over the plays (players are grouped
+ * by play first), so this is safe to build off the main thread and cheap to read from it.
+ */
+class GamePlayStatsEntity(
+    playList: List<PlayEntity>,
+    players: List<PlayPlayerEntity>,
+    val playingTime: Int,
+    val personalRating: Double,
+    val isOwned: Boolean,
+    includeIncompletePlays: Boolean,
+    private val username: String,
+    private val gameHIndex: Int,
+    private val now: Long = System.currentTimeMillis(),
+) {
+    private val dateFormat = SimpleDateFormat("yyyy-MM-dd", Locale.US)
+    private val calendar = Calendar.getInstance()
+
+    val playCountIncomplete = playList.sumOf { it.quantity }
+    val hasPlayers = players.isNotEmpty()
+
+    private val plays = playList.filter { includeIncompletePlays || !it.incomplete }.sortedBy { it.dateInMillis }
+
+    val playCount: Int
+
+    var firstPlayDate = ""
+        private set
+    var lastPlayDate = ""
+        private set
+    var nickelDate = ""
+        private set
+    var dimeDate = ""
+        private set
+    var quarterDate = ""
+        private set
+    var halfDollarDate = ""
+        private set
+    var dollarDate = ""
+        private set
+
+    private var realMinutesPlayed = 0
+    private var estimatedMinutesPlayed = 0
+    private var playCountWithLength = 0
+    private var playerCountSumWithLength = 0
+    private val playCountByPlayerCount = mutableMapOf<Int, Int>()
+    private val playCountByLocation = mutableMapOf<String, Int>()
+    private val monthsPlayed = mutableSetOf<Int>()
+    private val playerStatsById = mutableMapOf<String, PlayerStats>()
+
+    private var scoreCount = 0
+    private var scoreSum = 0.0
+    private var winningScoreCount = 0
+    private var winningScoreSum = 0.0
+    var highScore = Int.MIN_VALUE.toDouble()
+        private set
+    var lowScore = Int.MAX_VALUE.toDouble()
+        private set
+
+    // running totals by play, oldest first, for counting plays and time within a window
+    private val playDates = LongArray(plays.size)
+    private val playCountPrefixSums = IntArray(plays.size + 1)
+    private val minutesPlayedPrefixSums = IntArray(plays.size + 1)
+
+    init {
+        val playersByPlayId = players.groupBy { it.playId }
+        var count = 0
+        plays.forEachIndexed { index, play ->
+            if (count < 5 && count + play.quantity >= 5) nickelDate = play.date
+            if (count < 10 && count + play.quantity >= 10) dimeDate = play.date
+            if (count < 25 && count + play.quantity >= 25) quarterDate = play.date
+            if (count < 50 && count + play.quantity >= 50) halfDollarDate = play.date
+            if (count < 100 && count + play.quantity >= 100) dollarDate = play.date
+            count += play.quantity
+
+            val minutes = if (play.length == 0) {
+                estimatedMinutesPlayed += playingTime * play.quantity
+                playingTime * play.quantity
+            } else {
+                realMinutesPlayed += play.length
+                playCountWithLength += play.quantity
+                playerCountSumWithLength += play.playerCount * play.quantity
+                play.length
+            }
+            playDates[index] = play.dateInMillis
+            playCountPrefixSums[index + 1] = count
+            minutesPlayedPrefixSums[index + 1] = minutesPlayedPrefixSums[index] + minutes
+
+            if (play.playerCount > 0) playCountByPlayerCount.add(play.playerCount, play.quantity)
+            if (play.location.isNotBlank()) playCountByLocation.add(play.location, play.quantity)
+            monthsPlayed += calendar.let {
+                it.timeInMillis = play.dateInMillis
+                it.get(Calendar.YEAR) * 12 + it.get(Calendar.MONTH)
+            }
+
+            playersByPlayId[play.playId]?.forEach { player ->
+                if (player.description.isNotEmpty()) {
+                    playerStatsById.getOrPut(player.id) { PlayerStats() }.add(play, player)
+                }
+                player.numericScore?.let { score ->
+                    scoreCount += play.quantity
+                    scoreSum += score * play.quantity
+                    if (player.isWin) {
+                        winningScoreCount += play.quantity
+                        winningScoreSum += score * play.quantity
+                    }
+                    highScore = max(highScore, score)
+                    lowScore = min(lowScore, score)
+                }
+            }
+        }
+        playCount = count
+        plays.firstOrNull()?.let { firstPlayDate = it.date }
+        plays.lastOrNull()?.let { lastPlayDate = it.date }
+    }
+
+    private val firstPlayDateInMillis = plays.firstOrNull()?.dateInMillis ?: 0L
+    private val lastPlayDateInMillis = plays.lastOrNull()?.dateInMillis ?: 0L
+
+    val playerStats: List<PlayerStats> = playerStatsById.values.sortedByDescending { it.numberOfPlays }
+
+    private val personalStats = playerStatsById.values.find { it.username == username }
+
+    val hoursPlayed: Double
+        get() = ((realMinutesPlayed + estimatedMinutesPlayed) / 60).toDouble()
+
+    /* plays per month, only counting the active period) */
+    val playRate: Double
+        get() = (((playCount * 365.25) / calculateFlash()) / 12).coerceAtMost(playCount.toDouble())
+
+    val averagePlayTime: Int
+        get() = if (playCountWithLength > 0) realMinutesPlayed / playCountWithLength else 0
+
+    val averagePlayTimePerPlayer: Int
+        get() = if (playerCountSumWithLength > 0) realMinutesPlayed / playerCountSumWithLength else 0
+
+    val monthsPlayedCount: Int
+        get() = monthsPlayed.size
+
+    val minPlayerCount: Int
+        get() = playCountByPlayerCount.keys.minOrNull() ?: 0
+
+    val maxPlayerCount: Int
+        get() = playCountByPlayerCount.keys.maxOrNull() ?: 0
+
+    fun getPlayCount(playerCount: Int) = playCountByPlayerCount[playerCount] ?: 0
+
+    fun getPersonalWinCount(playerCount: Int) = personalStats?.getWinCountByPlayerCount(playerCount) ?: 0
+
+    fun getPersonalWinnablePlayCount(playerCount: Int) = personalStats?.getWinnablePlayCountByPlayerCount(playerCount) ?: 0
+
+    fun hasScores() = scoreCount > 0
+
+    val averageScore: Double
+        get() = scoreSum / scoreCount
+
+    val averageWinningScore: Double
+        get() = winningScoreSum / winningScoreCount
+
+    val highScorers: String
+        get() = if (highScore == Int.MIN_VALUE.toDouble()) "" else
+            playerStats.filter { it.highScore == highScore }.map { it.description }.formatList()
+
+    val lowScorers: String
+        get() = if (lowScore == Int.MAX_VALUE.toDouble()) "" else
+            playerStats.filter { it.lowScore == lowScore }.map { it.description }.formatList()
+
+    val playsPerLocation: List<Pair<String, Int>>
+        get() = playCountByLocation.toList().sortedBy { it.first }.sortedByDescending { it.second }
+
+    fun playCountSince(dateInMillis: Long): Int = playCountPrefixSums.last() - playCountPrefixSums[indexAfter(dateInMillis)]
+
+    fun hoursPlayedSince(dateInMillis: Long): Double =
+        (minutesPlayedPrefixSums.last() - minutesPlayedPrefixSums[indexAfter(dateInMillis)]) / 60.0
+
+    /**
+     * The index of the first play after [dateInMillis], or the number of plays if there aren't any.
+     */
+    private fun indexAfter(dateInMillis: Long): Int {
+        var low = 0
+        var high = playDates.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (playDates[mid] > dateInMillis) high = mid else low = mid + 1
+        }
+        return low
+    }
+
+    fun calculateUtilization(): Double {
+        return playCount.toDouble().cdf(lambda)
+    }
+
+    fun calculateFhm(): Int {
+        return ((personalRating * 5) + playCount + (4 * monthsPlayedCount) + hoursPlayed).toInt()
+    }
+
+    fun calculateHhm(): Int {
+        return ((personalRating - 4.5) * hoursPlayed).toInt()
+    }
+
+    private fun calculateHhmSince(dateInMillis: Long): Int {
+        return ((personalRating - 4.5) * hoursPlayedSince(dateInMillis)).toInt()
+    }
+
+    fun calculateRuhm(): Double {
+        val raw = ((calculateFlash().toDouble()) / calculateLag()) * monthsPlayedCount * personalRating
+        return if (raw < 1.0) 0.0 else ln(raw)
+    }
+
+    val hIndexOffset: Int
+        get() = if (playCount >= gameHIndex) HIndexEntity.INVALID_H_INDEX else gameHIndex - playCount
+
+    fun calculateHuberHeat(): Double {
+        val lastYear = Calendar.getInstance().apply {
+            timeInMillis = now
+            add(Calendar.YEAR, -1)
+        }.timeInMillis
+        return calculateGrayHotness(lastYear)
+    }
+
+    fun calculateGrayHotness(sinceDateInMillis: Long): Double {
+        // http://matthew.gray.org/2005/10/games_16.html
+        val intervalPlayCount = playCountSince(sinceDateInMillis)
+        val s = 1 + (intervalPlayCount.toDouble() / playCount)
+        return s * s * sqrt(intervalPlayCount.toDouble()) * calculateHhmSince(sinceDateInMillis)
+    }
+
+    private fun calculateFlash() = daysBetweenDates(firstPlayDateInMillis, lastPlayDateInMillis)
+
+    private fun calculateLag() = daysBetweenDates(lastPlayDateInMillis)
+
+    private fun daysBetweenDates(from: Long, to: Long = now): Long {
+        return (to - from).milliseconds.inWholeDays.coerceAtLeast(1)
+    }
+
+    private val PlayEntity.date: String
+        get() = dateFormat.format(dateInMillis)
+
+    class PlayerStats {
+        var username = ""
+            private set
+        var description = ""
+            private set
+        var numberOfPlays = 0
+            private set
+        var numberOfWinnablePlays = 0
+            private set
+        var numberOfPlaysWon = 0
+            private set
+        private var numberOfPlaysWithScore = 0
+        private var numberOfPlaysWonWithScore = 0
+        private var winsTimesPlayers = 0
+        private var totalScore = 0.0
+        private var winningScore = 0.0
+        var highScore = Int.MIN_VALUE.toDouble()
+            private set
+        var lowScore = Int.MAX_VALUE.toDouble()
+            private set
+
+        private val winnablePlaysByPlayerCount = mutableMapOf<Int, Int>()
+        private val winsByPlayerCount = mutableMapOf<Int, Int>()
+
+        internal fun add(play: PlayEntity, player: PlayPlayerEntity) {
+            username = player.username
+            description = player.description
+            numberOfPlays += play.quantity
+            if (play.isWinnable) {
+                numberOfWinnablePlays += play.quantity
+                winnablePlaysByPlayerCount.add(play.playerCount, play.quantity)
+                if (player.isWin) {
+                    numberOfPlaysWon += play.quantity
+                    winsTimesPlayers += play.quantity * play.playerCount
+                    winsByPlayerCount.add(play.playerCount, play.quantity)
+                }
+            }
+            player.numericScore?.let { score ->
+                numberOfPlaysWithScore += play.quantity
+                totalScore += score * play.quantity
+                lowScore = min(lowScore, score)
+                highScore = max(highScore, score)
+                if (play.isWinnable && player.isWin) {
+                    numberOfPlaysWonWithScore += play.quantity
+                    winningScore += score * play.quantity
+                }
+            }
+        }
+
+        fun getWinCountByPlayerCount(playerCount: Int) = winsByPlayerCount[playerCount] ?: 0
+
+        fun getWinnablePlayCountByPlayerCount(playerCount: Int) = winnablePlaysByPlayerCount[playerCount] ?: 0
+
+        val winSkill: Int
+            get() = ((winsTimesPlayers.toDouble() / numberOfWinnablePlays.toDouble()) * 100).toInt()
+
+        val averageScore: Double
+            get() = if (numberOfPlaysWithScore == 0) INVALID_SCORE else totalScore / numberOfPlaysWithScore
+
+        val averageWinScore: Double
+            get() = if (numberOfPlaysWonWithScore == 0) INVALID_SCORE else winningScore / numberOfPlaysWonWithScore
+    }
+
+    companion object {
+        const val INVALID_SCORE = Int.MIN_VALUE.toDouble()
+        private val lambda = ln(0.1) / -10
+
+        /**
+         * A token that changes whenever any of the [plays] or [players] for a game are added, removed, or modified, so
+         * stats calculated from them can be reused until it does.
+         */
+        fun changeToken(plays: List<PlayEntity>, players: List<PlayPlayerEntity>): Long {
+            var token = 17L
+            plays.forEach {
+                token = 31 * token + it.internalId
+                token = 31 * token + it.syncTimestamp
+                token = 31 * token + it.dirtyTimestamp
+                token = 31 * token + it.updateTimestamp
+                token = 31 * token + it.deleteTimestamp
+            }
+            players.forEach {
+                token = 31 * token + it.playId
+                token = 31 * token + it.id.hashCode()
+                token = 31 * token + it.score.hashCode()
+                token = 31 * token + if (it.isWin) 1 else 0
+            }
+            return token
+        }
+
+        private fun <K> MutableMap<K, Int>.add(key: K, quantity: Int) {
+            this[key] = (this[key] ?: 0) + quantity
+        }
+
+        private val PlayEntity.isWinnable: Boolean
+            get() = when {
+                noWinStats -> false
+                playerCount == 0 -> false
+                deleteTimestamp > 0L -> false
+                updateTimestamp > 0L -> true
+                else -> playId > 0
+            }
+    }
+}
@@ -15,6 +15,19 @@ class PersonStatsEntity(
 ) {
     companion object {
         fun fromLinkedCollection(collection: List<BriefGameEntity>, context: Context): PersonStatsEntity {
+            val prefs = context.preferences()
+            return fromLinkedCollection(
+                collection,
+                prefs[LOG_PLAY_STATS_EXPANSIONS, false] ?: false,
+                prefs[LOG_PLAY_STATS_ACCESSORIES, false] ?: false,
+            )
+        }
+
+        fun fromLinkedCollection(
+            collection: List<BriefGameEntity>,
+            includeExpansions: Boolean,
+            includeAccessories: Boolean,
+        ): PersonStatsEntity {
             val baseGameCollection = collection.filter { it.subtype == GameEntity.Subtype.BOARDGAME }
 
             val ratedGames = baseGameCollection.filter { it.personalRating > 0.0 }
@@ -23,9 +36,6 @@ class PersonStatsEntity(
             val whitmoreScore = calculateWhitmoreScore(baseGameCollection)
             val whitmoreScoreWithExpansions = calculateWhitmoreScore(collection.filter { it.subtype != GameEntity.Subtype.BOARDGAME_ACCESSORY })
 
-            val prefs = context.preferences()
-            val includeExpansions = prefs[LOG_PLAY_STATS_EXPANSIONS, false] ?: false
-            val includeAccessories = prefs[LOG_PLAY_STATS_ACCESSORIES, false] ?: false
             val playCountsByGame = when {
                 includeExpansions && includeAccessories -> collection
                 includeAccessories -> collection.filter { it.subtype != GameEntity.Subtype.BOARDGAME_EXPANSION }
@@ -5,6 +5,10 @@ import android.text.format.DateUtils
 import com.boardgamegeek.R
 import com.boardgamegeek.extensions.*
 import com.boardgamegeek.provider.BggContract
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.nio.ByteBuffer
+import java.security.MessageDigest
 import java.text.SimpleDateFormat
 import java.util.*
 
@@ -76,27 +80,45 @@ data class PlayEntity(
         return players.find { it.seat == seat }
     }
 
-    fun generateSyncHashCode(): Int {
-        val sb = StringBuilder()
-        sb.append(dateForDatabase()).append("\n")
-        sb.append(quantity).append("\n")
-        sb.append(length).append("\n")
-        sb.append(incomplete).append("\n")
-        sb.append(noWinStats).append("\n")
-        sb.append(location).append("\n")
-        sb.append(comments).append("\n")
-        for (player in players) {
-            sb.append(player.username).append("\n")
-            sb.append(player.userId).append("\n")
-            sb.append(player.name).append("\n")
-            sb.append(player.startingPosition).append("\n")
-            sb.append(player.color).append("\n")
-            sb.append(player.score).append("\n")
-            sb.append(player.isNew).append("\n")
-            sb.append(player.rating).append("\n")
-            sb.append(player.isWin).append("\n")
+    /**
+     * A fingerprint of the fields that come from the API, used to skip saving a synced play that hasn't changed. The
+     * fields are written in a fixed binary layout, with strings and the player list prefixed by their length so that
+     * no two plays serialize alike, and hashed with SHA-256, keeping the first 64 bits.
+     */
+    fun generateSyncFingerprint(): Long {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            out.writeByte(SYNC_FINGERPRINT_VERSION)
+            out.writeInt(gameId)
+            out.writeText(dateForDatabase())
+            out.writeInt(quantity)
+            out.writeInt(length)
+            out.writeBoolean(incomplete)
+            out.writeBoolean(noWinStats)
+            out.writeText(location)
+            out.writeText(comments)
+            out.writeInt(players.size)
+            for (player in players) {
+                out.writeText(player.username)
+                out.writeBoolean(player.userId != null)
+                out.writeInt(player.userId ?: 0)
+                out.writeText(player.name)
+                out.writeText(player.startingPosition)
+                out.writeText(player.color)
+                out.writeText(player.score)
+                out.writeBoolean(player.isNew)
+                out.writeDouble(player.rating)
+                out.writeBoolean(player.isWin)
+            }
         }
-        return sb.toString().hashCode()
+        val digest = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray())
+        return ByteBuffer.wrap(digest).long
+    }
+
+    private fun DataOutputStream.writeText(text: String) {
+        val bytes = text.toByteArray(Charsets.UTF_8)
+        writeInt(bytes.size)
+        write(bytes)
     }
 
     fun describe(context: Context, includeDate: Boolean = false): String {
@@ -122,6 +144,7 @@ data class PlayEntity(
     companion object {
         private const val dateFormatPattern = "yyyy-MM-dd"
         const val UNKNOWN_DATE: Long = -1L
+        private const val SYNC_FINGERPRINT_VERSION = 1
 
         fun currentDate(): String {
             return millisToRawDate(Calendar.getInstance().timeInMillis)
@@ -4,4 +4,5 @@ object Constants {
     const val TYPE_COLLECTION_VIEWS_DESCRIPTION = "collection-views"
     const val TYPE_GAMES_DESCRIPTION = "games"
     const val TYPE_USERS_DESCRIPTION = "users"
+    const val TYPE_SYNC_METRICS_DESCRIPTION = "sync-metrics"
 }
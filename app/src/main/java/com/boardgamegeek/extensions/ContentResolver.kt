@@ -57,6 +57,25 @@ suspend fun <T> ContentResolver.loadList(
     return list
 }
 
+/**
+ * Hands each row of the query to [action] as the cursor reaches it, rather than collecting them into a list. The
+ * cursor's position and count can be used to report progress.
+ */
+suspend fun ContentResolver.forEachRow(
+    uri: Uri,
+    projection: Array<String>? = null,
+    selection: String? = null,
+    selectionArgs: Array<String>? = null,
+    sortOrder: String? = null,
+    action: suspend (cursor: Cursor) -> Unit,
+) {
+    this.query(uri, projection, selection, selectionArgs, sortOrder)?.use { cursor ->
+        while (cursor.moveToNext()) {
+            action(cursor)
+        }
+    }
+}
+
 fun ContentResolver.applyBatch(batch: ArrayList<ContentProviderOperation>?, debugMessage: String = ""): Array<ContentProviderResult> {
     if (batch != null && batch.size > 0) {
         try {
@@ -4,6 +4,7 @@ import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.DoubleIntervalDelegate
+import com.boardgamegeek.provider.BggContract.Games
 import java.util.*
 
 class AverageWeightFilterer(context: Context) : CollectionFilterer(context) {
@@ -57,6 +58,16 @@ class AverageWeightFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val weight = "IFNULL(${Games.Columns.STATS_AVERAGE_WEIGHT},0.0)"
+        val range = when {
+            ignoreRange -> false.asSql()
+            min == max -> "$weight=$min"
+            else -> "$weight BETWEEN $min AND $max"
+        }
+        return "CASE WHEN $weight=0.0 THEN ${includeUndefined.asSql()} ELSE $range END" to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 1.0
         const val upperBound = 5.0
@@ -24,6 +24,14 @@ abstract class CollectionFilterer(protected val context: Context) {
 
     open fun filter(item: CollectionItemEntity): Boolean = true
 
+    /**
+     * The SQL equivalent of [filter], as a selection and its arguments, or null if the filter can only be applied to
+     * loaded items.
+     */
+    open fun selection(): Pair<String, Array<String>>? = null
+
+    protected fun Boolean.asSql() = if (this) "1" else "0"
+
     val isValid: Boolean
         get() = chipText().isNotEmpty()
 
@@ -3,7 +3,9 @@ package com.boardgamegeek.filterer
 import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.extensions.isTrue
 import com.boardgamegeek.extensions.joinTo
+import com.boardgamegeek.provider.BggContract.Collection
 
 class CollectionStatusFilterer(context: Context) : CollectionFilterer(context) {
     var shouldJoinWithOr = false
@@ -72,6 +74,25 @@ class CollectionStatusFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val columns = selectedStatuses.indices.filter { selectedStatuses[it] }.mapNotNull {
+            when (it) {
+                own -> Collection.Columns.STATUS_OWN
+                previouslyOwned -> Collection.Columns.STATUS_PREVIOUSLY_OWNED
+                forTrade -> Collection.Columns.STATUS_FOR_TRADE
+                wantInTrade -> Collection.Columns.STATUS_WANT
+                wantToBuy -> Collection.Columns.STATUS_WANT_TO_BUY
+                wishList -> Collection.Columns.STATUS_WISHLIST
+                wantToPlay -> Collection.Columns.STATUS_WANT_TO_PLAY
+                preOrdered -> Collection.Columns.STATUS_PREORDERED
+                else -> null
+            }
+        }
+        val selection = if (columns.isEmpty()) (!shouldJoinWithOr).asSql()
+        else columns.joinToString(if (shouldJoinWithOr) " OR " else " AND ", "(", ")") { it.isTrue() }
+        return selection to emptyArray()
+    }
+
     /**
      * @return a set of status values representing the statuses currently selected within this filter.
      */
@@ -3,6 +3,7 @@ package com.boardgamegeek.filterer
 import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 
 class ExpansionStatusFilterer(context: Context) : CollectionFilterer(context) {
     var selectedSubtype = ALL
@@ -25,6 +26,11 @@ class ExpansionStatusFilterer(context: Context) : CollectionFilterer(context) {
         return if (value.isNotEmpty()) item.subtype?.code == value else true
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val value = getFromArray(R.array.expansion_status_filter_values)
+        return if (value.isNotEmpty()) "${Games.Columns.SUBTYPE}=?" to arrayOf(value) else true.asSql() to emptyArray()
+    }
+
     private fun getFromArray(resId: Int): String {
         return context.resources.getStringArray(resId).getOrNull(selectedSubtype).orEmpty()
     }
@@ -3,6 +3,8 @@ package com.boardgamegeek.filterer
 import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.extensions.isTrue
+import com.boardgamegeek.provider.BggContract.Games
 
 class FavoriteFilterer(context: Context) : CollectionFilterer(context) {
     var isFavorite = false
@@ -24,6 +26,11 @@ class FavoriteFilterer(context: Context) : CollectionFilterer(context) {
         return item.isFavorite == isFavorite
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val selection = if (isFavorite) Games.Columns.STARRED.isTrue() else "IFNULL(${Games.Columns.STARRED},0)<>1"
+        return selection to emptyArray()
+    }
+
     companion object {
         private const val FAVORITE = "1"
         private const val NOT_FAVORITE = "0"
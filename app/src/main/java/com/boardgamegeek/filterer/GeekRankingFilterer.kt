@@ -6,6 +6,7 @@ import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.entities.GameRankEntity
 import com.boardgamegeek.extensions.IntervalDelegate
+import com.boardgamegeek.provider.BggContract.Games
 import java.util.*
 
 class GeekRankingFilterer(context: Context) : CollectionFilterer(context) {
@@ -53,6 +54,17 @@ class GeekRankingFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val rank = "IFNULL(${Games.Columns.GAME_RANK},${GameRankEntity.RANK_UNKNOWN})"
+        val range = when {
+            max == upperBound -> "$rank>=$min"
+            min == lowerBound -> "$rank<=$max"
+            min == max -> "$rank=$min"
+            else -> "$rank BETWEEN $min AND $max"
+        }
+        return "CASE WHEN $rank=${GameRankEntity.RANK_UNKNOWN} THEN ${includeUnranked.asSql()} ELSE $range END" to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 1
         const val upperBound = 2000
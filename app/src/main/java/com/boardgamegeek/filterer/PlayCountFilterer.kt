@@ -4,6 +4,7 @@ import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.IntervalDelegate
+import com.boardgamegeek.provider.BggContract.Games
 import java.util.*
 
 class PlayCountFilterer(context: Context) : CollectionFilterer(context) {
@@ -46,6 +47,15 @@ class PlayCountFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val plays = "IFNULL(${Games.Columns.NUM_PLAYS},0)"
+        val selection = when {
+            max >= upperBound -> "$plays>=$min"
+            else -> "$plays BETWEEN $min AND $max"
+        }
+        return selection to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 0
         const val upperBound = 25
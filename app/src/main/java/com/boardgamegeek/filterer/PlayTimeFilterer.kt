@@ -8,6 +8,7 @@ import com.boardgamegeek.extensions.IntervalDelegate
 import com.boardgamegeek.extensions.andLess
 import com.boardgamegeek.extensions.andMore
 import com.boardgamegeek.extensions.asTime
+import com.boardgamegeek.provider.BggContract.Games
 
 class PlayTimeFilterer(context: Context) : CollectionFilterer(context) {
     var min by IntervalDelegate(lowerBound, lowerBound, upperBound)
@@ -56,6 +57,16 @@ class PlayTimeFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val playingTime = "IFNULL(${Games.Columns.PLAYING_TIME},0)"
+        val range = when {
+            min == lowerBound -> "$playingTime<=$max"
+            max == upperBound -> "$playingTime>=$min"
+            else -> "$playingTime BETWEEN $min AND $max"
+        }
+        return "CASE WHEN $playingTime=0 THEN ${includeUndefined.asSql()} ELSE $range END" to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 0
         const val upperBound = 360 // 6 hours
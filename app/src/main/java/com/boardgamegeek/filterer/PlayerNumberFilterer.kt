@@ -4,6 +4,7 @@ import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.IntervalDelegate
+import com.boardgamegeek.provider.BggContract.Games
 import java.util.*
 
 class PlayerNumberFilterer(context: Context) : CollectionFilterer(context) {
@@ -46,6 +47,16 @@ class PlayerNumberFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val minPlayers = "IFNULL(${Games.Columns.MIN_PLAYERS},0)"
+        val maxPlayers = "IFNULL(${Games.Columns.MAX_PLAYERS},0)"
+        val range = when {
+            isExact -> "$minPlayers=$min AND $maxPlayers=$max"
+            else -> "$minPlayers<=$min AND ($maxPlayers>=$max OR $maxPlayers=0)"
+        }
+        return "CASE WHEN $minPlayers=0 THEN ${false.asSql()} ELSE ($range) END" to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 1
         const val upperBound = 12
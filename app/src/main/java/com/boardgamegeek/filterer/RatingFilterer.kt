@@ -57,6 +57,16 @@ abstract class RatingFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val rating = "IFNULL($columnName,0.0)"
+        val range = when {
+            ignoreRange -> false.asSql()
+            min == max -> "$rating=$min"
+            else -> "$rating BETWEEN $min AND $max"
+        }
+        return "CASE WHEN $rating=0.0 THEN ${includeUndefined.asSql()} ELSE $range END" to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 1.0
         const val upperBound = 10.0
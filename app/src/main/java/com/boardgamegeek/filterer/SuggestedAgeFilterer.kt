@@ -5,6 +5,7 @@ import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.IntervalDelegate
+import com.boardgamegeek.provider.BggContract.Games
 import java.util.*
 
 class SuggestedAgeFilterer(context: Context) : CollectionFilterer(context) {
@@ -65,6 +66,16 @@ class SuggestedAgeFilterer(context: Context) : CollectionFilterer(context) {
         } || if (includeUndefined) item.minimumAge == 0 else false
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val age = "IFNULL(${Games.Columns.MINIMUM_AGE},0)"
+        val range = when {
+            ignoreRange -> false.asSql()
+            max == upperBound -> "$age>=$min"
+            else -> "$age BETWEEN $min AND $max"
+        }
+        return "($range OR ${if (includeUndefined) "$age=0" else false.asSql()})" to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 1
         const val upperBound = 21
@@ -7,6 +7,7 @@ import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.IntervalDelegate
 import com.boardgamegeek.extensions.andLess
 import com.boardgamegeek.extensions.andMore
+import com.boardgamegeek.provider.BggContract.Collection
 import java.util.*
 
 class YearPublishedFilterer(context: Context) : CollectionFilterer(context) {
@@ -69,6 +70,18 @@ class YearPublishedFilterer(context: Context) : CollectionFilterer(context) {
         }
     }
 
+    override fun selection(): Pair<String, Array<String>> {
+        val year = "IFNULL(${Collection.Columns.COLLECTION_YEAR_PUBLISHED},${CollectionItemEntity.YEAR_UNKNOWN})"
+        val selection = when {
+            min == lowerBound && max == upperBound -> true.asSql()
+            min == lowerBound -> "$year<=$max"
+            max == upperBound -> "$year>=$min"
+            min == max -> "$year=$min"
+            else -> "$year BETWEEN $min AND $max"
+        }
+        return selection to emptyArray()
+    }
+
     companion object {
         const val lowerBound = 1970
         val upperBound = Calendar.getInstance().get(Calendar.YEAR) + 1
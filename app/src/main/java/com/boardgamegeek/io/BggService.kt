@@ -4,10 +4,13 @@ package com.boardgamegeek.io
 
 import com.boardgamegeek.io.model.*
 import com.google.gson.annotations.SerializedName
+import okhttp3.ResponseBody
 import retrofit2.http.GET
 import retrofit2.http.Path
 import retrofit2.http.Query
 import retrofit2.http.QueryMap
+import retrofit2.http.Streaming
+import retrofit2.http.Tag
 import java.text.SimpleDateFormat
 import java.util.*
 
@@ -15,11 +18,18 @@ interface BggService {
     @GET("/xmlapi2/collection")
     suspend fun collection(@Query("username") username: String?, @QueryMap options: Map<String, String>): CollectionResponse
 
+    /**
+     * The raw collection response, for parsing with [CollectionResponseParser] without loading it all into memory.
+     */
+    @Streaming
+    @GET("/xmlapi2/collection")
+    suspend fun collectionStream(@Query("username") username: String?, @QueryMap options: Map<String, String>): ResponseBody
+
     @GET("/xmlapi2/thing")
     suspend fun thing(@Query("id") gameId: Int, @Query("stats") stats: Int): ThingResponse
 
     @GET("/xmlapi2/thing")
-    suspend fun things(@Query("id") gameIds: String?, @Query("stats") stats: Int): ThingResponse
+    suspend fun things(@Query("id") gameIds: String?, @Query("stats") stats: Int, @Tag responseSize: ResponseSize? = null): ThingResponse
 
     @GET("/xmlapi2/thing?comments=1")
     suspend fun thingWithComments(@Query("id") gameId: Int, @Query("page") page: Int): ThingResponse
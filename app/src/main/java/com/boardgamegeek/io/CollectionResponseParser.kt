@@ -0,0 +1,144 @@
+@file:Suppress("SpellCheckingInspection")
+
+package com.boardgamegeek.io
+
+import android.util.Xml
+import com.boardgamegeek.io.model.CollectionItem
+import com.boardgamegeek.util.PerformanceCounters
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Streams `<item>` elements out of an XML API 2 collection response, handing them to [onChunk] at most [chunkSize]
+ * at a time. Only the current chunk is held in memory, regardless of the size of the collection.
+ */
+class CollectionResponseParser(private val chunkSize: Int = DEFAULT_CHUNK_SIZE) {
+    init {
+        require(chunkSize > 0) { "Chunk size must be positive" }
+    }
+
+    /**
+     * Parses the stream and returns the number of items read. The time spent parsing, but not in [onChunk], is added
+     * to [PerformanceCounters].
+     */
+    @Throws(IOException::class)
+    suspend fun parse(inputStream: InputStream, onChunk: suspend (List<CollectionItem>) -> Unit): Int {
+        var count = 0
+        val chunk = ArrayList<CollectionItem>(chunkSize)
+        var parseStartTime = System.nanoTime()
+        try {
+            val parser = Xml.newPullParser()
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false)
+            parser.setInput(inputStream, null)
+            parser.nextTag()
+            if (parser.name != "items") throw IOException("Unexpected collection response root <${parser.name}>")
+            while (parser.next() != XmlPullParser.END_DOCUMENT) {
+                if (parser.eventType == XmlPullParser.START_TAG && parser.name == "item") {
+                    chunk += readItem(parser)
+                    count++
+                    if (chunk.size >= chunkSize) {
+                        PerformanceCounters.parseNanos.addAndGet(System.nanoTime() - parseStartTime)
+                        onChunk(chunk.toList())
+                        chunk.clear()
+                        parseStartTime = System.nanoTime()
+                    }
+                }
+            }
+        } catch (e: XmlPullParserException) {
+            throw IOException("Unable to parse the collection response", e)
+        }
+        PerformanceCounters.parseNanos.addAndGet(System.nanoTime() - parseStartTime)
+        if (chunk.isNotEmpty()) onChunk(chunk.toList())
+        return count
+    }
+
+    private fun readItem(parser: XmlPullParser): CollectionItem {
+        val item = CollectionItem()
+        item.objectid = parser.getAttributeValue(null, "objectid")?.toIntOrNull() ?: 0
+        item.collid = parser.getAttributeValue(null, "collid")
+        val depth = parser.depth
+        while (parser.nextUntilEndOf(depth)) {
+            if (parser.eventType != XmlPullParser.START_TAG) continue
+            when (parser.name) {
+                "name" -> {
+                    item.sortindex = parser.getAttributeValue(null, "sortindex")?.toIntOrNull() ?: 0
+                    item.name = parser.nextText()
+                }
+                "originalname" -> item.originalname = parser.nextText()
+                "yearpublished" -> item.yearpublished = parser.nextText()
+                "image" -> item.image = parser.nextText()
+                "thumbnail" -> item.thumbnail = parser.nextText()
+                "stats" -> item.stats = readStats(parser)
+                "status" -> {
+                    item.own = parser.getAttributeValue(null, "own")
+                    item.prevowned = parser.getAttributeValue(null, "prevowned")
+                    item.fortrade = parser.getAttributeValue(null, "fortrade")
+                    item.want = parser.getAttributeValue(null, "want")
+                    item.wanttoplay = parser.getAttributeValue(null, "wanttoplay")
+                    item.wanttobuy = parser.getAttributeValue(null, "wanttobuy")
+                    item.wishlist = parser.getAttributeValue(null, "wishlist")
+                    item.wishlistpriority = parser.getAttributeValue(null, "wishlistpriority")?.toIntOrNull() ?: 0
+                    item.preordered = parser.getAttributeValue(null, "preordered")
+                    item.lastmodified = parser.getAttributeValue(null, "lastmodified")
+                }
+                "numplays" -> item.numplays = parser.nextText().toIntOrNull() ?: 0
+                "privateinfo" -> {
+                    item.pp_currency = parser.getAttributeValue(null, "pp_currency")
+                    item.pricepaid = parser.getAttributeValue(null, "pricepaid")
+                    item.cv_currency = parser.getAttributeValue(null, "cv_currency")
+                    item.currvalue = parser.getAttributeValue(null, "currvalue")
+                    item.quantity = parser.getAttributeValue(null, "quantity")
+                    item.acquisitiondate = parser.getAttributeValue(null, "acquisitiondate")
+                    item.acquiredfrom = parser.getAttributeValue(null, "acquiredfrom")
+                    item.inventorylocation = parser.getAttributeValue(null, "inventorylocation")
+                }
+                "privatecomment" -> item.privatecomment = parser.nextText()
+                "comment" -> item.comment = parser.nextText()
+                "conditiontext" -> item.conditiontext = parser.nextText()
+                "wantpartslist" -> item.wantpartslist = parser.nextText()
+                "haspartslist" -> item.haspartslist = parser.nextText()
+                "wishlistcomment" -> item.wishlistcomment = parser.nextText()
+            }
+        }
+        return item
+    }
+
+    private fun readStats(parser: XmlPullParser): CollectionItem.Statistics {
+        val stats = CollectionItem.Statistics()
+        stats.minplayers = parser.getAttributeValue(null, "minplayers")?.toIntOrNull() ?: 0
+        stats.maxplayers = parser.getAttributeValue(null, "maxplayers")?.toIntOrNull() ?: 0
+        stats.minplaytime = parser.getAttributeValue(null, "minplaytime")?.toIntOrNull() ?: 0
+        stats.maxplaytime = parser.getAttributeValue(null, "maxplaytime")?.toIntOrNull() ?: 0
+        stats.playingtime = parser.getAttributeValue(null, "playingtime")?.toIntOrNull() ?: 0
+        stats.numowned = parser.getAttributeValue(null, "numowned")
+        val depth = parser.depth
+        while (parser.nextUntilEndOf(depth)) {
+            if (parser.eventType != XmlPullParser.START_TAG) continue
+            val value = parser.getAttributeValue(null, "value")
+            when (parser.name) {
+                "rating" -> stats.rating = value
+                "usersrated" -> stats.usersrated = value
+                "average" -> stats.average = value
+                "bayesaverage" -> stats.bayesaverage = value
+                "stddev" -> stats.stddev = value
+                "median" -> stats.median = value
+            }
+        }
+        return stats
+    }
+
+    /**
+     * Advances the parser, returning false once it reaches the end tag of the element at [depth].
+     */
+    private fun XmlPullParser.nextUntilEndOf(depth: Int): Boolean {
+        val event = next()
+        if (event == XmlPullParser.END_DOCUMENT) throw IOException("Unexpected end of the collection response")
+        return !(event == XmlPullParser.END_TAG && this.depth == depth)
+    }
+
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 100
+    }
+}
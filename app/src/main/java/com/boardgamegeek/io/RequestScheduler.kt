@@ -0,0 +1,261 @@
+package com.boardgamegeek.io
+
+import android.os.SystemClock
+import com.boardgamegeek.util.RemoteConfig
+import kotlinx.coroutines.*
+import okhttp3.*
+import okio.Timeout
+import timber.log.Timber
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+import kotlin.math.ceil
+
+/**
+ * Schedules API requests through a token bucket per host, so bursts of calls from different workers and screens share
+ * one budget. Requests that are throttled (429), rejected (503), or still being processed (202) are retried after a
+ * back-off, honoring the Retry-After header. Waiting suspends a coroutine rather than blocking an OkHttp thread.
+ *
+ * Use [callFactory] in place of the OkHttpClient when building a Retrofit service. Tests can drive the scheduler on
+ * virtual time by passing in the [clock] and [dispatcher] of a test scheduler.
+ */
+class RequestScheduler(
+    private val burstSize: Int = DEFAULT_BURST_SIZE,
+    private val intervalMillis: Long = DEFAULT_INTERVAL_MILLIS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() },
+    dispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val createBackOffs: () -> RetryBackOffs = ::remoteConfigBackOffs,
+) {
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+    private val buckets = ConcurrentHashMap<String, TokenBucket>()
+
+    private val queueDepth = AtomicInteger()
+    private val maxQueueDepth = AtomicInteger()
+    private val requestCount = AtomicLong()
+    private val retryCount = AtomicLong()
+    private val totalWaitMillis = AtomicLong()
+    private val maxWaitMillis = AtomicLong()
+
+    data class Metrics(
+        val queueDepth: Int,
+        val maxQueueDepth: Int,
+        val requestCount: Long,
+        val retryCount: Long,
+        val totalWaitMillis: Long,
+        val maxWaitMillis: Long,
+    )
+
+    val metrics: Metrics
+        get() = Metrics(
+            queueDepth.get(),
+            maxQueueDepth.get(),
+            requestCount.get(),
+            retryCount.get(),
+            totalWaitMillis.get(),
+            maxWaitMillis.get(),
+        )
+
+    /**
+     * The back-offs for one call: [processing] for 202 responses, [throttled] for 429 responses, and [rejected] for 503
+     * responses.
+     */
+    class RetryBackOffs(val processing: BackOff, val throttled: BackOff, val rejected: BackOff)
+
+    fun callFactory(client: OkHttpClient, retry202Response: Boolean = true): Call.Factory = object : Call.Factory {
+        override fun newCall(request: Request): Call = ScheduledCall(client, request, retry202Response)
+    }
+
+    /**
+     * Suspends until the [host] has budget for another request.
+     */
+    suspend fun acquire(host: String) {
+        val waitMillis = bucket(host).reserve(clock())
+        requestCount.incrementAndGet()
+        if (waitMillis <= 0) return
+        maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet()) { a, b -> maxOf(a, b) }
+        try {
+            Timber.d("...waiting %,d ms for %s", waitMillis, host)
+            delay(waitMillis)
+        } finally {
+            queueDepth.decrementAndGet()
+            totalWaitMillis.addAndGet(waitMillis)
+            maxWaitMillis.accumulateAndGet(waitMillis) { a, b -> maxOf(a, b) }
+        }
+    }
+
+    /**
+     * Holds all requests to the [host] for the next [millis].
+     */
+    fun backOff(host: String, millis: Long) {
+        bucket(host).block(clock() + millis)
+    }
+
+    private fun bucket(host: String) = buckets.getOrPut(host) { TokenBucket(burstSize, intervalMillis, clock()) }
+
+    private class TokenBucket(private val capacity: Int, private val intervalMillis: Long, now: Long) {
+        private var tokens = capacity.toDouble()
+        private var lastRefillTime = now
+        private var blockedUntil = 0L
+
+        /**
+         * Takes a token, returning the milliseconds to wait until it may be used. Tokens may be borrowed against the
+         * future, so callers queue up in the order they arrived.
+         */
+        @Synchronized
+        fun reserve(now: Long): Long {
+            if (now > lastRefillTime) {
+                tokens = (tokens + (now - lastRefillTime).toDouble() / intervalMillis).coerceAtMost(capacity.toDouble())
+                lastRefillTime = now
+            }
+            tokens -= 1.0
+            val tokenWait = if (tokens >= 0.0) 0L else ceil(-tokens * intervalMillis).toLong()
+            return maxOf(tokenWait, blockedUntil - now)
+        }
+
+        @Synchronized
+        fun block(until: Long) {
+            blockedUntil = maxOf(blockedUntil, until)
+        }
+    }
+
+    private inner class ScheduledCall(
+        private val client: OkHttpClient,
+        private val originalRequest: Request,
+        private val retry202Response: Boolean,
+    ) : Call {
+        private val executed = AtomicBoolean()
+        private val canceled = AtomicBoolean()
+        @Volatile
+        private var job: Job? = null
+        // the call for the current attempt; each retry clones it
+        @Volatile
+        private var delegate: Call = client.newCall(originalRequest)
+
+        override fun request() = originalRequest
+
+        /**
+         * Blocks the calling thread until the scheduled request completes, or the call times out.
+         */
+        override fun execute(): Response {
+            check(executed.compareAndSet(false, true)) { "Already Executed" }
+            val timeoutMillis = TimeUnit.NANOSECONDS.toMillis(timeout().timeoutNanos())
+            return runBlocking {
+                job = coroutineContext[Job]
+                try {
+                    if (timeoutMillis > 0) withTimeout(timeoutMillis) { proceed() } else proceed()
+                } catch (e: TimeoutCancellationException) {
+                    throw InterruptedIOException("timeout").apply { initCause(e) }
+                } catch (e: CancellationException) {
+                    throw IOException("Canceled", e)
+                }
+            }
+        }
+
+        override fun enqueue(responseCallback: Callback) {
+            check(executed.compareAndSet(false, true)) { "Already Executed" }
+            job = scope.launch {
+                val response = try {
+                    proceed()
+                } catch (e: CancellationException) {
+                    responseCallback.onFailure(this@ScheduledCall, IOException("Canceled", e))
+                    return@launch
+                } catch (e: IOException) {
+                    responseCallback.onFailure(this@ScheduledCall, e)
+                    return@launch
+                }
+                responseCallback.onResponse(this@ScheduledCall, response)
+            }
+        }
+
+        override fun cancel() {
+            canceled.set(true)
+            job?.cancel()
+            delegate.cancel()
+        }
+
+        override fun isExecuted() = executed.get()
+
+        override fun isCanceled() = canceled.get()
+
+        override fun timeout(): Timeout = delegate.timeout()
+
+        override fun clone(): Call = ScheduledCall(client, originalRequest, retry202Response)
+
+        private suspend fun proceed(): Response {
+            val host = originalRequest.url.host
+            val backOffs = createBackOffs()
+            while (true) {
+                if (canceled.get()) throw IOException("Canceled")
+                acquire(host)
+                val call = if (delegate.isExecuted()) delegate.clone().also { delegate = it } else delegate
+                val response = call.await()
+                val millis = when (response.code) {
+                    COLLECTION_REQUEST_PROCESSING -> if (retry202Response) backOffs.processing.nextBackOffMillis() else BackOff.STOP
+                    RATE_LIMIT_EXCEEDED -> backOffs.throttled.nextBackOffMillis()
+                    API_RATE_EXCEEDED -> backOffs.rejected.nextBackOffMillis()
+                    else -> BackOff.STOP
+                }
+                if (millis == BackOff.STOP) return response
+                response.close()
+                retryCount.incrementAndGet()
+                if (response.code == COLLECTION_REQUEST_PROCESSING) {
+                    // the server is preparing this response; there's no reason to hold up other requests
+                    Timber.d("...retrying in %,d ms", millis)
+                    delay(millis)
+                } else {
+                    val backOffMillis = maxOf(millis, response.retryAfterMillis())
+                    Timber.d("...backing off %s for %,d ms", host, backOffMillis)
+                    backOff(host, backOffMillis)
+                }
+            }
+        }
+    }
+
+    private suspend fun Call.await(): Response = suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { cancel() }
+        enqueue(object : Callback {
+            override fun onFailure(call: Call, e: IOException) {
+                continuation.resumeWithException(e)
+            }
+
+            override fun onResponse(call: Call, response: Response) {
+                continuation.resume(response) { response.close() }
+            }
+        })
+    }
+
+    private fun Response.retryAfterMillis(): Long {
+        val retryAfter = header(RETRY_AFTER) ?: return 0L
+        return retryAfter.trim().toLongOrNull()?.times(1_000L)
+            ?: headers.getDate(RETRY_AFTER)?.let { it.time - System.currentTimeMillis() }?.coerceAtLeast(0L)
+            ?: 0L
+    }
+
+    companion object {
+        const val DEFAULT_BURST_SIZE = 4
+        const val DEFAULT_INTERVAL_MILLIS = 1_000L
+
+        private const val RETRY_AFTER = "Retry-After"
+        private const val COLLECTION_REQUEST_PROCESSING = 202
+        private const val RATE_LIMIT_EXCEEDED = 429
+        private const val API_RATE_EXCEEDED = 503
+
+        private fun remoteConfigBackOffs() = RetryBackOffs(
+            processing = ExponentialBackOff(
+                RemoteConfig.getInt(RemoteConfig.KEY_RETRY_202_INITIAL_INTERVAL_MILLIS),
+                RemoteConfig.getDouble(RemoteConfig.KEY_RETRY_202_RANDOMIZATION_FACTOR),
+                RemoteConfig.getDouble(RemoteConfig.KEY_RETRY_202_MULTIPLIER),
+                RemoteConfig.getInt(RemoteConfig.KEY_RETRY_202_MAX_INTERVAL_MILLIS),
+                RemoteConfig.getInt(RemoteConfig.KEY_RETRY_202_MAX_ELAPSED_MILLIS),
+            ),
+            throttled = FixedBackOff(maxBackOffCount = RemoteConfig.getInt(RemoteConfig.KEY_RETRY_429_MAX_BACKOFF_COUNT)),
+            rejected = FixedBackOff(),
+        )
+    }
+}
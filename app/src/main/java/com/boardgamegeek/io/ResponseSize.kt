@@ -0,0 +1,18 @@
+package com.boardgamegeek.io
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Tag a request with this (with Retrofit's `@Tag`) to have [TrafficCountingInterceptor] count the bytes of its response
+ * body here, as well as in the process-wide totals.
+ */
+class ResponseSize {
+    private val byteCount = AtomicLong()
+
+    val bytes: Long
+        get() = byteCount.get()
+
+    fun add(bytes: Long) {
+        byteCount.addAndGet(bytes)
+    }
+}
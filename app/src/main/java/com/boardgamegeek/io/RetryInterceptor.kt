@@ -7,7 +7,8 @@ import timber.log.Timber
 import java.io.IOException
 
 /**
- * Attempts to retry unsuccessful requests based on the response code
+ * Attempts to retry unsuccessful requests based on the response code. This blocks the calling thread while it waits,
+ * so it's only for clients that are called synchronously; Retrofit services go through [RequestScheduler] instead.
  */
 class RetryInterceptor(private val retry202Response: Boolean = true) : Interceptor {
     private val initialIntervalMillisFor202 = RemoteConfig.getInt(RemoteConfig.KEY_RETRY_202_INITIAL_INTERVAL_MILLIS)
@@ -17,19 +18,24 @@ class RetryInterceptor(private val retry202Response: Boolean = true) : Intercept
     private val maxElapsedMillisFor202 = RemoteConfig.getInt(RemoteConfig.KEY_RETRY_202_MAX_ELAPSED_MILLIS)
     private val maxBackOffCountFor429 = RemoteConfig.getInt(RemoteConfig.KEY_RETRY_429_MAX_BACKOFF_COUNT)
 
-    private val backOff202: BackOff
-    private val backOff429: BackOff
-    private val backOff503: BackOff
-
-    init {
-        backOff202 = ExponentialBackOff(initialIntervalMillisFor202, randomizationFactorFor202, multiplierFor202, maxIntervalMillisFor202, maxElapsedMillisFor202)
-        backOff429 = FixedBackOff(maxBackOffCount = maxBackOffCountFor429)
-        backOff503 = FixedBackOff()
-    }
-
     @Throws(IOException::class)
     override fun intercept(chain: Interceptor.Chain): Response {
-        resetBackOff()
+        // back-offs are stateful, so each call gets its own
+        val backOff202 = ExponentialBackOff(initialIntervalMillisFor202, randomizationFactorFor202, multiplierFor202, maxIntervalMillisFor202, maxElapsedMillisFor202)
+        val backOff429 = FixedBackOff(maxBackOffCount = maxBackOffCountFor429)
+        val backOff503 = FixedBackOff()
+        fun nextBackOffMillis(response: Response): Long {
+            return when (response.code) {
+                COLLECTION_REQUEST_PROCESSING -> {
+                    if (retry202Response) backOff202.nextBackOffMillis()
+                    else BackOff.STOP
+                }
+                RATE_LIMIT_EXCEEDED -> backOff429.nextBackOffMillis()
+                API_RATE_EXCEEDED -> backOff503.nextBackOffMillis()
+                else -> BackOff.STOP
+            }
+        }
+
         val originalRequest = chain.request()
         var response = chain.proceed(originalRequest)
         var millis = nextBackOffMillis(response)
@@ -51,24 +57,6 @@ class RetryInterceptor(private val retry202Response: Boolean = true) : Intercept
         return response
     }
 
-    private fun resetBackOff() {
-        backOff202.reset()
-        backOff429.reset()
-        backOff503.reset()
-    }
-
-    private fun nextBackOffMillis(response: Response): Long {
-        return when (response.code) {
-            COLLECTION_REQUEST_PROCESSING -> {
-                if (retry202Response) backOff202.nextBackOffMillis()
-                else BackOff.STOP
-            }
-            RATE_LIMIT_EXCEEDED -> backOff429.nextBackOffMillis()
-            API_RATE_EXCEEDED -> backOff503.nextBackOffMillis()
-            else -> BackOff.STOP
-        }
-    }
-
     companion object {
         private const val COLLECTION_REQUEST_PROCESSING = 202
         private const val RATE_LIMIT_EXCEEDED = 429
@@ -0,0 +1,28 @@
+package com.boardgamegeek.io
+
+import com.boardgamegeek.util.PerformanceCounters
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * Adds the time spent converting response bodies to [PerformanceCounters], delegating the conversion itself to the
+ * converter factories added after this one. Add it first.
+ *
+ * Retrofit hands converters a body that's still streaming from the network, so it's read into memory before the timer
+ * starts; otherwise the parse time would include the transfer.
+ */
+class TimingConverterFactory : Converter.Factory() {
+    override fun responseBodyConverter(
+        type: Type,
+        annotations: Array<out Annotation>,
+        retrofit: Retrofit
+    ): Converter<ResponseBody, *> {
+        val delegate = retrofit.nextResponseBodyConverter<Any>(this, type, annotations)
+        return Converter<ResponseBody, Any> { body ->
+            body.source().request(Long.MAX_VALUE)
+            PerformanceCounters.measureParse { delegate.convert(body) }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.boardgamegeek.io
+
+import com.boardgamegeek.util.PerformanceCounters
+import okhttp3.Interceptor
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okio.Buffer
+import okio.ForwardingSource
+import okio.buffer
+import java.io.IOException
+
+/**
+ * Adds the bytes sent and received over the network to [PerformanceCounters]. Response bytes are counted as the body
+ * is read, so responses that are streamed are counted too. Add it as a network interceptor so that responses served
+ * from the HTTP cache aren't counted. Requests tagged with a [ResponseSize] have their response bytes counted there too.
+ */
+class TrafficCountingInterceptor : Interceptor {
+    @Throws(IOException::class)
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        request.body?.contentLength()?.takeIf { it > 0 }?.let { PerformanceCounters.networkBytes.addAndGet(it) }
+        val response = chain.proceed(request)
+        val body = response.body ?: return response
+        val responseSize = request.tag(ResponseSize::class.java)
+        val source = object : ForwardingSource(body.source()) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                return super.read(sink, byteCount).also {
+                    if (it > 0) {
+                        PerformanceCounters.networkBytes.addAndGet(it)
+                        responseSize?.add(it)
+                    }
+                }
+            }
+        }
+        return response.newBuilder()
+            .body(source.buffer().asResponseBody(body.contentType(), body.contentLength()))
+            .build()
+    }
+}
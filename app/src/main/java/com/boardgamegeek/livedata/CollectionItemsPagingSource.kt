@@ -0,0 +1,49 @@
+package com.boardgamegeek.livedata
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import com.boardgamegeek.db.CollectionDao
+import com.boardgamegeek.db.PageDirection
+import com.boardgamegeek.db.SortColumn
+import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.repository.CollectionItemRepository
+import timber.log.Timber
+
+/**
+ * Pages through the collection items matching a selection in the order of the sort columns, keyed by the position of
+ * the first or last item of each page. It refreshes from the first item of the page that was showing.
+ */
+class CollectionItemsPagingSource(
+    private val repository: CollectionItemRepository,
+    private val selection: String,
+    private val selectionArgs: Array<String>,
+    private val sortColumns: List<SortColumn>,
+) : PagingSource<CollectionDao.ListItemKey, CollectionItemEntity>() {
+    override fun getRefreshKey(state: PagingState<CollectionDao.ListItemKey, CollectionItemEntity>): CollectionDao.ListItemKey? {
+        return state.anchorPosition?.let { state.closestPageToPosition(it)?.prevKey }
+    }
+
+    override suspend fun load(params: LoadParams<CollectionDao.ListItemKey>): LoadResult<CollectionDao.ListItemKey, CollectionItemEntity> {
+        return try {
+            val direction = when (params) {
+                is LoadParams.Refresh -> PageDirection.FROM
+                is LoadParams.Append -> PageDirection.AFTER
+                is LoadParams.Prepend -> PageDirection.BEFORE
+            }
+            val page = repository.loadListItemsPage(selection, selectionArgs, sortColumns, params.key, direction, params.loadSize)
+            val mayHaveMore = page.items.size >= params.loadSize
+            LoadResult.Page(
+                data = page.items,
+                prevKey = when (params) {
+                    is LoadParams.Refresh -> params.key?.let { page.firstKey ?: it }
+                    is LoadParams.Append -> page.firstKey
+                    is LoadParams.Prepend -> if (mayHaveMore) page.firstKey else null
+                },
+                nextKey = if (mayHaveMore || params is LoadParams.Prepend) page.lastKey else null,
+            )
+        } catch (e: Exception) {
+            Timber.w(e)
+            LoadResult.Error(e)
+        }
+    }
+}
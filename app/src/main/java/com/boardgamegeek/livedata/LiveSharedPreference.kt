@@ -1,31 +1,35 @@
 package com.boardgamegeek.livedata
 
 import android.content.Context
-import android.content.SharedPreferences
 import androidx.lifecycle.MutableLiveData
-import com.boardgamegeek.extensions.preferences
+import com.boardgamegeek.pref.PreferenceSnapshot
 
 @Suppress("UNCHECKED_CAST")
-class LiveSharedPreference<T>(context: Context, preferenceKey: String, sharedPreferencesName: String? = null) : MutableLiveData<T>() {
-    private val listener: SharedPreferences.OnSharedPreferenceChangeListener =
-        SharedPreferences.OnSharedPreferenceChangeListener { sharedPreferences, key ->
-            if (key == preferenceKey) {
-                value = sharedPreferences.all[key] as T
-            }
+class LiveSharedPreference<T>(
+    context: Context,
+    private val preferenceKey: String,
+    private val sharedPreferencesName: String? = null,
+) : MutableLiveData<T>() {
+    private val context = context.applicationContext
+    private val listener = PreferenceSnapshot.Listener { key, snapshot ->
+        if (key == preferenceKey || key == null) {
+            value = snapshot[preferenceKey] as T
         }
-    private val sharedPreferences: SharedPreferences = context.preferences(sharedPreferencesName)
+    }
 
     init {
-        value = sharedPreferences.all[preferenceKey] as T
+        value = PreferenceSnapshot.of(this.context, sharedPreferencesName)[preferenceKey] as T
     }
 
     override fun onActive() {
         super.onActive()
-        sharedPreferences.registerOnSharedPreferenceChangeListener(listener)
+        PreferenceSnapshot.addListener(context, listener, sharedPreferencesName)
+        val current = PreferenceSnapshot.of(context, sharedPreferencesName)[preferenceKey] as T
+        if (current != value) value = current
     }
 
     override fun onInactive() {
         super.onInactive()
-        sharedPreferences.unregisterOnSharedPreferenceChangeListener(listener)
+        PreferenceSnapshot.removeListener(context, listener, sharedPreferencesName)
     }
 }
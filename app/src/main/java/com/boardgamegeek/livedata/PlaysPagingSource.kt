@@ -0,0 +1,61 @@
+package com.boardgamegeek.livedata
+
+import android.content.ContentResolver
+import android.database.ContentObserver
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import com.boardgamegeek.db.PageDirection
+import com.boardgamegeek.db.PlayDao
+import com.boardgamegeek.entities.PlayEntity
+import com.boardgamegeek.provider.BggContract.Plays
+import com.boardgamegeek.repository.PlayRepository
+import timber.log.Timber
+
+/**
+ * Pages through the plays of a query, keyed by the position of the first or last play of each page. It's invalidated
+ * whenever plays change, and refreshes from the first play of the page that was showing.
+ */
+class PlaysPagingSource(
+    private val contentResolver: ContentResolver,
+    private val query: PlayDao.PlaysQuery,
+    private val repository: PlayRepository,
+) : PagingSource<PlayDao.PlaysPageKey, PlayEntity>() {
+    private val observer = object : ContentObserver(null) {
+        override fun onChange(selfChange: Boolean) {
+            invalidate()
+        }
+    }
+
+    init {
+        contentResolver.registerContentObserver(Plays.CONTENT_URI, true, observer)
+        registerInvalidatedCallback { contentResolver.unregisterContentObserver(observer) }
+    }
+
+    override fun getRefreshKey(state: PagingState<PlayDao.PlaysPageKey, PlayEntity>): PlayDao.PlaysPageKey? {
+        return state.anchorPosition?.let { state.closestPageToPosition(it)?.prevKey }
+    }
+
+    override suspend fun load(params: LoadParams<PlayDao.PlaysPageKey>): LoadResult<PlayDao.PlaysPageKey, PlayEntity> {
+        return try {
+            val direction = when (params) {
+                is LoadParams.Refresh -> PageDirection.FROM
+                is LoadParams.Append -> PageDirection.AFTER
+                is LoadParams.Prepend -> PageDirection.BEFORE
+            }
+            val page = repository.loadPlaysPage(query, params.key, direction, params.loadSize)
+            val mayHaveMore = page.plays.size >= params.loadSize
+            LoadResult.Page(
+                data = page.plays,
+                prevKey = when (params) {
+                    is LoadParams.Refresh -> params.key?.let { page.firstKey ?: it }
+                    is LoadParams.Append -> page.firstKey
+                    is LoadParams.Prepend -> if (mayHaveMore) page.firstKey else null
+                },
+                nextKey = if (mayHaveMore || params is LoadParams.Prepend) page.lastKey else null,
+            )
+        } catch (e: Exception) {
+            Timber.w(e)
+            LoadResult.Error(e)
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.boardgamegeek.pref
+
+import android.content.Context
+import android.content.SharedPreferences
+import com.boardgamegeek.extensions.*
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * An immutable copy of a preferences file, for code that reads preferences often: a lookup is a map read rather than a
+ * call into [SharedPreferences] that copies what it returns. A file's snapshot is rebuilt once each time the file
+ * changes, and shared by everything that reads it through [of].
+ *
+ * Edits made on the main thread are in the snapshot as soon as they're applied; those made on another thread are in it
+ * once the change listener runs on the main thread.
+ */
+class PreferenceSnapshot private constructor(private val values: Map<String, Any?>) {
+    /**
+     * The collection statuses to sync, defaulting to owned games.
+     */
+    val syncStatuses: Set<String> = getStringSet(PREFERENCES_KEY_SYNC_STATUSES) ?: setOf(COLLECTION_STATUS_OWN)
+
+    val isCollectionSetToSync: Boolean
+        get() = getStringSet(PREFERENCES_KEY_SYNC_STATUSES).orEmpty().isNotEmpty()
+
+    val syncPlays: Boolean
+        get() = getBoolean(PREFERENCES_KEY_SYNC_PLAYS)
+
+    val syncBuddies: Boolean
+        get() = getBoolean(PREFERENCES_KEY_SYNC_BUDDIES)
+
+    fun isStatusSetToSync(status: String) = status in syncStatuses
+
+    operator fun get(key: String): Any? = values[key]
+
+    fun getBoolean(key: String, defaultValue: Boolean = false) = values[key] as? Boolean ?: defaultValue
+
+    fun getInt(key: String, defaultValue: Int = -1) = values[key] as? Int ?: defaultValue
+
+    fun getLong(key: String, defaultValue: Long = -1L) = values[key] as? Long ?: defaultValue
+
+    fun getString(key: String, defaultValue: String? = null) = values[key] as? String ?: defaultValue
+
+    @Suppress("UNCHECKED_CAST")
+    fun getStringSet(key: String) = values[key] as? Set<String>
+
+    /**
+     * Notified on the main thread with the changed key (null when the file was cleared) and the rebuilt snapshot.
+     */
+    fun interface Listener {
+        fun onChanged(key: String?, snapshot: PreferenceSnapshot)
+    }
+
+    private class Holder(private val sharedPreferences: SharedPreferences) {
+        @Volatile
+        var snapshot = PreferenceSnapshot(copy())
+            private set
+        val listeners = CopyOnWriteArraySet<Listener>()
+
+        // kept here since SharedPreferences only holds its listeners weakly
+        private val changeListener = SharedPreferences.OnSharedPreferenceChangeListener { _, key ->
+            val newSnapshot = PreferenceSnapshot(copy())
+            snapshot = newSnapshot
+            listeners.forEach { it.onChanged(key, newSnapshot) }
+        }
+
+        init {
+            sharedPreferences.registerOnSharedPreferenceChangeListener(changeListener)
+        }
+
+        /**
+         * String sets are copied since SharedPreferences hands out the set it holds.
+         */
+        private fun copy(): Map<String, Any?> = sharedPreferences.all.mapValues { (_, value) ->
+            if (value is Set<*>) value.toSet() else value
+        }
+    }
+
+    companion object {
+        private val holders = mutableMapOf<String, Holder>()
+
+        private fun holder(context: Context, name: String?) = synchronized(holders) {
+            holders.getOrPut(name.orEmpty()) { Holder(context.applicationContext.preferences(name)) }
+        }
+
+        /**
+         * The current snapshot of the preferences file with the given name, or of the default preferences.
+         */
+        fun of(context: Context, name: String? = null): PreferenceSnapshot = holder(context, name).snapshot
+
+        fun addListener(context: Context, listener: Listener, name: String? = null) {
+            holder(context, name).listeners += listener
+        }
+
+        fun removeListener(context: Context, listener: Listener, name: String? = null) {
+            holder(context, name).listeners -= listener
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.boardgamegeek.provider
+
+import android.net.Uri
+import android.provider.BaseColumns
+import com.boardgamegeek.provider.BggContract.Companion.PATH_COLLECTION
+import com.boardgamegeek.provider.BggContract.Companion.PATH_ARTISTS
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggDatabase.Tables
+
+/**
+ * The collection linked to every artist, one row per artist and item.
+ */
+class ArtistsCollectionProvider : BaseProvider() {
+    override val path = "$PATH_ARTISTS/$PATH_COLLECTION"
+
+    override fun buildSimpleSelection(uri: Uri): SelectionBuilder {
+        return SelectionBuilder()
+            .mapToTable(BaseColumns._ID, Tables.COLLECTION)
+            .mapToTable(Games.Columns.GAME_ID, Tables.GAMES)
+            .table(Tables.ARTIST_JOIN_GAMES_JOIN_COLLECTION)
+    }
+}
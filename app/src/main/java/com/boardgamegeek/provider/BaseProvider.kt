@@ -31,6 +31,7 @@ abstract class BaseProvider {
     ): Cursor? {
         val builder = buildExpandedSelection(uri, projection).where(selection, *(selectionArgs.orEmpty()))
         builder.limit(uri.getQueryParameter(BggContract.QUERY_KEY_LIMIT))
+        builder.offset(uri.getQueryParameter(BggContract.QUERY_KEY_OFFSET))
         return builder.query(db, projection, getSortOrder(sortOrder))
     }
 
@@ -59,19 +60,11 @@ abstract class BaseProvider {
     }
 
     fun update(context: Context, db: SQLiteDatabase, uri: Uri, values: ContentValues?, selection: String?, selectionArgs: Array<String>?): Int {
-        val rowCount = buildSimpleSelection(uri).where(selection, *(selectionArgs.orEmpty())).update(db, values)
-        if (rowCount > 0) notifyChange(context, uri)
-        return rowCount
+        return buildSimpleSelection(uri).where(selection, *(selectionArgs.orEmpty())).update(db, values)
     }
 
     open fun delete(context: Context, db: SQLiteDatabase, uri: Uri, selection: String?, selectionArgs: Array<String>?): Int {
-        val rowCount = buildSimpleSelection(uri).where(selection, *(selectionArgs.orEmpty())).delete(db)
-        if (rowCount > 0) notifyChange(context, uri)
-        return rowCount
-    }
-
-    private fun notifyChange(context: Context, uri: Uri) {
-        context.contentResolver.notifyChange(uri, null)
+        return buildSimpleSelection(uri).where(selection, *(selectionArgs.orEmpty())).delete(db)
     }
 
     @Throws(FileNotFoundException::class)
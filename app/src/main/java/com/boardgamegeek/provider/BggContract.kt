@@ -62,6 +62,7 @@ class BggContract {
             const val PLAYER_COUNTS_BEST = "player_counts_best"
             const val PLAYER_COUNTS_RECOMMENDED = "player_counts_recommended"
             const val PLAYER_COUNTS_NOT_RECOMMENDED = "player_count_nots_recommended"
+            const val LAST_PLAYED_DATE = "last_played_date"
             const val UPDATED = COL_UPDATED
             const val UPDATED_LIST = COL_UPDATED_LIST
             const val POLLS_COUNT = "polls_count"
@@ -275,6 +276,10 @@ class BggContract {
             return CONTENT_URI.buildUpon().appendPath(designerId.toString()).appendPath(PATH_COLLECTION).build()
         }
 
+        fun buildDesignersCollectionUri(): Uri {
+            return CONTENT_URI.buildUpon().appendPath(PATH_COLLECTION).build()
+        }
+
         fun getDesignerId(uri: Uri) = uri.getPathValueAsInt(PATH_DESIGNERS)
     }
 
@@ -307,6 +312,10 @@ class BggContract {
             return CONTENT_URI.buildUpon().appendPath(artistId.toString()).appendPath(PATH_COLLECTION).build()
         }
 
+        fun buildArtistsCollectionUri(): Uri {
+            return CONTENT_URI.buildUpon().appendPath(PATH_COLLECTION).build()
+        }
+
         fun getArtistId(uri: Uri) = uri.getPathValueAsInt(PATH_ARTISTS)
     }
 
@@ -338,6 +347,10 @@ class BggContract {
             return CONTENT_URI.buildUpon().appendPath(publisherId.toString()).appendPath(PATH_COLLECTION).build()
         }
 
+        fun buildPublishersCollectionUri(): Uri {
+            return CONTENT_URI.buildUpon().appendPath(PATH_COLLECTION).build()
+        }
+
         fun getPublisherId(uri: Uri) = uri.getPathValueAsInt(PATH_PUBLISHERS)
     }
 
@@ -834,6 +847,11 @@ class BggContract {
         const val QUERY_VALUE_COLOR = "color"
         const val QUERY_VALUE_PLAY = "play"
         const val QUERY_KEY_LIMIT = "limit"
+        const val QUERY_KEY_OFFSET = "offset"
+
+        const val METHOD_VERIFY_GAME_PLAY_STATS = "verify_game_play_stats"
+        const val METHOD_INDEX_SEARCH_SUGGESTIONS = "index_search_suggestions"
+        const val EXTRA_GAME_IDS = "game_ids"
 
         const val FRAGMENT_SIMPLE = "simple"
         const val FRAGMENT_PLAYS = "plays"
@@ -5,6 +5,7 @@ import android.content.SharedPreferences
 import android.database.SQLException
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteOpenHelper
+import android.os.Build
 import android.os.Environment
 import android.provider.BaseColumns
 import com.boardgamegeek.pref.SyncPrefs
@@ -26,6 +27,10 @@ import java.util.*
 class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION) {
     var syncPrefs: SharedPreferences = SyncPrefs.getPrefs(context!!)
 
+    init {
+        setWriteAheadLoggingEnabled(true)
+    }
+
     object GamesDesigners {
         const val GAME_ID = Games.Columns.GAME_ID
         const val DESIGNER_ID = Designers.Columns.DESIGNER_ID
@@ -51,6 +56,15 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
         const val CATEGORY_ID = Categories.Columns.CATEGORY_ID
     }
 
+    /**
+     * Full-text index of the collection, one row per collection item with the item's _ID as its docid.
+     */
+    object SearchSuggest {
+        const val COLLECTION_NAME = Collection.Columns.COLLECTION_NAME
+        const val GAME_NAME = Games.Columns.GAME_NAME
+        const val CREDITS = "credits" // designers and publishers
+    }
+
     object Tables {
         const val DESIGNERS = "designers"
         const val ARTISTS = "artists"
@@ -77,6 +91,7 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
         const val COLLECTION_VIEWS = "collection_filters"
         const val COLLECTION_VIEW_FILTERS = "collection_filters_details"
         const val PLAYER_COLORS = "player_colors"
+        const val SEARCH_SUGGEST = "search_suggest"
 
         val GAMES_JOIN_COLLECTION = createJoin(GAMES, COLLECTION, Games.Columns.GAME_ID)
         val GAMES_DESIGNERS_JOIN_DESIGNERS = createJoin(GAMES_DESIGNERS, DESIGNERS, Designers.Columns.DESIGNER_ID)
@@ -170,6 +185,10 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
 
             buildCollectionViewsTable().create(it)
             buildCollectionViewFiltersTable().create(it)
+
+            createIndexes(it)
+            createGamePlayStatsTriggers(it)
+            createSearchSuggestIndex(it)
         }
     }
 
@@ -390,6 +409,16 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
                         db.execSQL("UPDATE ${Tables.GAMES} SET ${Games.Columns.UPDATED_LIST}=0, ${Games.Columns.UPDATED}=0, ${Games.Columns.UPDATED_PLAYS}=0")
                         needsCollectionSync = true
                     }
+                    VER_INDEXES -> createIndexes(db)
+                    VER_GAME_LAST_PLAYED_DATE -> {
+                        addColumn(db, Tables.GAMES, Games.Columns.LAST_PLAYED_DATE, ColumnType.TEXT)
+                        createGamePlayStatsTriggers(db)
+                        rebuildGamePlayStats(db)
+                    }
+                    VER_SEARCH_SUGGEST -> {
+                        createSearchSuggestIndex(db)
+                        db.execSQL(reindexCollectionSql("1"))
+                    }
                 }
             }
             if (needsCollectionSync) context?.let { ctx -> SyncCollectionWorker.requestSync(ctx) }
@@ -407,6 +436,171 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
         }
     }
 
+    /**
+     * Indexes the columns used to join and filter the larger tables. The UNIQUE constraints already cover lookups on
+     * their leading column (e.g. game_id on the games_* association tables).
+     */
+    private fun createIndexes(db: SQLiteDatabase) {
+        db.createIndex(Tables.PLAYS, Plays.Columns.OBJECT_ID, Plays.Columns.DATE)
+        db.createIndex(Tables.PLAYS, Plays.Columns.DATE)
+        db.createIndex(Tables.PLAYS, Plays.Columns.PLAY_ID)
+        db.createIndex(Tables.PLAYS, Plays.Columns.LOCATION)
+        db.createIndex(Tables.PLAY_PLAYERS, PlayPlayers.Columns._PLAY_ID)
+        db.createIndex(Tables.PLAY_PLAYERS, PlayPlayers.Columns.USER_NAME)
+        db.createIndex(Tables.PLAY_PLAYERS, PlayPlayers.Columns.NAME)
+        db.createIndex(Tables.COLLECTION, Collection.Columns.GAME_ID)
+        db.createIndex(Tables.COLLECTION, Collection.Columns.COLLECTION_ID)
+        db.createIndex(Tables.COLLECTION, Collection.Columns.COLLECTION_DIRTY_TIMESTAMP)
+        db.createIndex(Tables.BUDDIES, Buddies.Columns.BUDDY_NAME)
+        db.createIndex(Tables.GAMES, Games.Columns.UPDATED_LIST)
+        db.createIndex(Tables.GAMES_DESIGNERS, GamesDesigners.DESIGNER_ID)
+        db.createIndex(Tables.GAMES_ARTISTS, GamesArtists.ARTIST_ID)
+        db.createIndex(Tables.GAMES_PUBLISHERS, GamesPublishers.PUBLISHER_ID)
+        db.createIndex(Tables.GAMES_MECHANICS, GamesMechanics.MECHANIC_ID)
+        db.createIndex(Tables.GAMES_CATEGORIES, GamesCategories.CATEGORY_ID)
+        db.createIndex(Tables.GAMES_EXPANSIONS, GamesExpansions.Columns.EXPANSION_ID)
+    }
+
+    /**
+     * Keeps the last played date and play count of each game in step with the plays table, so collection queries don't
+     * need a correlated sub-query per row. The play count ignores plays pending deletion.
+     */
+    private fun createGamePlayStatsTriggers(db: SQLiteDatabase) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS plays_insert_game_play_stats AFTER INSERT ON ${Tables.PLAYS} BEGIN ${updateGamePlayStatsSql("NEW")} END")
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS plays_update_game_play_stats AFTER UPDATE OF ${Plays.Columns.OBJECT_ID}, ${Plays.Columns.DATE}, ${Plays.Columns.QUANTITY}, ${Plays.Columns.DELETE_TIMESTAMP} ON ${Tables.PLAYS} BEGIN ${
+                updateGamePlayStatsSql("OLD")
+            } ${updateGamePlayStatsSql("NEW")} END"
+        )
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS plays_delete_game_play_stats AFTER DELETE ON ${Tables.PLAYS} BEGIN ${updateGamePlayStatsSql("OLD")} END")
+        // a game inserted after its plays takes its stats from them, but keeps the synced play count if it has none
+        val newGameId = "NEW.${Games.Columns.GAME_ID}"
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS games_insert_game_play_stats AFTER INSERT ON ${Tables.GAMES} BEGIN " +
+                    "UPDATE ${Tables.GAMES} SET ${Games.Columns.LAST_PLAYED_DATE}=${lastPlayedDateSql(newGameId)}, " +
+                    "${Games.Columns.NUM_PLAYS}=CASE WHEN EXISTS (SELECT 1 FROM ${Tables.PLAYS} WHERE ${Plays.Columns.OBJECT_ID}=$newGameId) " +
+                    "THEN ${playCountSql(newGameId)} ELSE ${Games.Columns.NUM_PLAYS} END " +
+                    "WHERE ${Games.Columns.GAME_ID}=$newGameId; END"
+        )
+    }
+
+    private fun updateGamePlayStatsSql(row: String): String {
+        val gameId = "$row.${Plays.Columns.OBJECT_ID}"
+        return "UPDATE ${Tables.GAMES} SET ${Games.Columns.LAST_PLAYED_DATE}=${lastPlayedDateSql(gameId)}, ${Games.Columns.NUM_PLAYS}=${playCountSql(gameId)} WHERE ${Games.Columns.GAME_ID}=$gameId;"
+    }
+
+    private fun lastPlayedDateSql(gameId: String) =
+        "(SELECT MAX(${Plays.Columns.DATE}) FROM ${Tables.PLAYS} WHERE ${Plays.Columns.OBJECT_ID}=$gameId)"
+
+    private fun playCountSql(gameId: String) =
+        "(SELECT IFNULL(SUM(${Plays.Columns.QUANTITY}),0) FROM ${Tables.PLAYS} WHERE ${Plays.Columns.OBJECT_ID}=$gameId AND IFNULL(${Plays.Columns.DELETE_TIMESTAMP},0)=0)"
+
+    /**
+     * Compares the denormalized last played date and play count of the games with [gameIds] against the plays table, and
+     * rebuilds them if any game is out of step. Play counts are only rebuilt for games with plays, since otherwise the
+     * count synced from the collection is all we have. Returns the number of games that were out of step.
+     */
+    fun verifyGamePlayStats(db: SQLiteDatabase, gameIds: IntArray): Int {
+        if (gameIds.isEmpty()) return 0
+        val gameId = "${Tables.GAMES}.${Games.Columns.GAME_ID}"
+        val inGameIds = "$gameId IN (${gameIds.distinct().joinToString(",")})"
+        val mismatchCount = db.rawQuery(
+            "SELECT COUNT(*) FROM ${Tables.GAMES} WHERE $inGameIds AND (IFNULL(${Games.Columns.LAST_PLAYED_DATE},'')!=IFNULL(${lastPlayedDateSql(gameId)},'') OR " +
+                    "($gameId IN (SELECT ${Plays.Columns.OBJECT_ID} FROM ${Tables.PLAYS}) AND ${Games.Columns.NUM_PLAYS}!=${playCountSql(gameId)}))",
+            null
+        ).use { if (it.moveToFirst()) it.getInt(0) else 0 }
+        if (mismatchCount > 0) {
+            Timber.w("Rebuilding play stats; $mismatchCount game(s) out of step with plays")
+            db.beginTransaction()
+            try {
+                rebuildGamePlayStats(db, inGameIds)
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        }
+        return mismatchCount
+    }
+
+    private fun rebuildGamePlayStats(db: SQLiteDatabase, where: String = "1") {
+        val gameId = "${Tables.GAMES}.${Games.Columns.GAME_ID}"
+        db.execSQL("UPDATE ${Tables.GAMES} SET ${Games.Columns.LAST_PLAYED_DATE}=${lastPlayedDateSql(gameId)} WHERE $where")
+        db.execSQL(
+            "UPDATE ${Tables.GAMES} SET ${Games.Columns.NUM_PLAYS}=${playCountSql(gameId)} WHERE $where AND ${Games.Columns.GAME_ID} IN (SELECT ${Plays.Columns.OBJECT_ID} FROM ${Tables.PLAYS})"
+        )
+    }
+
+    /**
+     * Creates the full-text index used for search suggestions, and the triggers that keep it in step with the collection
+     * and the names of each item's game, designers, and publishers. A game's designers and publishers are saved a row at
+     * a time, so rather than re-indexing on each of those rows, the game's items are indexed again once they're saved;
+     * see [indexSearchSuggestions].
+     */
+    private fun createSearchSuggestIndex(db: SQLiteDatabase) {
+        // unicode61 folds case and diacritics, but isn't available before Lollipop
+        val tokenizer = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) "unicode61" else "simple"
+        db.execSQL(
+            "CREATE VIRTUAL TABLE IF NOT EXISTS ${Tables.SEARCH_SUGGEST} USING fts4(" +
+                    "${SearchSuggest.COLLECTION_NAME}, ${SearchSuggest.GAME_NAME}, ${SearchSuggest.CREDITS}, tokenize=$tokenizer)"
+        )
+
+        val collectionId = "${Tables.COLLECTION}.${BaseColumns._ID}"
+        val gameId = "${Tables.COLLECTION}.${Collection.Columns.GAME_ID}"
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS collection_insert_search_suggest AFTER INSERT ON ${Tables.COLLECTION} BEGIN " +
+                    "${indexCollectionSql("$collectionId=NEW.${BaseColumns._ID}")} END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS collection_update_search_suggest AFTER UPDATE OF ${Collection.Columns.COLLECTION_NAME}, ${Collection.Columns.GAME_ID} ON ${Tables.COLLECTION} BEGIN " +
+                    "DELETE FROM ${Tables.SEARCH_SUGGEST} WHERE docid=OLD.${BaseColumns._ID}; ${indexCollectionSql("$collectionId=NEW.${BaseColumns._ID}")} END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS collection_delete_search_suggest AFTER DELETE ON ${Tables.COLLECTION} BEGIN " +
+                    "DELETE FROM ${Tables.SEARCH_SUGGEST} WHERE docid=OLD.${BaseColumns._ID}; END"
+        )
+        // collection items synced before their game are indexed without its name until it's inserted
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS games_insert_search_suggest AFTER INSERT ON ${Tables.GAMES} BEGIN " +
+                    "${reindexCollectionSql("$gameId=NEW.${Games.Columns.GAME_ID}")} END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS games_update_search_suggest AFTER UPDATE OF ${Games.Columns.GAME_NAME} ON ${Tables.GAMES} BEGIN " +
+                    "${reindexCollectionSql("$gameId=NEW.${Games.Columns.GAME_ID}")} END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS designers_update_search_suggest AFTER UPDATE OF ${Designers.Columns.DESIGNER_NAME} ON ${Tables.DESIGNERS} BEGIN " +
+                    "${reindexCollectionSql("$gameId IN (SELECT ${GamesDesigners.GAME_ID} FROM ${Tables.GAMES_DESIGNERS} WHERE ${GamesDesigners.DESIGNER_ID}=NEW.${Designers.Columns.DESIGNER_ID})")} END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS publishers_update_search_suggest AFTER UPDATE OF ${Publishers.Columns.PUBLISHER_NAME} ON ${Tables.PUBLISHERS} BEGIN " +
+                    "${reindexCollectionSql("$gameId IN (SELECT ${GamesPublishers.GAME_ID} FROM ${Tables.GAMES_PUBLISHERS} WHERE ${GamesPublishers.PUBLISHER_ID}=NEW.${Publishers.Columns.PUBLISHER_ID})")} END"
+        )
+    }
+
+    /**
+     * Adds the collection items matching [where] to the search suggestion index.
+     */
+    private fun indexCollectionSql(where: String): String {
+        val gameId = "${Tables.COLLECTION}.${Collection.Columns.GAME_ID}"
+        val designers = "(SELECT GROUP_CONCAT(${Designers.Columns.DESIGNER_NAME}, ' ') FROM ${Tables.GAMES_DESIGNERS_JOIN_DESIGNERS} WHERE ${Tables.GAMES_DESIGNERS}.${GamesDesigners.GAME_ID}=$gameId)"
+        val publishers = "(SELECT GROUP_CONCAT(${Publishers.Columns.PUBLISHER_NAME}, ' ') FROM ${Tables.GAMES_PUBLISHERS_JOIN_PUBLISHERS} WHERE ${Tables.GAMES_PUBLISHERS}.${GamesPublishers.GAME_ID}=$gameId)"
+        return "INSERT INTO ${Tables.SEARCH_SUGGEST} (docid, ${SearchSuggest.COLLECTION_NAME}, ${SearchSuggest.GAME_NAME}, ${SearchSuggest.CREDITS}) " +
+                "SELECT ${Tables.COLLECTION}.${BaseColumns._ID}, ${Tables.COLLECTION}.${Collection.Columns.COLLECTION_NAME}, ${Tables.GAMES}.${Games.Columns.GAME_NAME}, " +
+                "IFNULL($designers, '') || ' ' || IFNULL($publishers, '') " +
+                "FROM ${Tables.COLLECTION_JOIN_GAMES} WHERE $where;"
+    }
+
+    /**
+     * Indexes the collection items of the games with [gameIds] again, e.g. once their designers and publishers are saved.
+     */
+    fun indexSearchSuggestions(db: SQLiteDatabase, gameIds: IntArray) {
+        if (gameIds.isEmpty()) return
+        db.execSQL(reindexCollectionSql("${Tables.COLLECTION}.${Collection.Columns.GAME_ID} IN (${gameIds.distinct().joinToString(",")})"))
+    }
+
+    private fun reindexCollectionSql(where: String) =
+        "DELETE FROM ${Tables.SEARCH_SUGGEST} WHERE docid IN (SELECT ${BaseColumns._ID} FROM ${Tables.COLLECTION} WHERE $where); ${indexCollectionSql(where)}"
+
     private fun buildDesignersTable() = TableBuilder()
         .setTable(Tables.DESIGNERS)
         .useDefaultPrimaryKey()
@@ -478,6 +672,7 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
         .addColumn(Games.Columns.MIN_PLAYING_TIME, ColumnType.INTEGER)
         .addColumn(Games.Columns.MAX_PLAYING_TIME, ColumnType.INTEGER)
         .addColumn(Games.Columns.NUM_PLAYS, ColumnType.INTEGER, true, 0)
+        .addColumn(Games.Columns.LAST_PLAYED_DATE, ColumnType.TEXT)
         .addColumn(Games.Columns.MINIMUM_AGE, ColumnType.INTEGER)
         .addColumn(Games.Columns.DESCRIPTION, ColumnType.TEXT)
         .addColumn(Games.Columns.SUBTYPE, ColumnType.TEXT)
@@ -898,11 +1093,15 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
         db.dropTable(Tables.COLLECTION_VIEWS)
         db.dropTable(Tables.COLLECTION_VIEW_FILTERS)
         db.dropTable(Tables.PLAYER_COLORS)
+        db.dropTable(Tables.SEARCH_SUGGEST)
         onCreate(db)
     }
 
     private fun SQLiteDatabase.dropTable(tableName: String) = this.execSQL("DROP TABLE IF EXISTS $tableName")
 
+    private fun SQLiteDatabase.createIndex(tableName: String, vararg columns: String) =
+        this.execSQL("CREATE INDEX IF NOT EXISTS index_${tableName}_${columns.joinToString("_")} ON $tableName(${columns.joinToString(",")})")
+
     private fun addColumn(db: SQLiteDatabase, table: String, column: String, type: ColumnType) {
         try {
             db.execSQL("ALTER TABLE $table ADD COLUMN $column $type")
@@ -968,6 +1167,9 @@ class BggDatabase(private val context: Context?) : SQLiteOpenHelper(context, DAT
         private const val VER_WHITMORE_SCORE = 55
         private const val VER_DAP_STATS_UPDATED_TIMESTAMP = 56
         private const val VER_RECOMMENDED_PLAYER_COUNTS = 57
-        private const val DATABASE_VERSION = VER_RECOMMENDED_PLAYER_COUNTS
+        private const val VER_INDEXES = 58
+        private const val VER_GAME_LAST_PLAYED_DATE = 59
+        private const val VER_SEARCH_SUGGEST = 60
+        private const val DATABASE_VERSION = VER_SEARCH_SUGGEST
     }
 }
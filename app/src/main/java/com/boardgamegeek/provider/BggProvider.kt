@@ -1,18 +1,23 @@
 package com.boardgamegeek.provider
 
-import android.content.ContentProvider
-import android.content.ContentValues
-import android.content.Context
-import android.content.UriMatcher
+import android.content.*
 import android.database.Cursor
+import android.database.sqlite.SQLiteDatabase
 import android.net.Uri
+import android.os.Binder
+import android.os.Build
+import android.os.Bundle
 import android.os.ParcelFileDescriptor
+import android.os.Process
 import androidx.collection.SimpleArrayMap
 import androidx.core.content.contentValuesOf
+import androidx.core.os.bundleOf
+import com.boardgamegeek.util.PerformanceCounters
 import java.io.FileNotFoundException
 
 class BggProvider : ContentProvider() {
     private lateinit var openHelper: BggDatabase
+    private val pendingNotifications = ThreadLocal<MutableSet<Uri>?>()
 
     private fun reqContext(): Context {
         return context ?: throw IllegalStateException("Cannot find context from the provider.")
@@ -41,24 +46,143 @@ class BggProvider : ContentProvider() {
         }
     }
 
-    override fun insert(uri: Uri, values: ContentValues?): Uri? {
-        return getProvider(uri)?.insert(reqContext(), openHelper.writableDatabase, uri, values ?: contentValuesOf())?.also {
-            context?.contentResolver?.notifyChange(it, null)
+    override fun insert(uri: Uri, values: ContentValues?): Uri? = measureWrite {
+        getProvider(uri)?.insert(reqContext(), openHelper.writableDatabase, uri, values ?: contentValuesOf())?.also {
+            PerformanceCounters.rowsWritten.incrementAndGet()
+            notifyChange(it)
         }
     }
 
-    override fun update(uri: Uri, values: ContentValues?, selection: String?, selectionArgs: Array<String>?): Int {
-        return getProvider(uri)?.update(reqContext(), openHelper.writableDatabase, uri, values, selection, selectionArgs) ?: 0
+    override fun update(uri: Uri, values: ContentValues?, selection: String?, selectionArgs: Array<String>?): Int = measureWrite {
+        (getProvider(uri)?.update(reqContext(), openHelper.writableDatabase, uri, values, selection, selectionArgs) ?: 0).also {
+            PerformanceCounters.rowsWritten.addAndGet(it.toLong())
+            if (it > 0) notifyChange(uri)
+        }
     }
 
-    override fun delete(uri: Uri, selection: String?, selectionArgs: Array<String>?): Int {
-        return getProvider(uri)?.delete(
+    override fun delete(uri: Uri, selection: String?, selectionArgs: Array<String>?): Int = measureWrite {
+        (getProvider(uri)?.delete(
             reqContext(),
             openHelper.writableDatabase,
             uri,
             selection,
             selectionArgs
-        ) ?: 0
+        ) ?: 0).also {
+            PerformanceCounters.rowsWritten.addAndGet(it.toLong())
+            if (it > 0) notifyChange(uri)
+        }
+    }
+
+    /**
+     * Applies the whole batch in a single transaction. Notifications are collected while the batch runs and sent once
+     * it commits. Operations flagged with [ContentProviderOperation.isYieldAllowed] (or every
+     * [MAX_OPERATIONS_PER_YIELD_POINT] operations) give other threads a chance to access the database; a yield commits
+     * the work so far, so its notifications are sent right away.
+     */
+    @Throws(OperationApplicationException::class)
+    override fun applyBatch(operations: ArrayList<ContentProviderOperation>): Array<ContentProviderResult> {
+        return inTransaction { db ->
+            val results = arrayOfNulls<ContentProviderResult>(operations.size)
+            var operationsSinceYield = 0
+            operations.forEachIndexed { i, operation ->
+                if (i > 0 && (operation.isYieldAllowed || ++operationsSinceYield >= MAX_OPERATIONS_PER_YIELD_POINT)) {
+                    operationsSinceYield = 0
+                    if (db.yieldIfContendedSafely()) flushNotifications()
+                }
+                results[i] = operation.apply(this, results, i)
+            }
+            results.requireNoNulls()
+        }
+    }
+
+    override fun bulkInsert(uri: Uri, values: Array<ContentValues>): Int {
+        return inTransaction { values.count { insert(uri, it) != null } }
+    }
+
+    private fun <T> inTransaction(block: (db: SQLiteDatabase) -> T): T {
+        val db = openHelper.writableDatabase
+        if (pendingNotifications.get() != null) return block(db) // already in a batch on this thread
+
+        val startTime = System.nanoTime()
+        val uris = linkedSetOf<Uri>()
+        pendingNotifications.set(uris)
+        val result: T
+        db.beginTransaction()
+        try {
+            result = block(db)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+            pendingNotifications.remove()
+            PerformanceCounters.dbWriteNanos.addAndGet(System.nanoTime() - startTime)
+        }
+        notifyChanges(uris)
+        return result
+    }
+
+    /**
+     * Adds the time a write outside of a batch takes to [PerformanceCounters]. Writes within a batch are timed with the
+     * whole transaction.
+     */
+    private inline fun <T> measureWrite(block: () -> T): T {
+        if (pendingNotifications.get() != null) return block()
+        val startTime = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            PerformanceCounters.dbWriteNanos.addAndGet(System.nanoTime() - startTime)
+        }
+    }
+
+    private fun notifyChange(uri: Uri) {
+        pendingNotifications.get()?.add(uri) ?: context?.contentResolver?.notifyChange(uri, null)
+    }
+
+    private fun flushNotifications() {
+        pendingNotifications.get()?.let {
+            notifyChanges(it.toSet())
+            it.clear()
+        }
+    }
+
+    private fun notifyChanges(uris: Set<Uri>) {
+        if (uris.isEmpty()) return
+        val resolver = context?.contentResolver ?: return
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            resolver.notifyChange(uris, null, 0)
+        } else {
+            uris.forEach { resolver.notifyChange(it, null) }
+        }
+    }
+
+    override fun call(method: String, arg: String?, extras: Bundle?): Bundle? {
+        return when (method) {
+            BggContract.METHOD_VERIFY_GAME_PLAY_STATS -> {
+                enforceCallerIsApp(method)
+                val gameIds = extras?.getIntArray(BggContract.EXTRA_GAME_IDS) ?: IntArray(0)
+                val count = openHelper.verifyGamePlayStats(openHelper.writableDatabase, gameIds)
+                if (count > 0) {
+                    notifyChange(BggContract.Games.CONTENT_URI)
+                    notifyChange(BggContract.Collection.CONTENT_URI)
+                    notifyChange(BggContract.Plays.CONTENT_URI)
+                }
+                bundleOf(method to count)
+            }
+            BggContract.METHOD_INDEX_SEARCH_SUGGESTIONS -> {
+                enforceCallerIsApp(method)
+                val gameIds = extras?.getIntArray(BggContract.EXTRA_GAME_IDS) ?: IntArray(0)
+                openHelper.indexSearchSuggestions(openHelper.writableDatabase, gameIds)
+                null
+            }
+            else -> super.call(method, arg, extras)
+        }
+    }
+
+    /**
+     * The provider is exported, but only the app itself may rebuild its tables.
+     */
+    private fun enforceCallerIsApp(method: String) {
+        if (Binder.getCallingUid() != Process.myUid()) throw SecurityException("$method may only be called by the app")
     }
 
     @Throws(FileNotFoundException::class)
@@ -75,6 +199,8 @@ class BggProvider : ContentProvider() {
     }
 
     companion object {
+        private const val MAX_OPERATIONS_PER_YIELD_POINT = 500
+
         private val uriMatcher = UriMatcher(UriMatcher.NO_MATCH)
         private val providers = buildProviderMap()
         private var uriMatchCode = 1
@@ -120,12 +246,15 @@ class BggProvider : ContentProvider() {
             addProvider(map, DesignersProvider())
             addProvider(map, DesignersIdProvider())
             addProvider(map, DesignersIdCollectionProvider())
+            addProvider(map, DesignersCollectionProvider())
             addProvider(map, ArtistsProvider())
             addProvider(map, ArtistsIdProvider())
             addProvider(map, ArtistsIdCollectionProvider())
+            addProvider(map, ArtistsCollectionProvider())
             addProvider(map, PublishersProvider())
             addProvider(map, PublishersIdProvider())
             addProvider(map, PublishersIdCollectionProvider())
+            addProvider(map, PublishersCollectionProvider())
             addProvider(map, MechanicsProvider())
             addProvider(map, MechanicsIdProvider())
             addProvider(map, MechanicsIdCollectionProvider())
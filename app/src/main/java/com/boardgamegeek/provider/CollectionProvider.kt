@@ -24,9 +24,6 @@ class CollectionProvider : BasicProvider() {
             .mapToTable(Collection.Columns.UPDATED, Tables.COLLECTION)
             .mapToTable(Collection.Columns.UPDATED_LIST, Tables.COLLECTION)
             .mapToTable(Collection.Columns.PRIVATE_INFO_QUANTITY, Tables.COLLECTION)
-            .map(
-                Plays.Columns.MAX_DATE,
-                "(SELECT MAX(${Plays.Columns.DATE}) FROM ${Tables.PLAYS} WHERE ${Tables.PLAYS}.${Plays.Columns.OBJECT_ID}=${Tables.GAMES}.${Games.Columns.GAME_ID})"
-            )
+            .map(Plays.Columns.MAX_DATE, "${Tables.GAMES}.${Games.Columns.LAST_PLAYED_DATE}")
     }
 }
@@ -0,0 +1,22 @@
+package com.boardgamegeek.provider
+
+import android.net.Uri
+import android.provider.BaseColumns
+import com.boardgamegeek.provider.BggContract.Companion.PATH_COLLECTION
+import com.boardgamegeek.provider.BggContract.Companion.PATH_PUBLISHERS
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggDatabase.Tables
+
+/**
+ * The collection linked to every publisher, one row per publisher and item.
+ */
+class PublishersCollectionProvider : BaseProvider() {
+    override val path = "$PATH_PUBLISHERS/$PATH_COLLECTION"
+
+    override fun buildSimpleSelection(uri: Uri): SelectionBuilder {
+        return SelectionBuilder()
+            .mapToTable(BaseColumns._ID, Tables.COLLECTION)
+            .mapToTable(Games.Columns.GAME_ID, Tables.GAMES)
+            .table(Tables.PUBLISHER_JOIN_GAMES_JOIN_COLLECTION)
+    }
+}
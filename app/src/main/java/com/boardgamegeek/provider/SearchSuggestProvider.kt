@@ -3,6 +3,7 @@ package com.boardgamegeek.provider
 import android.app.SearchManager
 import android.content.ContentResolver
 import android.database.Cursor
+import android.database.DatabaseUtils
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteQueryBuilder
 import android.net.Uri
@@ -10,6 +11,7 @@ import android.provider.BaseColumns
 import com.boardgamegeek.provider.BggContract.Collection
 import com.boardgamegeek.provider.BggContract.Games
 import com.boardgamegeek.provider.BggContract.Companion.PATH_THUMBNAILS
+import com.boardgamegeek.provider.BggDatabase.SearchSuggest
 import com.boardgamegeek.provider.BggDatabase.Tables
 import java.util.*
 
@@ -33,19 +35,35 @@ open class SearchSuggestProvider : BaseProvider() {
         selectionArgs: Array<String>?,
         sortOrder: String?
     ): Cursor? {
-        val searchTerm = uri.lastPathSegment?.lowercase(Locale.getDefault()).orEmpty()
+        val terms = uri.lastPathSegment.orEmpty().lowercase(Locale.getDefault()).split(NON_WORD_CHARACTERS).filter { it.isNotEmpty() }
         val limit = uri.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT)
+        var orderBy = getSortOrder(sortOrder)
         val qb = SQLiteQueryBuilder().apply {
             tables = Tables.COLLECTION_JOIN_GAMES
             projectionMap = suggestionProjectionMap
-            appendWhere("(${Collection.Columns.COLLECTION_NAME} like '$searchTerm%%' OR ${Collection.Columns.COLLECTION_NAME} like '%% $searchTerm%%')")
+            if (terms.isNotEmpty()) {
+                appendWhere(matches(terms.joinToString(" ") { "$it*" }))
+                // rank items whose name starts with the search, then those whose name contains it, then those whose
+                // game's name does, and finally those only matched by designer or publisher
+                orderBy = "CASE WHEN ${matches(terms.prefixQuery(SearchSuggest.COLLECTION_NAME, anchored = true))} THEN 0 " +
+                        "WHEN ${matches(terms.prefixQuery(SearchSuggest.COLLECTION_NAME))} THEN 1 " +
+                        "WHEN ${matches(terms.prefixQuery(SearchSuggest.GAME_NAME))} THEN 2 " +
+                        "ELSE 3 END, $orderBy"
+            }
         }
-        return qb.query(db, projection, selection, selectionArgs, GROUP_BY, null, getSortOrder(sortOrder), limit).apply {
+        return qb.query(db, projection, selection, selectionArgs, GROUP_BY, null, orderBy, limit).apply {
             setNotificationUri(resolver, uri)
         }
     }
 
+    private fun matches(query: String) =
+        "${Tables.COLLECTION}.${BaseColumns._ID} IN (SELECT docid FROM ${Tables.SEARCH_SUGGEST} WHERE ${Tables.SEARCH_SUGGEST} MATCH ${DatabaseUtils.sqlEscapeString(query)})"
+
+    private fun List<String>.prefixQuery(column: String, anchored: Boolean = false) =
+        mapIndexed { i, term -> if (anchored && i == 0) "$column:^$term*" else "$column:$term*" }.joinToString(" ")
+
     companion object {
+        private val NON_WORD_CHARACTERS = Regex("[^\\p{L}\\p{N}]+")
         private const val GROUP_BY = "${Collection.Columns.COLLECTION_NAME}, ${Collection.Columns.COLLECTION_YEAR_PUBLISHED}"
 
         @Suppress("SpellCheckingInspection")
@@ -33,6 +33,7 @@ class SelectionBuilder {
     private val selectionArgs = mutableListOf<String>()
     private val groupBy = mutableListOf<String>()
     private var limit: String? = null
+    private var offset: String? = null
 
     /**
      * Reset any internal state, allowing this builder to be recycled.
@@ -44,6 +45,7 @@ class SelectionBuilder {
         selectionArgs.clear()
         groupBy.clear()
         limit = null
+        offset = null
         return this
     }
 
@@ -88,6 +90,17 @@ class SelectionBuilder {
         return this
     }
 
+    /**
+     * Skips the first [rowCount] rows. Only applies when there's also a [limit].
+     */
+    fun offset(rowCount: String?): SelectionBuilder {
+        offset = null
+        rowCount?.let {
+            it.toIntOrNull()?.let { count -> if (count > 0) offset = it }
+        }
+        return this
+    }
+
     private fun assertTable() {
         checkNotNull(tableName) { "Table not specified" }
     }
@@ -161,7 +174,7 @@ class SelectionBuilder {
      * Execute query using the current internal state as `WHERE` clause.
      */
     fun query(db: SQLiteDatabase, columns: Array<String>?, orderBy: String?): Cursor {
-        return query(db, columns, getGroupByClause(), null, orderBy, limit)
+        return query(db, columns, getGroupByClause(), null, orderBy, limit?.let { count -> offset?.let { "$it,$count" } ?: count })
     }
 
     /**
@@ -72,10 +72,17 @@ class ArtistRepository(
     suspend fun calculateWhitmoreScores(artists: List<PersonEntity>, progress: MutableLiveData<Pair<Int, Int>>) = withContext(Dispatchers.Default) {
         val sortedList = artists.sortedBy { it.statsUpdatedTimestamp }
         val maxProgress = sortedList.size
+        val collections = dao.loadCollections()
+        val includeExpansions = prefs[PlayStats.LOG_PLAY_STATS_EXPANSIONS, false] ?: false
+        val includeAccessories = prefs[PlayStats.LOG_PLAY_STATS_ACCESSORIES, false] ?: false
+        val changedScores = mutableMapOf<Int, Int>()
         sortedList.forEachIndexed { i, data ->
             progress.postValue(i to maxProgress)
-            calculateStats(data.id, data.whitmoreScore)
+            val collection = collections[data.id].orEmpty()
+            val score = PersonStatsEntity.fromLinkedCollection(collection, includeExpansions, includeAccessories).whitmoreScore
+            if (score != data.whitmoreScore) changedScores[data.id] = score
         }
+        dao.updateWhitmoreScores(changedScores)
         prefs[PREFERENCES_KEY_STATS_CALCULATED_TIMESTAMP_ARTISTS] = System.currentTimeMillis()
         progress.postValue(0 to 0)
     }
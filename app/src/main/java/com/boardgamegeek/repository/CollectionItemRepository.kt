@@ -3,12 +3,14 @@ package com.boardgamegeek.repository
 import android.content.Context
 import android.content.SharedPreferences
 import com.boardgamegeek.db.CollectionDao
+import com.boardgamegeek.db.PageDirection
+import com.boardgamegeek.db.SortColumn
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.*
 import com.boardgamegeek.io.BggService
+import com.boardgamegeek.io.CollectionResponseParser
 import com.boardgamegeek.mappers.mapToEntities
 import com.boardgamegeek.pref.*
-import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.work.SyncCollectionWorker
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
@@ -24,6 +26,21 @@ class CollectionItemRepository(
 
     suspend fun load(): List<CollectionItemEntity> = dao.load()
 
+    suspend fun loadListItemsPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortColumns: List<SortColumn>,
+        key: CollectionDao.ListItemKey?,
+        direction: PageDirection,
+        pageSize: Int,
+    ) = dao.loadListItemsPage(selection, selectionArgs, sortColumns, key, direction, pageSize)
+
+    suspend fun countListItems(selection: String, selectionArgs: Array<String>) = dao.countListItems(selection, selectionArgs)
+
+    suspend fun loadRandomListItem(selection: String, selectionArgs: Array<String>) = dao.loadRandomListItem(selection, selectionArgs)
+
+    fun syncedStatusesSelection() = dao.syncedStatusesSelection()
+
     suspend fun resetCollectionItems() = withContext(Dispatchers.IO) {
         syncPrefs.clearCollection()
         SyncCollectionWorker.requestSync(context)
@@ -33,14 +50,14 @@ class CollectionItemRepository(
         var count = 0
         val username = prefs[AccountPreferences.KEY_USERNAME, ""]
         if (!username.isNullOrBlank()) {
-            val response = api.collection(username, options)
-            response.items?.forEach {
-                val (item, game) = it.mapToEntities()
-                if (isItemStatusSetToSync(item)) {
-                    val (collectionId, _) = dao.saveItem(item, game, updatedTimestamp)
-                    if (collectionId != BggContract.INVALID_ID) count++
-                } else {
-                    Timber.i("Skipped collection item '${item.gameName}' [ID=${item.gameId}, collection ID=${item.collectionId}] - collection status not synced")
+            api.collectionStream(username, options).use { body ->
+                CollectionResponseParser().parse(body.byteStream()) { chunk ->
+                    val items = chunk.map { it.mapToEntities() }.filter { (item, _) ->
+                        isItemStatusSetToSync(item).also {
+                            if (!it) Timber.i("Skipped collection item '${item.gameName}' [ID=${item.gameId}, collection ID=${item.collectionId}] - collection status not synced")
+                        }
+                    }
+                    count += dao.saveItems(items, updatedTimestamp)
                 }
             }
         }
@@ -52,7 +69,7 @@ class CollectionItemRepository(
     suspend fun deleteUnupdatedItems(timestamp: Long) = dao.deleteUnupdatedItems(timestamp)
 
     private fun isItemStatusSetToSync(item: CollectionItemEntity): Boolean {
-        val statusesToSync = prefs.getSyncStatusesOrDefault()
+        val statusesToSync = PreferenceSnapshot.of(context).syncStatuses
         if (item.own && COLLECTION_STATUS_OWN in statusesToSync) return true
         if (item.previouslyOwned && COLLECTION_STATUS_PREVIOUSLY_OWNED in statusesToSync) return true
         if (item.forTrade && COLLECTION_STATUS_FOR_TRADE in statusesToSync) return true
@@ -4,15 +4,19 @@ import android.content.Context
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.ForumEntity
 import com.boardgamegeek.entities.ForumThreadsEntity
+import com.boardgamegeek.entities.ThreadArticlesEntity
 import com.boardgamegeek.io.BggService
 import com.boardgamegeek.mappers.mapToEntity
 import com.boardgamegeek.util.ForumXmlApiMarkupConverter
+import com.boardgamegeek.util.ResponseCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
 
 class ForumRepository(
     context: Context,
     private val api: BggService,
+    private val cache: ResponseCache,
 ) {
     private val converter: ForumXmlApiMarkupConverter = ForumXmlApiMarkupConverter(context.getString(R.string.spoiler))
 
@@ -25,18 +29,30 @@ class ForumRepository(
     suspend fun loadForRegion(region: BggService.ForumRegion = BggService.ForumRegion.BOARDGAME): List<ForumEntity> =
         loadForums(BggService.ForumType.REGION, region.id)
 
-    private suspend fun loadForums(type: BggService.ForumType, id: Int): List<ForumEntity> = withContext(Dispatchers.IO) {
-        val response = api.forumList(type, id)
-        response.mapToEntity()
+    private suspend fun loadForums(type: BggService.ForumType, id: Int): List<ForumEntity> = cache.get(FORUMS, type, id) {
+        withContext(Dispatchers.IO) {
+            val response = api.forumList(type, id)
+            response.mapToEntity()
+        }
     }
 
-    suspend fun loadForum(forumId: Int, page: Int = 1): ForumThreadsEntity = withContext(Dispatchers.IO) {
-        val response = api.forum(forumId, page)
-        response.mapToEntity()
+    suspend fun loadForum(forumId: Int, page: Int = 1): ForumThreadsEntity = cache.get(FORUM, forumId, page) {
+        withContext(Dispatchers.IO) {
+            val response = api.forum(forumId, page)
+            response.mapToEntity()
+        }
     }
 
-    suspend fun loadThread(threadId: Int) = withContext(Dispatchers.IO) {
-        val response = api.thread(threadId)
-        response.mapToEntity(converter)
+    suspend fun loadThread(threadId: Int): ThreadArticlesEntity = cache.get(THREAD, threadId) {
+        withContext(Dispatchers.IO) {
+            val response = api.thread(threadId)
+            response.mapToEntity(converter)
+        }
+    }
+
+    companion object {
+        private val FORUMS = ResponseCache.endpoint<List<ForumEntity>>("forums", TimeUnit.DAYS.toMillis(1))
+        private val FORUM = ResponseCache.endpoint<ForumThreadsEntity>("forum", TimeUnit.MINUTES.toMillis(5))
+        private val THREAD = ResponseCache.endpoint<ThreadArticlesEntity>("thread", TimeUnit.MINUTES.toMillis(5))
     }
 }
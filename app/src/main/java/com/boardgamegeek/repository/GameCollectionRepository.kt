@@ -2,7 +2,6 @@ package com.boardgamegeek.repository
 
 import android.content.ContentValues
 import android.content.Context
-import android.content.SharedPreferences
 import androidx.core.content.contentValuesOf
 import androidx.work.*
 import com.boardgamegeek.R
@@ -14,6 +13,7 @@ import com.boardgamegeek.extensions.*
 import com.boardgamegeek.io.BggService
 import com.boardgamegeek.io.PhpApi
 import com.boardgamegeek.mappers.*
+import com.boardgamegeek.pref.PreferenceSnapshot
 import com.boardgamegeek.provider.BggContract.Collection
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
 import com.boardgamegeek.work.CollectionUploadWorker
@@ -32,7 +32,6 @@ class GameCollectionRepository(
     private val dao = CollectionDao(context)
     private val gameDao = GameDao(context)
     private val username: String? by lazy { context.preferences()[AccountPreferences.KEY_USERNAME, ""] }
-    private val prefs: SharedPreferences by lazy { context.preferences() }
 
     suspend fun loadCollectionItem(internalId: Long) = dao.load(internalId)
 
@@ -97,7 +96,7 @@ class GameCollectionRepository(
                 collectionIds += collectionId
             }
 
-            val statuses = prefs.getSyncStatusesOrDefault()
+            val statuses = PreferenceSnapshot.of(context).syncStatuses
             if ((response.items == null || response.items.isNotEmpty()) && statuses.contains(BggService.COLLECTION_QUERY_STATUS_PLAYED)) {
                 val playedOptions = mutableMapOf(
                     BggService.COLLECTION_QUERY_KEY_SHOW_PRIVATE to "1",
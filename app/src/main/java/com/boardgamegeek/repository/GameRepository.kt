@@ -8,6 +8,7 @@ import com.boardgamegeek.entities.GameCommentsEntity
 import com.boardgamegeek.entities.GameEntity
 import com.boardgamegeek.extensions.getImageId
 import com.boardgamegeek.io.BggService
+import com.boardgamegeek.io.ResponseSize
 import com.boardgamegeek.mappers.mapToEntity
 import com.boardgamegeek.mappers.mapToRatingEntities
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
@@ -33,21 +34,19 @@ class GameRepository @Inject constructor(
 
     suspend fun loadDeletableGames(hoursAgo: Long, includeUnplayedGames: Boolean) = dao.loadDeletableGames(hoursAgo, includeUnplayedGames)
 
-    suspend fun refreshGame(vararg gameId: Int): Int = withContext(Dispatchers.IO) {
+    suspend fun refreshGame(vararg gameId: Int, responseSize: ResponseSize? = null): Int = withContext(Dispatchers.IO) {
         val timestamp = System.currentTimeMillis()
-        val gameEntities = fetchGame(*gameId)
-        gameEntities.forEach { gameEntity ->
-            dao.save(gameEntity, timestamp)
-            Timber.d("Synced game ${gameEntity.name} [${gameEntity.id}]")
-        }
+        val gameEntities = fetchGame(*gameId, responseSize = responseSize)
+        dao.save(gameEntities, timestamp)
+        gameEntities.forEach { Timber.d("Synced game ${it.name} [${it.id}]") }
         gameEntities.size
     }
 
-    suspend fun fetchGame(vararg gameId: Int): List<GameEntity> = withContext(Dispatchers.IO) {
-        val response = if (gameId.size == 1) {
+    suspend fun fetchGame(vararg gameId: Int, responseSize: ResponseSize? = null): List<GameEntity> = withContext(Dispatchers.IO) {
+        val response = if (gameId.size == 1 && responseSize == null) {
             api.thing(gameId.first(), 1)
         } else {
-            api.things(gameId.joinToString(), 1)
+            api.things(gameId.joinToString(), 1, responseSize)
         }
         response.games.map { it.mapToEntity() }
     }
@@ -98,10 +97,13 @@ class GameRepository @Inject constructor(
     /**
      * Returns a map of all game IDs with player colors.
      */
-    suspend fun getPlayColors() = dao.loadPlayColors().groupBy({ it.first }, { it.second })
-
     suspend fun getPlayColors(gameId: Int) = dao.loadPlayColors(gameId)
 
+    suspend fun streamPlayColors(
+        onProgress: (current: Int, max: Int) -> Unit = { _, _ -> },
+        action: suspend (gameId: Int, colors: List<String>) -> Unit,
+    ) = dao.streamPlayColors(onProgress, action)
+
     suspend fun addPlayColor(gameId: Int, color: String?) {
         if (gameId != INVALID_ID && !color.isNullOrBlank()) {
             dao.insertColor(gameId, color)
@@ -148,6 +150,8 @@ class GameRepository @Inject constructor(
 
     suspend fun updateColors(gameId: Int, colors: List<String>) = dao.updateColors(gameId, colors)
 
+    suspend fun updateColors(colorsByGame: Map<Int, List<String>>) = dao.updateColors(colorsByGame)
+
     suspend fun updateFavorite(gameId: Int, isFavorite: Boolean) {
         if (gameId != INVALID_ID) {
             dao.update(gameId, contentValuesOf(Games.Columns.STARRED to if (isFavorite) 1 else 0))
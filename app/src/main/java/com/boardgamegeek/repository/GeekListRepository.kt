@@ -1,23 +1,36 @@
 package com.boardgamegeek.repository
 
+import com.boardgamegeek.entities.GeekListEntity
 import com.boardgamegeek.io.BggAjaxApi
 import com.boardgamegeek.io.BggService
 import com.boardgamegeek.io.model.GeekListsResponse
 import com.boardgamegeek.mappers.mapToEntity
+import com.boardgamegeek.util.ResponseCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
 
 class GeekListRepository(
     private val api: BggService,
     private val ajaxApi: BggAjaxApi,
+    private val cache: ResponseCache,
 ) {
-    suspend fun getGeekLists(sort: BggAjaxApi.GeekListSort?, page: Int) = withContext(Dispatchers.IO) {
-        val response = ajaxApi.geekLists(sort, GeekListsResponse.PAGE_SIZE, page)
-        response.mapToEntity()
+    suspend fun getGeekLists(sort: BggAjaxApi.GeekListSort?, page: Int) = cache.get(GEEK_LISTS, sort, page) {
+        withContext(Dispatchers.IO) {
+            val response = ajaxApi.geekLists(sort, GeekListsResponse.PAGE_SIZE, page)
+            response.mapToEntity()
+        }
     }
 
-    suspend fun getGeekList(geekListId: Int) = withContext(Dispatchers.IO) {
-        val response = api.geekList(geekListId, 1)
-        response.mapToEntity()
+    suspend fun getGeekList(geekListId: Int) = cache.get(GEEK_LIST, geekListId) {
+        withContext(Dispatchers.IO) {
+            val response = api.geekList(geekListId, 1)
+            response.mapToEntity()
+        }
+    }
+
+    companion object {
+        private val GEEK_LISTS = ResponseCache.endpoint<List<GeekListEntity>>("geeklists", TimeUnit.MINUTES.toMillis(15))
+        private val GEEK_LIST = ResponseCache.endpoint<GeekListEntity>("geeklist", TimeUnit.HOURS.toMillis(1))
     }
 }
@@ -3,12 +3,23 @@ package com.boardgamegeek.repository
 import com.boardgamegeek.entities.HotGameEntity
 import com.boardgamegeek.io.BggService
 import com.boardgamegeek.mappers.mapToEntity
+import com.boardgamegeek.util.ResponseCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
 
-class HotnessRepository(private val api: BggService) {
-    suspend fun getHotness(): List<HotGameEntity> = withContext(Dispatchers.IO) {
-        val response = api.getHotness(BggService.HotnessType.BOARDGAME)
-        response.mapToEntity()
+class HotnessRepository(
+    private val api: BggService,
+    private val cache: ResponseCache,
+) {
+    suspend fun getHotness(): List<HotGameEntity> = cache.get(HOTNESS) {
+        withContext(Dispatchers.IO) {
+            val response = api.getHotness(BggService.HotnessType.BOARDGAME)
+            response.mapToEntity()
+        }
+    }
+
+    companion object {
+        private val HOTNESS = ResponseCache.endpoint<List<HotGameEntity>>("hotness", TimeUnit.HOURS.toMillis(1))
     }
 }
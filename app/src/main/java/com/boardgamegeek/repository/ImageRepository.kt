@@ -10,6 +10,7 @@ import com.boardgamegeek.io.GeekdoApi
 import com.boardgamegeek.provider.BggContract.Companion.PATH_THUMBNAILS
 import com.boardgamegeek.util.FileUtils
 import com.boardgamegeek.util.RemoteConfig
+import com.boardgamegeek.util.ThumbnailStore
 import com.squareup.picasso.Picasso
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
@@ -22,28 +23,32 @@ import java.io.IOException
 class ImageRepository(
     val context: Context,
     private val geekdoApi: GeekdoApi,
+    private val thumbnailStore: ThumbnailStore,
 ) {
     private val imageDao = ImageDao(context)
 
-    /** Get a bitmap for the given URL, either from disk or from the network. */
+    /**
+     * Get a bitmap for the given URL, either from disk, the thumbnail store, or the network. The bitmap is saved under
+     * the URL's file name, where the thumbnail providers serve it from (e.g. for search suggestion icons).
+     */
     @WorkerThread
     fun fetchThumbnail(thumbnailUrl: String?): Bitmap? {
         if (thumbnailUrl == null) return null
         if (thumbnailUrl.isBlank()) return null
         val file = getThumbnailFile(context, thumbnailUrl)
-        val bitmap: Bitmap? = if (file?.exists() == true) {
-            BitmapFactory.decodeFile(file.absolutePath)
-        } else {
-            try {
-                Picasso.with(context)
-                    .load(thumbnailUrl)
-                    .resizeDimen(R.dimen.shortcut_icon_size, R.dimen.shortcut_icon_size)
-                    .centerCrop()
-                    .get()
-            } catch (e: IOException) {
-                Timber.e(e, "Error downloading the thumbnail.")
-                null
-            }
+        if (file?.exists() == true) {
+            BitmapFactory.decodeFile(file.absolutePath)?.let { return it }
+        }
+        if (thumbnailStore.fetch(thumbnailUrl) != null) thumbnailStore.flush()
+        val bitmap = try {
+            Picasso.with(context)
+                .load(thumbnailUrl)
+                .resizeDimen(R.dimen.shortcut_icon_size, R.dimen.shortcut_icon_size)
+                .centerCrop()
+                .get()
+        } catch (e: IOException) {
+            Timber.e(e, "Error downloading the thumbnail.")
+            null
         }
         if (bitmap != null && file != null) {
             try {
@@ -57,6 +62,19 @@ class ImageRepository(
         return bitmap
     }
 
+    suspend fun loadThumbnailUrls() = imageDao.loadThumbnailUrls()
+
+    /**
+     * Downloads the thumbnail into the offline store, unless it's already there. Returns false if it couldn't be stored.
+     */
+    @WorkerThread
+    fun storeThumbnail(thumbnailUrl: String) = thumbnailStore.fetch(thumbnailUrl) != null
+
+    val isThumbnailStoreFull: Boolean
+        get() = thumbnailStore.isFull
+
+    fun flushThumbnailStore() = thumbnailStore.flush()
+
     enum class ImageType {
         THUMBNAIL,
         HERO,
@@ -92,18 +110,15 @@ class ImageRepository(
         } else emptyMap()
     }
 
+    private fun getThumbnailFile(context: Context, url: String): File? {
+        val filename = FileUtils.getFileNameFromUrl(url)
+        if (filename.isBlank()) return null
+        return FileUtils.generateContentPath(context, PATH_THUMBNAILS)?.let { File(it, filename) }
+    }
+
     suspend fun delete() {
+        withContext(Dispatchers.IO) { thumbnailStore.clear() }
         imageDao.deleteThumbnails()
         imageDao.deleteAvatars()
     }
-
-    private fun getThumbnailFile(context: Context, url: String): File? {
-        if (url.isNotBlank()) {
-            val filename = FileUtils.getFileNameFromUrl(url)
-            return if (filename.isNotBlank())
-                File(FileUtils.generateContentPath(context, PATH_THUMBNAILS), filename)
-            else null
-        }
-        return null
-    }
 }
@@ -5,6 +5,8 @@ import android.content.ContentProviderOperation
 import android.content.Context
 import android.content.Intent
 import android.content.SharedPreferences
+import android.database.ContentObserver
+import android.net.Uri
 import android.os.Build
 import androidx.annotation.StringRes
 import androidx.core.content.contentValuesOf
@@ -13,6 +15,7 @@ import com.boardgamegeek.R
 import com.boardgamegeek.auth.Authenticator
 import com.boardgamegeek.db.CollectionDao
 import com.boardgamegeek.db.GameDao
+import com.boardgamegeek.db.PageDirection
 import com.boardgamegeek.db.PlayDao
 import com.boardgamegeek.entities.*
 import com.boardgamegeek.extensions.*
@@ -25,11 +28,16 @@ import com.boardgamegeek.pref.SyncPrefs
 import com.boardgamegeek.pref.SyncPrefs.Companion.TIMESTAMP_PLAYS_NEWEST_DATE
 import com.boardgamegeek.pref.SyncPrefs.Companion.TIMESTAMP_PLAYS_OLDEST_DATE
 import com.boardgamegeek.pref.clearPlaysTimestamps
+import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.provider.BggContract.*
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
 import com.boardgamegeek.ui.PlayStatsActivity
 import com.boardgamegeek.work.*
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.conflate
 import kotlinx.coroutines.withContext
 import timber.log.Timber
 import java.util.concurrent.TimeUnit
@@ -46,6 +54,31 @@ class PlayRepository(
     private val prefs: SharedPreferences by lazy { context.preferences() }
     private val syncPrefs: SharedPreferences by lazy { SyncPrefs.getPrefs(context.applicationContext) }
 
+    private data class StatsKey(
+        val includeIncompletePlays: Boolean,
+        val includeExpansions: Boolean,
+        val includeAccessories: Boolean,
+        val isPlayedSynced: Boolean,
+        val isOwnedSynced: Boolean,
+    )
+
+    private val statsCache = mutableMapOf<StatsKey, List<GameForPlayStatEntity>>()
+    private var statsGeneration = 0
+
+    init {
+        val observer = object : ContentObserver(null) {
+            override fun onChange(selfChange: Boolean) {
+                synchronized(statsCache) {
+                    statsGeneration++
+                    statsCache.clear()
+                }
+            }
+        }
+        listOf(Plays.CONTENT_URI, Games.CONTENT_URI, BggContract.Collection.CONTENT_URI).forEach {
+            context.contentResolver.registerContentObserver(it, true, observer)
+        }
+    }
+
     enum class SortBy(val daoSortBy: PlayDao.PlaysSortBy) {
         DATE(PlayDao.PlaysSortBy.DATE),
         LOCATION(PlayDao.PlaysSortBy.LOCATION),
@@ -178,6 +211,39 @@ class PlayRepository(
 
     suspend fun loadPlaysByPlayer(name: String, gameId: Int, isUser: Boolean) = playDao.loadPlaysByPlayerAndGame(name, gameId, isUser)
 
+    fun createPlaysQuery(sortBy: SortBy = SortBy.DATE) = playDao.createPlaysQuery(sortBy.daoSortBy)
+
+    fun createPendingPlaysQuery() = playDao.createPendingPlaysQuery()
+
+    fun createDraftPlaysQuery() = playDao.createDraftPlaysQuery()
+
+    fun createGamePlaysQuery(gameId: Int) = playDao.createGamePlaysQuery(gameId)
+
+    fun createLocationPlaysQuery(location: String) = playDao.createLocationPlaysQuery(location)
+
+    fun createUsernamePlaysQuery(username: String) = playDao.createUsernamePlaysQuery(username)
+
+    fun createPlayerNamePlaysQuery(playerName: String) = playDao.createPlayerNamePlaysQuery(playerName)
+
+    suspend fun loadPlaysPage(query: PlayDao.PlaysQuery, key: PlayDao.PlaysPageKey?, direction: PageDirection, pageSize: Int) =
+        playDao.loadPlaysPage(query, key, direction, pageSize)
+
+    suspend fun sumPlayQuantity(query: PlayDao.PlaysQuery) = playDao.sumQuantity(query)
+
+    /**
+     * Emits once when collected, then again whenever plays change.
+     */
+    fun observePlayChanges(): Flow<Unit> = callbackFlow {
+        val observer = object : ContentObserver(null) {
+            override fun onChange(selfChange: Boolean) {
+                trySend(Unit)
+            }
+        }
+        trySend(Unit)
+        context.contentResolver.registerContentObserver(Plays.CONTENT_URI, true, observer)
+        awaitClose { context.contentResolver.unregisterContentObserver(observer) }
+    }.conflate()
+
     suspend fun refreshPlays() = withContext(Dispatchers.IO) {
         val syncInitiatedTimestamp = System.currentTimeMillis()
         val username = prefs[AccountPreferences.KEY_USERNAME, ""]
@@ -283,12 +349,36 @@ class PlayRepository(
         }
     }
 
+    /**
+     * Loads the play count of each played game, along with its ownership and rank. Results are cached until plays,
+     * games, or the collection change.
+     */
     suspend fun loadForStats(
         includeIncompletePlays: Boolean,
         includeExpansions: Boolean,
         includeAccessories: Boolean
     ): List<GameForPlayStatEntity> = withContext(Dispatchers.IO) {
-        val games = if (!syncPrefs.isStatusSetToSync(COLLECTION_STATUS_PLAYED)) {
+        val key = StatsKey(
+            includeIncompletePlays,
+            includeExpansions,
+            includeAccessories,
+            syncPrefs.isStatusSetToSync(COLLECTION_STATUS_PLAYED),
+            syncPrefs.isStatusSetToSync(COLLECTION_STATUS_OWN),
+        )
+        val generation = synchronized(statsCache) {
+            statsCache[key]?.let { return@withContext it }
+            statsGeneration
+        }
+        loadForStats(key).also {
+            synchronized(statsCache) {
+                if (statsGeneration == generation) statsCache[key] = it
+            }
+        }
+    }
+
+    private suspend fun loadForStats(key: StatsKey): List<GameForPlayStatEntity> {
+        val (includeIncompletePlays, includeExpansions, includeAccessories, isPlayedSynced, isOwnedSynced) = key
+        val games = if (!isPlayedSynced) {
             // If played games aren't synced, count the plays instead
             // We can't respect the expansion/accessory flags, so we include them all
             val allPlays = playDao.loadPlays()
@@ -304,16 +394,14 @@ class PlayRepository(
                 )
             }
         } else gameDao.loadGamesForPlayStats(includeIncompletePlays, includeExpansions, includeAccessories).filter { it.playCount > 0 }
-        if (syncPrefs.isStatusSetToSync(COLLECTION_STATUS_OWN)) {
-            val items = collectionDao.load()
+        return if (isOwnedSynced) {
+            val ownedGameRanks = collectionDao.loadOwnedGameRanks()
             games.map {
-                val isOwned = items.any { item -> item.gameId == it.id && item.own }
-                if (it.bggRank == GameRankEntity.RANK_UNKNOWN) {
-                    items.find { item -> item.gameId == it.id && item.own }?.let { item ->
-                        it.copy(isOwned = isOwned, bggRank = item.rank)
-                    } ?: it
-                } else {
-                    it.copy(isOwned = isOwned)
+                val rank = ownedGameRanks[it.id]
+                when {
+                    rank == null -> it.copy(isOwned = false)
+                    it.bggRank == GameRankEntity.RANK_UNKNOWN -> it.copy(isOwned = true, bggRank = rank)
+                    else -> it.copy(isOwned = true)
                 }
             }
         } else games
@@ -373,7 +461,6 @@ class PlayRepository(
         return try {
             val result = upsertPlay(playEntity)
             if (result.isSuccess) {
-                updateGamePlayCount(playEntity.gameId)
                 calculatePlayStats()
             }
             result
@@ -410,8 +497,8 @@ class PlayRepository(
         var unchangedCount = 0
         var dirtyCount = 0
         var errorCount = 0
-        plays.forEach { play ->
-            when (playDao.save(play, startTime)) {
+        playDao.saveFromSync(plays, startTime).forEach {
+            when (it) {
                 PlayDao.SaveStatus.UPDATED -> updateCount++
                 PlayDao.SaveStatus.INSERTED -> insertCount++
                 PlayDao.SaveStatus.DIRTY -> dirtyCount++
@@ -476,72 +563,19 @@ class PlayRepository(
         )
     }
 
-    suspend fun updateGamePlayCount(gameId: Int) = withContext(Dispatchers.Default) {
-        val allPlays = playDao.loadPlaysByGame(gameId)
-        val playCount = allPlays
-            .filter { it.deleteTimestamp == 0L }
-            .sumOf { it.quantity }
-        gameDao.update(gameId, contentValuesOf(Games.Columns.NUM_PLAYS to playCount))
-    }
+    suspend fun verifyGamePlayStats(gameIds: Set<Int>) = gameDao.verifyPlayStats(gameIds)
 
     suspend fun loadPlayersByLocation(location: String = "") = withContext(Dispatchers.IO) {
         playDao.loadPlayersByLocation(location)
     }
 
     suspend fun updatePlaysWithNickName(username: String, nickName: String): Collection<Long> = withContext(Dispatchers.IO) {
-        val internalIds = mutableListOf<Long>()
-        val plays = playDao.loadPlaysByUsername(username, true)
-        plays.forEach { play ->
-            play.players.find { it.username == username && it.name != nickName }?.let { player ->
-                val batch = arrayListOf<ContentProviderOperation>()
-                if (play.updateTimestamp == 0L && play.dirtyTimestamp == 0L) {
-                    batch += ContentProviderOperation
-                        .newUpdate(Plays.buildPlayUri(play.internalId))
-                        .withValue(Plays.Columns.UPDATE_TIMESTAMP, System.currentTimeMillis())
-                        .build()
-                }
-                batch += ContentProviderOperation
-                    .newUpdate(Plays.buildPlayerUri(play.internalId, player.internalId))
-                    .withValue(PlayPlayers.Columns.NAME, nickName)
-                    .build()
-                context.contentResolver.applyBatch(batch)
-                if (play.dirtyTimestamp == 0L) internalIds += play.internalId
-            }
-        }
-        internalIds
+        playDao.updateNickName(username, nickName)
     }
 
     suspend fun renamePlayer(oldName: String, newName: String): Collection<Long> = withContext(Dispatchers.IO) {
-        val internalIds = mutableListOf<Long>()
-        val plays = playDao.loadPlaysByPlayerName(oldName, true)
-        plays.forEach { play ->
-            play.players.find { it.username.isBlank() && it.name == oldName }?.let { player ->
-                val batch = arrayListOf<ContentProviderOperation>()
-                if (play.updateTimestamp == 0L && play.dirtyTimestamp == 0L) {
-                    batch += ContentProviderOperation
-                        .newUpdate(Plays.buildPlayUri(play.internalId))
-                        .withValue(Plays.Columns.UPDATE_TIMESTAMP, System.currentTimeMillis())
-                        .build()
-                }
-                batch += ContentProviderOperation
-                    .newUpdate(Plays.buildPlayerUri(play.internalId, player.internalId))
-                    .withValue(PlayPlayers.Columns.NAME, newName)
-                    .build()
-                context.contentResolver.applyBatch(batch)
-                if (play.dirtyTimestamp == 0L) internalIds += play.internalId
-            }
-            val batch = arrayListOf<ContentProviderOperation>()
-            val colors = playDao.loadColors(PlayerColors.buildPlayerUri(oldName))
-            colors.forEach {
-                batch += ContentProviderOperation
-                    .newInsert(PlayerColors.buildPlayerUri(newName))
-                    .withValue(PlayerColors.Columns.PLAYER_COLOR, it.description)
-                    .withValue(PlayerColors.Columns.PLAYER_COLOR_SORT_ORDER, it.sortOrder)
-                    .build()
-            }
-            batch += ContentProviderOperation.newDelete(PlayerColors.buildPlayerUri(oldName)).build()
-            context.contentResolver.applyBatch(batch)
-        }
+        val internalIds = playDao.renamePlayer(oldName, newName)
+        movePlayerColors(oldName, PlayerColors.buildPlayerUri(newName))
         internalIds
     }
 
@@ -549,58 +583,27 @@ class PlayRepository(
         oldLocationName: String,
         newLocationName: String,
     ): List<Long> = withContext(Dispatchers.IO) {
-        val internalIds = mutableListOf<Long>()
-
-        val plays = playDao.loadPlaysByLocation(oldLocationName)
-        plays.forEach { play ->
-            if (play.dirtyTimestamp > 0) {
-                playDao.update(play.internalId, contentValuesOf(Plays.Columns.LOCATION to newLocationName))
-            } else if (play.updateTimestamp > 0) {
-                if (playDao.update(play.internalId, contentValuesOf(Plays.Columns.LOCATION to newLocationName)))
-                    internalIds += play.internalId
-            } else {
-                val values = contentValuesOf(Plays.Columns.LOCATION to newLocationName, Plays.Columns.UPDATE_TIMESTAMP to System.currentTimeMillis())
-                if (playDao.update(play.internalId, values))
-                    internalIds += play.internalId
-            }
-        }
-
-        internalIds
+        playDao.renameLocation(oldLocationName, newLocationName)
     }
 
     suspend fun addUsernameToPlayer(playerName: String, username: String): Collection<Long> = withContext(Dispatchers.IO) {
-        val internalIds = mutableListOf<Long>()
-        val plays = playDao.loadPlaysByPlayerName(playerName, true)
-        plays.forEach { play ->
-            play.players.find { it.username.isBlank() && it.name == playerName }?.let { player ->
-                val batch = arrayListOf<ContentProviderOperation>()
-                if (play.updateTimestamp == 0L && play.dirtyTimestamp == 0L) {
-                    batch += ContentProviderOperation
-                        .newUpdate(Plays.buildPlayUri(play.internalId))
-                        .withValue(Plays.Columns.UPDATE_TIMESTAMP, System.currentTimeMillis())
-                        .build()
-                }
-                batch += ContentProviderOperation
-                    .newUpdate(Plays.buildPlayerUri(play.internalId, player.internalId))
-                    .withValue(PlayPlayers.Columns.USER_NAME, username)
-                    .build()
-                context.contentResolver.applyBatch(batch)
-                if (play.dirtyTimestamp == 0L) internalIds += play.internalId
-            }
+        val internalIds = playDao.addUsernameToPlayer(playerName, username)
+        movePlayerColors(playerName, PlayerColors.buildUserUri(username))
+        internalIds
+    }
 
-            val batch = arrayListOf<ContentProviderOperation>()
-            val colors = playDao.loadColors(PlayerColors.buildPlayerUri(playerName))
-            colors.forEach {
-                batch += ContentProviderOperation
-                    .newInsert(PlayerColors.buildUserUri(username))
-                    .withValue(PlayerColors.Columns.PLAYER_COLOR, it.description)
-                    .withValue(PlayerColors.Columns.PLAYER_COLOR_SORT_ORDER, it.sortOrder)
-                    .build()
-            }
-            batch += ContentProviderOperation.newDelete(PlayerColors.buildPlayerUri(playerName)).build()
-            context.contentResolver.applyBatch(batch)
+    private suspend fun movePlayerColors(playerName: String, uri: Uri) {
+        val batch = arrayListOf<ContentProviderOperation>()
+        val colors = playDao.loadColors(PlayerColors.buildPlayerUri(playerName))
+        colors.forEach {
+            batch += ContentProviderOperation
+                .newInsert(uri)
+                .withValue(PlayerColors.Columns.PLAYER_COLOR, it.description)
+                .withValue(PlayerColors.Columns.PLAYER_COLOR_SORT_ORDER, it.sortOrder)
+                .build()
         }
-        internalIds
+        batch += ContentProviderOperation.newDelete(PlayerColors.buildPlayerUri(playerName)).build()
+        context.contentResolver.applyBatch(batch)
     }
 
     suspend fun save(play: PlayEntity): Long {
@@ -623,10 +626,10 @@ class PlayRepository(
     }
 
     suspend fun resetPlays() {
-        // resets the sync timestamps, removes the plays' hashcode, and request a sync
+        // resets the sync timestamps, removes the plays' fingerprint, and request a sync
         syncPrefs.clearPlaysTimestamps()
         val count = playDao.updateAllPlays(contentValuesOf(Plays.Columns.SYNC_HASH_CODE to 0))
-        Timber.i("Cleared the hashcode from %,d plays.", count)
+        Timber.i("Cleared the fingerprint from %,d plays.", count)
         SyncPlaysWorker.requestSync(context)
     }
 
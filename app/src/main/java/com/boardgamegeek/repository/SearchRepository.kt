@@ -3,12 +3,23 @@ package com.boardgamegeek.repository
 import com.boardgamegeek.entities.SearchResultEntity
 import com.boardgamegeek.io.BggService
 import com.boardgamegeek.mappers.mapToEntity
+import com.boardgamegeek.util.ResponseCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
 
-class SearchRepository(private val api: BggService) {
-    suspend fun search(query: String, exact: Boolean): List<SearchResultEntity> = withContext(Dispatchers.IO) {
-        val response = api.search(query, BggService.SearchType.BOARDGAME, if (exact) 1 else 0)
-        response.mapToEntity()
+class SearchRepository(
+    private val api: BggService,
+    private val cache: ResponseCache,
+) {
+    suspend fun search(query: String, exact: Boolean): List<SearchResultEntity> = cache.get(SEARCH, query, exact) {
+        withContext(Dispatchers.IO) {
+            val response = api.search(query, BggService.SearchType.BOARDGAME, if (exact) 1 else 0)
+            response.mapToEntity()
+        }
+    }
+
+    companion object {
+        private val SEARCH = ResponseCache.endpoint<List<SearchResultEntity>>("search", TimeUnit.DAYS.toMillis(1))
     }
 }
@@ -2,13 +2,17 @@ package com.boardgamegeek.repository
 
 import com.boardgamegeek.entities.TopGameEntity
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
+import com.boardgamegeek.util.ResponseCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import org.jsoup.Jsoup
+import java.util.concurrent.TimeUnit
+
+class TopGameRepository(private val cache: ResponseCache) {
+    suspend fun findTopGames(): List<TopGameEntity> = cache.get(TOP_GAMES) { scrapeTopGames() }
 
-class TopGameRepository {
     @Suppress("BlockingMethodInNonBlockingContext")
-    suspend fun findTopGames(): List<TopGameEntity> = withContext(Dispatchers.IO) {
+    private suspend fun scrapeTopGames(): List<TopGameEntity> = withContext(Dispatchers.IO) {
         var rank = 1
         val doc = Jsoup
             .connect("https://www.boardgamegeek.com/browse/boardgame")
@@ -36,4 +40,8 @@ class TopGameRepository {
             )
         }
     }
+
+    companion object {
+        private val TOP_GAMES = ResponseCache.endpoint<List<TopGameEntity>>("top_games", TimeUnit.DAYS.toMillis(1))
+    }
 }
@@ -41,6 +41,15 @@ class UserRepository(
         userDao.saveUser(user)
     }
 
+    /**
+     * Downloads the user without saving it, so several can be saved at once with [saveUsers].
+     */
+    suspend fun fetch(username: String): UserEntity = withContext(Dispatchers.IO) {
+        api.user(username).mapToEntity()
+    }
+
+    suspend fun saveUsers(users: List<UserEntity>, timestamp: Long = System.currentTimeMillis()): Int = userDao.saveUsers(users, timestamp)
+
     suspend fun refreshCollection(username: String, status: String): List<CollectionItemEntity> =
         withContext(Dispatchers.IO) {
             val items = mutableListOf<CollectionItemEntity>()
@@ -124,4 +133,11 @@ class UserRepository(
     }
 
     suspend fun updateColors(username: String, colors: List<Pair<Int, String>>) = userDao.updateColors(username, colors)
+
+    suspend fun updateColors(colorsByUser: Map<String, List<Pair<Int, String>>>) = userDao.updateColors(colorsByUser)
+
+    suspend fun streamColors(
+        onProgress: (current: Int, max: Int) -> Unit = { _, _ -> },
+        action: suspend (username: String, colors: List<Pair<Int, String>>) -> Unit,
+    ) = userDao.streamColors(onProgress, action)
 }
@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Collection
 
 class AcquisitionDateSorter(context: Context) : CollectionDateSorter(context) {
     override val ascendingSortTypeResId: Int
@@ -18,6 +19,8 @@ class AcquisitionDateSorter(context: Context) : CollectionDateSorter(context) {
         @StringRes
         get() = R.string.collection_sort_acquisition_date
 
+    override val sortColumns = listOf("IFNULL(${Collection.Columns.PRIVATE_INFO_ACQUISITION_DATE},'')")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.acquisitionDate }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.acquisitionDate }
@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 import java.text.DecimalFormat
 
 class AverageWeightSorter(context: Context) : CollectionSorter(context) {
@@ -21,6 +22,8 @@ class AverageWeightSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_average_weight
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.STATS_AVERAGE_WEIGHT},0.0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.averageWeight }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.averageWeight }
@@ -6,6 +6,7 @@ import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.asBoundedRating
 import com.boardgamegeek.extensions.firstChar
+import com.boardgamegeek.provider.BggContract.Collection
 import java.text.DecimalFormat
 
 class CollectionNameSorter(context: Context) : CollectionSorter(context) {
@@ -23,11 +24,14 @@ class CollectionNameSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_collection_name
 
+    override val sortColumns = listOf("IFNULL(${Collection.Columns.COLLECTION_SORT_NAME},'') COLLATE NOCASE")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>): List<CollectionItemEntity> {
-        return items.sortedBy { it.sortName } // Needs to be case insensitive?
+        return items.sortedWith(compareBy(String.CASE_INSENSITIVE_ORDER) { it.sortName })
     }
 
-    override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.sortName }
+    override fun sortDescending(items: Iterable<CollectionItemEntity>) =
+        items.sortedWith(compareByDescending(String.CASE_INSENSITIVE_ORDER) { it.sortName })
 
     override fun getHeaderText(item: CollectionItemEntity) = item.sortName.firstChar()
 
@@ -31,6 +31,13 @@ abstract class CollectionSorter(protected val context: Context) {
 
     fun sort(items: Iterable<CollectionItemEntity>, direction: Boolean) = if (direction) sortDescending(items) else sortAscending(items)
 
+    /**
+     * The SQL expressions [sortAscending] orders by, defaulting nulls the way the items are loaded. Empty if the sort can
+     * only be applied to loaded items. Ties are broken by the default sort, which is the order the items are loaded (and
+     * stably sorted) in.
+     */
+    open val sortColumns: List<String> = emptyList()
+
     open fun getHeaderText(item: CollectionItemEntity): String = ""
 
     /**
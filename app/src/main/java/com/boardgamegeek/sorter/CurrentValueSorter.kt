@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Collection
 
 class CurrentValueSorter(context: Context) : MoneySorter(context) {
     override val ascendingSortTypeResId: Int
@@ -18,6 +19,11 @@ class CurrentValueSorter(context: Context) : MoneySorter(context) {
         @StringRes
         get() = R.string.collection_sort_current_value
 
+    override val sortColumns = listOf(
+        "IFNULL(${Collection.Columns.PRIVATE_INFO_CURRENT_VALUE_CURRENCY},'')",
+        "IFNULL(${Collection.Columns.PRIVATE_INFO_CURRENT_VALUE},0.0)",
+    )
+
     override fun amount(item: CollectionItemEntity) = item.currentValue
 
     override fun currency(item: CollectionItemEntity) = item.currentValueCurrency
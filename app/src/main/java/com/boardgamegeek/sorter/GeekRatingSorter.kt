@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 import java.text.DecimalFormat
 
 class GeekRatingSorter(context: Context) : RatingSorter(context) {
@@ -19,6 +20,8 @@ class GeekRatingSorter(context: Context) : RatingSorter(context) {
         @StringRes
         get() = R.string.collection_sort_geek_rating
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.STATS_BAYES_AVERAGE},0.0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.geekRating }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.geekRating }
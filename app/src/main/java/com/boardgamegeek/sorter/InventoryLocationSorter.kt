@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Collection
 
 class InventoryLocationSorter(context: Context) : CollectionSorter(context) {
     private val nowhere = context.getString(R.string.nowhere_in_angle_brackets)
@@ -20,6 +21,8 @@ class InventoryLocationSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_inventory_location
 
+    override val sortColumns = listOf("IFNULL(${Collection.Columns.PRIVATE_INFO_INVENTORY_LOCATION},'')")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.inventoryLocation }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.inventoryLocation }
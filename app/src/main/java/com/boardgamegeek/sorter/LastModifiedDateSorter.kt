@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Collection
 
 class LastModifiedDateSorter(context: Context) : CollectionDateSorter(context) {
     override val ascendingSortTypeResId: Int
@@ -18,6 +19,8 @@ class LastModifiedDateSorter(context: Context) : CollectionDateSorter(context) {
         @StringRes
         get() = R.string.collection_sort_last_modified
 
+    override val sortColumns = listOf("IFNULL(${Collection.Columns.LAST_MODIFIED},0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.lastModifiedDate }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.lastModifiedDate }
@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 
 class LastPlayDateSorter(context: Context) : CollectionDateSorter(context) {
     override val ascendingSortTypeResId: Int
@@ -22,6 +23,8 @@ class LastPlayDateSorter(context: Context) : CollectionDateSorter(context) {
 
     override fun getTimestamp(item: CollectionItemEntity) = item.lastPlayDate
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.LAST_PLAYED_DATE},'')")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.lastPlayDate }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.lastPlayDate }
@@ -5,6 +5,7 @@ import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.asPastDaySpan
+import com.boardgamegeek.provider.BggContract.Games
 
 class LastViewedSorter(context: Context) : CollectionSorter(context) {
     override val ascendingSortTypeResId: Int
@@ -19,6 +20,8 @@ class LastViewedSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_last_viewed
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.LAST_VIEWED},0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.lastViewedDate }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.lastViewedDate }
@@ -5,6 +5,7 @@ import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.asPersonalRating
+import com.boardgamegeek.provider.BggContract.Collection
 import java.text.DecimalFormat
 
 class MyRatingSorter(context: Context) : RatingSorter(context) {
@@ -20,6 +21,8 @@ class MyRatingSorter(context: Context) : RatingSorter(context) {
         @StringRes
         get() = R.string.collection_sort_my_rating
 
+    override val sortColumns = listOf("IFNULL(${Collection.Columns.RATING},0.0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.rating }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.rating }
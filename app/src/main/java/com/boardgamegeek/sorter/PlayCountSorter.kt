@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 import java.text.NumberFormat
 
 class PlayCountSorter(context: Context) : CollectionSorter(context) {
@@ -19,6 +20,8 @@ class PlayCountSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_play_count
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.NUM_PLAYS},0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.numberOfPlays }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.numberOfPlays }
@@ -5,6 +5,7 @@ import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.asMinutes
+import com.boardgamegeek.provider.BggContract.Games
 
 class PlayTimeSorter(context: Context) : CollectionSorter(context) {
     private val defaultValue = context.resources.getString(R.string.text_unknown)
@@ -21,6 +22,8 @@ class PlayTimeSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_play_time
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.PLAYING_TIME},0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.playingTime }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.playingTime }
@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Collection
 
 class PricePaidSorter(context: Context) : MoneySorter(context) {
     override val ascendingSortTypeResId: Int
@@ -18,6 +19,11 @@ class PricePaidSorter(context: Context) : MoneySorter(context) {
         @StringRes
         get() = R.string.collection_sort_price_paid
 
+    override val sortColumns = listOf(
+        "IFNULL(${Collection.Columns.PRIVATE_INFO_PRICE_PAID_CURRENCY},'')",
+        "IFNULL(${Collection.Columns.PRIVATE_INFO_PRICE_PAID},0.0)",
+    )
+
     override fun amount(item: CollectionItemEntity) = item.pricePaid
     override fun currency(item: CollectionItemEntity) = item.pricePaidCurrency
 }
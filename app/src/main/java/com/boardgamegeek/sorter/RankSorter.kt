@@ -5,6 +5,7 @@ import android.util.SparseArray
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 import java.text.NumberFormat
 
 class RankSorter(context: Context) : CollectionSorter(context) {
@@ -23,6 +24,8 @@ class RankSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_rank
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.GAME_RANK},${CollectionItemEntity.RANK_UNKNOWN})")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.rank }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.rank }
@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Games
 
 class SuggestedAgeSorter(context: Context) : CollectionSorter(context) {
     private val defaultValue = context.getString(R.string.text_unknown)
@@ -20,6 +21,8 @@ class SuggestedAgeSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_suggested_age
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.MINIMUM_AGE},0)")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.minimumAge }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.minimumAge }
@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.provider.BggContract.Collection
 
 class WishlistPrioritySorter(context: Context) : CollectionSorter(context) {
     private val priorityDescriptions = context.resources.getStringArray(R.array.wishlist_priority)
@@ -20,6 +21,8 @@ class WishlistPrioritySorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_wishlist_priority
 
+    override val sortColumns = listOf("IFNULL(${Collection.Columns.STATUS_WISHLIST_PRIORITY},${CollectionItemEntity.WISHLIST_PRIORITY_UNKNOWN})")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.wishListPriority }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.wishListPriority }
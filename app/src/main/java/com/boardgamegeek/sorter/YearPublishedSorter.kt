@@ -5,6 +5,7 @@ import androidx.annotation.StringRes
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.extensions.asYear
+import com.boardgamegeek.provider.BggContract.Games
 
 class YearPublishedSorter(context: Context) : CollectionSorter(context) {
     override val ascendingSortTypeResId: Int
@@ -19,6 +20,8 @@ class YearPublishedSorter(context: Context) : CollectionSorter(context) {
         @StringRes
         get() = R.string.collection_sort_year_published
 
+    override val sortColumns = listOf("IFNULL(${Games.Columns.YEAR_PUBLISHED},${CollectionItemEntity.YEAR_UNKNOWN})")
+
     override fun sortAscending(items: Iterable<CollectionItemEntity>) = items.sortedBy { it.gameYearPublished }
 
     override fun sortDescending(items: Iterable<CollectionItemEntity>) = items.sortedByDescending { it.gameYearPublished }
@@ -20,7 +20,6 @@ import com.boardgamegeek.ui.viewmodel.BuddiesViewModel
 import com.boardgamegeek.ui.widget.RecyclerSectionItemDecoration
 import com.boardgamegeek.ui.widget.RecyclerSectionItemDecoration.SectionCallback
 import dagger.hilt.android.AndroidEntryPoint
-import kotlin.properties.Delegates
 
 @AndroidEntryPoint
 class BuddiesFragment : Fragment() {
@@ -104,10 +103,8 @@ class BuddiesFragment : Fragment() {
 
     class BuddiesAdapter(private val viewModel: BuddiesViewModel) :
         RecyclerView.Adapter<BuddiesAdapter.BuddyViewHolder>(), AutoUpdatableAdapter, SectionCallback {
-        var buddies: List<UserEntity> by Delegates.observable(emptyList()) { _, oldValue, newValue ->
-            autoNotify(oldValue, newValue) { old, new ->
-                old.id == new.id
-            }
+        var buddies: List<UserEntity> by asyncAutoNotify<UserEntity> { old, new ->
+            old.id == new.id
         }
 
         init {
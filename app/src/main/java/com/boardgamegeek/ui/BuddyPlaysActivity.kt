@@ -38,8 +38,8 @@ class BuddyPlaysActivity : SimpleSinglePaneActivity() {
         }
 
         viewModel.setUsername(buddyName)
-        viewModel.plays.observe(this) {
-            numberOfPlays = it.data?.sumOf { play -> play.quantity } ?: 0
+        viewModel.playCount.observe(this) {
+            numberOfPlays = it
             invalidateOptionsMenu()
         }
     }
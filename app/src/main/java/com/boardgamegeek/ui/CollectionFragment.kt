@@ -1,12 +1,10 @@
 package com.boardgamegeek.ui
 
-import android.annotation.SuppressLint
 import android.app.Activity
 import android.content.Intent
 import android.content.SharedPreferences
 import android.content.res.ColorStateList
 import android.os.Bundle
-import android.util.SparseBooleanArray
 import android.view.*
 import android.widget.LinearLayout
 import androidx.annotation.StringRes
@@ -20,6 +18,10 @@ import androidx.core.view.isVisible
 import androidx.core.view.updatePadding
 import androidx.fragment.app.Fragment
 import androidx.fragment.app.activityViewModels
+import androidx.lifecycle.lifecycleScope
+import androidx.paging.LoadState
+import androidx.paging.PagingDataAdapter
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.boardgamegeek.R
 import com.boardgamegeek.databinding.FragmentCollectionBinding
@@ -43,6 +45,7 @@ import com.google.firebase.analytics.FirebaseAnalytics
 import com.google.firebase.analytics.ktx.analytics
 import com.google.firebase.ktx.Firebase
 import dagger.hilt.android.AndroidEntryPoint
+import kotlinx.coroutines.launch
 import timber.log.Timber
 import java.text.NumberFormat
 
@@ -82,6 +85,13 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
         super.onViewCreated(view, savedInstanceState)
 
         binding.listView.adapter = adapter
+        binding.listView.addHeader(adapter)
+        adapter.addLoadStateListener { loadStates ->
+            if (loadStates.refresh is LoadState.NotLoading) {
+                binding.listView.isVisible = adapter.itemCount > 0
+                binding.progressBar.hide()
+            }
+        }
 
         if (isCreatingShortcut) {
             binding.swipeRefreshLayout.longSnackbar(R.string.msg_shortcut_create)
@@ -132,6 +142,8 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
         }
         viewModel.effectiveSortType.observe(viewLifecycleOwner) { sortType: Int ->
             sorter = collectionSorterFactory.create(sortType)
+            // rows that stay the same aren't rebound, but what they show depends on the sort
+            adapter.notifyItemRangeChanged(0, adapter.itemCount)
             bindSortAndFilterButtons()
         }
         viewModel.effectiveFilters.observe(viewLifecycleOwner) { filterList ->
@@ -143,7 +155,15 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
             }
         }
         viewModel.items.observe(viewLifecycleOwner) {
-            it?.let { showData(it) }
+            viewLifecycleOwner.lifecycleScope.launch { adapter.submitData(it) }
+        }
+        viewModel.itemCount.observe(viewLifecycleOwner) {
+            showItemCount(it)
+        }
+        viewModel.randomItem.observe(viewLifecycleOwner) { event ->
+            event.getContentIfNotHandled()?.let {
+                GameActivity.start(requireContext(), it.gameId, it.gameName, it.thumbnailUrl, it.heroImageUrl)
+            }
         }
         viewModel.isFiltering.observe(viewLifecycleOwner) {
             it?.let { if (it) binding.progressBar.show() else binding.progressBar.hide() }
@@ -154,28 +174,20 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
         viewModel.refresh()
     }
 
-    private fun showData(items: List<CollectionItemEntity>) {
-        adapter.items = items
+    private fun showItemCount(count: Int) {
         binding.footerToolbar.menu.apply {
-            findItem(R.id.menu_collection_random_game)?.isEnabled = items.isNotEmpty()
-            findItem(R.id.menu_share)?.isEnabled = items.isNotEmpty()
+            findItem(R.id.menu_collection_random_game)?.isEnabled = count > 0
+            findItem(R.id.menu_share)?.isEnabled = count > 0
         }
-
-        binding.listView.addHeader(adapter)
-        binding.rowCountView.text = numberFormat.format(items.size)
-
-        binding.emptyContainer.isVisible = items.isEmpty()
-        binding.listView.isVisible = items.isNotEmpty()
-        binding.progressBar.hide()
+        binding.rowCountView.text = numberFormat.format(count)
+        binding.emptyContainer.isVisible = count == 0
     }
 
     private val footerMenuListener = Toolbar.OnMenuItemClickListener { item ->
         when (item.itemId) {
             R.id.menu_collection_random_game -> {
                 firebaseAnalytics.logEvent("RandomGame", null)
-                adapter.items.random().let {
-                    GameActivity.start(requireContext(), it.gameId, it.gameName, it.thumbnailUrl, it.heroImageUrl)
-                }
+                viewModel.pickRandomItem()
                 return@OnMenuItemClickListener true
             }
             R.id.menu_create_shortcut -> if (viewId > 0) {
@@ -221,8 +233,8 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
             .append("\n")
 
         val maxGames = 10
-        adapter.items.take(maxGames).map { text.append("\u2022 ${formatGameLink(it.gameId, it.collectionName)}") }
-        val leftOverCount = adapter.itemCount - maxGames
+        adapter.snapshot().items.take(maxGames).map { text.append("\u2022 ${formatGameLink(it.gameId, it.collectionName)}") }
+        val leftOverCount = (viewModel.itemCount.value ?: adapter.itemCount) - maxGames
         if (leftOverCount > 0) text.append(getString(R.string.and_more, leftOverCount)).append("\n")
 
         val username = prefs[AccountPreferences.KEY_USERNAME, ""]
@@ -359,34 +371,17 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
         }
     }
 
-    inner class CollectionAdapter : RecyclerView.Adapter<CollectionItemViewHolder>(), SectionCallback {
-        var items: List<CollectionItemEntity> = emptyList()
-            @SuppressLint("NotifyDataSetChanged")
-            set(value) {
-                field = value
-                notifyDataSetChanged()
-            }
-
-        init {
-            setHasStableIds(true)
-        }
-
-        private val selectedItems = SparseBooleanArray()
-
-        fun getItem(position: Int) = items.getOrNull(position)
+    inner class CollectionAdapter : PagingDataAdapter<CollectionItemEntity, CollectionItemViewHolder>(diffCallback), SectionCallback {
+        private val selectedItems = linkedMapOf<Long, CollectionItemEntity>()
 
         val selectedItemCount: Int
-            get() = selectedItems.filterTrue().size
-
-        private val selectedItemPositions: List<Int>
-            get() = selectedItems.filterTrue()
+            get() = selectedItems.size
 
-        fun getSelectedItems() = selectedItemPositions.mapNotNull { items.getOrNull(it) }
+        fun getSelectedItems() = selectedItems.values.toList()
 
-        @SuppressLint("NotifyDataSetChanged")
-        fun toggleSelection(position: Int) {
-            selectedItems.toggle(position)
-            notifyDataSetChanged() // I'd prefer to call notifyItemChanged(position), but that causes the section header to appear briefly
+        fun toggleSelection(item: CollectionItemEntity, position: Int) {
+            if (selectedItems.remove(item.internalId) == null) selectedItems[item.internalId] = item
+            if (position != RecyclerView.NO_POSITION) notifyItemChanged(position, PAYLOAD_SELECTION)
             actionMode?.let {
                 if (selectedItemCount == 0) {
                     it.finish()
@@ -397,27 +392,35 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
         }
 
         fun clearSelection() {
-            val oldSelectedItems = selectedItems.clone()
+            val oldSelectedItems = selectedItems.keys.toSet()
             selectedItems.clear()
-            oldSelectedItems.filterTrue().forEach { notifyItemChanged(it) }
+            snapshot().forEachIndexed { position, item ->
+                if (item?.internalId in oldSelectedItems) notifyItemChanged(position, PAYLOAD_SELECTION)
+            }
         }
 
-        override fun getItemCount() = items.size
-
-        override fun getItemId(position: Int) = getItem(position)?.internalId ?: RecyclerView.NO_ID
+        private fun isSelected(item: CollectionItemEntity?) = item != null && selectedItems.containsKey(item.internalId)
 
         override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): CollectionItemViewHolder {
             return CollectionItemViewHolder(parent.inflate(R.layout.row_collection))
         }
 
         override fun onBindViewHolder(holder: CollectionItemViewHolder, position: Int) {
-            holder.bindView(getItem(position), position)
+            holder.bindView(getItem(position))
+        }
+
+        override fun onBindViewHolder(holder: CollectionItemViewHolder, position: Int, payloads: MutableList<Any>) {
+            if (payloads.isNotEmpty() && payloads.all { it == PAYLOAD_SELECTION }) {
+                holder.itemView.isActivated = isSelected(peek(position))
+            } else {
+                onBindViewHolder(holder, position)
+            }
         }
 
         inner class CollectionItemViewHolder(view: View) : RecyclerView.ViewHolder(view) {
             val binding = RowCollectionBinding.bind(itemView)
 
-            fun bindView(item: CollectionItemEntity?, position: Int) {
+            fun bindView(item: CollectionItemEntity?) {
                 if (item == null) return
                 binding.thumbnailView.loadThumbnail(item.thumbnailUrl)
                 binding.nameView.text = item.collectionName
@@ -443,7 +446,7 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
                     binding.infoView.setTextOrHide(sorter?.first?.getDisplayInfo(item))
                 }
 
-                itemView.isActivated = selectedItems[position, false]
+                itemView.isActivated = isSelected(item)
                 itemView.setOnClickListener {
                     when {
                         isCreatingShortcut -> {
@@ -464,7 +467,7 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
                             requireActivity().finish() // don't want to come back to collection activity in "pick a new game" mode
                         }
                         actionMode == null -> GameActivity.start(requireContext(), item.gameId, item.gameName, item.thumbnailUrl, item.heroImageUrl)
-                        else -> adapter.toggleSelection(position)
+                        else -> toggleSelection(item, bindingAdapterPosition)
                     }
                 }
                 itemView.setOnLongClickListener {
@@ -473,7 +476,7 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
                     if (actionMode != null) return@setOnLongClickListener false
                     actionMode = requireActivity().startActionMode(this@CollectionFragment)
                     if (actionMode == null) return@setOnLongClickListener false
-                    toggleSelection(position)
+                    toggleSelection(item, bindingAdapterPosition)
                     true
                 }
             }
@@ -481,16 +484,16 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
 
         override fun isSection(position: Int): Boolean {
             if (position == RecyclerView.NO_POSITION) return false
-            if (items.isEmpty()) return false
+            if (itemCount == 0) return false
             if (position == 0) return true
-            if (position < 0 || position >= items.size) return false
+            if (position < 0 || position >= itemCount) return false
             val thisLetter = getSectionHeader(position)
             val lastLetter = getSectionHeader(position - 1)
             return thisLetter != lastLetter
         }
 
         override fun getSectionHeader(position: Int): CharSequence {
-            val item = items.getOrNull(position) ?: return "-"
+            val item = (if (position in 0 until itemCount) peek(position) else null) ?: return "-"
             return sorter?.first?.getHeaderText(item) ?: return "-"
         }
     }
@@ -580,6 +583,13 @@ class CollectionFragment : Fragment(), ActionMode.Callback {
     companion object {
         private const val KEY_IS_CREATING_SHORTCUT = "IS_CREATING_SHORTCUT"
         private const val KEY_CHANGING_GAME_PLAY_ID = "KEY_CHANGING_GAME_PLAY_ID"
+        private const val PAYLOAD_SELECTION = "SELECTION"
+
+        private val diffCallback = object : DiffUtil.ItemCallback<CollectionItemEntity>() {
+            override fun areItemsTheSame(oldItem: CollectionItemEntity, newItem: CollectionItemEntity) = oldItem.internalId == newItem.internalId
+
+            override fun areContentsTheSame(oldItem: CollectionItemEntity, newItem: CollectionItemEntity) = oldItem == newItem
+        }
 
         fun newInstance(isCreatingShortcut: Boolean): CollectionFragment {
             return CollectionFragment().apply {
@@ -59,6 +59,10 @@ class DataFragment : Fragment() {
             registerForUsersImport.launch(null)
         }
 
+        binding.syncMetricsRow.onExport {
+            registerForSyncMetricsExport.launch(Constants.TYPE_SYNC_METRICS_DESCRIPTION)
+        }
+
         viewModel.message.observe(viewLifecycleOwner) { event ->
             event.getContentIfNotHandled()?.let { content ->
                 toast(content)
@@ -67,6 +71,7 @@ class DataFragment : Fragment() {
         viewModel.collectionViewProgress.observe(viewLifecycleOwner) { binding.collectionViewsRow.updateProgressBar(it) }
         viewModel.gameProgress.observe(viewLifecycleOwner) { binding.gamesRow.updateProgressBar(it) }
         viewModel.userProgress.observe(viewLifecycleOwner) { binding.usersRow.updateProgressBar(it) }
+        viewModel.syncMetricsProgress.observe(viewLifecycleOwner) { binding.syncMetricsRow.updateProgressBar(it) }
     }
 
     override fun onDestroyView() {
@@ -104,6 +109,11 @@ class DataFragment : Fragment() {
             doImport(uri, binding.usersRow) { viewModel.importUsers(it) }
         }
 
+    private val registerForSyncMetricsExport =
+        registerForActivityResult(ExportFileContract(extension = "csv", mimeType = "text/csv")) { uri ->
+            doExport(uri, binding.syncMetricsRow) { viewModel.exportSyncMetrics(it) }
+        }
+
     private fun doExport(uri: Uri?, dataStepRow: DataStepRow, export: (Uri) -> Unit) {
         uri?.let {
             tryUriPermission(it)
@@ -139,12 +149,15 @@ class DataFragment : Fragment() {
         }
     }
 
-    class ExportFileContract : ActivityResultContract<String, Uri?>() {
+    class ExportFileContract(
+        private val extension: String = "json",
+        private val mimeType: String = "application/*",
+    ) : ActivityResultContract<String, Uri?>() {
         override fun createIntent(context: Context, input: String): Intent {
             return Intent(Intent.ACTION_CREATE_DOCUMENT)
                 .addCategory(Intent.CATEGORY_OPENABLE)
-                .setType("application/*")
-                .putExtra(Intent.EXTRA_TITLE, FileUtils.getExportFileName(input))
+                .setType(mimeType)
+                .putExtra(Intent.EXTRA_TITLE, FileUtils.getExportFileName(input, extension))
         }
 
         override fun parseResult(resultCode: Int, intent: Intent?): Uri? {
@@ -40,8 +40,8 @@ class GamePlaysActivity : SimpleSinglePaneActivity() {
         }
 
         viewModel.setGame(gameId)
-        viewModel.plays.observe(this) {
-            playCount = it.data?.sumOf { play -> play.quantity } ?: 0
+        viewModel.playCount.observe(this) {
+            playCount = it
             invalidateOptionsMenu()
         }
     }
@@ -28,7 +28,7 @@ class GeekListDescriptionFragment : Fragment() {
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        val markupConverter = XmlApiMarkupConverter(requireContext())
+        val markupConverter = XmlApiMarkupConverter.getInstance(requireContext())
         viewModel.geekList.observe(viewLifecycleOwner) {
             it?.let { (status, data, _) ->
                 if (status == Status.REFRESHING) binding.progressBar.show()
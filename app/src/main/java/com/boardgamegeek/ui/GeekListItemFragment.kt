@@ -37,7 +37,7 @@ class GeekListItemFragment : Fragment() {
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        val markupConverter = XmlApiMarkupConverter(requireContext())
+        val markupConverter = XmlApiMarkupConverter.getInstance(requireContext())
         binding.orderView.text = order.toString()
         binding.geekListTitleView.text = geekListTitle
         binding.typeView.text = glItem.objectTypeDescription(requireContext())
@@ -20,7 +20,6 @@ import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.ui.adapter.AutoUpdatableAdapter
 import com.boardgamegeek.ui.viewmodel.GeekListViewModel
 import dagger.hilt.android.AndroidEntryPoint
-import kotlin.properties.Delegates
 
 @AndroidEntryPoint
 class GeekListItemsFragment : Fragment() {
@@ -76,10 +75,8 @@ class GeekListItemsFragment : Fragment() {
 
     class GeekListRecyclerViewAdapter :
         RecyclerView.Adapter<GeekListRecyclerViewAdapter.GeekListItemViewHolder>(), AutoUpdatableAdapter {
-        var geekListItems: List<GeekListItemEntity> by Delegates.observable(emptyList()) { _, oldValue, newValue ->
-            autoNotify(oldValue, newValue) { old, new ->
-                old.objectId == new.objectId
-            }
+        var geekListItems: List<GeekListItemEntity> by asyncAutoNotify<GeekListItemEntity> { old, new ->
+            old.objectId == new.objectId
         }
 
         var geekList: GeekListEntity? = null
@@ -17,7 +17,6 @@ import com.boardgamegeek.extensions.*
 import com.boardgamegeek.ui.adapter.AutoUpdatableAdapter
 import com.boardgamegeek.ui.viewmodel.HotnessViewModel
 import dagger.hilt.android.AndroidEntryPoint
-import kotlin.properties.Delegates
 
 @AndroidEntryPoint
 class HotnessFragment : Fragment(), ActionMode.Callback {
@@ -125,9 +124,7 @@ class HotnessFragment : Fragment(), ActionMode.Callback {
             setHasStableIds(true)
         }
 
-        var games: List<HotGameEntity> by Delegates.observable(emptyList()) { _, old, new ->
-            autoNotify(old, new) { o, n -> o == n }
-        }
+        var games: List<HotGameEntity> by asyncAutoNotify<HotGameEntity> { o, n -> o == n }
 
         override fun onCreateViewHolder(parent: ViewGroup, viewType: Int) = ViewHolder(parent.inflate(R.layout.row_hotness))
 
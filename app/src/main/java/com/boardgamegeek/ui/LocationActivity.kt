@@ -47,8 +47,8 @@ class LocationActivity : SimpleSinglePaneActivity() {
             intent.putExtra(KEY_LOCATION_NAME, locationName)
             setSubtitle()
         }
-        viewModel.plays.observe(this) {
-            playCount = it.data?.sumOf { play -> play.quantity } ?: 0
+        viewModel.playCount.observe(this) {
+            playCount = it
             invalidateOptionsMenu()
         }
         viewModel.updateMessage.observe(this) {
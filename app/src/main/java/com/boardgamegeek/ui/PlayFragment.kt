@@ -32,7 +32,7 @@ class PlayFragment : Fragment() {
     private lateinit var firebaseAnalytics: FirebaseAnalytics
     private val viewModel by activityViewModels<PlayViewModel>()
     private val adapter: PlayPlayerAdapter by lazy { PlayPlayerAdapter() }
-    private val markupConverter by lazy { XmlApiMarkupConverter(requireContext()) }
+    private val markupConverter by lazy { XmlApiMarkupConverter.getInstance(requireContext()) }
     private var play: PlayEntity? = null
     private var hasBeenNotified = false
 
@@ -40,8 +40,8 @@ class PlayerPlaysActivity : SimpleSinglePaneActivity() {
         }
 
         viewModel.setPlayerName(name)
-        viewModel.plays.observe(this) {
-            playCount = it.data?.sumOf { play -> play.quantity } ?: 0
+        viewModel.playCount.observe(this) {
+            playCount = it
             invalidateOptionsMenu()
         }
     }
@@ -46,7 +46,7 @@ class PlaysActivity : SimpleSinglePaneActivity(), DatePickerDialog.OnDateSetList
             }
         }
 
-        viewModel.plays.observe(this) {
+        viewModel.playCount.observe(this) {
             invalidateOptionsMenu()
         }
 
@@ -73,7 +73,7 @@ class PlaysActivity : SimpleSinglePaneActivity(), DatePickerDialog.OnDateSetList
     override fun onPrepareOptionsMenu(menu: Menu): Boolean {
         super.onPrepareOptionsMenu(menu)
 
-        val playCount = viewModel.plays.value?.data?.sumOf { play -> play.quantity } ?: 0
+        val playCount = viewModel.playCount.value ?: 0
         val sortName = when (viewModel.sortType.value) {
             PlaysViewModel.SortType.DATE -> getString(R.string.menu_plays_sort_date)
             PlaysViewModel.SortType.LOCATION -> getString(R.string.menu_plays_sort_location)
@@ -3,7 +3,6 @@ package com.boardgamegeek.ui
 import android.annotation.SuppressLint
 import android.graphics.Color
 import android.os.Bundle
-import android.util.SparseBooleanArray
 import android.view.*
 import androidx.annotation.ColorInt
 import androidx.annotation.StringRes
@@ -11,29 +10,31 @@ import androidx.core.os.bundleOf
 import androidx.core.view.isVisible
 import androidx.fragment.app.Fragment
 import androidx.fragment.app.activityViewModels
+import androidx.lifecycle.lifecycleScope
+import androidx.paging.LoadState
+import androidx.paging.PagingDataAdapter
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.boardgamegeek.R
 import com.boardgamegeek.databinding.FragmentPlaysBinding
 import com.boardgamegeek.databinding.RowPlayBinding
 import com.boardgamegeek.entities.PlayEntity
-import com.boardgamegeek.entities.Status
 import com.boardgamegeek.extensions.*
 import com.boardgamegeek.provider.BggContract.Companion.INVALID_ID
-import com.boardgamegeek.ui.adapter.AutoUpdatableAdapter
 import com.boardgamegeek.ui.viewmodel.PlaysViewModel
 import com.boardgamegeek.ui.widget.RecyclerSectionItemDecoration
 import com.boardgamegeek.util.XmlApiMarkupConverter
 import dagger.hilt.android.AndroidEntryPoint
+import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
 import java.util.*
-import kotlin.properties.Delegates
 
 @AndroidEntryPoint
 open class PlaysFragment : Fragment(), ActionMode.Callback {
     private var _binding: FragmentPlaysBinding? = null
     private val binding get() = _binding!!
     private val viewModel by activityViewModels<PlaysViewModel>()
-    private val markupConverter by lazy { XmlApiMarkupConverter(requireContext()) }
+    private val markupConverter by lazy { XmlApiMarkupConverter.getInstance(requireContext()) }
 
     private val adapter: PlayAdapter by lazy { PlayAdapter() }
 
@@ -92,13 +93,17 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
             showSyncingState(it)
         }
 
-        viewModel.plays.observe(viewLifecycleOwner) {
-            showSyncingState(it.status == Status.REFRESHING)
-            adapter.items = it.data.orEmpty()
-            binding.recyclerView.addHeader(adapter)
-            binding.progressBar.hide()
-            binding.emptyContainer.isVisible = it.data.isNullOrEmpty()
-            binding.recyclerView.isVisible = !it.data.isNullOrEmpty()
+        binding.recyclerView.addHeader(adapter)
+        adapter.addLoadStateListener { loadStates ->
+            if (loadStates.refresh is LoadState.NotLoading) {
+                binding.progressBar.hide()
+                binding.emptyContainer.isVisible = adapter.itemCount == 0
+                binding.recyclerView.isVisible = adapter.itemCount > 0
+            }
+        }
+
+        viewModel.plays.observe(viewLifecycleOwner) { plays ->
+            viewLifecycleOwner.lifecycleScope.launch { adapter.submitData(plays) }
         }
 
         viewModel.filterType.observe(viewLifecycleOwner) {
@@ -124,42 +129,22 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
         )
     }
 
-    internal inner class PlayAdapter : RecyclerView.Adapter<PlayAdapter.ViewHolder>(), AutoUpdatableAdapter,
+    internal inner class PlayAdapter : PagingDataAdapter<PlayEntity, PlayAdapter.ViewHolder>(diffCallback),
         RecyclerSectionItemDecoration.SectionCallback {
-        private val selectedItems = SparseBooleanArray()
+        private val selectedItems = linkedMapOf<Long, PlayEntity>()
 
         val selectedItemCount: Int
-            get() = selectedItems.filterTrue().size
-
-        val selectedItemPositions: List<Int>
-            get() = selectedItems.filterTrue()
-
-        fun getSelectedItems() = selectedItems.filterTrue().mapNotNull { items.getOrNull(it) }
-
-        init {
-            setHasStableIds(true)
-        }
-
-        var items: List<PlayEntity> by Delegates.observable(emptyList()) { _, old, new ->
-            autoNotify(old, new) { o, n ->
-                o.internalId == n.internalId
-            }
-        }
+            get() = selectedItems.size
 
-        fun getItem(position: Int): PlayEntity? {
-            return items.getOrNull(position)
-        }
+        fun getSelectedItems() = selectedItems.values.toList()
 
         fun areAllSelectedItemsPending(): Boolean {
-            return adapter.selectedItemPositions
-                .map { adapter.getItem(it) }
-                .map { (it?.dirtyTimestamp ?: 0) > 0 }
-                .all { it }
+            return selectedItems.values.all { it.dirtyTimestamp > 0 }
         }
 
         @SuppressLint("NotifyDataSetChanged")
-        fun toggleSelection(position: Int) {
-            selectedItems.toggle(position)
+        fun toggleSelection(play: PlayEntity) {
+            if (selectedItems.remove(play.internalId) == null) selectedItems[play.internalId] = play
             notifyDataSetChanged() // I'd prefer to call notifyItemChanged(position), but that causes the section header to appear briefly
             actionMode?.let {
                 if (selectedItemCount == 0) {
@@ -171,25 +156,23 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
         }
 
         fun clearSelection() {
-            val oldSelectedItems = selectedItems.clone()
+            val oldSelectedItems = selectedItems.keys.toSet()
             selectedItems.clear()
-            oldSelectedItems.filterTrue().forEach { notifyItemChanged(it) }
+            snapshot().forEachIndexed { position, play ->
+                if (play?.internalId in oldSelectedItems) notifyItemChanged(position)
+            }
         }
 
-        override fun getItemCount() = items.size
-
-        override fun getItemId(position: Int) = getItem(position)?.internalId ?: RecyclerView.NO_ID
-
         override fun onCreateViewHolder(parent: ViewGroup, viewType: Int) = ViewHolder(parent.inflate(R.layout.row_play))
 
         override fun onBindViewHolder(holder: ViewHolder, position: Int) {
-            holder.bind(getItem(position), position)
+            holder.bind(getItem(position))
         }
 
         internal inner class ViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView) {
             val binding = RowPlayBinding.bind(itemView)
 
-            fun bind(play: PlayEntity?, position: Int) {
+            fun bind(play: PlayEntity?) {
                 if (play == null) return
 
                 binding.titleView.text = if (showGameName) play.gameName else play.dateForDisplay(requireContext())
@@ -204,13 +187,13 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
                 }
                 binding.statusView.setTextOrHide(statusMessageId)
 
-                itemView.isActivated = selectedItems.get(position, false)
+                itemView.isActivated = selectedItems.containsKey(play.internalId)
 
                 itemView.setOnClickListener {
                     if (actionMode == null) {
                         PlayActivity.start(requireContext(), play.internalId)
                     } else {
-                        toggleSelection(position)
+                        toggleSelection(play)
                     }
                 }
                 itemView.setOnLongClickListener {
@@ -221,7 +204,7 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
                     if (actionMode == null) {
                         return@setOnLongClickListener false
                     }
-                    toggleSelection(position)
+                    toggleSelection(play)
                     true
                 }
             }
@@ -229,8 +212,7 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
 
         override fun isSection(position: Int): Boolean {
             if (position == RecyclerView.NO_POSITION) return false
-            if (items.isEmpty()) return false
-            if (position < 0 || position >= items.size) return false
+            if (position < 0 || position >= itemCount) return false
             val thisLetter = getSectionHeader(position)
             val lastLetter = getSectionHeader(position - 1)
             return thisLetter != lastLetter
@@ -239,7 +221,7 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
         private val dateFormat = SimpleDateFormat("MMMM yyyy", Locale.getDefault())
 
         override fun getSectionHeader(position: Int): CharSequence {
-            val play = items.getOrNull(position) ?: return "-"
+            val play = (if (position in 0 until itemCount) peek(position) else null) ?: return "-"
             return when (viewModel.sortType.value ?: PlaysViewModel.SortType.DATE) {
                 PlaysViewModel.SortType.DATE -> {
                     if (play.dateInMillis == PlayEntity.UNKNOWN_DATE)
@@ -302,15 +284,14 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
                 }
             }
             R.id.menu_edit -> {
-                val play = adapter.getItem(adapter.selectedItemPositions.iterator().next())
-                if (play != null)
-                    LogPlayActivity.editPlay(
-                        requireContext(),
-                        play.internalId,
-                        play.gameId,
-                        play.gameName,
-                        play.heroImageUrl,
-                    )
+                val play = plays.first()
+                LogPlayActivity.editPlay(
+                    requireContext(),
+                    play.internalId,
+                    play.gameId,
+                    play.gameName,
+                    play.heroImageUrl,
+                )
                 mode.finish()
             }
             R.id.menu_delete -> {
@@ -336,6 +317,12 @@ open class PlaysFragment : Fragment(), ActionMode.Callback {
         private const val KEY_EMPTY_STRING_RES_ID = "EMPTY_STRING_RES_ID"
         private const val KEY_SHOW_GAME_NAME = "SHOW_GAME_NAME"
 
+        private val diffCallback = object : DiffUtil.ItemCallback<PlayEntity>() {
+            override fun areItemsTheSame(oldItem: PlayEntity, newItem: PlayEntity) = oldItem.internalId == newItem.internalId
+
+            override fun areContentsTheSame(oldItem: PlayEntity, newItem: PlayEntity) = oldItem == newItem
+        }
+
         fun newInstance(): PlaysFragment {
             return PlaysFragment().apply {
                 arguments = bundleOf(KEY_EMPTY_STRING_RES_ID to R.string.empty_plays)
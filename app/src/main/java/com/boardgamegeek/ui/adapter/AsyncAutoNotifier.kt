@@ -0,0 +1,100 @@
+package com.boardgamegeek.ui.adapter
+
+import android.annotation.SuppressLint
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import androidx.annotation.MainThread
+import androidx.recyclerview.widget.AdapterListUpdateCallback
+import androidx.recyclerview.widget.BatchingListUpdateCallback
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.RecyclerView
+import timber.log.Timber
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import kotlin.properties.ReadWriteProperty
+import kotlin.reflect.KProperty
+
+/**
+ * Holds the list an adapter shows, diffing each new list against it on a background thread and dispatching the result
+ * to the adapter on the main thread. Until then the old list is still returned, so the adapter's size always matches
+ * what it has notified.
+ *
+ * Each new list bumps a generation; a diff that finishes after a newer list was set is discarded. Lists that are empty
+ * before or after, or where every item stays in place, skip the diff altogether. So do very large lists when the
+ * adapter has stable IDs, since RecyclerView can then keep track of the rows without one.
+ */
+class AsyncAutoNotifier<T>(
+    private val adapter: RecyclerView.Adapter<*>,
+    private val compare: (T, T) -> Boolean,
+    private val diffExecutor: Executor = defaultDiffExecutor,
+) : ReadWriteProperty<Any?, List<T>> {
+    private var list: List<T> = emptyList()
+    private var generation = 0
+
+    override fun getValue(thisRef: Any?, property: KProperty<*>) = list
+
+    @SuppressLint("NotifyDataSetChanged")
+    @MainThread
+    override fun setValue(thisRef: Any?, property: KProperty<*>, value: List<T>) {
+        val runGeneration = ++generation
+        if (value === list) return
+        val old = list
+        when {
+            old.isEmpty() -> {
+                list = value
+                adapter.notifyItemRangeInserted(0, value.size)
+            }
+            value.isEmpty() -> {
+                list = value
+                adapter.notifyItemRangeRemoved(0, old.size)
+            }
+            adapter.hasStableIds() && old.size + value.size > MAX_DIFF_SIZE -> {
+                list = value
+                adapter.notifyDataSetChanged()
+            }
+            else -> diffExecutor.execute {
+                val start = SystemClock.elapsedRealtime()
+                val changes = if (old.size == value.size && old.indices.all { compare(old[it], value[it]) }) {
+                    old.indices.filter { old[it] != value[it] }
+                } else null
+                val diff = if (changes == null) DiffUtil.calculateDiff(Callback(old, value, compare)) else null
+                Timber.v("Diffed %,d items against %,d in %,d ms", value.size, old.size, SystemClock.elapsedRealtime() - start)
+                mainHandler.post {
+                    if (runGeneration == generation) {
+                        list = value
+                        changes?.let { notifyItemsChanged(it) }
+                        diff?.dispatchUpdatesTo(adapter)
+                    }
+                }
+            }
+        }
+    }
+
+    private fun notifyItemsChanged(positions: List<Int>) {
+        val callback = BatchingListUpdateCallback(AdapterListUpdateCallback(adapter))
+        positions.forEach { callback.onChanged(it, 1, null) }
+        callback.dispatchLastEvent()
+    }
+
+    private class Callback<T>(
+        private val old: List<T>,
+        private val new: List<T>,
+        private val compare: (T, T) -> Boolean,
+    ) : DiffUtil.Callback() {
+        override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int) = compare(old[oldItemPosition], new[newItemPosition])
+
+        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int) = old[oldItemPosition] == new[newItemPosition]
+
+        override fun getOldListSize() = old.size
+
+        override fun getNewListSize() = new.size
+    }
+
+    companion object {
+        private const val MAX_DIFF_SIZE = 20_000
+
+        private val mainHandler = Handler(Looper.getMainLooper())
+        private val defaultDiffExecutor: Executor by lazy { Executors.newFixedThreadPool(2) }
+    }
+}
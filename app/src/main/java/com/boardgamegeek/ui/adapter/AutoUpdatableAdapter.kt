@@ -2,6 +2,7 @@ package com.boardgamegeek.ui.adapter
 
 import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
+import kotlin.properties.ReadWriteProperty
 
 interface AutoUpdatableAdapter {
     fun <T> RecyclerView.Adapter<*>.autoNotify(old: List<T>, new: List<T>, compare: (T, T) -> Boolean) {
@@ -20,4 +21,11 @@ interface AutoUpdatableAdapter {
         })
         diff.dispatchUpdatesTo(this)
     }
+
+    /**
+     * A delegate for the adapter's list that does what [autoNotify] does, but diffs on a background thread. See
+     * [AsyncAutoNotifier].
+     */
+    fun <T> RecyclerView.Adapter<*>.asyncAutoNotify(compare: (T, T) -> Boolean): ReadWriteProperty<Any?, List<T>> =
+        AsyncAutoNotifier(this, compare)
 }
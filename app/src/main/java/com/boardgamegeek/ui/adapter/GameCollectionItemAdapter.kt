@@ -17,7 +17,7 @@ import com.boardgamegeek.util.XmlApiMarkupConverter
 import kotlin.properties.Delegates
 
 class GameCollectionItemAdapter(private val context: Context) : RecyclerView.Adapter<GameCollectionItemAdapter.ViewHolder>(), AutoUpdatableAdapter {
-    private val xmlConverter by lazy { XmlApiMarkupConverter(context) }
+    private val xmlConverter by lazy { XmlApiMarkupConverter.getInstance(context) }
 
     var gameYearPublished: Int by Delegates.observable(CollectionItemEntity.YEAR_UNKNOWN) { _, oldValue, newValue ->
         @SuppressLint("NotifyDataSetChanged")
@@ -31,7 +31,7 @@ class GameCommentsPagedListAdapter : PagingDataAdapter<GameCommentEntity, GameCo
 
     inner class CommentViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView) {
         private val binding = RowCommentBinding.bind(itemView)
-        private val markupConverter = XmlApiMarkupConverter(itemView.context)
+        private val markupConverter = XmlApiMarkupConverter.getInstance(itemView.context)
 
         fun bind(entity: GameCommentEntity?) {
             if (entity != null) {
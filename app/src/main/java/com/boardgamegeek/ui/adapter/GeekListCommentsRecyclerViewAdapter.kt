@@ -32,7 +32,7 @@ class GeekListCommentsRecyclerViewAdapter
 
     inner class CommentViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView) {
         private val binding = RowGeeklistCommentBinding.bind(itemView)
-        private val markupConverter = XmlApiMarkupConverter(itemView.context)
+        private val markupConverter = XmlApiMarkupConverter.getInstance(itemView.context)
 
         fun bind(comment: GeekListCommentEntity?) {
             comment?.let {
@@ -15,17 +15,14 @@ import com.boardgamegeek.extensions.inflate
 import com.boardgamegeek.extensions.toggle
 import com.boardgamegeek.ui.GameActivity
 import com.boardgamegeek.ui.adapter.SearchResultsAdapter.SearchResultViewHolder
-import kotlin.properties.Delegates
 
 class SearchResultsAdapter(private val callback: Callback?) : RecyclerView.Adapter<SearchResultViewHolder>(), AutoUpdatableAdapter {
     init {
         setHasStableIds(true)
     }
 
-    var results: List<SearchResultEntity> by Delegates.observable(emptyList()) { _, old, new ->
-        autoNotify(old, new) { o, n ->
-            o.id == n.id
-        }
+    var results: List<SearchResultEntity> by asyncAutoNotify<SearchResultEntity> { o, n ->
+        o.id == n.id
     }
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): SearchResultViewHolder {
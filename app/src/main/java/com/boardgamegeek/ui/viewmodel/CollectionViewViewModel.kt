@@ -5,8 +5,14 @@ import android.content.SharedPreferences
 import androidx.core.content.pm.ShortcutManagerCompat
 import androidx.core.os.bundleOf
 import androidx.lifecycle.*
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
+import androidx.paging.liveData
 import androidx.work.WorkManager
 import com.boardgamegeek.BggApplication
+import com.boardgamegeek.db.SortColumn
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.entities.CollectionViewEntity
 import com.boardgamegeek.entities.CollectionViewFilterEntity
@@ -15,7 +21,9 @@ import com.boardgamegeek.extensions.*
 import com.boardgamegeek.extensions.CollectionView.DEFAULT_DEFAULT_ID
 import com.boardgamegeek.filterer.CollectionFilterer
 import com.boardgamegeek.filterer.CollectionFiltererFactory
+import com.boardgamegeek.livedata.CollectionItemsPagingSource
 import com.boardgamegeek.livedata.Event
+import com.boardgamegeek.pref.PreferenceSnapshot
 import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.repository.CollectionItemRepository
 import com.boardgamegeek.repository.CollectionViewRepository
@@ -27,6 +35,8 @@ import com.google.firebase.analytics.FirebaseAnalytics
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import javax.inject.Inject
 import kotlin.time.Duration.Companion.minutes
@@ -47,6 +57,10 @@ class CollectionViewViewModel @Inject constructor(
 
     private val collectionFiltererFactory: CollectionFiltererFactory by lazy { CollectionFiltererFactory(application) }
     private val collectionSorterFactory: CollectionSorterFactory by lazy { CollectionSorterFactory(application) }
+    private val allItemsMutex = Mutex()
+    private var allItems: Pair<Long, List<CollectionItemEntity>>? = null
+    private val sortedItemsMutex = Mutex()
+    private var sortedItems: Pair<ListRequest, List<CollectionItemEntity>>? = null
 
     private val syncTimestamp = MutableLiveData<Long>()
     private val viewsTimestamp = MutableLiveData<Long>()
@@ -62,20 +76,45 @@ class CollectionViewViewModel @Inject constructor(
     val effectiveFilters: LiveData<List<CollectionFilterer>>
         get() = _effectiveFilters
 
-    private val _items = MediatorLiveData<List<CollectionItemEntity>>()
-    val items: LiveData<List<CollectionItemEntity>>
-        get() = _items
+    private data class ListRequest(
+        val viewId: Long,
+        val filters: List<CollectionFilterer>,
+        val sortType: Int,
+        val syncTimestamp: Long,
+        // filterers are equal when they're of the same type, so what they filter by is compared too
+        val filterData: List<String> = filters.map { it.deflate() },
+    )
+
+    private class ListQuery(val selection: String, val selectionArgs: Array<String>, val sortColumns: List<SortColumn>)
+
+    private val listRequest = MediatorLiveData<ListRequest>()
+
+    /**
+     * The items of the view. When its filters and sort can all be expressed in SQL, the items are paged from the
+     * database; otherwise the whole collection is loaded and filtered and sorted in memory.
+     */
+    val items: LiveData<PagingData<CollectionItemEntity>> = listRequest.switchMap { request ->
+        val query = createQuery(request)
+        if (query != null) {
+            Pager(PagingConfig(PAGE_SIZE, enablePlaceholders = false)) {
+                CollectionItemsPagingSource(itemRepository, query.selection, query.selectionArgs, query.sortColumns)
+            }.liveData.cachedIn(viewModelScope)
+        } else {
+            liveData { emit(PagingData.from(filterAndSortItems(request))) }
+        }
+    }
 
-    private val _allItems: LiveData<List<CollectionItemEntity>> = syncTimestamp.switchMap {
+    val itemCount: LiveData<Int> = listRequest.switchMap { request ->
         liveData {
-            try {
-                emit(itemRepository.load())
-            } catch (e: Exception) {
-                _errorMessage.postValue(Event(e.localizedMessage.ifEmpty { "Error loading collection" }))
-            }
+            val query = createQuery(request)
+            emit(query?.let { itemRepository.countListItems(it.selection, it.selectionArgs) } ?: filterAndSortItems(request).size)
         }
     }
 
+    private val _randomItem = MutableLiveData<Event<CollectionItemEntity>>()
+    val randomItem: LiveData<Event<CollectionItemEntity>>
+        get() = _randomItem
+
     private val _errorMessage = MediatorLiveData<Event<String>>()
     val errorMessage: LiveData<Event<String>>
         get() = _errorMessage
@@ -154,14 +193,14 @@ class CollectionViewViewModel @Inject constructor(
             )
         }
 
-        _items.addSource(effectiveFilters) {
-            filterAndSortItems(filters = it)
+        listRequest.addSource(effectiveFilters) {
+            createListRequest(filters = it)
         }
-        _items.addSource(effectiveSortType) {
-            filterAndSortItems(sortType = it)
+        listRequest.addSource(effectiveSortType) {
+            createListRequest(sortType = it)
         }
-        _items.addSource(_allItems) {
-            filterAndSortItems(itemList = it.orEmpty())
+        listRequest.addSource(syncTimestamp) {
+            createListRequest(syncTimestamp = it)
         }
     }
 
@@ -278,36 +317,94 @@ class CollectionViewViewModel @Inject constructor(
         }
     }
 
-    private fun filterAndSortItems(
-        itemList: List<CollectionItemEntity>? = _allItems.value,
-        filters: List<CollectionFilterer> = effectiveFilters.value.orEmpty(),
-        sortType: Int = effectiveSortType.value ?: CollectionSorterFactory.TYPE_DEFAULT,
+    private fun createListRequest(
+        filters: List<CollectionFilterer>? = effectiveFilters.value,
+        sortType: Int? = effectiveSortType.value,
+        syncTimestamp: Long? = this.syncTimestamp.value,
     ) {
-        if (itemList == null) return
-        viewModelScope.launch(Dispatchers.Default) {
-            var list = itemList.asSequence()
-            if (_selectedViewId.value == DEFAULT_DEFAULT_ID && filters.none { it.type == CollectionFiltererFactory.TYPE_STATUS }) {
-                list = list.filter {
-                    (prefs.isStatusSetToSync(COLLECTION_STATUS_OWN) && it.own) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_PREVIOUSLY_OWNED) && it.previouslyOwned) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_FOR_TRADE) && it.forTrade) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_WANT_IN_TRADE) && it.wantInTrade) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_WANT_TO_BUY) && it.wantToPlay) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_WISHLIST) && it.wishList) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_WANT_TO_PLAY) && it.wantToPlay) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_PREORDERED) && it.preOrdered) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_PLAYED) && it.numberOfPlays > 0) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_RATED) && it.rating > 0.0) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_COMMENTED) && it.comment.isNotBlank()) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_HAS_PARTS) && it.hasPartsList.isNotBlank()) ||
-                            (prefs.isStatusSetToSync(COLLECTION_STATUS_WANT_PARTS) && it.wantPartsList.isNotBlank())
-                }
+        if (filters == null || sortType == null || syncTimestamp == null) return
+        val request = ListRequest(_selectedViewId.value ?: DEFAULT_DEFAULT_ID, filters, sortType, syncTimestamp)
+        if (listRequest.value != request) listRequest.value = request
+    }
+
+    private fun isShowingSyncedStatuses(request: ListRequest) =
+        request.viewId == DEFAULT_DEFAULT_ID && request.filters.none { it.type == CollectionFiltererFactory.TYPE_STATUS }
+
+    /**
+     * Creates the SQL equivalent of the request, or null if any of its filters or its sort can't be expressed in SQL.
+     */
+    private fun createQuery(request: ListRequest): ListQuery? {
+        val sorter = collectionSorterFactory.create(request.sortType)
+        val sortColumns = if (sorter == null) emptyList() else {
+            sorter.first.sortColumns.ifEmpty { return null }.map { SortColumn(it, isDescending = sorter.second) }
+        }
+        val selections = mutableListOf<String>()
+        val selectionArgs = mutableListOf<String>()
+        if (isShowingSyncedStatuses(request)) selections += itemRepository.syncedStatusesSelection()
+        request.filters.forEach { filter ->
+            val (selection, args) = filter.selection() ?: return null
+            selections += "($selection)"
+            selectionArgs += args
+        }
+        return ListQuery(selections.joinToString(" AND ").ifEmpty { "1" }, selectionArgs.toTypedArray(), sortColumns)
+    }
+
+    /**
+     * Loads the whole collection, reusing the last load until the collection is synced again.
+     */
+    private suspend fun loadAllItems(syncTimestamp: Long): List<CollectionItemEntity> = allItemsMutex.withLock {
+        allItems?.takeIf { it.first == syncTimestamp }?.second ?: try {
+            itemRepository.load().also { allItems = syncTimestamp to it }
+        } catch (e: Exception) {
+            _errorMessage.postValue(Event(e.localizedMessage.ifEmpty { "Error loading collection" }))
+            emptyList()
+        }
+    }
+
+    /**
+     * Filters and sorts the whole collection for the request, once for the list, its count, and picking a random item.
+     */
+    private suspend fun filterAndSortItems(request: ListRequest): List<CollectionItemEntity> = sortedItemsMutex.withLock {
+        sortedItems?.takeIf { it.first == request }?.second ?: filterAndSort(request).also { sortedItems = request to it }
+    }
+
+    private suspend fun filterAndSort(request: ListRequest): List<CollectionItemEntity> {
+        val itemList = loadAllItems(request.syncTimestamp)
+        return withContext(Dispatchers.Default) {
+            val statuses = if (isShowingSyncedStatuses(request)) PreferenceSnapshot.of(getApplication()).syncStatuses else null
+            val list = itemList.filter { item ->
+                (statuses == null || isStatusSetToSync(item, statuses)) && request.filters.all { it.filter(item) }
             }
-            filters.forEach { f ->
-                list = list.filter { f.filter(it) }
+            val sorter = collectionSorterFactory.create(request.sortType)
+            sorter?.first?.sort(list, sorter.second) ?: list
+        }
+    }
+
+    private fun isStatusSetToSync(item: CollectionItemEntity, statuses: Set<String>) =
+        (COLLECTION_STATUS_OWN in statuses && item.own) ||
+                (COLLECTION_STATUS_PREVIOUSLY_OWNED in statuses && item.previouslyOwned) ||
+                (COLLECTION_STATUS_FOR_TRADE in statuses && item.forTrade) ||
+                (COLLECTION_STATUS_WANT_IN_TRADE in statuses && item.wantInTrade) ||
+                (COLLECTION_STATUS_WANT_TO_BUY in statuses && item.wantToBuy) ||
+                (COLLECTION_STATUS_WISHLIST in statuses && item.wishList) ||
+                (COLLECTION_STATUS_WANT_TO_PLAY in statuses && item.wantToPlay) ||
+                (COLLECTION_STATUS_PREORDERED in statuses && item.preOrdered) ||
+                (COLLECTION_STATUS_PLAYED in statuses && item.numberOfPlays > 0) ||
+                (COLLECTION_STATUS_RATED in statuses && item.rating > 0.0) ||
+                (COLLECTION_STATUS_COMMENTED in statuses && item.comment.isNotBlank()) ||
+                (COLLECTION_STATUS_HAS_PARTS in statuses && item.hasPartsList.isNotBlank()) ||
+                (COLLECTION_STATUS_WANT_PARTS in statuses && item.wantPartsList.isNotBlank())
+
+    fun pickRandomItem() {
+        val request = listRequest.value ?: return
+        viewModelScope.launch {
+            val query = createQuery(request)
+            val item = if (query != null) {
+                itemRepository.loadRandomListItem(query.selection, query.selectionArgs)
+            } else {
+                filterAndSortItems(request).randomOrNull()
             }
-            val sorter = collectionSorterFactory.create(sortType)
-            _items.postValue(sorter?.first?.sort(list.toList(), sorter.second) ?: list.toList())
+            item?.let { _randomItem.value = Event(it) }
         }
     }
 
@@ -403,5 +500,6 @@ class CollectionViewViewModel @Inject constructor(
 
     companion object {
         const val workName = "CollectionViewViewModel"
+        private const val PAGE_SIZE = 60
     }
 }
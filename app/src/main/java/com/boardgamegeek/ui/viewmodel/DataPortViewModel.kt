@@ -21,8 +21,8 @@ import com.boardgamegeek.mappers.mapToEntity
 import com.boardgamegeek.mappers.mapToExportable
 import com.boardgamegeek.repository.CollectionViewRepository
 import com.boardgamegeek.repository.GameRepository
-import com.boardgamegeek.repository.PlayRepository
 import com.boardgamegeek.repository.UserRepository
+import com.boardgamegeek.util.SyncMetricsRecorder
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
 import com.google.gson.stream.JsonReader
@@ -41,8 +41,8 @@ class DataPortViewModel @Inject constructor(
     application: Application,
     private val collectionViewRepository: CollectionViewRepository,
     private val gameRepository: GameRepository,
-    private val playRepository: PlayRepository,
     private val userRepository: UserRepository,
+    private val syncMetricsRecorder: SyncMetricsRecorder,
 ) : AndroidViewModel(application) {
 
     private val gson: Gson = GsonBuilder()
@@ -65,15 +65,24 @@ class DataPortViewModel @Inject constructor(
     val userProgress: LiveData<ProgressData>
         get() = _userProgress
 
+    private val _syncMetricsProgress = ProgressLiveData()
+    val syncMetricsProgress: LiveData<ProgressData>
+        get() = _syncMetricsProgress
+
     fun exportCollectionViews(uri: Uri) {
         viewModelScope.launch(Dispatchers.IO) {
-            val views = collectionViewRepository.load(includeDefault = false, includeFilters = true).map { it.mapToExportable() }
             export(
                 uri,
                 Constants.TYPE_COLLECTION_VIEWS_DESCRIPTION,
                 1,
                 _collectionViewProgress,
-                views,
+                { onProgress, emit ->
+                    val views = collectionViewRepository.load(includeDefault = false, includeFilters = true)
+                    views.forEachIndexed { index, view ->
+                        onProgress(index, views.size)
+                        emit(view.mapToExportable())
+                    }
+                },
             ) { record: CollectionView, writer: JsonWriter ->
                 gson.toJson(record, CollectionView::class.java, writer)
             }
@@ -82,13 +91,16 @@ class DataPortViewModel @Inject constructor(
 
     fun exportGames(uri: Uri) {
         viewModelScope.launch(Dispatchers.IO) {
-            val colors = gameRepository.getPlayColors().map { Game(it.key, it.value.map { color -> Color(color) }) }.filter { it.colors.isNotEmpty() }
             export(
                 uri,
                 Constants.TYPE_GAMES_DESCRIPTION,
                 1,
                 _gameProgress,
-                colors,
+                { onProgress, emit ->
+                    gameRepository.streamPlayColors(onProgress) { gameId, colors ->
+                        emit(Game(gameId, colors.map { color -> Color(color) }))
+                    }
+                },
             ) { record: Game, writer: JsonWriter ->
                 gson.toJson(record, Game::class.java, writer)
             }
@@ -98,22 +110,39 @@ class DataPortViewModel @Inject constructor(
     fun exportUsers(uri: Uri) {
         // TODO export non-users
         viewModelScope.launch(Dispatchers.IO) {
-            val buddies = userRepository.loadAllUsers().map {
-                val colors = playRepository.loadUserColors(it.userName).filter { color -> color.description.isNotBlank() }
-                User(it.userName, colors.map { color -> PlayerColor(color.sortOrder, color.description) })
-            }.filter { it.colors.isNotEmpty() }
             export(
                 uri,
                 Constants.TYPE_USERS_DESCRIPTION,
                 1,
                 _userProgress,
-                buddies,
+                { onProgress, emit ->
+                    userRepository.streamColors(onProgress) { username, colors ->
+                        emit(User(username, colors.map { (sort, color) -> PlayerColor(sort, color) }))
+                    }
+                },
             ) { record: User, writer: JsonWriter ->
                 gson.toJson(record, User::class.java, writer)
             }
         }
     }
 
+    fun exportSyncMetrics(uri: Uri) {
+        viewModelScope.launch(Dispatchers.IO) {
+            openFile(uri)?.use {
+                _syncMetricsProgress.start()
+                try {
+                    FileOutputStream(it.fileDescriptor).use { stream -> syncMetricsRecorder.export(stream) }
+                    postMessage(R.string.msg_export_success)
+                } catch (e: Exception) {
+                    Timber.e(e)
+                    postMessage(R.string.msg_export_failed)
+                } finally {
+                    _syncMetricsProgress.complete()
+                }
+            }
+        }
+    }
+
     private suspend fun openFile(uri: Uri): ParcelFileDescriptor? = withContext(Dispatchers.IO) {
         val pfd = try {
             getApplication<BggApplication>().contentResolver.openFileDescriptor(uri, "w")
@@ -132,18 +161,21 @@ class DataPortViewModel @Inject constructor(
         pfd
     }
 
+    /**
+     * Writes the records to the file as [streamRecords] emits them, so only one record is held in memory at a time.
+     */
     private suspend fun <T : Model> export(
         uri: Uri,
         typeDescription: String,
         version: Int,
         progress: ProgressLiveData,
-        list: List<T>,
+        streamRecords: suspend (onProgress: (current: Int, max: Int) -> Unit, emit: suspend (record: T) -> Unit) -> Unit,
         writeJsonRecord: (record: T, writer: JsonWriter) -> Unit,
     ) = withContext(Dispatchers.IO) {
         openFile(uri)?.use {
             progress.start()
             try {
-                JsonWriter(OutputStreamWriter(FileOutputStream(it.fileDescriptor), "UTF-8")).use { writer ->
+                JsonWriter(BufferedWriter(OutputStreamWriter(FileOutputStream(it.fileDescriptor), "UTF-8"))).use { writer ->
                     writer.setIndent("  ")
                     writer.beginObject()
                     writer.name(NAME_TYPE).value(typeDescription)
@@ -151,9 +183,14 @@ class DataPortViewModel @Inject constructor(
                     writer.name(NAME_ITEMS)
                     writer.beginArray()
 
-                    progress.start(list.size)
-                    list.forEachIndexed { index, record ->
-                        progress.update(index)
+                    var max = -1
+                    streamRecords({ current, total ->
+                        if (total != max) {
+                            max = total
+                            progress.start(total)
+                        }
+                        progress.update(current)
+                    }) { record ->
                         try {
                             writeJsonRecord(record, writer)
                         } catch (e: RuntimeException) {
@@ -186,7 +223,7 @@ class DataPortViewModel @Inject constructor(
                 Constants.TYPE_COLLECTION_VIEWS_DESCRIPTION,
                 _collectionViewProgress,
                 { reader -> gson.fromJson(reader, CollectionView::class.java) },
-                { item: CollectionView, _ -> collectionViewRepository.insertView(item.mapToEntity()) },
+                { items: List<CollectionView>, _ -> items.forEach { collectionViewRepository.insertView(it.mapToEntity()) } },
                 { collectionViewRepository.delete() },
             )
         }
@@ -199,7 +236,7 @@ class DataPortViewModel @Inject constructor(
                 Constants.TYPE_GAMES_DESCRIPTION,
                 _gameProgress,
                 { reader -> gson.fromJson(reader, Game::class.java) },
-                { item: Game, _ -> gameRepository.updateColors(item.id, item.colors.map { it.color }) },
+                { items: List<Game>, _ -> gameRepository.updateColors(items.associate { item -> item.id to item.colors.map { it.color } }) },
             )
         }
     }
@@ -211,7 +248,7 @@ class DataPortViewModel @Inject constructor(
                 Constants.TYPE_USERS_DESCRIPTION,
                 _userProgress,
                 { reader: JsonReader -> gson.fromJson(reader, User::class.java) },
-                { item: User, _ -> userRepository.updateColors(item.name, item.colors.map { it.sort to it.color }) },
+                { items: List<User>, _ -> userRepository.updateColors(items.associate { item -> item.name to item.colors.map { it.sort to it.color } }) },
             )
         }
     }
@@ -234,27 +271,50 @@ class DataPortViewModel @Inject constructor(
         return pfd
     }
 
+    /**
+     * Reads the file one record at a time, importing them in chunks of [IMPORT_CHUNK_SIZE] so that each chunk is saved
+     * in a single transaction and the whole file is never held in memory. An import that replaces the existing records
+     * (with [initializeImport]) holds them until the whole file has been read, so a malformed file or one of the wrong
+     * type leaves the existing records alone.
+     */
     private suspend fun <T> import(
         uri: Uri,
         typeDescription: String,
         progress: ProgressLiveData,
         parseItem: (reader: JsonReader) -> T,
-        importRecord: suspend (item: T, version: Int) -> Unit,
-        initializeImport: suspend () -> Unit = {},
+        importRecords: suspend (items: List<T>, version: Int) -> Unit,
+        initializeImport: (suspend () -> Unit)? = null,
     ) = withContext(Dispatchers.IO) {
-        val items: MutableList<T> = mutableListOf()
         var version = 0
         openFileToRead(uri)?.use { pfd ->
-            val reader = JsonReader(InputStreamReader(FileInputStream(pfd.fileDescriptor), "UTF-8"))
+            val reader = JsonReader(BufferedReader(InputStreamReader(FileInputStream(pfd.fileDescriptor), "UTF-8")))
             try {
                 progress.start()
                 var shouldContinue = true
-                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                var importedCount = 0
+                val isStaged = initializeImport != null
+                val chunk = mutableListOf<T>()
+
+                suspend fun flush() {
+                    chunk.chunked(IMPORT_CHUNK_SIZE).forEach { items ->
+                        importRecords(items, version)
+                        importedCount += items.size
+                        progress.update(importedCount)
+                    }
+                    chunk.clear()
+                }
+
+                suspend fun readItems() {
                     reader.beginArray()
                     while (reader.hasNext()) {
-                        items += parseItem(reader)
+                        chunk += parseItem(reader)
+                        if (!isStaged && chunk.size >= IMPORT_CHUNK_SIZE) flush()
                     }
                     reader.endArray()
+                }
+
+                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readItems()
                 } else {
                     reader.beginObject()
                     while (reader.hasNext() && shouldContinue) {
@@ -266,13 +326,7 @@ class DataPortViewModel @Inject constructor(
                                 }
                             }
                             NAME_VERSION -> version = reader.nextInt()
-                            NAME_ITEMS -> {
-                                reader.beginArray()
-                                while (reader.hasNext()) {
-                                    items += parseItem(reader)
-                                }
-                                reader.endArray()
-                            }
+                            NAME_ITEMS -> readItems()
                             else -> reader.skipValue()
                         }
                     }
@@ -280,11 +334,8 @@ class DataPortViewModel @Inject constructor(
                 }
 
                 if (shouldContinue) {
-                    initializeImport()
-                    items.forEachIndexed { i, item ->
-                        progress.update(i)
-                        importRecord(item, version)
-                    }
+                    initializeImport?.invoke()
+                    flush()
                     postMessage(R.string.msg_import_success)
                 }
             } catch (e: Exception) {
@@ -305,5 +356,7 @@ class DataPortViewModel @Inject constructor(
         const val NAME_TYPE = "type"
         const val NAME_VERSION = "version"
         const val NAME_ITEMS = "items"
+
+        private const val IMPORT_CHUNK_SIZE = 100
     }
 }
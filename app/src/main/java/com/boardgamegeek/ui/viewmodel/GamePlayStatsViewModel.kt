@@ -1,14 +1,17 @@
 package com.boardgamegeek.ui.viewmodel
 
 import android.app.Application
+import android.content.SharedPreferences
 import androidx.lifecycle.*
 import com.boardgamegeek.entities.*
-import com.boardgamegeek.extensions.isOlderThan
+import com.boardgamegeek.extensions.*
 import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.repository.GameCollectionRepository
 import com.boardgamegeek.repository.PlayRepository
 import com.boardgamegeek.util.RemoteConfig
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import java.util.concurrent.atomic.AtomicBoolean
 import javax.inject.Inject
 import kotlin.time.Duration.Companion.minutes
@@ -21,6 +24,18 @@ class GamePlayStatsViewModel @Inject constructor(
 ) : AndroidViewModel(application) {
     private val areItemsRefreshing = AtomicBoolean()
     private val refreshItemsMinutes = RemoteConfig.getInt(RemoteConfig.KEY_REFRESH_GAME_COLLECTION_MINUTES)
+    private val prefs: SharedPreferences by lazy { application.preferences() }
+    private val statsCache = mutableMapOf<Int, Pair<StatsKey, GamePlayStatsEntity>>()
+
+    private data class StatsKey(
+        val changeToken: Long,
+        val playingTime: Int,
+        val personalRating: Double,
+        val isOwned: Boolean,
+        val includeIncompletePlays: Boolean,
+        val username: String,
+        val gameHIndex: Int,
+    )
 
     private val _gameId = MutableLiveData<Int>()
     fun setGameId(gameId: Int) {
@@ -47,23 +62,42 @@ class GamePlayStatsViewModel @Inject constructor(
         }
     }
 
-    val plays: LiveData<RefreshableResource<List<PlayEntity>>> = _gameId.switchMap { gameId ->
-        liveData {
-            val list = when (gameId) {
-                BggContract.INVALID_ID -> null
-                else -> playRepository.loadPlaysByGame(gameId)
-            }
-            emit(RefreshableResource.success(list))
-        }
-    }
-
-    val players: LiveData<List<PlayPlayerEntity>> = _gameId.switchMap { gameId ->
+    /**
+     * Stats for the game's plays, or null if it hasn't been played. These are recalculated only when the plays, or the
+     * game details and preferences they depend on, change.
+     */
+    val stats: LiveData<GamePlayStatsEntity?> = game.switchMap { resource ->
         liveData {
-            val list = when (gameId) {
-                BggContract.INVALID_ID -> emptyList()
-                else -> playRepository.loadPlayersByGame(gameId)
+            val items = resource?.data ?: return@liveData
+            val gameId = _gameId.value ?: BggContract.INVALID_ID
+            val plays = if (gameId == BggContract.INVALID_ID) emptyList() else playRepository.loadPlaysByGame(gameId)
+            if (plays.isEmpty()) {
+                emit(null)
+                return@liveData
             }
-            emit(list)
+            val players = playRepository.loadPlayersByGame(gameId)
+            val key = StatsKey(
+                GamePlayStatsEntity.changeToken(plays, players),
+                items.firstOrNull()?.playingTime ?: 0,
+                items.filter { it.rating > 0.0 }.map { it.rating }.takeIf { it.isNotEmpty() }?.average() ?: 0.0,
+                items.any { it.own },
+                prefs[PlayStats.LOG_PLAY_STATS_INCOMPLETE, false] ?: false,
+                prefs[AccountPreferences.KEY_USERNAME, ""].orEmpty(),
+                prefs[PlayStats.KEY_GAME_H_INDEX, 0] ?: 0,
+            )
+            val stats = statsCache[gameId]?.takeIf { it.first == key }?.second ?: withContext(Dispatchers.Default) {
+                GamePlayStatsEntity(
+                    plays,
+                    players,
+                    key.playingTime,
+                    key.personalRating,
+                    key.isOwned,
+                    key.includeIncompletePlays,
+                    key.username,
+                    key.gameHIndex,
+                )
+            }.also { statsCache[gameId] = key to it }
+            emit(stats)
         }
     }
 }
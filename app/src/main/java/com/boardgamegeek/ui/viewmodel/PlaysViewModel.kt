@@ -2,18 +2,23 @@ package com.boardgamegeek.ui.viewmodel
 
 import android.app.Application
 import androidx.lifecycle.*
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
+import androidx.paging.liveData
 import com.boardgamegeek.BggApplication
 import com.boardgamegeek.R
 import com.boardgamegeek.entities.PlayEntity
-import com.boardgamegeek.entities.RefreshableResource
 import com.boardgamegeek.extensions.PREFERENCES_KEY_SYNC_PLAYS
 import com.boardgamegeek.livedata.Event
 import com.boardgamegeek.livedata.LiveSharedPreference
+import com.boardgamegeek.livedata.PlaysPagingSource
 import com.boardgamegeek.provider.BggContract
-import com.boardgamegeek.repository.GameRepository
 import com.boardgamegeek.repository.PlayRepository
 import com.boardgamegeek.util.RateLimiter
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.flow.collectLatest
 import kotlinx.coroutines.launch
 import java.lang.Exception
 import javax.inject.Inject
@@ -22,7 +27,6 @@ import kotlin.time.Duration.Companion.minutes
 @HiltViewModel
 class PlaysViewModel @Inject constructor(
     application: Application,
-    private val gameRepository: GameRepository,
     private val playRepository: PlayRepository,
 ) : AndroidViewModel(application) {
     private val syncPlays = LiveSharedPreference<Boolean>(getApplication(), PREFERENCES_KEY_SYNC_PLAYS)
@@ -61,31 +65,57 @@ class PlaysViewModel @Inject constructor(
     val syncingStatus: LiveData<Boolean>
         get() = _syncingStatus
 
-    val plays: LiveData<RefreshableResource<List<PlayEntity>>> = playInfo.switchMap {
+    val plays: LiveData<PagingData<PlayEntity>> = playInfo.switchMap { info ->
+        val query = createQuery(info)
+        if (query == null) MutableLiveData(PagingData.empty()) else {
+            Pager(PagingConfig(PAGE_SIZE, enablePlaceholders = false)) {
+                PlaysPagingSource(getApplication<BggApplication>().contentResolver, query, playRepository)
+            }.liveData.cachedIn(viewModelScope)
+        }
+    }
+
+    /**
+     * The total quantity of the plays in the list, kept up to date without loading them all.
+     */
+    val playCount: LiveData<Int> = playInfo.switchMap { info ->
         liveData {
+            val query = createQuery(info)
+            if (query == null) emit(0)
+            else playRepository.observePlayChanges().collectLatest { emit(playRepository.sumPlayQuantity(query)) }
+        }
+    }
+
+    fun refresh() {
+        playInfo.value?.let { refreshPlays(it) }
+    }
+
+    private fun refreshPlays(info: PlayInfo) {
+        if (syncPlays.value != true || !playsRateLimiter.shouldProcess(info.id)) {
+            _syncingStatus.value = false
+            return
+        }
+        viewModelScope.launch {
             try {
-                val list = loadPlays(it)
-                val refreshedList = if (syncPlays.value == true && playsRateLimiter.shouldProcess(it.id)) {
-                    emit(RefreshableResource.refreshing(list))
-                    when (it.mode) {
-                        Mode.GAME -> playRepository.refreshPlaysForGame(it.id)
-                        else -> playRepository.refreshPlays()
-                    }
-                    loadPlays(it)
-                } else list
-                emit(RefreshableResource.success(refreshedList))
+                _syncingStatus.value = true
+                when (info.mode) {
+                    Mode.GAME -> playRepository.refreshPlaysForGame(info.id)
+                    else -> playRepository.refreshPlays()
+                }
             } catch (e: Exception) {
                 playsRateLimiter.reset(0)
-                emit(RefreshableResource.error(e, getApplication()))
+                _errorMessage.value = e.localizedMessage ?: e.message ?: e.toString()
+            } finally {
+                _syncingStatus.value = false
             }
         }
     }
 
-    fun refresh() {
-        playInfo.value.let { playInfo.value = it }
+    private fun setPlayInfo(info: PlayInfo) {
+        playInfo.value = info
+        refreshPlays(info)
     }
 
-    private suspend fun loadPlays(it: PlayInfo) = when (it.mode) {
+    private fun createQuery(it: PlayInfo) = when (it.mode) {
         Mode.ALL -> {
             val sortType = when (it.sort) {
                 SortType.DATE -> PlayRepository.SortBy.DATE
@@ -94,15 +124,15 @@ class PlaysViewModel @Inject constructor(
                 SortType.LENGTH -> PlayRepository.SortBy.LENGTH
             }
             when (it.filter) {
-                FilterType.ALL -> playRepository.getPlays(sortType)
-                FilterType.DIRTY -> playRepository.getDraftPlays()
-                FilterType.PENDING -> playRepository.getPendingPlays()
+                FilterType.ALL -> playRepository.createPlaysQuery(sortType)
+                FilterType.DIRTY -> playRepository.createDraftPlaysQuery()
+                FilterType.PENDING -> playRepository.createPendingPlaysQuery()
             }
         }
-        Mode.GAME -> gameRepository.getPlays(it.id)
-        Mode.LOCATION -> playRepository.loadPlaysByLocation(it.name)
-        Mode.BUDDY -> playRepository.loadPlaysByUsername(it.name)
-        Mode.PLAYER -> playRepository.loadPlaysByPlayerName(it.name)
+        Mode.GAME -> playRepository.createGamePlaysQuery(it.id)
+        Mode.LOCATION -> playRepository.createLocationPlaysQuery(it.name)
+        Mode.BUDDY -> playRepository.createUsernamePlaysQuery(it.name)
+        Mode.PLAYER -> playRepository.createPlayerNamePlaysQuery(it.name)
     }
 
     val filterType: LiveData<FilterType> = playInfo.map {
@@ -118,30 +148,30 @@ class PlaysViewModel @Inject constructor(
     }
 
     fun setGame(gameId: Int) {
-        playInfo.value = PlayInfo(Mode.GAME, id = gameId)
+        setPlayInfo(PlayInfo(Mode.GAME, id = gameId))
     }
 
     fun setLocation(locationName: String) {
-        playInfo.value = PlayInfo(Mode.LOCATION, locationName)
+        setPlayInfo(PlayInfo(Mode.LOCATION, locationName))
     }
 
     fun setUsername(username: String) {
-        playInfo.value = PlayInfo(Mode.BUDDY, username)
+        setPlayInfo(PlayInfo(Mode.BUDDY, username))
     }
 
     fun setPlayerName(playerName: String) {
-        playInfo.value = PlayInfo(Mode.PLAYER, playerName)
+        setPlayInfo(PlayInfo(Mode.PLAYER, playerName))
     }
 
     fun setFilter(type: FilterType) {
         if (playInfo.value?.filter != type) {
-            playInfo.value = PlayInfo(Mode.ALL, filter = type, sort = playInfo.value?.sort ?: SortType.DATE)
+            setPlayInfo(PlayInfo(Mode.ALL, filter = type, sort = playInfo.value?.sort ?: SortType.DATE))
         }
     }
 
     fun setSort(type: SortType) {
         if (playInfo.value?.sort != type) {
-            playInfo.value = PlayInfo(Mode.ALL, filter = playInfo.value?.filter ?: FilterType.ALL, sort = type)
+            setPlayInfo(PlayInfo(Mode.ALL, filter = playInfo.value?.filter ?: FilterType.ALL, sort = type))
         }
     }
 
@@ -167,7 +197,6 @@ class PlaysViewModel @Inject constructor(
             try {
                 _syncingStatus.postValue(true)
                 playRepository.refreshPlaysForDate(timeInMillis)
-                refresh()
             } catch (e: Exception) {
                 _errorMessage.postValue(e.localizedMessage ?: e.message ?: e.toString())
             } finally {
@@ -197,4 +226,8 @@ class PlaysViewModel @Inject constructor(
             playRepository.enqueueUploadRequest(idsDeleted)
         }
     }
+
+    companion object {
+        private const val PAGE_SIZE = 50
+    }
 }
@@ -4,6 +4,7 @@ import android.app.Application
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
 import com.boardgamegeek.repository.*
+import com.boardgamegeek.util.ResponseCache
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.launch
 import javax.inject.Inject
@@ -22,6 +23,7 @@ class SettingsViewModel @Inject constructor(
     private val playRepository: PlayRepository,
     private val publisherRepository: PublisherRepository,
     private val userRepository: UserRepository,
+    private val responseCache: ResponseCache,
 ) : AndroidViewModel(application) {
     fun clearAllData() {
         viewModelScope.launch {
@@ -35,6 +37,7 @@ class SettingsViewModel @Inject constructor(
             playRepository.deletePlays()
             userRepository.deleteUsers()
             imageRepository.delete()
+            responseCache.clear()
         }
     }
 
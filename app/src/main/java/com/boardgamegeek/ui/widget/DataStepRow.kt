@@ -33,6 +33,7 @@ class DataStepRow @JvmOverloads constructor(
         context.withStyledAttributes(attrs, R.styleable.DataStepRow, defStyleAttr) {
             findViewById<TextView>(R.id.typeView).text = getString(R.styleable.DataStepRow_titleLabel)
             findViewById<TextView>(R.id.descriptionView).text = getString(R.styleable.DataStepRow_descriptionLabel)
+            findViewById<Button>(R.id.importButton).isVisible = getBoolean(R.styleable.DataStepRow_importable, true)
         }
     }
 
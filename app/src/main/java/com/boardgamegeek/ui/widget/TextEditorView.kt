@@ -22,7 +22,7 @@ class TextEditorView @JvmOverloads constructor(
     defStyleAttr: Int = 0,
     defStyleRes: Int = 0
 ) : ForegroundLinearLayout(context, attrs, defStyleAttr, defStyleRes) {
-    private val markupConverter = XmlApiMarkupConverter(context)
+    private val markupConverter = XmlApiMarkupConverter.getInstance(context)
 
     init {
         LayoutInflater.from(context).inflate(R.layout.widget_text_editor, this)
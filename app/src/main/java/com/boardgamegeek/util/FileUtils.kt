@@ -50,5 +50,5 @@ object FileUtils {
         return count
     }
 
-    fun getExportFileName(type: String) = "bgg4a-$type.json"
+    fun getExportFileName(type: String, extension: String = "json") = "bgg4a-$type.$extension"
 }
@@ -1,61 +1,38 @@
 package com.boardgamegeek.util
 
-import java.util.regex.Pattern
-
 /**
- * Converts XML returned from the BGG API into HTML.
+ * Converts XML returned from the BGG API into HTML, in a single pass over the text.
  */
 class ForumXmlApiMarkupConverter(spoilerTag: String) {
-    private val replacerList = mutableListOf<Replaceable>()
-
-    init {
-        replacerList.add(SimpleReplacer("\\[o\\]", "<details><summary>$spoilerTag</summary>"))
-        replacerList.add(SimpleReplacer("\\[/o\\]", "</details>"))
-        createPair("heading", "h3")
-        replacerList.add(SimpleReplacer("\\[hr\\]", "<hr/>"))
-    }
-
-    private fun createPair(tag: String, replacementTag: String) {
-        replacerList.add(SimpleReplacer.createStart(tag, replacementTag))
-        replacerList.add(SimpleReplacer.createEnd(tag, replacementTag))
-    }
+    private val tags = mapOf(
+        "o" to "<details><summary>$spoilerTag</summary>",
+        "/o" to "</details>",
+        "heading" to "<h3>",
+        "/heading" to "</h3>",
+        "hr" to "<hr/>",
+    )
+    private val maxTagLength = tags.keys.maxOf { it.length }
 
     fun toHtml(text: String?): String {
-        var html = text.orEmpty()
-        if (html.isEmpty()) return ""
-        for (replacer in replacerList) {
-            html = replacer.replace(html)
-        }
-        return html
-    }
-
-    internal interface Replaceable {
-        fun replace(text: String): String
-        fun strip(text: String): String
-    }
-
-    private class SimpleReplacer(pattern: String, val replacement: String) : Replaceable {
-        val pattern: Pattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE)
-
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            return if (matcher.find()) {
-                matcher.replaceAll(replacement)
-            } else text
-        }
-
-        override fun strip(text: String): String {
-            return pattern.matcher(text).replaceAll("")
-        }
-
-        companion object {
-            fun createStart(tag: String, replacementTag: String): SimpleReplacer {
-                return SimpleReplacer("\\[$tag\\]", "<$replacementTag>")
-            }
-
-            fun createEnd(tag: String, replacementTag: String): SimpleReplacer {
-                return SimpleReplacer("\\[/$tag\\]", "</$replacementTag>")
+        if (text.isNullOrEmpty()) return ""
+        var tagStart = text.indexOf('[')
+        if (tagStart == -1) return text
+        val sb = StringBuilder(text.length + 16)
+        var copied = 0
+        while (tagStart != -1) {
+            val tagEnd = text.indexOf(']', tagStart + 1)
+            if (tagEnd == -1) break
+            val replacement = if (tagEnd - tagStart - 1 <= maxTagLength)
+                tags[text.substring(tagStart + 1, tagEnd).lowercase()]
+            else null
+            if (replacement == null) {
+                tagStart = text.indexOf('[', tagStart + 1)
+            } else {
+                sb.append(text, copied, tagStart).append(replacement)
+                copied = tagEnd + 1
+                tagStart = text.indexOf('[', copied)
             }
         }
+        return sb.append(text, copied, text.length).toString()
     }
 }
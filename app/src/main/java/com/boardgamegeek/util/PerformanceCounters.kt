@@ -0,0 +1,32 @@
+package com.boardgamegeek.util
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide running totals of the work done by the network, parsing and database layers. They're only ever added
+ * to; [SyncMetricsRecorder] takes the difference across a step to attribute the work to it.
+ */
+object PerformanceCounters {
+    val networkBytes = AtomicLong()
+    val parseNanos = AtomicLong()
+    val dbWriteNanos = AtomicLong()
+    val rowsWritten = AtomicLong()
+
+    data class Snapshot(
+        val networkBytes: Long,
+        val parseNanos: Long,
+        val dbWriteNanos: Long,
+        val rowsWritten: Long,
+    )
+
+    fun snapshot() = Snapshot(networkBytes.get(), parseNanos.get(), dbWriteNanos.get(), rowsWritten.get())
+
+    inline fun <T> measureParse(block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            parseNanos.addAndGet(System.nanoTime() - start)
+        }
+    }
+}
@@ -14,6 +14,7 @@ class RemoteConfig {
         const val KEY_SYNC_BUDDIES_MAX = "sync_buddies_max"
         const val KEY_SYNC_BUDDIES_FETCH_INTERVAL_DAYS = "sync_buddies_fetch_interval_days"
         const val KEY_SYNC_BUDDIES_FETCH_PAUSE_MILLIS = "sync_buddies_fetch_pause_millis"
+        const val KEY_SYNC_BUDDIES_CONCURRENCY = "sync_buddies_concurrency"
         const val KEY_SYNC_COLLECTION_FETCH_INTERVAL_DAYS = "sync_collection_fetch_interval_days"
         const val KEY_SYNC_COLLECTION_FETCH_PAUSE_MILLIS = "sync_collection_fetch_pause_millis"
         const val KEY_SYNC_COLLECTION_GAMES_PER_FETCH = "sync_collection_games_per_fetch"
@@ -21,6 +22,8 @@ class RemoteConfig {
         const val KEY_SYNC_GAMES_PER_FETCH = "sync_games_per_fetch"
         const val KEY_SYNC_GAMES_FETCH_MAX = "sync_games_fetch_max"
         const val KEY_SYNC_GAMES_FETCH_MAX_UNUPDATED = "sync_games_fetch_max_unupdated"
+        const val KEY_SYNC_GAMES_IDS_PER_FETCH = "sync_games_ids_per_fetch"
+        const val KEY_SYNC_GAMES_MAX_RESPONSE_KILOBYTES = "sync_games_max_response_kilobytes"
         const val KEY_SYNC_GAMES_FETCH_PAUSE_MILLIS = "sync_games_fetch_pause_millis"
         const val KEY_SYNC_GAMES_DELETE_VIEW_HOURS = "sync_games_delete_view_hours"
         const val KEY_SYNC_PLAYS_FETCH_PAUSE_MILLIS = "sync_plays_fetch_pause_millis"
@@ -38,6 +41,7 @@ class RemoteConfig {
         const val KEY_RETRY_429_MAX_BACKOFF_COUNT = "retry_429_max_backoff_count"
 
         const val KEY_FETCH_IMAGE_WITH_API = "fetch_image_with_api"
+        const val KEY_THUMBNAIL_STORE_MAX_MEGABYTES = "thumbnail_store_max_megabytes"
 
         const val KEY_PRIVACY_CHECK_WEEKS = "privacy_check_weeks"
 
@@ -0,0 +1,164 @@
+package com.boardgamegeek.util
+
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import com.google.gson.reflect.TypeToken
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.io.*
+import java.lang.reflect.Type
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+/**
+ * A disk cache of responses from BGG that aren't stored in the database. Each response is kept as gzipped JSON in a
+ * file keyed by its endpoint and request parameters.
+ *
+ * A response younger than its endpoint's time to live is served as is. An older one is still served, up to the
+ * endpoint's max staleness, while a fresh copy is fetched in the background for the next request. Beyond that, the
+ * request waits on the network, but still falls back to the cached response, however old, if the network fails.
+ */
+class ResponseCache(
+    context: Context,
+    private val clock: () -> Long = { System.currentTimeMillis() },
+) {
+    private val directory: File? by lazy {
+        File(context.cacheDir, CACHE_PATH).takeIf { it.isDirectory || it.mkdirs() }
+    }
+    private val gson = Gson()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val revalidating = ConcurrentHashMap.newKeySet<String>()
+
+    class Endpoint<T>(
+        val name: String,
+        val type: Type,
+        val timeToLiveMillis: Long,
+        val maxStaleMillis: Long,
+    )
+
+    private class Entry<T>(val fetchedAt: Long, val value: T)
+
+    /**
+     * Returns the cached response for the endpoint and parameters, calling [fetch] to get and cache it when it's
+     * missing or too stale. A stale response is only replaced once [fetch] succeeds.
+     */
+    suspend fun <T> get(endpoint: Endpoint<T>, vararg parameters: Any?, fetch: suspend () -> T): T {
+        val key = keyFor(endpoint, parameters)
+        val entry = withContext(Dispatchers.IO) { read(key, endpoint) }
+        val age = entry?.let { clock() - it.fetchedAt } ?: -1L
+        return when {
+            entry != null && age in 0 until endpoint.timeToLiveMillis -> entry.value
+            entry != null && age in 0 until endpoint.maxStaleMillis -> {
+                revalidate(key, endpoint, fetch)
+                entry.value
+            }
+            else -> try {
+                fetch().also { withContext(Dispatchers.IO) { write(key, it) } }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                if (entry == null) throw e
+                Timber.w(e, "Serving the cached %s response from %,d ms ago", endpoint.name, age)
+                entry.value
+            }
+        }
+    }
+
+    suspend fun clear() = withContext(Dispatchers.IO) {
+        try {
+            FileUtils.deleteContents(directory)
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't delete the cached responses")
+        }
+    }
+
+    private fun <T> revalidate(key: String, endpoint: Endpoint<T>, fetch: suspend () -> T) {
+        if (!revalidating.add(key)) return
+        scope.launch {
+            try {
+                write(key, fetch())
+            } catch (e: Exception) {
+                Timber.w(e, "Couldn't refresh the cached %s response", endpoint.name)
+            } finally {
+                revalidating.remove(key)
+            }
+        }
+    }
+
+    private fun <T> read(key: String, endpoint: Endpoint<T>): Entry<T>? {
+        val file = File(directory ?: return null, key)
+        if (!file.exists()) return null
+        return try {
+            DataInputStream(GZIPInputStream(file.inputStream().buffered())).use { input ->
+                if (input.readByte() != FORMAT_VERSION) null else {
+                    val fetchedAt = input.readLong()
+                    gson.fromJson<T>(InputStreamReader(input, Charsets.UTF_8), endpoint.type)?.let { Entry(fetchedAt, it) }
+                }
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't read the cached %s response", endpoint.name)
+            null
+        } catch (e: JsonParseException) {
+            Timber.w(e, "Couldn't parse the cached %s response", endpoint.name)
+            null
+        } ?: run {
+            file.delete()
+            null
+        }
+    }
+
+    @Synchronized
+    private fun write(key: String, value: Any?) {
+        val directory = directory ?: return
+        val tempFile = File(directory, "$key.tmp")
+        try {
+            DataOutputStream(GZIPOutputStream(tempFile.outputStream().buffered())).use { output ->
+                output.writeByte(FORMAT_VERSION.toInt())
+                output.writeLong(clock())
+                val writer = OutputStreamWriter(output, Charsets.UTF_8)
+                gson.toJson(value, writer)
+                writer.flush()
+            }
+            if (tempFile.renameTo(File(directory, key))) trim(directory) else tempFile.delete()
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't cache the response for %s", key)
+            tempFile.delete()
+        }
+    }
+
+    /**
+     * Deletes the least recently written responses once there are more than [MAX_ENTRIES], so one-off searches don't
+     * pile up.
+     */
+    private fun trim(directory: File) {
+        val files = directory.listFiles() ?: return
+        if (files.size <= MAX_ENTRIES) return
+        files.sortedBy { it.lastModified() }.take(files.size - MAX_ENTRIES).forEach { it.delete() }
+    }
+
+    private fun keyFor(endpoint: Endpoint<*>, parameters: Array<out Any?>): String {
+        val digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(parameters.joinToString(PARAMETER_SEPARATOR).toByteArray())
+        return "${endpoint.name}_${digest.joinToString("") { "%02x".format(it) }}"
+    }
+
+    companion object {
+        private const val CACHE_PATH = "responses"
+        private const val FORMAT_VERSION: Byte = 1
+        private const val HASH_ALGORITHM = "SHA-1"
+        private const val PARAMETER_SEPARATOR = "\u0000"
+        @VisibleForTesting
+        internal const val MAX_ENTRIES = 200
+
+        inline fun <reified T> endpoint(name: String, timeToLiveMillis: Long, maxStaleMillis: Long = timeToLiveMillis * 4) =
+            Endpoint<T>(name, object : TypeToken<T>() {}.type, timeToLiveMillis, maxStaleMillis)
+    }
+}
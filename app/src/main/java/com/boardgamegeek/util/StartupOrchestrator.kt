@@ -0,0 +1,166 @@
+package com.boardgamegeek.util
+
+import android.os.Looper
+import android.os.SystemClock
+import android.os.Trace
+import kotlinx.coroutines.*
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.util.Collections
+
+/**
+ * Runs the app's initializers in stages, so that only the work the first frame depends on happens in
+ * Application.onCreate.
+ *
+ * - [Stage.CRITICAL] initializers run on the calling thread when [start] is called, in dependency order.
+ * - [Stage.DEFERRED] initializers run in the background once the main thread is idle. Those that don't depend on each
+ * other run in parallel.
+ * - [Stage.LAZY] initializers run only when [require]d, either directly or as the dependency of another initializer.
+ *
+ * The time each initializer took is written to the trace file once the deferred initializers finish.
+ */
+class StartupOrchestrator(
+    private val traceFile: () -> File?,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() },
+) {
+    enum class Stage {
+        CRITICAL,
+        DEFERRED,
+        LAZY,
+    }
+
+    class Initializer(
+        val name: String,
+        val stage: Stage,
+        val dependencies: List<String>,
+        val initialize: () -> Unit,
+    )
+
+    data class Timing(
+        val name: String,
+        val stage: Stage,
+        val thread: String,
+        val startMillis: Long,
+        val durationMillis: Long,
+    )
+
+    private val initializers = linkedMapOf<String, Initializer>()
+    private val runs = mutableMapOf<String, Lazy<Unit>>()
+    private val _timings = Collections.synchronizedList(mutableListOf<Timing>())
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var startTime = 0L
+
+    val timings: List<Timing>
+        get() = synchronized(_timings) { _timings.toList() }
+
+    fun add(name: String, stage: Stage, dependencies: List<String> = emptyList(), initialize: () -> Unit) = apply {
+        require(runs.isEmpty()) { "Can't add initializer $name after starting" }
+        require(!initializers.containsKey(name)) { "Initializer $name was already added" }
+        initializers[name] = Initializer(name, stage, dependencies, initialize)
+    }
+
+    /**
+     * Runs the critical initializers and schedules the deferred ones for when the main thread is idle.
+     */
+    fun start() {
+        check(runs.isEmpty()) { "Already started" }
+        validate()
+        startTime = clock()
+        initializers.values.forEach { initializer ->
+            runs[initializer.name] = lazy {
+                initializer.dependencies.forEach { runs.getValue(it).value }
+                measure(initializer)
+            }
+        }
+        initializers.values.filter { it.stage == Stage.CRITICAL }.forEach { runs.getValue(it.name).value }
+        Timber.i("Critical startup took %,d ms", clock() - startTime)
+
+        val deferred = initializers.values.filter { it.stage == Stage.DEFERRED }
+        val looper = Looper.myLooper()
+        if (looper == null) runDeferred(deferred) else Looper.myQueue().addIdleHandler {
+            runDeferred(deferred)
+            false
+        }
+    }
+
+    /**
+     * Runs the lazy initializer with the given name, and its dependencies, if it hasn't run yet.
+     */
+    fun require(name: String) {
+        val run = runs[name] ?: throw IllegalArgumentException("Unknown initializer $name")
+        run.value
+    }
+
+    private fun runDeferred(deferred: List<Initializer>) {
+        scope.launch {
+            deferred.map { initializer ->
+                launch {
+                    try {
+                        runs.getValue(initializer.name).value
+                    } catch (e: Exception) {
+                        Timber.e(e, "Failed to run startup initializer %s", initializer.name)
+                    }
+                }
+            }.joinAll()
+            writeTrace()
+        }
+    }
+
+    private fun measure(initializer: Initializer) {
+        val start = clock()
+        Trace.beginSection(initializer.name.take(MAX_SECTION_NAME_LENGTH))
+        try {
+            initializer.initialize()
+        } finally {
+            Trace.endSection()
+            _timings += Timing(initializer.name, initializer.stage, Thread.currentThread().name, start - startTime, clock() - start)
+        }
+    }
+
+    /**
+     * Ensures every dependency exists, that critical and lazy initializers never wait on a deferred one, and that there
+     * are no cycles.
+     */
+    private fun validate() {
+        initializers.values.forEach { initializer ->
+            initializer.dependencies.forEach { dependencyName ->
+                val dependency = initializers[dependencyName]
+                    ?: throw IllegalArgumentException("Initializer ${initializer.name} depends on unknown initializer $dependencyName")
+                require(initializer.stage == Stage.DEFERRED || dependency.stage != Stage.DEFERRED) {
+                    "${initializer.stage} initializer ${initializer.name} can't depend on deferred initializer $dependencyName"
+                }
+            }
+        }
+        val visited = mutableSetOf<String>()
+        val visiting = mutableSetOf<String>()
+        fun visit(name: String) {
+            if (name in visited) return
+            require(visiting.add(name)) { "Startup initializers have a dependency cycle through $name" }
+            initializers.getValue(name).dependencies.forEach { visit(it) }
+            visiting.remove(name)
+            visited.add(name)
+        }
+        initializers.keys.forEach { visit(it) }
+    }
+
+    private fun writeTrace() {
+        val file = traceFile() ?: return
+        try {
+            file.bufferedWriter().use { writer ->
+                writer.write("name,stage,thread,start_ms,duration_ms")
+                writer.newLine()
+                timings.sortedBy { it.startMillis }.forEach {
+                    writer.write("${it.name},${it.stage},${it.thread},${it.startMillis},${it.durationMillis}")
+                    writer.newLine()
+                }
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't write the startup trace")
+        }
+    }
+
+    companion object {
+        private const val MAX_SECTION_NAME_LENGTH = 127
+    }
+}
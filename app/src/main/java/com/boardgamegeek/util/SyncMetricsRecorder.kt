@@ -0,0 +1,225 @@
+package com.boardgamegeek.util
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.os.SystemClock
+import android.provider.BaseColumns
+import androidx.annotation.VisibleForTesting
+import androidx.core.content.contentValuesOf
+import com.boardgamegeek.io.RequestScheduler
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.io.OutputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * Records how long each step of a sync took and what it cost: network bytes, parse time, database write time, rows
+ * written, and retried requests. The most recent [MAX_ROWS] steps are kept in a table of their own database, so
+ * recording doesn't count against the database writes being measured, and can be [export]ed as CSV.
+ *
+ * The costs come from process-wide [PerformanceCounters], so a step that overlaps another (e.g. when collection and
+ * plays sync at the same time) also counts the other's work.
+ */
+class SyncMetricsRecorder(
+    context: Context,
+    private val requestScheduler: RequestScheduler,
+    private val clock: () -> Long = { System.currentTimeMillis() },
+) {
+    private val openHelper = MetricsDatabase(context)
+
+    data class SyncMetric(
+        val worker: String,
+        val step: String,
+        val startedAt: Long,
+        val wallMillis: Long,
+        val networkBytes: Long,
+        val parseMillis: Long,
+        val dbWriteMillis: Long,
+        val rowsWritten: Long,
+        val retryCount: Long,
+        val succeeded: Boolean,
+    )
+
+    @PublishedApi
+    internal class Start(
+        val timestamp: Long,
+        val elapsedRealtime: Long,
+        val counters: PerformanceCounters.Snapshot,
+        val retryCount: Long,
+    )
+
+    /**
+     * Runs the [block] as the [step] of the [worker], recording its metrics whether it returns, returns early, or
+     * throws. It's considered successful if it returns a value [isSuccess] accepts.
+     */
+    suspend inline fun <T> measure(worker: String, step: String, isSuccess: (T) -> Boolean = { true }, block: () -> T): T {
+        val start = begin()
+        var succeeded = false
+        try {
+            return block().also { succeeded = isSuccess(it) }
+        } finally {
+            end(worker, step, start, succeeded)
+        }
+    }
+
+    @PublishedApi
+    internal fun begin() = Start(clock(), SystemClock.elapsedRealtime(), PerformanceCounters.snapshot(), requestScheduler.metrics.retryCount)
+
+    @PublishedApi
+    internal suspend fun end(worker: String, step: String, start: Start, succeeded: Boolean) {
+        val counters = PerformanceCounters.snapshot()
+        val metric = SyncMetric(
+            worker,
+            step,
+            start.timestamp,
+            SystemClock.elapsedRealtime() - start.elapsedRealtime,
+            counters.networkBytes - start.counters.networkBytes,
+            TimeUnit.NANOSECONDS.toMillis(counters.parseNanos - start.counters.parseNanos),
+            TimeUnit.NANOSECONDS.toMillis(counters.dbWriteNanos - start.counters.dbWriteNanos),
+            counters.rowsWritten - start.counters.rowsWritten,
+            requestScheduler.metrics.retryCount - start.retryCount,
+            succeeded,
+        )
+        Timber.i(
+            "%s/%s took %,d ms: %,d bytes, %,d ms parsing, %,d ms writing %,d rows, %,d retries",
+            worker,
+            step,
+            metric.wallMillis,
+            metric.networkBytes,
+            metric.parseMillis,
+            metric.dbWriteMillis,
+            metric.rowsWritten,
+            metric.retryCount,
+        )
+        withContext(NonCancellable + Dispatchers.IO) { record(metric) }
+    }
+
+    suspend fun load(): List<SyncMetric> = withContext(Dispatchers.IO) {
+        val list = mutableListOf<SyncMetric>()
+        openHelper.readableDatabase.query(TABLE, COLUMNS, null, null, null, null, BaseColumns._ID).use {
+            while (it.moveToNext()) {
+                list += SyncMetric(
+                    it.getString(0),
+                    it.getString(1),
+                    it.getLong(2),
+                    it.getLong(3),
+                    it.getLong(4),
+                    it.getLong(5),
+                    it.getLong(6),
+                    it.getLong(7),
+                    it.getLong(8),
+                    it.getInt(9) == 1,
+                )
+            }
+        }
+        list
+    }
+
+    /**
+     * Writes the recorded metrics, oldest first, to the stream as CSV.
+     */
+    suspend fun export(outputStream: OutputStream) {
+        val metrics = load()
+        withContext(Dispatchers.IO) {
+            outputStream.bufferedWriter().let { writer ->
+                writer.write(COLUMNS.joinToString(","))
+                writer.newLine()
+                metrics.forEach {
+                    writer.write(
+                        "${it.worker},${it.step},${it.startedAt},${it.wallMillis},${it.networkBytes},${it.parseMillis}," +
+                                "${it.dbWriteMillis},${it.rowsWritten},${it.retryCount},${if (it.succeeded) 1 else 0}"
+                    )
+                    writer.newLine()
+                }
+                writer.flush()
+            }
+        }
+    }
+
+    suspend fun clear() = withContext(Dispatchers.IO) {
+        openHelper.writableDatabase.delete(TABLE, null, null)
+    }
+
+    private fun record(metric: SyncMetric) {
+        try {
+            val db = openHelper.writableDatabase
+            val id = db.insert(TABLE, null, metric.toContentValues())
+            if (id > MAX_ROWS) db.delete(TABLE, "${BaseColumns._ID}<=?", arrayOf((id - MAX_ROWS).toString()))
+        } catch (e: Exception) {
+            Timber.w(e, "Couldn't record the metrics of %s/%s", metric.worker, metric.step)
+        }
+    }
+
+    private fun SyncMetric.toContentValues(): ContentValues = contentValuesOf(
+        COLUMN_WORKER to worker,
+        COLUMN_STEP to step,
+        COLUMN_STARTED_AT to startedAt,
+        COLUMN_WALL_MILLIS to wallMillis,
+        COLUMN_NETWORK_BYTES to networkBytes,
+        COLUMN_PARSE_MILLIS to parseMillis,
+        COLUMN_DB_WRITE_MILLIS to dbWriteMillis,
+        COLUMN_ROWS_WRITTEN to rowsWritten,
+        COLUMN_RETRY_COUNT to retryCount,
+        COLUMN_SUCCEEDED to if (succeeded) 1 else 0,
+    )
+
+    private class MetricsDatabase(context: Context) : SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION) {
+        override fun onCreate(db: SQLiteDatabase) {
+            db.execSQL(
+                "CREATE TABLE $TABLE (" +
+                        "${BaseColumns._ID} INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "$COLUMN_WORKER TEXT NOT NULL, " +
+                        "$COLUMN_STEP TEXT NOT NULL, " +
+                        "$COLUMN_STARTED_AT INTEGER NOT NULL, " +
+                        "$COLUMN_WALL_MILLIS INTEGER NOT NULL, " +
+                        "$COLUMN_NETWORK_BYTES INTEGER NOT NULL, " +
+                        "$COLUMN_PARSE_MILLIS INTEGER NOT NULL, " +
+                        "$COLUMN_DB_WRITE_MILLIS INTEGER NOT NULL, " +
+                        "$COLUMN_ROWS_WRITTEN INTEGER NOT NULL, " +
+                        "$COLUMN_RETRY_COUNT INTEGER NOT NULL, " +
+                        "$COLUMN_SUCCEEDED INTEGER NOT NULL)"
+            )
+        }
+
+        override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+            db.execSQL("DROP TABLE IF EXISTS $TABLE")
+            onCreate(db)
+        }
+    }
+
+    companion object {
+        private const val DATABASE_NAME = "sync_metrics.db"
+        private const val DATABASE_VERSION = 1
+        private const val TABLE = "sync_metrics"
+        @VisibleForTesting
+        internal const val MAX_ROWS = 1_000L
+
+        private const val COLUMN_WORKER = "worker"
+        private const val COLUMN_STEP = "step"
+        private const val COLUMN_STARTED_AT = "started_at"
+        private const val COLUMN_WALL_MILLIS = "wall_ms"
+        private const val COLUMN_NETWORK_BYTES = "network_bytes"
+        private const val COLUMN_PARSE_MILLIS = "parse_ms"
+        private const val COLUMN_DB_WRITE_MILLIS = "db_write_ms"
+        private const val COLUMN_ROWS_WRITTEN = "rows_written"
+        private const val COLUMN_RETRY_COUNT = "retry_count"
+        private const val COLUMN_SUCCEEDED = "succeeded"
+
+        private val COLUMNS = arrayOf(
+            COLUMN_WORKER,
+            COLUMN_STEP,
+            COLUMN_STARTED_AT,
+            COLUMN_WALL_MILLIS,
+            COLUMN_NETWORK_BYTES,
+            COLUMN_PARSE_MILLIS,
+            COLUMN_DB_WRITE_MILLIS,
+            COLUMN_ROWS_WRITTEN,
+            COLUMN_RETRY_COUNT,
+            COLUMN_SUCCEEDED,
+        )
+    }
+}
@@ -0,0 +1,268 @@
+package com.boardgamegeek.util
+
+import android.content.Context
+import androidx.annotation.WorkerThread
+import com.boardgamegeek.extensions.ensureHttpsScheme
+import com.boardgamegeek.provider.BggContract.Companion.PATH_THUMBNAILS
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.security.DigestInputStream
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An offline store of thumbnails, filled in the background after syncing and checked before the network when loading
+ * images. Each image is kept exactly as it was downloaded, in a file named by the hash of its content, so an image
+ * served from several URLs is only stored once. When the store grows past its disk budget, the least recently used
+ * URLs are evicted.
+ */
+class ThumbnailStore(
+    context: Context,
+    private val httpClient: OkHttpClient,
+    private val maxSizeBytes: () -> Long = { RemoteConfig.getLong(RemoteConfig.KEY_THUMBNAIL_STORE_MAX_MEGABYTES) * BYTES_PER_MEGABYTE },
+) {
+    private val directory: File? by lazy {
+        FileUtils.generateContentPath(context, PATH_THUMBNAILS)?.let { File(it, STORE_PATH) }?.takeIf { it.isDirectory || it.mkdirs() }
+    }
+
+    // URL to content hash, from least to most recently used
+    private val entries = LinkedHashMap<String, String>(0, 0.75f, true)
+    private val referenceCounts = mutableMapOf<String, Int>()
+    private val fileSizes = mutableMapOf<String, Long>()
+    private var sizeBytes = 0L
+    private var isLoaded = false
+    private var isDirty = false
+
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+    private val bytesWritten = AtomicLong()
+
+    data class Metrics(
+        val entryCount: Int,
+        val fileCount: Int,
+        val sizeBytes: Long,
+        val hitCount: Long,
+        val missCount: Long,
+        val bytesWritten: Long,
+    )
+
+    val metrics: Metrics
+        @Synchronized get() {
+            ensureLoaded()
+            return Metrics(entries.size, fileSizes.size, sizeBytes, hitCount.get(), missCount.get(), bytesWritten.get())
+        }
+
+    val isFull: Boolean
+        @Synchronized get() {
+            ensureLoaded()
+            return sizeBytes >= maxSizeBytes()
+        }
+
+    /**
+     * Returns the stored image for the URL, or null if it isn't in the store. This counts as a use of the image.
+     */
+    @WorkerThread
+    @Synchronized
+    fun get(url: String?): File? {
+        val key = url.ensureHttpsScheme() ?: return null
+        ensureLoaded()
+        val file = entries[key]?.let { fileFor(it) }
+        return if (file?.exists() == true) {
+            hitCount.incrementAndGet()
+            file
+        } else {
+            if (file != null) remove(key)
+            missCount.incrementAndGet()
+            null
+        }
+    }
+
+    /**
+     * Returns the stored image for the URL, downloading it into the store first if it isn't there. Returns null if it
+     * couldn't be downloaded.
+     */
+    @WorkerThread
+    fun fetch(url: String?): File? {
+        val key = url.ensureHttpsScheme() ?: return null
+        peek(key)?.let { return it }
+        val directory = directory ?: return null
+        val tempFile = try {
+            File.createTempFile(TEMP_FILE_PREFIX, null, directory)
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't create a file for the thumbnail at %s", key)
+            return null
+        }
+        try {
+            val digest = MessageDigest.getInstance(HASH_ALGORITHM)
+            httpClient.newCall(Request.Builder().url(key).build()).execute().use { response ->
+                if (!response.isSuccessful) {
+                    Timber.w("Couldn't download the thumbnail at %s [%d]", key, response.code)
+                    return null
+                }
+                val body = response.body ?: return null
+                DigestInputStream(body.byteStream(), digest).use { input ->
+                    tempFile.outputStream().use { output -> input.copyTo(output) }
+                }
+            }
+            val hash = digest.digest().joinToString("") { "%02x".format(it) }
+            return put(key, hash, tempFile)
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't store the thumbnail at %s", key)
+            return null
+        } catch (e: IllegalArgumentException) {
+            Timber.w(e, "Invalid thumbnail URL %s", key)
+            return null
+        } finally {
+            tempFile.delete()
+        }
+    }
+
+    /**
+     * Saves the index of stored images, and the order in which they were used, so they survive the process. Does nothing
+     * if no image was added or removed since the last flush.
+     */
+    @Synchronized
+    fun flush() {
+        val directory = directory ?: return
+        if (!isLoaded || !isDirty) return
+        val tempFile = File(directory, "$INDEX_FILE_NAME.tmp")
+        try {
+            tempFile.bufferedWriter().use { writer ->
+                entries.forEach { (url, hash) ->
+                    writer.write(hash)
+                    writer.write("\t")
+                    writer.write(url)
+                    writer.newLine()
+                }
+            }
+            if (tempFile.renameTo(File(directory, INDEX_FILE_NAME))) isDirty = false else Timber.w("Couldn't save the thumbnail index")
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't save the thumbnail index")
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        referenceCounts.clear()
+        fileSizes.clear()
+        sizeBytes = 0L
+        isLoaded = false
+        isDirty = false
+        try {
+            FileUtils.deleteContents(directory)
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't delete the stored thumbnails")
+        }
+    }
+
+    @Synchronized
+    private fun peek(key: String): File? {
+        ensureLoaded()
+        if (!entries.containsKey(key)) return null
+        val file = fileFor(entries.getValue(key))
+        return if (file.exists()) file else {
+            remove(key)
+            null
+        }
+    }
+
+    @Synchronized
+    private fun put(key: String, hash: String, source: File): File? {
+        ensureLoaded()
+        val file = fileFor(hash)
+        if (!fileSizes.containsKey(hash)) {
+            if (!file.exists() && !source.renameTo(file)) return null
+            val length = file.length()
+            bytesWritten.addAndGet(length)
+            fileSizes[hash] = length
+            sizeBytes += length
+        }
+        entries.remove(key)?.let { release(it) }
+        entries[key] = hash
+        referenceCounts[hash] = (referenceCounts[hash] ?: 0) + 1
+        isDirty = true
+        trimToSize(maxSizeBytes())
+        return file.takeIf { it.exists() }
+    }
+
+    private fun remove(key: String) {
+        entries.remove(key)?.let {
+            release(it)
+            isDirty = true
+        }
+    }
+
+    private fun release(hash: String) {
+        val count = (referenceCounts[hash] ?: 0) - 1
+        if (count > 0) {
+            referenceCounts[hash] = count
+        } else {
+            referenceCounts.remove(hash)
+            sizeBytes -= fileSizes.remove(hash) ?: 0L
+            fileFor(hash).delete()
+        }
+    }
+
+    private fun trimToSize(maxSize: Long) {
+        val iterator = entries.iterator()
+        while (sizeBytes > maxSize && iterator.hasNext()) {
+            val hash = iterator.next().value
+            iterator.remove()
+            release(hash)
+            isDirty = true
+        }
+    }
+
+    /**
+     * Reads the index, dropping entries whose file is missing and deleting files no entry refers to. Files written since
+     * the index was last saved are kept, since the process may have died before it could save them; once the index is
+     * saved again, they're deleted on the next load if they're still not in it.
+     */
+    private fun ensureLoaded() {
+        if (isLoaded) return
+        isLoaded = true
+        val directory = directory ?: return
+        val indexFile = File(directory, INDEX_FILE_NAME)
+        try {
+            if (indexFile.exists()) {
+                indexFile.forEachLine { line ->
+                    val hash = line.substringBefore('\t')
+                    val url = line.substringAfter('\t', "")
+                    if (url.isNotBlank() && hash.isNotBlank()) {
+                        val file = fileFor(hash)
+                        if (!fileSizes.containsKey(hash) && file.exists()) {
+                            fileSizes[hash] = file.length()
+                            sizeBytes += file.length()
+                        }
+                        if (fileSizes.containsKey(hash)) {
+                            entries.remove(url)?.let { release(it) }
+                            entries[url] = hash
+                            referenceCounts[hash] = (referenceCounts[hash] ?: 0) + 1
+                        }
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't read the thumbnail index")
+        }
+        val indexTime = indexFile.lastModified()
+        directory.listFiles()?.forEach {
+            if (it.name != INDEX_FILE_NAME && !fileSizes.containsKey(it.name) && it.lastModified() <= indexTime) it.delete()
+        }
+        trimToSize(maxSizeBytes())
+    }
+
+    private fun fileFor(hash: String) = File(directory, hash)
+
+    companion object {
+        private const val STORE_PATH = "store"
+        private const val INDEX_FILE_NAME = "index"
+        private const val TEMP_FILE_PREFIX = "download"
+        private const val HASH_ALGORITHM = "SHA-256"
+        private const val BYTES_PER_MEGABYTE = 1_024L * 1_024L
+    }
+}
@@ -0,0 +1,20 @@
+package com.boardgamegeek.util
+
+import android.net.Uri
+import com.squareup.picasso.Downloader
+
+/**
+ * Serves images from the [ThumbnailStore] when it has them, and from the [downloader] otherwise.
+ */
+class ThumbnailStoreDownloader(private val store: ThumbnailStore, private val downloader: Downloader) : Downloader {
+    override fun load(uri: Uri, networkPolicy: Int): Downloader.Response {
+        store.get(uri.toString())?.let {
+            return Downloader.Response(it.inputStream(), true, it.length())
+        }
+        return downloader.load(uri, networkPolicy)
+    }
+
+    override fun shutdown() {
+        downloader.shutdown()
+    }
+}
@@ -3,489 +3,356 @@
 package com.boardgamegeek.util
 
 import android.content.Context
-import android.text.TextUtils
+import androidx.annotation.VisibleForTesting
+import androidx.collection.LruCache
 import com.boardgamegeek.R
 import com.boardgamegeek.extensions.ensureHttpsScheme
 import java.util.*
-import java.util.regex.Pattern
 
 /**
  * Converts XML returned from the BGG API into HTML.
+ *
+ * The markup is converted in a single left-to-right pass. Each rule has a priority (the order the rules were originally
+ * applied in); when two emoticons compete for the same colon, the one with the lower priority wins. Rendered results
+ * are cached, so use the shared instance from [getInstance].
+ *
+ * The output matches the regex-based converter this replaced, except where that one was wrong:
+ * - crossed link tags, like `[url=…][thing=1]…[/url]…[/thing]`, pair up left to right instead of nesting one link in
+ *   another, so the tag left unpaired is kept as text;
+ * - [strip] no longer joins the colons either side of a removed tag into a tile, so `:x[/b]:` stays `:x:`, not `X`;
+ * - `$` and `\` in a link are copied as they are, where they used to throw.
  */
-class XmlApiMarkupConverter(context: Context) {
-    private var replacerList = mutableListOf<Replaceable>()
-
-    private fun createPair(tag: String) {
-        replacerList.add(SimpleReplacer.createStart(tag))
-        replacerList.add(SimpleReplacer.createEnd(tag))
-    }
-
-    private fun createPair(tag: String, replacementTag: String) {
-        replacerList.add(SimpleReplacer.createStart(tag, replacementTag))
-        replacerList.add(SimpleReplacer.createEnd(tag, replacementTag))
-    }
-
-    private fun createCamelImage(color: String) {
-        replacerList.add(SimpleReplacer.createImage("${color}camel", "camel_$color.gif"))
-    }
-
-    private fun createTajImage(color: String) {
-        replacerList.add(SimpleReplacer.createImage("${color}taj", "taj_$color.gif"))
-    }
-
-    private fun createTrainImage(color: String) {
-        replacerList.add(SimpleReplacer.createImage("${color}train", "ttr_$color.gif"))
-    }
+class XmlApiMarkupConverter @VisibleForTesting internal constructor(private val spoilerText: String) {
+    private val tags = mapOf(
+        "hr" to "<hr/>",
+        "clear" to "<div style=\"clear:both\"></div>",
+        "b" to "<b>",
+        "/b" to "</b>",
+        "i" to "<i>",
+        "/i" to "</i>",
+        "u" to "<u>",
+        "/u" to "</u>",
+        "-" to "<strike>",
+        "/-" to "</strike>",
+        "floatleft" to "<div style=\"float:left\">",
+        "/floatleft" to "</div>",
+        "center" to "<center>",
+        "/center" to "</center>",
+        "floatright" to "<div style=\"float:right\">",
+        "/floatright" to "</div>",
+        "/color" to "</span>",
+        "/bgcolor" to "</span>",
+        "q" to "Quote:<blockquote>",
+        "/q" to "</blockquote>",
+        "o" to String.format("<details><summary>%s</summary>", spoilerText),
+        "/o" to "</details>",
+        "c" to "<tt>",
+        "/c" to "</tt>",
+        "/size" to "</span>",
+    )
+
+    private val htmlCache = RenderCache()
+    private val strippedCache = RenderCache()
 
     fun toHtml(text: String): String {
         if (text.isEmpty()) return ""
-        var replacedText = text
-        for (replacer in replacerList) {
-            replacedText = replacer.replace(replacedText)
-        }
-        return "<div style=\"white-space: pre-wrap\">$replacedText</div>"
+        return htmlCache[text] ?: "<div style=\"white-space: pre-wrap\">${convert(text, false)}</div>".also { htmlCache.put(text, it) }
     }
 
     fun strip(text: String): String {
         if (text.isEmpty()) return ""
-        var strippedText = text
-        for (replacer in replacerList) {
-            strippedText = replacer.strip(strippedText)
-        }
-        return strippedText
+        return strippedCache[text] ?: convert(text, true).also { strippedCache.put(text, it) }
     }
 
-    internal interface Replaceable {
-        fun replace(text: String): String
-        fun strip(text: String): String
-    }
-
-    private class SimpleReplacer(regex: String, val replacement: String) : Replaceable {
-        private val pattern: Pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
-
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            return if (matcher.find()) {
-                matcher.replaceAll(replacement)
-            } else text
+    private fun convert(text: String, strip: Boolean): String {
+        val sb = StringBuilder(text.length + 16)
+        var i = 0
+        while (i < text.length) {
+            val end = when (text[i]) {
+                '[' -> convertTag(text, i, strip, sb)
+                ':', ';' -> matchEmoticon(text, i, Int.MAX_VALUE)?.let {
+                    sb.append(if (strip) it.strippedText else it.html)
+                    it.end
+                } ?: NO_MATCH
+                else -> NO_MATCH
+            }
+            if (end == NO_MATCH) {
+                sb.append(text[i])
+                i++
+            } else i = end
         }
+        return sb.toString()
+    }
 
-        override fun strip(text: String): String {
-            return pattern.matcher(text).replaceAll("")
+    /**
+     * Appends the conversion of the tag starting at [start] and returns the index after it, or [NO_MATCH] if it isn't
+     * a tag we know about.
+     */
+    private fun convertTag(text: String, start: Int, strip: Boolean, sb: StringBuilder): Int {
+        val close = text.indexOfOnLine(']', start + 1)
+        if (close == NO_MATCH) return NO_MATCH
+        val name = text.substring(start + 1, close)
+        val lowerName = name.asciiLowercase()
+        tags[lowerName]?.let {
+            if (!strip) sb.append(it)
+            return close + 1
         }
-
-        companion object {
-            fun createStart(tag: String): SimpleReplacer {
-                return SimpleReplacer("\\[$tag\\]", "<$tag>")
+        val equalsIndex = name.indexOf('=')
+        val key = if (equalsIndex == -1) lowerName else lowerName.substring(0, equalsIndex)
+        val value = if (equalsIndex == -1) "" else name.substring(equalsIndex + 1)
+        when (key) {
+            "color", "bgcolor" -> {
+                if (value.isEmpty()) return NO_MATCH
+                val color = value.removePrefix("#")
+                when {
+                    strip -> sb.append(color)
+                    key == "color" -> sb.append("<span style=\"color:").append(value).append("\">")
+                    value.startsWith('#') -> sb.append("<span style=\"background-color#:").append(color).append("\">")
+                    else -> sb.append("<span style=\"background-color:").append(value).append("\">")
+                }
+                return close + 1
             }
-
-            fun createStart(tag: String, replacementTag: String): SimpleReplacer {
-                return SimpleReplacer("\\[$tag\\]", "<$replacementTag>")
+            "imageid" -> {
+                // TODO: determine when image is a PNG
+                val imageId = value.takeWhile { it in '0'..'9' }
+                if (imageId.isEmpty()) return NO_MATCH
+                if (strip) sb.append(imageId)
+                else sb.append("<div style=\"display:inline\"><img src=\"${IMAGES_URL}pic").append(imageId).append("_t.jpg\"/></div>")
+                return close + 1
             }
-
-            fun createEnd(tag: String): SimpleReplacer {
-                return SimpleReplacer("\\[/$tag\\]", "</$tag>")
+            "size" -> {
+                // TODO: size isn't working
+                if (equalsIndex == -1) return NO_MATCH
+                if (strip) sb.append(value) else sb.append("<span font-size=\"").append(value).append("px\">")
+                return close + 1
             }
-
-            fun createEnd(tag: String, replacementTag: String): SimpleReplacer {
-                return SimpleReplacer("\\[/$tag\\]", "</$replacementTag>")
+            "q" -> {
+                if (!value.startsWith('"')) return NO_MATCH
+                val quoteEnd = text.indexOfOnLine("\"]", start + 4)
+                if (quoteEnd == NO_MATCH) return NO_MATCH
+                val author = text.substring(start + 4, quoteEnd)
+                if (strip) sb.append(author) else sb.append(author).append(" wrote:<blockquote>")
+                return quoteEnd + 2
             }
-
-            fun createGif(image: String): SimpleReplacer {
-                return SimpleReplacer("\\:$image\\:", "<img src=\"$STATIC_IMAGES_URL$image.gif\"/>")
+        }
+        // TODO: YouTube, Vimeo, tweet, mp3, roll
+        if (key !in CONTENT_TAGS) return NO_MATCH
+        val content = text.contentBefore("[/$key]", close + 1) ?: return NO_MATCH
+        val contentEnd = close + 1 + content.length + key.length + 3
+        when {
+            key == "img" && equalsIndex == -1 -> {
+                val source = convert(content, strip)
+                if (strip) sb.append(source) else sb.append("<div style=\"display:inline\"><img src=\"").append(source).append("\"/></div>")
             }
-
-            fun createPng(image: String): SimpleReplacer {
-                return SimpleReplacer("\\:$image\\:", "<img src=\"$STATIC_IMAGES_URL$image.png\"/>")
+            key == "url" && equalsIndex == -1 -> {
+                val url = convert(content, strip).ensureHttpsScheme()
+                if (strip) sb.append(url.orEmpty()) else sb.append("<a href=\"$url\">$url</a>")
             }
-
-            fun createImage(image: String, imageFile: String): SimpleReplacer {
-                return SimpleReplacer("\\:$image\\:", "<img src=\"$STATIC_IMAGES_URL$imageFile\"/>")
+            key == "url" -> {
+                val url = convert(value, strip).ensureHttpsScheme()
+                val displayText = convert(content, strip)
+                when {
+                    strip -> sb.append(if (content.isBlank()) url.orEmpty() else displayText)
+                    content.isEmpty() -> sb.append("<a href=\"$url\">$url</a>")
+                    else -> sb.append("<a href=\"$url\">$displayText</a>")
+                }
             }
-
-            fun createCustomImage(image: String, imageFile: String): SimpleReplacer {
-                return SimpleReplacer(image, "<img src=\"$STATIC_IMAGES_URL$imageFile\"/>")
+            key == "geekurl" && equalsIndex != -1 -> {
+                val path = convert(value, strip)
+                val displayText = if (content.isEmpty()) path else convert(content, strip)
+                if (strip) sb.append(displayText) else sb.append("<a href=\"$BASE_URL$path\">$displayText</a>")
+            }
+            key in geekLinks && equalsIndex != -1 -> {
+                if (key != "user" && (value.isEmpty() || value.any { it !in '0'..'9' })) return NO_MATCH
+                val id = convert(value, strip)
+                val displayText = if (content.isBlank()) "${geekLinks[key]} $id" else convert(content, strip)
+                if (strip) sb.append(displayText) else sb.append("<a href=\"$BASE_URL/$key/$id\">$displayText</a>")
             }
+            else -> return NO_MATCH
         }
+        return contentEnd
     }
 
-    private class Replacer(regex: String, val prefix: String, val suffix: String) : Replaceable {
-        private val pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
-
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            val buffer = StringBuffer()
-            while (matcher.find()) {
-                matcher.appendReplacement(buffer, "$prefix${matcher.group(1)}$suffix")
-            }
-            matcher.appendTail(buffer)
-            return buffer.toString()
+    /**
+     * Finds the emoticon (or smiley, or tile) starting at [start], considering only those with a priority lower than
+     * [maxPriority]. An emoticon that ends in a colon loses it to a higher priority emoticon that starts with it.
+     */
+    private fun matchEmoticon(text: String, start: Int, maxPriority: Int): Emoticon? {
+        if (start + 2 >= text.length) return null
+        val next = text[start + 1]
+        if (text[start] == ';') {
+            return if (next == ')' && text[start + 2].isRegexWhitespace() && PRIORITY_WINK < maxPriority)
+                Emoticon(PRIORITY_WINK, start + 3, image("wink.gif"))
+            else null
         }
 
-        override fun strip(text: String): String {
-            val matcher = pattern.matcher(text)
-            val buffer = StringBuffer()
-            while (matcher.find()) {
-                matcher.appendReplacement(buffer, matcher.group(1).orEmpty())
-            }
-            matcher.appendTail(buffer)
-            return buffer.toString()
+        val smileyPriority = when (next) {
+            ')' -> 0
+            '(' -> 1
+            'D', 'd' -> 2
+            'P', 'p' -> 3
+            else -> -1
         }
-
-    }
-
-    private class UpperCaseReplacer(regex: String, val prefix: String, val suffix: String) : Replaceable {
-        private val pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
-
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            val buffer = StringBuffer()
-            while (matcher.find()) {
-                matcher.appendReplacement(buffer, "$prefix${matcher.group(1).orEmpty().uppercase(Locale.getDefault())}$suffix")
-            }
-            matcher.appendTail(buffer)
-            return buffer.toString()
+        if (smileyPriority in 0 until maxPriority && text[start + 2].isRegexWhitespace()) {
+            return Emoticon(smileyPriority, start + 3, image(SMILEY_FILES[smileyPriority]))
         }
 
-        override fun strip(text: String): String {
-            val matcher = pattern.matcher(text)
-            val buffer = StringBuffer()
-            while (matcher.find()) {
-                matcher.appendReplacement(buffer, matcher.group(1).orEmpty().uppercase(Locale.getDefault()))
+        val candidates = mutableListOf<Emoticon>()
+        val nameEnd = text.indexOf(':', start + 1)
+        if (nameEnd != -1 && nameEnd - start - 1 <= MAX_EMOTICON_NAME_LENGTH) {
+            emoticons[text.substring(start + 1, nameEnd).asciiLowercase()]?.let { (priority, file) ->
+                if (priority < maxPriority) candidates += Emoticon(priority, nameEnd + 1, image(file))
             }
-            matcher.appendTail(buffer)
-            return buffer.toString()
         }
+        if (next.isAsciiLetter() && text[start + 2] == ':' && priorityTile < maxPriority) {
+            val letter = next.toString()
+            candidates += Emoticon(priorityTile, start + 3, image("tiles/${letter.uppercase(Locale.getDefault())}.gif"), letter.uppercase(Locale.getDefault()))
+        }
+        if ((next == 'k' || next == 'K') && start + 3 < text.length && text[start + 2].isAsciiLetter() && text[start + 3] == ':' && priorityKTile < maxPriority) {
+            val letter = text[start + 2].toString()
+            candidates += Emoticon(priorityKTile, start + 4, image("k$letter.png"), letter)
+        }
+        return candidates.sortedBy { it.priority }.firstOrNull { matchEmoticon(text, it.end - 1, it.priority) == null }
     }
 
-    class UrlReplacer : Replaceable {
-        private val pattern = Pattern.compile("\\[url](.*?)\\[/url]", Pattern.CASE_INSENSITIVE)
-
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val url = matcher.group(1).ensureHttpsScheme()
-                matcher.appendReplacement(result, "<a href=\"$url\">$url</a>")
-            }
-            matcher.appendTail(result)
-            return result.toString()
-        }
+    private class Emoticon(val priority: Int, val end: Int, val html: String, val strippedText: String = "")
 
-        override fun strip(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                matcher.appendReplacement(result, matcher.group(1).ensureHttpsScheme().orEmpty())
-            }
-            matcher.appendTail(result)
-            return result.toString()
-        }
+    private class RenderCache : LruCache<String, String>(CACHE_SIZE_CHARS) {
+        override fun sizeOf(key: String, value: String) = key.length + value.length
     }
 
-    class UrlReplacer2 : Replaceable {
-        private val pattern = Pattern.compile("\\[url=(.*?)](.*?)\\[/url]", Pattern.CASE_INSENSITIVE)
+    companion object {
+        private const val BASE_URL = "https://boardgamegeek.com"
+        private const val STATIC_IMAGES_URL = "https://cf.geekdo-static.com/images/"
+        private const val IMAGES_URL = "https://cf.geekdo-images.com/images/"
 
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val url = matcher.group(1).ensureHttpsScheme()
-                val displayText = matcher.group(2)
-                if (TextUtils.isEmpty(displayText)) {
-                    matcher.appendReplacement(result, "<a href=\"$url\">$url</a>")
-                } else {
-                    matcher.appendReplacement(result, "<a href=\"$url\">$displayText</a>")
-                }
+        private const val NO_MATCH = -1
+        private const val CACHE_SIZE_CHARS = 512 * 1024
+        private const val PRIORITY_WINK = 4
+        private val SMILEY_FILES = arrayOf("smile.gif", "sad.gif", "biggrin.gif", "tongue.gif")
+
+        private val geekLinks = mapOf(
+            "thing" to "thing",
+            "thread" to "thread",
+            "article" to "reply", // TODO: add #id
+            "geeklist" to "GeekList",
+            "filepage" to "file",
+            "person" to "person",
+            "company" to "company",
+            "property" to "property",
+            "family" to "family",
+            "guild" to "guild",
+            "user" to "user",
+            "question" to "GeekQuestion",
+            "media" to "podcast episode",
+            "blog" to "blog",
+            "blogpost" to "blog post",
+        )
+
+        private val CONTENT_TAGS = geekLinks.keys + listOf("img", "url", "geekurl")
+
+        /**
+         * Emoticon name (lowercase) to its priority and image file.
+         */
+        private val emoticons: Map<String, Pair<Int, String>> = buildEmoticons()
+        private val priorityTile = PRIORITY_WINK + 1 + emoticons.size
+        private val priorityKTile = priorityTile + 1
+        private val MAX_EMOTICON_NAME_LENGTH = emoticons.keys.maxOf { it.length }
+
+        private fun buildEmoticons(): Map<String, Pair<Int, String>> {
+            val files = mutableListOf<Pair<String, String>>()
+            fun gif(name: String) = files.add(name to "$name.gif")
+            fun png(name: String) = files.add(name to "$name.png")
+            fun image(name: String, file: String) = files.add(name to file)
+
+            image("what", "rock.gif")
+            listOf("wow", "angry", "cool", "laugh", "meeple", "surprise", "blush", "snore", "cry", "kiss", "modest", "whistle", "devil", "soblue", "yuk", "gulp", "shake", "arrrh", "zombie", "robot", "ninja", "sauron", "goo").forEach { gif(it) }
+            image("star", "star_yellow.gif")
+            image("halfstar", "star_yellowhalf.gif")
+            image("nostar", "star_white.gif")
+            image("gg", "geekgold.gif")
+            listOf("bag", "bacon", "caravan").forEach { gif(it) }
+            listOf("mint", "lime", "grape", "lemon", "orange").forEach { image("${it}camel", "camel_$it.gif") }
+            gif("goldencamel")
+            listOf("blue", "brown", "gray", "maroon", "tan", "white").forEach { image("${it}taj", "taj_$it.gif") }
+            image("thumbsup", "thumbs-up.gif")
+            image("thumbsdown", "thumbs-down.gif")
+            listOf("coffee", "tobacco", "indigo", "sugar", "corn", "colonist", "1vp", "5vp", "1db", "5db").forEach { gif(it) }
+            for (i in 0..9) image("d10-$i", "d10-$i.gif")
+            image("city", "ttr_city.gif")
+            listOf("red", "green", "blue", "yellow", "black", "purple", "white").forEach { image("${it}train", "ttr_$it.gif") }
+            listOf("wood", "wheat", "sheep", "ore", "brick", "cinnamon", "clove", "ginger", "nutmeg", "pepper", "coal", "oil", "trash", "nuclear").forEach { gif(it) }
+            for (i in 1..6) {
+                image("d6-$i", "die-white-$i.gif")
+                image("bd6-$i", "die-black-$i.gif")
             }
-            matcher.appendTail(result)
-            return result.toString()
-        }
-
-        override fun strip(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val displayText = matcher.group(2)
-                if (displayText == null || displayText.isBlank()) {
-                    matcher.appendReplacement(result, matcher.group(1).ensureHttpsScheme().orEmpty())
-                } else {
-                    matcher.appendReplacement(result, displayText)
-                }
+            listOf("tankard", "jug", "chalice").forEach { png(it) }
+            listOf("worker", "building", "aristocrat", "trade").forEach { gif(it) }
+            listOf("arrowN", "arrowNE", "arrowE", "arrowSE", "arrowS", "arrowSW", "arrowW", "arrowNW", "power").forEach { png(it) }
+            listOf("XBA", "XBB", "XBX", "XBY", "PSC", "PSS", "PST", "PSX").forEach { png(it) }
+            listOf("WiiH", "Wii1", "Wii2", "WiiA", "WiiB", "WiiC", "WiiX", "WiiY", "WiiZ", "Wii+", "Wii-").forEach { png(it) }
+            image("!block", "bang_block.png")
+            image("?block", "question_block.png")
+            image("blank", "tiles/BLANK.gif")
+
+            val map = mutableMapOf<String, Pair<Int, String>>()
+            files.forEachIndexed { index, (name, file) ->
+                map.putIfAbsent(name.asciiLowercase(), PRIORITY_WINK + 1 + index to file)
             }
-            matcher.appendTail(result)
-            return result.toString()
+            return map
         }
-    }
 
-    class GeekUrlReplacer : Replaceable {
-        private val pattern = Pattern.compile("\\[geekurl=(.*?)](.*?)\\[/geekurl]", Pattern.CASE_INSENSITIVE)
+        private fun image(file: String) = "<img src=\"$STATIC_IMAGES_URL$file\"/>"
 
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val displayText = matcher.group(2)
-                if (TextUtils.isEmpty(displayText)) {
-                    matcher.appendReplacement(result, "<a href=\"$BASE_URL${matcher.group(1)}\">${matcher.group(1)}</a>")
-                } else {
-                    matcher.appendReplacement(result, "<a href=\"$BASE_URL${matcher.group(1)}\">$displayText</a>")
-                }
-            }
-            matcher.appendTail(result)
-            return result.toString()
-        }
+        private fun Char.isAsciiLetter() = this in 'a'..'z' || this in 'A'..'Z'
 
-        override fun strip(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val displayText = matcher.group(2)
-                if (displayText == null || displayText.isEmpty()) {
-                    matcher.appendReplacement(result, matcher.group(1).orEmpty())
-                } else {
-                    matcher.appendReplacement(result, displayText)
-                }
-            }
-            matcher.appendTail(result)
-            return result.toString()
-        }
-    }
+        private fun Char.isRegexWhitespace() = this == ' ' || this == '\t' || this == '\n' || this == '\u000B' || this == '\u000C' || this == '\r'
 
-    /***
-     * Replaces a GeekLink with an HREF tag.
-     * [thing=13]Catan[/thing] becomes [Catan](https://boardgamegeek.com/thing/13)
-     * [thing=13][/thing] becomes [thing 13](https://boardgamegeek.com/thing/13)
-     */
-    class GeekLinkReplacer private constructor(pattern: String, val url: String, private val displayPrefix: String) : Replaceable {
-        private val pattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE)
+        private fun Char.isLineTerminator() = this == '\n' || this == '\r' || this == '\u0085' || this == '\u2028' || this == '\u2029'
 
-        override fun replace(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val displayText = matcher.group(2)
-                if (displayText == null || displayText.isBlank()) {
-                    matcher.appendReplacement(result, "<a href=\"$url${matcher.group(1)}\">$displayPrefix ${matcher.group(1)}</a>")
-                } else {
-                    matcher.appendReplacement(result, "<a href=\"$url${matcher.group(1)}\">$displayText</a>")
-                }
-            }
-            matcher.appendTail(result)
-            return result.toString()
+        private fun String.asciiLowercase(): String {
+            if (none { it in 'A'..'Z' }) return this
+            val chars = toCharArray()
+            for (i in chars.indices) if (chars[i] in 'A'..'Z') chars[i] = chars[i] + ('a' - 'A')
+            return String(chars)
         }
 
-        override fun strip(text: String): String {
-            val matcher = pattern.matcher(text)
-            val result = StringBuffer()
-            while (matcher.find()) {
-                val displayText = matcher.group(2)
-                if (displayText == null || displayText.isBlank()) {
-                    matcher.appendReplacement(result, "$displayPrefix ${matcher.group(1)}")
-                } else {
-                    matcher.appendReplacement(result, displayText)
-                }
+        private fun String.indexOfOnLine(char: Char, startIndex: Int): Int {
+            for (i in startIndex until length) {
+                if (this[i] == char) return i
+                if (this[i].isLineTerminator()) return NO_MATCH
             }
-            matcher.appendTail(result)
-            return result.toString()
+            return NO_MATCH
         }
 
-        companion object {
-            fun createAlpha(path: String): GeekLinkReplacer {
-                return GeekLinkReplacer("\\[$path=(.*?)\\](.*?)\\[/$path\\]", "$BASE_URL/$path/", path)
-            }
-
-            fun createNumeric(path: String, display: String = path): GeekLinkReplacer {
-                return GeekLinkReplacer("\\[$path=(\\d+)\\](.*?)\\[/$path\\]", "$BASE_URL/$path/", display)
-            }
+        private fun String.indexOfOnLine(string: String, startIndex: Int): Int {
+            val index = indexOf(string, startIndex)
+            if (index == -1 || (startIndex until index).any { this[it].isLineTerminator() }) return NO_MATCH
+            return index
         }
-    }
 
-    companion object {
-        private const val BASE_URL = "https://boardgamegeek.com"
-        private const val STATIC_IMAGES_URL = "https://cf.geekdo-static.com/images/"
-        private const val IMAGES_URL = "https://cf.geekdo-images.com/images/"
-    }
-
-    init {
-        replacerList = ArrayList()
-        replacerList.add(SimpleReplacer("\\[hr\\]", "<hr/>"))
-        replacerList.add(SimpleReplacer("\\[clear\\]", "<div style=\"clear:both\"></div>"))
-        createPair("b")
-        createPair("i")
-        createPair("u")
-        createPair("-", "strike")
-        replacerList.add(SimpleReplacer("\\[floatleft\\]", "<div style=\"float:left\">"))
-        replacerList.add(SimpleReplacer("\\[/floatleft\\]", "</div>"))
-        createPair("center")
-        replacerList.add(SimpleReplacer("\\[floatright\\]", "<div style=\"float:right\">"))
-        replacerList.add(SimpleReplacer("\\[/floatright\\]", "</div>"))
-        replacerList.add(Replacer("\\[COLOR=([^#].*?)\\]", "<span style=\"color:", "\">"))
-        replacerList.add(Replacer("\\[COLOR=#(.*?)\\]", "<span style=\"color:#", "\">"))
-        replacerList.add(SimpleReplacer("\\[/COLOR\\]", "</span>"))
-        replacerList.add(Replacer("\\[BGCOLOR=([^#].*?)\\]", "<span style=\"background-color:", "\">"))
-        replacerList.add(Replacer("\\[BGCOLOR=#(.*?)\\]", "<span style=\"background-color#:", "\">"))
-        replacerList.add(SimpleReplacer("\\[/BGCOLOR\\]", "</span>"))
-        // TODO: determine when image is a PNG
-        replacerList.add(Replacer("\\[ImageID=(\\d+).*?\\]", "<div style=\"display:inline\"><img src=\"${IMAGES_URL}pic", "_t.jpg\"/></div>"))
-        replacerList.add(Replacer("\\[IMG\\](.*?)\\[/IMG\\]", "<div style=\"display:inline\"><img src=\"", "\"/></div>"))
-        // TODO: YouTube, Vimeo, tweet, mp3
-        replacerList.add(GeekUrlReplacer())
-        replacerList.add(GeekLinkReplacer.createNumeric("thing"))
-        replacerList.add(GeekLinkReplacer.createNumeric("thread"))
-        replacerList.add(GeekLinkReplacer.createNumeric("article", "reply")) // TODO: add #id
-        replacerList.add(GeekLinkReplacer.createNumeric("geeklist", "GeekList"))
-        replacerList.add(GeekLinkReplacer.createNumeric("filepage", "file"))
-        replacerList.add(GeekLinkReplacer.createNumeric("person"))
-        replacerList.add(GeekLinkReplacer.createNumeric("company"))
-        replacerList.add(GeekLinkReplacer.createNumeric("property"))
-        replacerList.add(GeekLinkReplacer.createNumeric("family"))
-        replacerList.add(GeekLinkReplacer.createNumeric("guild"))
-        replacerList.add(GeekLinkReplacer.createAlpha("user"))
-        replacerList.add(GeekLinkReplacer.createNumeric("question", "GeekQuestion"))
-        replacerList.add(GeekLinkReplacer.createNumeric("media", "podcast episode"))
-        replacerList.add(GeekLinkReplacer.createNumeric("blog"))
-        replacerList.add(GeekLinkReplacer.createNumeric("blogpost", "blog post"))
-        replacerList.add(SimpleReplacer("\\[q\\]", "Quote:<blockquote>"))
-        replacerList.add(Replacer("\\[q=\"(.*?)\"\\]", "", " wrote:<blockquote>"))
-        replacerList.add(SimpleReplacer("\\[/q\\]", "</blockquote>"))
-        replacerList.add(SimpleReplacer("\\[o\\]", String.format("<details><summary>%s</summary>", context.getString(R.string.spoiler))))
-        replacerList.add(SimpleReplacer("\\[/o\\]", "</details>"))
-        createPair("c", "tt")
-        replacerList.add(UrlReplacer())
-        replacerList.add(UrlReplacer2())
-        // TODO: roll
-        // TODO: size isn't working
-        replacerList.add(Replacer("\\[size=(.*?)\\]", "<span font-size=\"", "px\">"))
-        replacerList.add(SimpleReplacer("\\[/size\\]", "</span>"))
-        replacerList.add(SimpleReplacer.createCustomImage("\\:\\)\\s", "smile.gif"))
-        replacerList.add(SimpleReplacer.createCustomImage("\\:\\(\\s", "sad.gif"))
-        replacerList.add(SimpleReplacer.createCustomImage("\\:D\\s", "biggrin.gif"))
-        replacerList.add(SimpleReplacer.createCustomImage("\\:p\\s", "tongue.gif"))
-        replacerList.add(SimpleReplacer.createCustomImage("\\;\\)\\s", "wink.gif"))
-        replacerList.add(SimpleReplacer.createImage("what", "rock.gif"))
-        replacerList.add(SimpleReplacer.createGif("wow"))
-        replacerList.add(SimpleReplacer.createGif("angry"))
-        replacerList.add(SimpleReplacer.createGif("cool"))
-        replacerList.add(SimpleReplacer.createGif("laugh"))
-        replacerList.add(SimpleReplacer.createGif("meeple"))
-        replacerList.add(SimpleReplacer.createGif("surprise"))
-        replacerList.add(SimpleReplacer.createGif("blush"))
-        replacerList.add(SimpleReplacer.createGif("snore"))
-        replacerList.add(SimpleReplacer.createGif("cry"))
-        replacerList.add(SimpleReplacer.createGif("kiss"))
-        replacerList.add(SimpleReplacer.createGif("modest"))
-        replacerList.add(SimpleReplacer.createGif("whistle"))
-        replacerList.add(SimpleReplacer.createGif("devil"))
-        replacerList.add(SimpleReplacer.createGif("soblue"))
-        replacerList.add(SimpleReplacer.createGif("yuk"))
-        replacerList.add(SimpleReplacer.createGif("gulp"))
-        replacerList.add(SimpleReplacer.createGif("shake"))
-        replacerList.add(SimpleReplacer.createGif("arrrh"))
-        replacerList.add(SimpleReplacer.createGif("zombie"))
-        replacerList.add(SimpleReplacer.createGif("robot"))
-        replacerList.add(SimpleReplacer.createGif("ninja"))
-        replacerList.add(SimpleReplacer.createGif("sauron"))
-        replacerList.add(SimpleReplacer.createGif("goo"))
-        replacerList.add(SimpleReplacer.createImage("star", "star_yellow.gif"))
-        replacerList.add(SimpleReplacer.createImage("halfstar", "star_yellowhalf.gif"))
-        replacerList.add(SimpleReplacer.createImage("nostar", "star_white.gif"))
-        replacerList.add(SimpleReplacer.createImage("gg", "geekgold.gif"))
-        replacerList.add(SimpleReplacer.createGif("bag"))
-        replacerList.add(SimpleReplacer.createGif("bacon"))
-        replacerList.add(SimpleReplacer.createGif("caravan"))
-        createCamelImage("mint")
-        createCamelImage("lime")
-        createCamelImage("grape")
-        createCamelImage("lemon")
-        createCamelImage("orange")
-        replacerList.add(SimpleReplacer.createGif("goldencamel"))
-        createTajImage("blue")
-        createTajImage("brown")
-        createTajImage("gray")
-        createTajImage("maroon")
-        createTajImage("tan")
-        createTajImage("white")
-        replacerList.add(SimpleReplacer.createImage("thumbsup", "thumbs-up.gif"))
-        replacerList.add(SimpleReplacer.createImage("thumbsdown", "thumbs-down.gif"))
-        replacerList.add(SimpleReplacer.createGif("coffee"))
-        replacerList.add(SimpleReplacer.createGif("tobacco"))
-        replacerList.add(SimpleReplacer.createGif("indigo"))
-        replacerList.add(SimpleReplacer.createGif("sugar"))
-        replacerList.add(SimpleReplacer.createGif("corn"))
-        replacerList.add(SimpleReplacer.createGif("colonist"))
-        replacerList.add(SimpleReplacer.createGif("1vp"))
-        replacerList.add(SimpleReplacer.createGif("5vp"))
-        replacerList.add(SimpleReplacer.createGif("1db"))
-        replacerList.add(SimpleReplacer.createGif("5db"))
-        for (i in 0..9) {
-            replacerList.add(SimpleReplacer.createImage("d10-$i", "d10-$i.gif"))
+        /**
+         * The text between [startIndex] and the next occurrence of [closingTag] (ignoring case) on the same line.
+         */
+        private fun String.contentBefore(closingTag: String, startIndex: Int): String? {
+            val index = indexOf(closingTag, startIndex, ignoreCase = true)
+            if (index == -1 || (startIndex until index).any { this[it].isLineTerminator() }) return null
+            return substring(startIndex, index)
         }
-        replacerList.add(SimpleReplacer.createImage("city", "ttr_city.gif"))
-        createTrainImage("red")
-        createTrainImage("green")
-        createTrainImage("blue")
-        createTrainImage("yellow")
-        createTrainImage("black")
-        createTrainImage("purple")
-        createTrainImage("white")
-        replacerList.add(SimpleReplacer.createGif("wood"))
-        replacerList.add(SimpleReplacer.createGif("wheat"))
-        replacerList.add(SimpleReplacer.createGif("sheep"))
-        replacerList.add(SimpleReplacer.createGif("ore"))
-        replacerList.add(SimpleReplacer.createGif("brick"))
-        replacerList.add(SimpleReplacer.createGif("cinnamon"))
-        replacerList.add(SimpleReplacer.createGif("clove"))
-        replacerList.add(SimpleReplacer.createGif("ginger"))
-        replacerList.add(SimpleReplacer.createGif("nutmeg"))
-        replacerList.add(SimpleReplacer.createGif("pepper"))
-        replacerList.add(SimpleReplacer.createGif("coal"))
-        replacerList.add(SimpleReplacer.createGif("oil"))
-        replacerList.add(SimpleReplacer.createGif("trash"))
-        replacerList.add(SimpleReplacer.createGif("nuclear"))
-        for (i in 1..6) {
-            replacerList.add(SimpleReplacer.createImage("d6-$i", "die-white-$i.gif"))
-            replacerList.add(SimpleReplacer.createImage("bd6-$i", "die-black-$i.gif"))
+
+        @Volatile
+        private var instance: XmlApiMarkupConverter? = null
+
+        /**
+         * The shared converter for the spoiler text of [context]'s locale. If the locale has changed since the last
+         * call, the converter (and its cache, which holds the old spoiler text) is replaced.
+         */
+        fun getInstance(context: Context): XmlApiMarkupConverter {
+            val spoilerText = context.getString(R.string.spoiler)
+            instance?.takeIf { it.spoilerText == spoilerText }?.let { return it }
+            return synchronized(this) {
+                instance?.takeIf { it.spoilerText == spoilerText } ?: XmlApiMarkupConverter(spoilerText).also { instance = it }
+            }
         }
-        replacerList.add(SimpleReplacer.createPng("tankard"))
-        replacerList.add(SimpleReplacer.createPng("jug"))
-        replacerList.add(SimpleReplacer.createPng("chalice"))
-        replacerList.add(SimpleReplacer.createGif("worker"))
-        replacerList.add(SimpleReplacer.createGif("building"))
-        replacerList.add(SimpleReplacer.createGif("aristocrat"))
-        replacerList.add(SimpleReplacer.createGif("trade"))
-        replacerList.add(SimpleReplacer.createPng("arrowN"))
-        replacerList.add(SimpleReplacer.createPng("arrowNE"))
-        replacerList.add(SimpleReplacer.createPng("arrowE"))
-        replacerList.add(SimpleReplacer.createPng("arrowSE"))
-        replacerList.add(SimpleReplacer.createPng("arrowS"))
-        replacerList.add(SimpleReplacer.createPng("arrowSW"))
-        replacerList.add(SimpleReplacer.createPng("arrowW"))
-        replacerList.add(SimpleReplacer.createPng("arrowNW"))
-        replacerList.add(SimpleReplacer.createPng("power"))
-        replacerList.add(SimpleReplacer.createPng("XBA"))
-        replacerList.add(SimpleReplacer.createPng("XBB"))
-        replacerList.add(SimpleReplacer.createPng("XBX"))
-        replacerList.add(SimpleReplacer.createPng("XBY"))
-        replacerList.add(SimpleReplacer.createPng("PSC"))
-        replacerList.add(SimpleReplacer.createPng("PSS"))
-        replacerList.add(SimpleReplacer.createPng("PST"))
-        replacerList.add(SimpleReplacer.createPng("PSX"))
-        replacerList.add(SimpleReplacer.createPng("WiiH"))
-        replacerList.add(SimpleReplacer.createPng("Wii1"))
-        replacerList.add(SimpleReplacer.createPng("Wii2"))
-        replacerList.add(SimpleReplacer.createPng("WiiA"))
-        replacerList.add(SimpleReplacer.createPng("WiiB"))
-        replacerList.add(SimpleReplacer.createPng("WiiC"))
-        replacerList.add(SimpleReplacer.createPng("WiiX"))
-        replacerList.add(SimpleReplacer.createPng("WiiY"))
-        replacerList.add(SimpleReplacer.createPng("WiiZ"))
-        replacerList.add(SimpleReplacer.createPng("Wii\\+"))
-        replacerList.add(SimpleReplacer.createPng("Wii-"))
-        replacerList.add(SimpleReplacer.createImage("!block", "bang_block.png"))
-        replacerList.add(SimpleReplacer.createImage("\\?block", "question_block.png"))
-        replacerList.add(SimpleReplacer.createImage("blank", "tiles/BLANK.gif"))
-        replacerList.add(UpperCaseReplacer("\\:([A-Za-z])\\:", "<img src=\"${STATIC_IMAGES_URL}tiles/", ".gif\"/>"))
-        replacerList.add(Replacer("\\:k([A-Za-z])\\:", "<img src=\"${STATIC_IMAGES_URL}k", ".png\"/>"))
     }
 }
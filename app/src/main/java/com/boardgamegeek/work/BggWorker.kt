@@ -4,9 +4,11 @@ import android.content.Context
 import androidx.core.app.NotificationCompat
 import androidx.core.content.ContextCompat
 import androidx.work.ForegroundInfo
+import androidx.work.ListenableWorker
 import androidx.work.WorkManager
 import com.boardgamegeek.R
 import com.boardgamegeek.extensions.NotificationChannels
+import com.boardgamegeek.util.SyncMetricsRecorder
 import java.util.UUID
 
 const val NOTIFICATION_ID_COLLECTION = 41
@@ -35,3 +37,9 @@ fun Context.createForegroundInfo(titleResId: Int, notificationId: Int, id: UUID,
 
     return ForegroundInfo(notificationId, notification)
 }
+
+/**
+ * Measures a step that reports its outcome as a [ListenableWorker.Result], counting a failure result as unsuccessful.
+ */
+suspend inline fun SyncMetricsRecorder.measureStep(worker: String, step: String, block: () -> ListenableWorker.Result) =
+    measure(worker, step, { it !is ListenableWorker.Result.Failure }, block)
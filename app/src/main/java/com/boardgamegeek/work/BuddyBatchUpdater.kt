@@ -0,0 +1,92 @@
+package com.boardgamegeek.work
+
+import com.boardgamegeek.entities.UserEntity
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.time.Duration
+
+/**
+ * Downloads buddies, up to [concurrency] at a time and each after a pause of [pauseMillis], and saves them [chunkSize]
+ * at a time in a single transaction. Requests share the API's rate budget through the service's request scheduler.
+ *
+ * Buddies that were downloaded are saved even when the update is canceled part way through a chunk. Since buddies are
+ * picked oldest first, the next sync picks up with the ones that weren't.
+ */
+class BuddyBatchUpdater(
+    private val concurrency: Int,
+    private val pauseMillis: Long,
+    private val chunkSize: Int = SAVE_CHUNK_SIZE,
+    private val fetchBuddy: suspend (username: String) -> UserEntity,
+    private val saveBuddies: suspend (users: List<UserEntity>) -> Int,
+) {
+    /**
+     * Updates the buddies with the [usernames] until they're all done or [isStopped], returning the number saved. A
+     * buddy that fails to download is reported and skipped.
+     */
+    suspend fun update(usernames: List<String>, isStopped: () -> Boolean, onError: (Exception) -> Unit): Int {
+        var savedCount = 0
+        val permits = Semaphore(concurrency.coerceAtLeast(1))
+        for (chunk in usernames.chunked(chunkSize.coerceAtLeast(1))) {
+            if (isStopped()) break
+            val users = ConcurrentLinkedQueue<UserEntity>()
+            try {
+                coroutineScope {
+                    chunk.forEach { username ->
+                        launch { permits.withPermit { fetch(username, onError)?.let { users += it } } }
+                    }
+                }
+            } finally {
+                if (users.isNotEmpty()) {
+                    withContext(NonCancellable) {
+                        savedCount += saveBuddies(users.toList())
+                    }
+                }
+            }
+        }
+        return savedCount
+    }
+
+    private suspend fun fetch(username: String, onError: (Exception) -> Unit): UserEntity? {
+        Timber.i("About to refresh user $username")
+        delay(pauseMillis)
+        return try {
+            fetchBuddy(username)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            onError(e)
+            null
+        }
+    }
+
+    companion object {
+        private const val SAVE_CHUNK_SIZE = 16
+
+        /**
+         * The names of the [buddies] that were updated longer than the [fetchInterval] ago as of [now], in the order
+         * given, limited to one of [sliceCount] slices of all the updated buddies, and to no more than [sliceMaxSize].
+         * Buddies that have never been updated aren't included.
+         */
+        fun staleBuddies(
+            buddies: List<UserEntity>,
+            fetchInterval: Duration,
+            sliceCount: Int,
+            sliceMaxSize: Int,
+            now: Long = System.currentTimeMillis(),
+        ): List<String> {
+            val updatedBuddies = buddies.filter { it.updatedTimestamp > 0L }
+            val staleBuddies = updatedBuddies.filter { now - it.updatedTimestamp > fetchInterval.inWholeMilliseconds }
+            val limit = (updatedBuddies.size / sliceCount.coerceAtLeast(1)).coerceAtMost(sliceMaxSize)
+            Timber.i("Updating $limit of ${staleBuddies.size} stale buddies; ${updatedBuddies.size} total buddies cut in $sliceCount slices of no more than $sliceMaxSize")
+            return staleBuddies.take(limit).map { it.userName }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.boardgamegeek.work
 
 import android.content.Context
-import android.content.SharedPreferences
 import android.graphics.Bitmap
 import androidx.core.app.NotificationCompat
 import androidx.hilt.work.HiltWorker
@@ -10,11 +9,13 @@ import com.boardgamegeek.R
 import com.boardgamegeek.entities.CollectionItemEntity
 import com.boardgamegeek.entities.CollectionItemUploadResult
 import com.boardgamegeek.extensions.*
+import com.boardgamegeek.pref.PreferenceSnapshot
 import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.repository.GameCollectionRepository
 import com.boardgamegeek.ui.CollectionActivity
 import com.boardgamegeek.ui.GameActivity
 import com.boardgamegeek.util.LargeIconLoader
+import com.boardgamegeek.util.SyncMetricsRecorder
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import timber.log.Timber
@@ -25,21 +26,27 @@ class CollectionUploadWorker @AssistedInject constructor(
     @Assisted appContext: Context,
     @Assisted workerParams: WorkerParameters,
     private val gameCollectionRepository: GameCollectionRepository,
+    private val syncMetrics: SyncMetricsRecorder,
 ) : CoroutineWorker(appContext, workerParams) {
-    private val prefs: SharedPreferences by lazy { appContext.preferences() }
     private var requestedGameId = BggContract.INVALID_ID
 
     override suspend fun doWork(): Result {
         requestedGameId = inputData.getInt(GAME_ID, BggContract.INVALID_ID)
 
-        processList(gameCollectionRepository.loadItemsPendingDeletion(), R.plurals.sync_notification_collection_deleting) {
-            gameCollectionRepository.uploadDeletedItem(it)
+        syncMetrics.measure(METRICS_NAME, "delete_items") {
+            processList(gameCollectionRepository.loadItemsPendingDeletion(), R.plurals.sync_notification_collection_deleting) {
+                gameCollectionRepository.uploadDeletedItem(it)
+            }
         }
-        processList(gameCollectionRepository.loadItemsPendingInsert(), R.plurals.sync_notification_collection_adding) {
-            gameCollectionRepository.uploadNewItem(it)
+        syncMetrics.measure(METRICS_NAME, "insert_items") {
+            processList(gameCollectionRepository.loadItemsPendingInsert(), R.plurals.sync_notification_collection_adding) {
+                gameCollectionRepository.uploadNewItem(it)
+            }
         }
-        processList(gameCollectionRepository.loadItemsPendingUpdate(), R.plurals.sync_notification_collection_uploading) {
-            gameCollectionRepository.uploadUpdatedItem(it)
+        syncMetrics.measure(METRICS_NAME, "update_items") {
+            processList(gameCollectionRepository.loadItemsPendingUpdate(), R.plurals.sync_notification_collection_uploading) {
+                gameCollectionRepository.uploadUpdatedItem(it)
+            }
         }
 
         return Result.success()
@@ -70,7 +77,7 @@ class CollectionUploadWorker @AssistedInject constructor(
     }
 
     fun Context.notifyUploadCollectionItem(result: CollectionItemUploadResult) {
-        if (this.preferences()[KEY_SYNC_UPLOADS, true] != true) return
+        if (!PreferenceSnapshot.of(this).getBoolean(KEY_SYNC_UPLOADS, true)) return
 
         val imageUrls = listOf(result.item.thumbnailUrl, result.item.heroImageUrl, result.item.imageUrl)
         val messageResId = when (result.status) {
@@ -126,7 +133,7 @@ class CollectionUploadWorker @AssistedInject constructor(
     private fun notifyUploadError(errorMessage: CharSequence) {
         if (errorMessage.isBlank()) return
         Timber.w(errorMessage.toString())
-        if (prefs[KEY_SYNC_ERRORS, false] != true) return
+        if (!PreferenceSnapshot.of(applicationContext).getBoolean(KEY_SYNC_ERRORS)) return
         val builder = applicationContext
             .createNotificationBuilder(R.string.sync_notification_title_collection_upload_error, NotificationChannels.ERROR)
             .setContentText(errorMessage)
@@ -137,6 +144,7 @@ class CollectionUploadWorker @AssistedInject constructor(
 
     companion object {
         const val GAME_ID = "GAME_ID"
+        private const val METRICS_NAME = "collection_upload"
 
         fun buildRequest(context: Context, gameId: Int = BggContract.INVALID_ID) =
             OneTimeWorkRequestBuilder<CollectionUploadWorker>()
@@ -0,0 +1,66 @@
+package com.boardgamegeek.work
+
+import com.boardgamegeek.io.ResponseSize
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.delay
+import timber.log.Timber
+
+/**
+ * Refreshes games several at a time. When a request fails for any reason, the batch is split in half and retried, so
+ * one bad game or a dropped connection doesn't cost the whole batch. After a successful request the number of games per
+ * request grows by one, up to [maxGamesPerRequest], but never past what would keep the response under
+ * [maxResponseBytes] at the size per game of the last response; a response over that limit shrinks the next request
+ * to fit. Only a failure refreshing a single game is reported and skipped.
+ *
+ * The batch size carries over from one call of [refresh] to the next, so later stages of a sync start from what worked.
+ */
+class GameBatchRefresher(
+    private val maxGamesPerRequest: Int,
+    private val maxResponseBytes: Long,
+    private val pauseMillis: Long,
+    private val refreshGames: suspend (gameIds: IntArray, responseSize: ResponseSize) -> Int,
+) {
+    var gamesPerRequest = maxGamesPerRequest.coerceAtLeast(1)
+        private set
+    private var bytesPerGame = 0L
+
+    /**
+     * Refreshes [games] (pairs of ID and name) until they're all done or [isStopped], returning the number refreshed.
+     */
+    suspend fun refresh(games: List<Pair<Int, String>>, isStopped: () -> Boolean, onError: (Exception) -> Unit): Int {
+        var updatedCount = 0
+        var index = 0
+        while (index < games.size && !isStopped()) {
+            val batch = games.subList(index, (index + gamesPerRequest).coerceAtMost(games.size))
+            Timber.i("Refreshing games ${batch.joinToString { (gameId, gameName) -> "$gameName [$gameId]" }}")
+            delay(pauseMillis)
+            val responseSize = ResponseSize()
+            try {
+                updatedCount += refreshGames(batch.map { it.first }.toIntArray(), responseSize)
+                Timber.i("Refreshed ${batch.size} games in %,d bytes", responseSize.bytes)
+                index += batch.size
+                bytesPerGame = responseSize.bytes / batch.size
+                gamesPerRequest = (gamesPerRequest + 1).coerceAtMost(fittingBatchSize())
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                if (batch.size > 1) {
+                    gamesPerRequest = batch.size / 2
+                    Timber.w(e, "Refreshing ${batch.size} games failed; retrying $gamesPerRequest at a time")
+                } else {
+                    onError(e)
+                    index += batch.size
+                }
+            }
+        }
+        return updatedCount
+    }
+
+    /**
+     * The most games whose response would fit in [maxResponseBytes], judging by the last response.
+     */
+    private fun fittingBatchSize(): Int {
+        val maxGames = if (bytesPerGame > 0) (maxResponseBytes / bytesPerGame).coerceAtMost(maxGamesPerRequest.toLong()).toInt() else maxGamesPerRequest
+        return maxGames.coerceAtLeast(1)
+    }
+}
@@ -14,6 +14,7 @@ import com.boardgamegeek.extensions.formatList
 import com.boardgamegeek.extensions.notifyLoggedPlay
 import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.repository.PlayRepository
+import com.boardgamegeek.util.SyncMetricsRecorder
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import timber.log.Timber
@@ -23,6 +24,7 @@ class PlayUploadWorker @AssistedInject constructor(
     @Assisted appContext: Context,
     @Assisted workerParams: WorkerParameters,
     private val playRepository: PlayRepository,
+    private val syncMetrics: SyncMetricsRecorder,
 ) : CoroutineWorker(appContext, workerParams) {
     private val gameIds = mutableSetOf<Int>()
 
@@ -63,20 +65,21 @@ class PlayUploadWorker @AssistedInject constructor(
         }
 
         Timber.i("Found ${playsToDelete.count()} play(s) marked for deletion")
-        uploadList(playsToDelete) {
-            playRepository.deletePlay(it)
+        syncMetrics.measureStep(METRICS_NAME, "delete_plays") {
+            uploadList(playsToDelete) {
+                playRepository.deletePlay(it)
+            }
         }
 
         Timber.i("Found ${playsToUpsert.count()} play(s) marked for upsert")
-        uploadList(playsToUpsert) {
-            playRepository.upsertPlay(it)
+        syncMetrics.measureStep(METRICS_NAME, "upsert_plays") {
+            uploadList(playsToUpsert) {
+                playRepository.upsertPlay(it)
+            }
         }
 
-        gameIds.filterNot { it == BggContract.INVALID_ID }.forEach { gameId ->
-            playRepository.updateGamePlayCount(gameId)
-        }
         if (gameIds.isNotEmpty())
-            playRepository.calculatePlayStats()
+            syncMetrics.measure(METRICS_NAME, "play_stats") { playRepository.calculatePlayStats() }
 
         return Result.success()
     }
@@ -107,5 +110,6 @@ class PlayUploadWorker @AssistedInject constructor(
         const val INTERNAL_IDS = "INTERNAL_IDS"
         const val GAME_ID = "GAME_ID"
         const val ERROR_MESSAGE = "ERROR_MESSAGE"
+        private const val METRICS_NAME = "plays_upload"
     }
 }
\ No newline at end of file
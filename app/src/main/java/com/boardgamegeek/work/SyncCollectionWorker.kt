@@ -12,6 +12,7 @@ import com.boardgamegeek.pref.*
 import com.boardgamegeek.repository.CollectionItemRepository
 import com.boardgamegeek.repository.GameRepository
 import com.boardgamegeek.util.RemoteConfig
+import com.boardgamegeek.util.SyncMetricsRecorder
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import kotlinx.coroutines.delay
@@ -27,10 +28,17 @@ class SyncCollectionWorker @AssistedInject constructor(
     @Assisted workerParams: WorkerParameters,
     private val collectionItemRepository: CollectionItemRepository,
     private val gameRepository: GameRepository,
+    private val syncMetrics: SyncMetricsRecorder,
 ) : CoroutineWorker(appContext, workerParams) {
-    private val prefs: SharedPreferences by lazy { appContext.preferences() }
     private val syncPrefs: SharedPreferences by lazy { SyncPrefs.getPrefs(appContext) }
     private var quickSync = false
+    private val gameBatchRefresher by lazy {
+        GameBatchRefresher(
+            RemoteConfig.getInt(RemoteConfig.KEY_SYNC_GAMES_IDS_PER_FETCH),
+            RemoteConfig.getLong(RemoteConfig.KEY_SYNC_GAMES_MAX_RESPONSE_KILOBYTES) * 1_024,
+            RemoteConfig.getLong(RemoteConfig.KEY_SYNC_GAMES_FETCH_PAUSE_MILLIS),
+        ) { gameIds, responseSize -> gameRepository.refreshGame(*gameIds, responseSize = responseSize) }
+    }
 
     private val statusDescriptions = applicationContext.resources.getStringArray(R.array.pref_sync_status_values)
         .zip(applicationContext.resources.getStringArray(R.array.pref_sync_status_entries))
@@ -39,19 +47,20 @@ class SyncCollectionWorker @AssistedInject constructor(
     override suspend fun doWork(): Result {
         quickSync = inputData.getBoolean(QUICK_SYNC, false)
 
-        refreshCollection()
+        syncMetrics.measureStep(METRICS_NAME, "refresh_collection") { refreshCollection() }
         if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled after refreshing collection"))
-        syncUnupdatedCollection()
+        syncMetrics.measureStep(METRICS_NAME, "unupdated_collection") { syncUnupdatedCollection() }
         if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled after syncing unupdated collection"))
-        removeGames()
+        syncMetrics.measureStep(METRICS_NAME, "remove_games") { removeGames() }
         if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled after removing old games"))
-        downloadGames()
+        syncMetrics.measureStep(METRICS_NAME, "download_games") { downloadGames() }
+        SyncThumbnailsWorker.requestSync(applicationContext)
         return Result.success()
     }
 
     private suspend fun refreshCollection(): Result {
         Timber.i("Refreshing collection")
-        if (!prefs.isCollectionSetToSync()) {
+        if (!PreferenceSnapshot.of(applicationContext).isCollectionSetToSync) {
             Timber.i("Collection not set to sync")
             return Result.success()
         }
@@ -80,7 +89,7 @@ class SyncCollectionWorker @AssistedInject constructor(
     private suspend fun syncCompleteCollection(): Result {
         setForeground(createForegroundInfo(applicationContext.getString(R.string.sync_notification_collection_full)))
 
-        val statuses: List<String> = prefs.getSyncStatusesOrDefault().toMutableList().apply {
+        val statuses: List<String> = PreferenceSnapshot.of(applicationContext).syncStatuses.toMutableList().apply {
             // Played games should be synced first - they don't respect the "exclude" flag
             if (remove(BggService.COLLECTION_QUERY_STATUS_PLAYED)) {
                 add(0, BggService.COLLECTION_QUERY_STATUS_PLAYED)
@@ -257,7 +266,7 @@ class SyncCollectionWorker @AssistedInject constructor(
         )
         Timber.i("Finding games to delete that aren't in the collection and have not been viewed since $date")
 
-        val games = gameRepository.loadDeletableGames(hoursAgo, prefs.isStatusSetToSync(COLLECTION_STATUS_PLAYED))
+        val games = gameRepository.loadDeletableGames(hoursAgo, PreferenceSnapshot.of(applicationContext).isStatusSetToSync(COLLECTION_STATUS_PLAYED))
         if (games.isNotEmpty()) {
             Timber.i("Found ${games.size} games to delete: ${games.map { "[${it.first}] ${it.second}" }}")
             setForeground(
@@ -291,35 +300,23 @@ class SyncCollectionWorker @AssistedInject constructor(
         Timber.i("Refreshing $maxGameCount oldest games in the collection")
         setForeground(createForegroundInfo(applicationContext.getString(R.string.sync_notification_games_oldest)))
         val staleGames = gameRepository.loadOldestUpdatedGames(maxGameCount)
-        staleGames.forEach { (gameId, gameName) ->
-            Timber.i("Refreshing game $gameName [$gameId]")
-            delay(RemoteConfig.getLong(RemoteConfig.KEY_SYNC_GAMES_FETCH_PAUSE_MILLIS))
-            try {
-                updatedCount += gameRepository.refreshGame(gameId)
-                Timber.i("Refreshed game $gameName [$gameId]")
-            } catch (e: Exception) {
-                handleException(applicationContext.getString(R.string.sync_notification_games_oldest), e)
-            }
-        }
+        updatedCount += refreshGames(staleGames, applicationContext.getString(R.string.sync_notification_games_oldest))
+
+        if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled while refreshing games"))
 
         Timber.i("Refreshing $maxGameCount games that are missing details in the collection")
         setForeground(createForegroundInfo(applicationContext.getString(R.string.sync_notification_games_unupdated)))
         val games = gameRepository.loadUnupdatedGames(maxGameCount)
-        games.forEach { (gameId, gameName) ->
-            Timber.i("Refreshing game $gameName [$gameId]")
-            delay(RemoteConfig.getLong(RemoteConfig.KEY_SYNC_GAMES_FETCH_PAUSE_MILLIS))
-            try {
-                updatedCount += gameRepository.refreshGame(gameId)
-                Timber.i("Refreshed game $gameName [$gameId]")
-            } catch (e: Exception) {
-                handleException(applicationContext.getString(R.string.sync_notification_games_unupdated), e)
-            }
-        }
+        updatedCount += refreshGames(games, applicationContext.getString(R.string.sync_notification_games_unupdated))
 
         Timber.i("Refreshed $updatedCount games")
         return Result.success()
     }
 
+    private suspend fun refreshGames(games: List<Pair<Int, String>>, contentText: String): Int {
+        return gameBatchRefresher.refresh(games, { isStopped }) { handleException(contentText, it) }
+    }
+
     private fun handleException(contentText: String, e: Exception): Result {
         Timber.e(e)
         val bigText = if (e is HttpException) e.code().asHttpErrorMessage(applicationContext) else e.localizedMessage
@@ -341,6 +338,7 @@ class SyncCollectionWorker @AssistedInject constructor(
         const val ERROR_MESSAGE = "ERROR_MESSAGE"
         const val STOPPED_REASON = "STOPPED_REASON"
         private const val QUICK_SYNC = "QUICK_SYNC"
+        private const val METRICS_NAME = "collection"
 
         fun requestSync(context: Context) {
             val workRequest = OneTimeWorkRequestBuilder<SyncCollectionWorker>()
@@ -8,9 +8,9 @@ import androidx.work.*
 import com.boardgamegeek.R
 import com.boardgamegeek.extensions.*
 import com.boardgamegeek.pref.*
-import com.boardgamegeek.provider.BggContract
 import com.boardgamegeek.repository.PlayRepository
 import com.boardgamegeek.util.RemoteConfig
+import com.boardgamegeek.util.SyncMetricsRecorder
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import kotlinx.coroutines.delay
@@ -23,16 +23,17 @@ class SyncPlaysWorker @AssistedInject constructor(
     @Assisted appContext: Context,
     @Assisted workerParams: WorkerParameters,
     private val playRepository: PlayRepository,
+    private val syncMetrics: SyncMetricsRecorder,
 ) : CoroutineWorker(appContext, workerParams) {
-    private val prefs: SharedPreferences by lazy { appContext.preferences() }
     private val syncPrefs: SharedPreferences by lazy { SyncPrefs.getPrefs(appContext) }
 
     private val playsFetchPauseMilliseconds = RemoteConfig.getLong(RemoteConfig.KEY_SYNC_PLAYS_FETCH_PAUSE_MILLIS)
 
     private var startTime = System.currentTimeMillis()
+    private val syncedGameIds = mutableSetOf<Int>()
 
     override suspend fun doWork(): Result {
-        if (prefs[PREFERENCES_KEY_SYNC_PLAYS, false] != true) {
+        if (!PreferenceSnapshot.of(applicationContext).syncPlays) {
             Timber.i("Plays not set to sync")
             return Result.success()
         }
@@ -43,7 +44,7 @@ class SyncPlaysWorker @AssistedInject constructor(
             startTime = System.currentTimeMillis()
 
             val newestSyncDate = syncPrefs[SyncPrefs.TIMESTAMP_PLAYS_NEWEST_DATE] ?: 0L
-            val newestPlaysResult = downloadPlays(newestSyncDate, 0L)
+            val newestPlaysResult = syncMetrics.measureStep(METRICS_NAME, "newest_plays") { downloadPlays(newestSyncDate, 0L) }
             if (newestPlaysResult is Result.Failure) return newestPlaysResult
             if (newestSyncDate > 0L) {
                 val deletedCount = playRepository.deleteUnupdatedPlaysSince(startTime, newestSyncDate)
@@ -52,7 +53,7 @@ class SyncPlaysWorker @AssistedInject constructor(
 
             val oldestDate = syncPrefs[SyncPrefs.TIMESTAMP_PLAYS_OLDEST_DATE] ?: Long.MAX_VALUE
             if (oldestDate > 0) {
-                val oldestPlaysResult = downloadPlays(0L, oldestDate)
+                val oldestPlaysResult = syncMetrics.measureStep(METRICS_NAME, "oldest_plays") { downloadPlays(0L, oldestDate) }
                 if (oldestPlaysResult is Result.Failure) return oldestPlaysResult
                 if (oldestDate != Long.MAX_VALUE) {
                     val deletedCount = playRepository.deleteUnupdatedPlaysBefore(startTime, oldestDate)
@@ -61,8 +62,12 @@ class SyncPlaysWorker @AssistedInject constructor(
                 syncPrefs[SyncPrefs.TIMESTAMP_PLAYS_OLDEST_DATE] = 0L
             } else Timber.i("Downloaded all past plays")
 
-            playRepository.calculatePlayStats()
+            syncMetrics.measure(METRICS_NAME, "play_stats") {
+                playRepository.verifyGamePlayStats(syncedGameIds)
+                playRepository.calculatePlayStats()
+            }
             Timber.i("Plays synced successfully ")
+            SyncThumbnailsWorker.requestSync(applicationContext)
             return Result.success()
         } catch (e: Exception) {
             return handleException(e)
@@ -94,8 +99,8 @@ class SyncPlaysWorker @AssistedInject constructor(
             var shouldContinue: Boolean
             try {
                 val (plays, hasMorePages) = playRepository.downloadPlays(minDate, maxDate, page)
-                val gameIds = plays.map { it.gameId }.toSet()
                 playRepository.saveFromSync(plays, startTime)
+                plays.mapTo(syncedGameIds) { it.gameId }
                 plays.maxOfOrNull { it.dateInMillis }?.let {
                     if (it > (syncPrefs[SyncPrefs.TIMESTAMP_PLAYS_NEWEST_DATE] ?: 0L)) {
                         syncPrefs[SyncPrefs.TIMESTAMP_PLAYS_NEWEST_DATE] = it
@@ -106,9 +111,6 @@ class SyncPlaysWorker @AssistedInject constructor(
                         syncPrefs[SyncPrefs.TIMESTAMP_PLAYS_OLDEST_DATE] = it
                     }
                 }
-                gameIds.filterNot { it == BggContract.INVALID_ID }.forEach { gameId ->
-                    playRepository.updateGamePlayCount(gameId)
-                }
                 shouldContinue = hasMorePages
             } catch (e: Exception) {
                 return handleException(e)
@@ -134,6 +136,7 @@ class SyncPlaysWorker @AssistedInject constructor(
     companion object {
         const val UNIQUE_WORK_NAME = "com.boardgamegeek.SYNC_PLAYS"
         const val ERROR_MESSAGE = "ERROR_MESSAGE"
+        private const val METRICS_NAME = "plays"
 
         fun requestSync(context: Context) {
             val workRequest = OneTimeWorkRequestBuilder<SyncPlaysWorker>()
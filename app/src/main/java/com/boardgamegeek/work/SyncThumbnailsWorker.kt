@@ -0,0 +1,58 @@
+package com.boardgamegeek.work
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.*
+import com.boardgamegeek.extensions.createWorkConstraints
+import com.boardgamegeek.repository.ImageRepository
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+
+/**
+ * Downloads the thumbnails of the collection and played games into the offline thumbnail store, stopping once the
+ * store is full.
+ */
+@HiltWorker
+class SyncThumbnailsWorker @AssistedInject constructor(
+    @Assisted appContext: Context,
+    @Assisted workerParams: WorkerParameters,
+    private val imageRepository: ImageRepository,
+) : CoroutineWorker(appContext, workerParams) {
+    override suspend fun doWork(): Result {
+        val urls = imageRepository.loadThumbnailUrls()
+        Timber.i("Storing up to %,d thumbnails", urls.size)
+        var storedCount = 0
+        withContext(Dispatchers.IO) {
+            for ((index, url) in urls.withIndex()) {
+                if (isStopped) {
+                    Timber.i("Stopping while storing thumbnails")
+                    break
+                }
+                if (imageRepository.isThumbnailStoreFull) {
+                    Timber.i("Thumbnail store is full")
+                    break
+                }
+                if (imageRepository.storeThumbnail(url)) storedCount++
+                if (index % FLUSH_INTERVAL == FLUSH_INTERVAL - 1) imageRepository.flushThumbnailStore()
+            }
+            imageRepository.flushThumbnailStore()
+        }
+        Timber.i("%,d of %,d thumbnails are stored", storedCount, urls.size)
+        return Result.success()
+    }
+
+    companion object {
+        const val UNIQUE_WORK_NAME = "com.boardgamegeek.SYNC_THUMBNAILS"
+        private const val FLUSH_INTERVAL = 100
+
+        fun requestSync(context: Context) {
+            val workRequest = OneTimeWorkRequestBuilder<SyncThumbnailsWorker>()
+                .setConstraints(context.createWorkConstraints(true))
+                .build()
+            WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, workRequest)
+        }
+    }
+}
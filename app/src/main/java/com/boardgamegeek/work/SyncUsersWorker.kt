@@ -10,9 +10,9 @@ import com.boardgamegeek.extensions.*
 import com.boardgamegeek.pref.*
 import com.boardgamegeek.repository.UserRepository
 import com.boardgamegeek.util.RemoteConfig
+import com.boardgamegeek.util.SyncMetricsRecorder
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
-import kotlinx.coroutines.delay
 import retrofit2.HttpException
 import timber.log.Timber
 import java.util.concurrent.TimeUnit
@@ -29,17 +29,29 @@ class SyncUsersWorker @AssistedInject constructor(
     @Assisted appContext: Context,
     @Assisted workerParams: WorkerParameters,
     private val userRepository: UserRepository,
+    private val syncMetrics: SyncMetricsRecorder,
 ) : CoroutineWorker(appContext, workerParams) {
-    private val prefs: SharedPreferences by lazy { appContext.preferences() }
     private val syncPrefs: SharedPreferences by lazy { SyncPrefs.getPrefs(appContext) }
 
     private val buddiesFetchPauseMilliseconds = RemoteConfig.getLong(RemoteConfig.KEY_SYNC_BUDDIES_FETCH_PAUSE_MILLIS)
     private val buddiesFetchIntervalDays = RemoteConfig.getInt(RemoteConfig.KEY_SYNC_BUDDIES_FETCH_INTERVAL_DAYS)
     private val buddySyncSliceCount = RemoteConfig.getInt(RemoteConfig.KEY_SYNC_BUDDIES_DAYS)
     private val buddySyncSliceMaxSize = RemoteConfig.getInt(RemoteConfig.KEY_SYNC_BUDDIES_MAX)
+    private val buddyBatchUpdater by lazy {
+        BuddyBatchUpdater(
+            RemoteConfig.getInt(RemoteConfig.KEY_SYNC_BUDDIES_CONCURRENCY),
+            buddiesFetchPauseMilliseconds,
+            fetchBuddy = { username ->
+                setProgress(workDataOf(PROGRESS_USERNAME to username))
+                setForeground(createForegroundInfo(applicationContext.getString(R.string.sync_notification_buddy, username)))
+                userRepository.fetch(username)
+            },
+            saveBuddies = { users -> userRepository.saveUsers(users) },
+        )
+    }
 
     override suspend fun doWork(): Result {
-        if (prefs[PREFERENCES_KEY_SYNC_BUDDIES, false] != true) {
+        if (!PreferenceSnapshot.of(applicationContext).syncBuddies) {
             Timber.i("Buddies not set to sync")
             return Result.success()
         }
@@ -52,7 +64,7 @@ class SyncUsersWorker @AssistedInject constructor(
                 Timber.i("Skipping downloading buddies list; we synced already within the last $buddiesFetchIntervalDays days")
             } else {
                 val timestamp = System.currentTimeMillis()
-                val (savedCount, deletedCount) = userRepository.refreshBuddies(timestamp)
+                val (savedCount, deletedCount) = syncMetrics.measure(METRICS_NAME, "buddies_list") { userRepository.refreshBuddies(timestamp) }
                 Timber.i("Saved $savedCount buddies; pruned $deletedCount users who are no longer buddies")
                 syncPrefs.setBuddiesTimestamp(timestamp)
             }
@@ -65,41 +77,27 @@ class SyncUsersWorker @AssistedInject constructor(
         var updatedBuddyCount = 0
         val allUsers = userRepository.loadBuddies(sortBy = UserDao.UsersSortBy.UPDATED)
 
-        val staleBuddies = allUsers.filter { it.updatedTimestamp > 0L }.map { it.userName }
-        val limit = (staleBuddies.size / buddySyncSliceCount.coerceAtLeast(1)).coerceAtMost(buddySyncSliceMaxSize)
-        Timber.i("Updating $limit buddies; ${staleBuddies.size} total buddies cut in $buddySyncSliceCount slices of no more than $buddySyncSliceMaxSize")
-        for (username in staleBuddies.take(limit)) {
-            if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled during stale buddy update"))
-            updatedBuddyCount += updateBuddy(username)
+        val staleBuddies = BuddyBatchUpdater.staleBuddies(allUsers, buddiesFetchIntervalDays.days, buddySyncSliceCount, buddySyncSliceMaxSize)
+        syncMetrics.measure(METRICS_NAME, "stale_buddies") {
+            updatedBuddyCount += updateBuddies(staleBuddies)
         }
+        if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled during stale buddy update"))
 
         Timber.i("Syncing unupdated buddies")
         setForeground(createForegroundInfo(applicationContext.getString(R.string.sync_notification_buddies_unupdated)))
 
         val unupdatedBuddies = allUsers.filter { it.updatedTimestamp == 0L }.map { it.userName }
         Timber.i("Found ${unupdatedBuddies.size} buddies that haven't been updated; updating at most $buddySyncSliceMaxSize of them")
-        for (username in unupdatedBuddies.take(buddySyncSliceMaxSize)) {
-            if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled during unupdated buddy update"))
-            updatedBuddyCount += updateBuddy(username)
+        syncMetrics.measure(METRICS_NAME, "unupdated_buddies") {
+            updatedBuddyCount += updateBuddies(unupdatedBuddies.take(buddySyncSliceMaxSize))
         }
+        if (isStopped) return Result.failure(workDataOf(STOPPED_REASON to "Canceled during unupdated buddy update"))
         Timber.i("Updated %,d stale & unupdated buddies", updatedBuddyCount)
 
         return Result.success()
     }
 
-    private suspend fun updateBuddy(username: String): Int {
-        Timber.i("About to refresh user $username")
-        setProgress(workDataOf(PROGRESS_USERNAME to username))
-        setForeground(createForegroundInfo(applicationContext.getString(R.string.sync_notification_buddy, username)))
-        delay(buddiesFetchPauseMilliseconds)
-        return try {
-            userRepository.refresh(username)
-            1
-        } catch (e: Exception) {
-            handleException(e)
-            0
-        }
-    }
+    private suspend fun updateBuddies(usernames: List<String>) = buddyBatchUpdater.update(usernames, { isStopped }) { handleException(it) }
 
     private fun handleException(e: Exception): Result {
         Timber.e(e)
@@ -117,6 +115,7 @@ class SyncUsersWorker @AssistedInject constructor(
         const val ERROR_MESSAGE = "ERROR_MESSAGE"
         const val PROGRESS_USERNAME = "PROGRESS_USERNAME"
         const val STOPPED_REASON = "STOPPED_REASON"
+        private const val METRICS_NAME = "users"
 
         fun requestSync(context: Context) {
             val workRequest = OneTimeWorkRequestBuilder<SyncUsersWorker>()
@@ -0,0 +1,75 @@
+package com.boardgamegeek.benchmark
+
+import com.google.gson.GsonBuilder
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+
+/**
+ * Settings shared by the benchmarks. They're skipped unless the build is run with `-Pbenchmark=true`, and write their
+ * results as JSON to `app/build/reports/benchmarks`, so results from two commits can be diffed.
+ */
+object Benchmarks {
+    val isEnabled: Boolean
+        get() = System.getProperty("bgg.benchmark").toBoolean()
+
+    fun outputFile(name: String): File {
+        val directory = File(System.getProperty("bgg.benchmark.output") ?: "build/reports/benchmarks")
+        directory.mkdirs()
+        return File(directory, name)
+    }
+
+    data class Timing(
+        val benchmark: String,
+        val size: Int,
+        val iterations: Int,
+        val medianMillis: Double,
+        val minMillis: Double,
+        val maxMillis: Double,
+    )
+
+    /**
+     * Runs [block] [iterations] times after a warm-up run, timing each one.
+     */
+    inline fun time(benchmark: String, size: Int, iterations: Int = 5, block: () -> Unit): Timing =
+        time(benchmark, size, iterations, {}, block)
+
+    /**
+     * Runs [block] [iterations] times after a warm-up run, timing each one but not the [setUp] run before it.
+     */
+    inline fun time(benchmark: String, size: Int, iterations: Int = 5, setUp: () -> Unit, block: () -> Unit): Timing {
+        setUp()
+        block()
+        val millis = List(iterations) {
+            setUp()
+            val start = System.nanoTime()
+            block()
+            (System.nanoTime() - start) / 1_000_000.0
+        }.sorted()
+        return Timing(benchmark, size, iterations, millis[millis.size / 2], millis.first(), millis.last())
+    }
+
+    data class HeapUsage(
+        val benchmark: String,
+        val size: Int,
+        val peakMegabytes: Double,
+    )
+
+    /**
+     * Runs [block] after a garbage collection and measures the most heap it used above what was in use before. Each heap
+     * pool peaks at its own time, so this overstates the peak a little; only compare it to other runs on the same JVM.
+     */
+    inline fun peakHeap(benchmark: String, size: Int, block: () -> Unit): HeapUsage {
+        val pools = ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }
+        System.gc()
+        val baseline = pools.sumOf { it.usage.used }
+        pools.forEach { it.resetPeakUsage() }
+        block()
+        val peak = pools.sumOf { it.peakUsage.used } - baseline
+        return HeapUsage(benchmark, size, peak / (1024.0 * 1024.0))
+    }
+
+    fun writeJson(name: String, results: List<Any>) {
+        outputFile(name).writeText(GsonBuilder().setPrettyPrinting().create().toJson(results))
+    }
+}
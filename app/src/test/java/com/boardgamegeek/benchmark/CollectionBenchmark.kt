@@ -0,0 +1,56 @@
+package com.boardgamegeek.benchmark
+
+import android.content.ContextWrapper
+import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.filterer.*
+import com.boardgamegeek.sorter.*
+import com.boardgamegeek.testing.SyntheticData
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Filters and sorts a synthetic collection the way the collection view does in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class CollectionBenchmark {
+    @Param("100", "1000", "10000")
+    @JvmField
+    var size = 0
+
+    private lateinit var items: List<CollectionItemEntity>
+    private lateinit var filterers: List<CollectionFilterer>
+    private lateinit var sorters: List<CollectionSorter>
+
+    @Setup
+    fun setUp() {
+        items = SyntheticData().collection(size)
+        // filtering and sorting don't touch the context; only the descriptions do
+        val context = ContextWrapper(null)
+        filterers = listOf(
+            CollectionStatusFilterer(context).apply { inflate("1:1:1:0:0:0:0:0:0") },
+            PlayerNumberFilterer(context).apply { inflate("2:4:0") },
+            AverageRatingFilterer(context).apply { inflate("6.5:10:1:0") },
+            PlayCountFilterer(context).apply { inflate("1:25") },
+            YearPublishedFilterer(context).apply { inflate("1990:2024") },
+            CollectionNameFilter(context).apply { inflate("a:0") },
+        )
+        sorters = listOf(
+            CollectionNameSorter(context),
+            PlayCountSorter(context),
+            GeekRatingSorter(context),
+            LastPlayDateSorter(context),
+            AcquiredFromSorter(context),
+        )
+    }
+
+    @Benchmark
+    fun filter() = items.filter { item -> filterers.all { it.filter(item) } }
+
+    @Benchmark
+    fun sortAscending() = sorters.map { it.sortAscending(items) }
+
+    @Benchmark
+    fun sortDescending() = sorters.map { it.sortDescending(items) }
+}
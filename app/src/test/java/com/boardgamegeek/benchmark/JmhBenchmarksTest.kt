@@ -0,0 +1,32 @@
+package com.boardgamegeek.benchmark
+
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import org.openjdk.jmh.results.format.ResultFormatType
+import org.openjdk.jmh.runner.Runner
+import org.openjdk.jmh.runner.options.OptionsBuilder
+import org.openjdk.jmh.runner.options.TimeValue
+
+/**
+ * Runs the JMH benchmarks in this package and writes the results to `jmh.json`:
+ *
+ *     ./gradlew testDebugUnitTest --tests '*JmhBenchmarksTest' -Pbenchmark=true
+ */
+class JmhBenchmarksTest {
+    @Test
+    fun runBenchmarks() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        val options = OptionsBuilder()
+            .include("${javaClass.packageName.replace(".", "\\.")}\\..*Benchmark\\.")
+            // the forked JVM wouldn't see the class path Gradle gives its test workers
+            .forks(0)
+            .warmupIterations(3)
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.seconds(1))
+            .resultFormat(ResultFormatType.JSON)
+            .result(Benchmarks.outputFile("jmh.json").path)
+            .build()
+        Runner(options).run()
+    }
+}
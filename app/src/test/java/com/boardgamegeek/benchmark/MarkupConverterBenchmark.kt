@@ -0,0 +1,33 @@
+package com.boardgamegeek.benchmark
+
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.util.XmlApiMarkupConverter
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class MarkupConverterBenchmark {
+    @Param("10", "100", "1000")
+    @JvmField
+    var paragraphs = 0
+
+    private lateinit var text: String
+
+    @Setup
+    fun setUp() {
+        text = SyntheticData().markup(paragraphs)
+    }
+
+    // a new converter each time, so the rendered text isn't served from its cache
+    @Benchmark
+    fun toHtml() = XmlApiMarkupConverter(SPOILER).toHtml(text)
+
+    @Benchmark
+    fun strip() = XmlApiMarkupConverter(SPOILER).strip(text)
+
+    companion object {
+        private const val SPOILER = "Spoiler"
+    }
+}
@@ -0,0 +1,34 @@
+package com.boardgamegeek.benchmark
+
+import com.boardgamegeek.entities.PlayEntity
+import com.boardgamegeek.testing.SyntheticData
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Fingerprints a page of synced plays, as the play sync does for each stored play it finds on the page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class PlayFingerprintBenchmark {
+    @Param("1", "6", "12")
+    @JvmField
+    var playersPerPlay = 0
+
+    private lateinit var plays: List<PlayEntity>
+
+    @Setup
+    fun setUp() {
+        val data = SyntheticData()
+        plays = data.plays(PAGE_SIZE, 1_000, data.players(SyntheticData.PLAYER_POOL_SIZE), playersPerPlay..playersPerPlay)
+    }
+
+    @Benchmark
+    fun fingerprintPage() = plays.sumOf { it.generateSyncFingerprint() }
+
+    companion object {
+        // the plays endpoint returns 100 plays a page
+        private const val PAGE_SIZE = 100
+    }
+}
@@ -0,0 +1,80 @@
+package com.boardgamegeek.benchmark
+
+import com.boardgamegeek.entities.GameForPlayStatEntity
+import com.boardgamegeek.entities.GamePlayStatsEntity
+import com.boardgamegeek.entities.HIndexEntity
+import com.boardgamegeek.entities.PlayEntity
+import com.boardgamegeek.entities.PlayPlayerEntity
+import com.boardgamegeek.entities.PlayStatsEntity
+import com.boardgamegeek.entities.PlayerEntity
+import com.boardgamegeek.entities.PlayerStatsEntity
+import com.boardgamegeek.testing.SyntheticData
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Calculates the play and player stats shown on the stats screen from a synthetic play history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class PlayStatsBenchmark {
+    @Param("1000", "10000", "100000")
+    @JvmField
+    var plays = 0
+
+    private lateinit var games: List<GameForPlayStatEntity>
+    private lateinit var players: List<PlayerEntity>
+    private lateinit var playCounts: List<Int>
+
+    @Setup
+    fun setUp() {
+        val data = SyntheticData()
+        val gameCount = (plays / 10).coerceAtLeast(10)
+        players = data.players(plays / 20)
+        games = data.gamesForPlayStats(data.plays(plays, gameCount, players), data.collection(gameCount))
+        playCounts = games.map { it.playCount }
+    }
+
+    // each property is lazy, so they're all read from a new instance
+    @Benchmark
+    fun playStats() = PlayStatsEntity(games, true).run {
+        listOf(numberOfPlays, numberOfPlayedGames, numberOfDimes, top100Count, hIndex.h, friendless, cfm, utilization)
+    }
+
+    @Benchmark
+    fun playerStats() = PlayerStatsEntity(players).hIndex
+
+    @Benchmark
+    fun hIndex() = HIndexEntity.fromList(playCounts)
+}
+
+/**
+ * Calculates the stats shown on a game's play stats screen from 5,000 plays of a single game with 8 players each, and
+ * the change token that decides whether they need calculating again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class GamePlayStatsBenchmark {
+    private lateinit var plays: List<PlayEntity>
+    private lateinit var players: List<PlayPlayerEntity>
+
+    @Setup
+    fun setUp() {
+        val data = SyntheticData()
+        plays = data.plays(PLAY_COUNT, 1, data.players(SyntheticData.PLAYER_POOL_SIZE), PLAYERS_PER_PLAY..PLAYERS_PER_PLAY)
+        players = plays.flatMap { it.players }
+    }
+
+    @Benchmark
+    fun gamePlayStats() = GamePlayStatsEntity(plays, players, 60, 7.5, true, false, "user1", 10)
+
+    @Benchmark
+    fun changeToken() = GamePlayStatsEntity.changeToken(plays, players)
+
+    companion object {
+        private const val PLAY_COUNT = 5_000
+        private const val PLAYERS_PER_PLAY = 8
+    }
+}
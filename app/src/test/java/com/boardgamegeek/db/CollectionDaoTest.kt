@@ -0,0 +1,219 @@
+package com.boardgamegeek.db
+
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
+import android.content.Context
+import android.provider.BaseColumns
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.benchmark.Benchmarks
+import com.boardgamegeek.extensions.loadList
+import com.boardgamegeek.extensions.whereZeroOrNull
+import com.boardgamegeek.provider.BggContract
+import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Companion.COLLATE_NOCASE
+import com.boardgamegeek.provider.BggContract.Companion.QUERY_KEY_LIMIT
+import com.boardgamegeek.provider.BggContract.Companion.QUERY_KEY_OFFSET
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggContract.Plays
+import com.boardgamegeek.provider.BggDatabase.Tables
+import com.boardgamegeek.provider.BggProvider
+import com.boardgamegeek.sorter.*
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertCollection
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import kotlin.random.Random
+
+/**
+ * Pages through a synthetic collection, full of ties and with ratings that aren't round numbers, under each sort that
+ * can be expressed in SQL, and compares it to the order of a single query.
+ */
+@RunWith(RobolectricTestRunner::class)
+class CollectionDaoTest {
+    private lateinit var context: Context
+    private lateinit var resolver: ContentResolver
+    private lateinit var dao: CollectionDao
+
+    @Before
+    fun setUp() {
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        context = ApplicationProvider.getApplicationContext()
+        resolver = context.contentResolver
+        dao = CollectionDao(context)
+    }
+
+    @Test
+    fun loadListItemsPage_pagesThroughEveryItemInOrder() = runBlocking {
+        insertRandomCollection(500)
+        val sorters = listOf(
+            CollectionNameSorter(context),
+            RankSorter(context),
+            GeekRatingSorter(context),
+            PlayCountSorter(context),
+            YearPublishedSorter(context),
+            MyRatingSorter(context),
+            CurrentValueSorter(context),
+        )
+        val orders = listOf(emptyList<SortColumn>()) + sorters.flatMap { sorter ->
+            listOf(false, true).map { isDescending -> sorter.sortColumns.map { SortColumn(it, isDescending) } }
+        }
+
+        orders.forEach { sortColumns ->
+            val description = sortColumns.joinToString { "${it.expression} ${if (it.isDescending) "DESC" else "ASC"}" }
+            val expected = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, null, PageDirection.FROM, Int.MAX_VALUE)
+                .items.map { it.internalId }
+
+            val forward = mutableListOf<CollectionDao.ListItemsPage>()
+            var page = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, null, PageDirection.FROM, PAGE_SIZE)
+            while (page.items.isNotEmpty()) {
+                forward += page
+                page = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, page.lastKey, PageDirection.AFTER, PAGE_SIZE)
+            }
+            val backward = mutableListOf<CollectionDao.ListItemsPage>()
+            page = forward.last()
+            while (page.items.isNotEmpty()) {
+                backward += page
+                page = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, page.firstKey, PageDirection.BEFORE, PAGE_SIZE)
+            }
+            val refreshed = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, forward[3].firstKey, PageDirection.FROM, PAGE_SIZE)
+
+            assertEquals(description, dao.countListItems(SELECTION, emptyArray()), expected.size)
+            assertEquals(description, expected, forward.flatMap { it.items }.map { it.internalId })
+            assertEquals(description, expected, backward.asReversed().flatMap { it.items }.map { it.internalId })
+            assertEquals(description, forward[3].items.map { it.internalId }, refreshed.items.map { it.internalId })
+        }
+    }
+
+    /**
+     * Times paging through a 10,000 item collection sorted by geek rating, seeking to each page's key and skipping an
+     * offset to it, and writes the timings to `collection-paging.json`.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*CollectionDaoTest' -Pbenchmark=true
+     */
+    @Test
+    fun timePaging() = runBlocking {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        insertRandomCollection(BENCHMARK_SIZE)
+        val sortColumns = GeekRatingSorter(context).sortColumns.map { SortColumn(it, isDescending = true) }
+        var keysetIds = emptyList<Long>()
+        var offsetIds = emptyList<Long>()
+        val timings = listOf(
+            Benchmarks.time("keyset", BENCHMARK_SIZE, iterations = 3) {
+                keysetIds = runBlocking { pageByKey(sortColumns) }
+            },
+            Benchmarks.time("offset", BENCHMARK_SIZE, iterations = 3) {
+                offsetIds = runBlocking { pageByOffset(sortColumns) }
+            },
+        )
+        assertEquals(keysetIds, offsetIds)
+        Benchmarks.writeJson("collection-paging.json", timings)
+    }
+
+    /**
+     * Inserts a synthetic collection, then fills in the columns the sorts use with values that often tie: a few sort
+     * names, ranks, and play counts shared by many items, and some columns left null.
+     */
+    private fun insertRandomCollection(size: Int) {
+        val random = Random(SyntheticData.DEFAULT_SEED)
+        val items = SyntheticData().collection(size).map {
+            if (random.nextInt(5) == 0) it.copy(sortName = "Shared ${random.nextInt(3)}") else it
+        }
+        resolver.insertCollection(items)
+        val updates = items.map { it.gameId }.distinct().map {
+            ContentProviderOperation.newUpdate(Games.buildGameUri(it))
+                .withValue(Games.Columns.GAME_RANK, if (random.nextInt(4) == 0) null else random.nextInt(1, 50))
+                .withValue(Games.Columns.NUM_PLAYS, random.nextInt(0, 5))
+                .withValue(Games.Columns.STATS_BAYES_AVERAGE, if (random.nextInt(4) == 0) 6.5 else random.nextDouble(1.0, 10.0))
+                .build()
+        } + items.map {
+            ContentProviderOperation.newUpdate(Collection.CONTENT_URI)
+                .withSelection("${Collection.Columns.COLLECTION_ID}=?", arrayOf(it.collectionId.toString()))
+                .withValue(Collection.Columns.RATING, if (random.nextBoolean()) null else random.nextInt(1, 11) / 2.0)
+                .withValue(Collection.Columns.PRIVATE_INFO_CURRENT_VALUE_CURRENCY, listOf(null, "USD", "EUR")[random.nextInt(3)])
+                .withValue(Collection.Columns.PRIVATE_INFO_CURRENT_VALUE, if (random.nextInt(3) == 0) null else random.nextInt(0, 20) * 5.0)
+                .build()
+        }
+        resolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(updates))
+    }
+
+    private suspend fun pageByKey(sortColumns: List<SortColumn>): List<Long> {
+        val ids = mutableListOf<Long>()
+        var page = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, null, PageDirection.FROM, PAGE_SIZE)
+        while (page.items.isNotEmpty()) {
+            page.items.mapTo(ids) { it.internalId }
+            page = dao.loadListItemsPage(SELECTION, emptyArray(), sortColumns, page.lastKey, PageDirection.AFTER, PAGE_SIZE)
+        }
+        return ids
+    }
+
+    /**
+     * How the list used to page, with LIMIT and OFFSET, loading the same columns in the same order.
+     */
+    private suspend fun pageByOffset(sortColumns: List<SortColumn>): List<Long> {
+        val ids = mutableListOf<Long>()
+        val sortOrder = (sortColumns + SortColumn("IFNULL(${Collection.Columns.COLLECTION_SORT_NAME},'')$COLLATE_NOCASE", false) +
+                SortColumn("${Tables.COLLECTION}.${BaseColumns._ID}", false)).orderBy(reverse = false)
+        var offset = 0
+        while (true) {
+            val uri = Collection.CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_KEY_LIMIT, PAGE_SIZE.toString())
+                .appendQueryParameter(QUERY_KEY_OFFSET, offset.toString())
+                .build()
+            val page = resolver.loadList(
+                uri,
+                OFFSET_PROJECTION,
+                Collection.Columns.COLLECTION_DELETE_TIMESTAMP.whereZeroOrNull(),
+                null,
+                sortOrder,
+            ) { it.getLong(0) }
+            if (page.isEmpty()) return ids
+            ids += page
+            offset += page.size
+        }
+    }
+
+    companion object {
+        private const val SELECTION = "1"
+        private const val PAGE_SIZE = 60
+        private const val BENCHMARK_SIZE = 10_000
+
+        private val OFFSET_PROJECTION = arrayOf(
+            BaseColumns._ID,
+            Collection.Columns.GAME_ID,
+            Collection.Columns.COLLECTION_NAME,
+            Collection.Columns.COLLECTION_SORT_NAME,
+            Games.Columns.GAME_NAME,
+            Games.Columns.YEAR_PUBLISHED,
+            Collection.Columns.COLLECTION_YEAR_PUBLISHED,
+            Collection.Columns.COLLECTION_THUMBNAIL_URL,
+            Collection.Columns.COLLECTION_HERO_IMAGE_URL,
+            Games.Columns.STARRED,
+            Games.Columns.CUSTOM_PLAYER_SORT,
+            Collection.Columns.RATING,
+            Games.Columns.STATS_AVERAGE,
+            Games.Columns.STATS_BAYES_AVERAGE,
+            Games.Columns.STATS_AVERAGE_WEIGHT,
+            Games.Columns.GAME_RANK,
+            Games.Columns.NUM_PLAYS,
+            Games.Columns.PLAYING_TIME,
+            Games.Columns.MINIMUM_AGE,
+            Collection.Columns.STATUS_WISHLIST_PRIORITY,
+            Games.Columns.LAST_VIEWED,
+            Collection.Columns.LAST_MODIFIED,
+            Plays.Columns.MAX_DATE,
+            Collection.Columns.PRIVATE_INFO_ACQUISITION_DATE,
+            Collection.Columns.PRIVATE_INFO_ACQUIRED_FROM,
+            Collection.Columns.PRIVATE_INFO_INVENTORY_LOCATION,
+            Collection.Columns.PRIVATE_INFO_PRICE_PAID_CURRENCY,
+            Collection.Columns.PRIVATE_INFO_PRICE_PAID,
+            Collection.Columns.PRIVATE_INFO_CURRENT_VALUE_CURRENCY,
+            Collection.Columns.PRIVATE_INFO_CURRENT_VALUE,
+        )
+    }
+}
@@ -0,0 +1,163 @@
+package com.boardgamegeek.db
+
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
+import android.content.Context
+import android.net.Uri
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.entities.BriefGameEntity
+import com.boardgamegeek.entities.GameEntity
+import com.boardgamegeek.entities.PersonStatsEntity
+import com.boardgamegeek.extensions.COLLECTION_STATUS_OWN
+import com.boardgamegeek.extensions.COLLECTION_STATUS_PLAYED
+import com.boardgamegeek.extensions.COLLECTION_STATUS_RATED
+import com.boardgamegeek.extensions.preferences
+import com.boardgamegeek.extensions.setSyncStatuses
+import com.boardgamegeek.provider.BggContract
+import com.boardgamegeek.provider.BggContract.Artists
+import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Designers
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggContract.Publishers
+import com.boardgamegeek.provider.BggDatabase.GamesArtists
+import com.boardgamegeek.provider.BggDatabase.GamesDesigners
+import com.boardgamegeek.provider.BggDatabase.GamesPublishers
+import com.boardgamegeek.provider.BggProvider
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertCollection
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import kotlin.random.Random
+
+/**
+ * Compares the collections linked to every designer, artist, and publisher, loaded in one query per type, and the
+ * Whitmore scores calculated from them, to loading each one's collection on its own as the scores used to be.
+ */
+@RunWith(RobolectricTestRunner::class)
+class LinkedCollectionTest {
+    private lateinit var context: Context
+    private lateinit var resolver: ContentResolver
+
+    @Before
+    fun setUp() {
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        context = ApplicationProvider.getApplicationContext()
+        resolver = context.contentResolver
+        context.preferences().setSyncStatuses(arrayOf(COLLECTION_STATUS_OWN, COLLECTION_STATUS_RATED, COLLECTION_STATUS_PLAYED))
+    }
+
+    @Test
+    fun designers_matchLoadingEachCollection() = runBlocking {
+        val dao = DesignerDao(context)
+        val ids = insertRandomData(Designers.CONTENT_URI, Designers.Columns.DESIGNER_ID, Designers.Columns.DESIGNER_NAME, BggContract.PATH_DESIGNERS, GamesDesigners.DESIGNER_ID)
+
+        val scores = assertCollectionsMatch(ids, dao.loadCollections()) { dao.loadCollection(it) }
+        dao.updateWhitmoreScores(scores)
+
+        assertEquals(scores, dao.loadDesigners(DesignerDao.SortType.NAME).associate { it.id to it.whitmoreScore }.filterKeys { it in scores })
+    }
+
+    @Test
+    fun artists_matchLoadingEachCollection() = runBlocking {
+        val dao = ArtistDao(context)
+        val ids = insertRandomData(Artists.CONTENT_URI, Artists.Columns.ARTIST_ID, Artists.Columns.ARTIST_NAME, BggContract.PATH_ARTISTS, GamesArtists.ARTIST_ID)
+
+        val scores = assertCollectionsMatch(ids, dao.loadCollections()) { dao.loadCollection(it) }
+        dao.updateWhitmoreScores(scores)
+
+        assertEquals(scores, dao.loadArtists(ArtistDao.SortType.NAME).associate { it.id to it.whitmoreScore }.filterKeys { it in scores })
+    }
+
+    @Test
+    fun publishers_matchLoadingEachCollection() = runBlocking {
+        val dao = PublisherDao(context)
+        val ids = insertRandomData(Publishers.CONTENT_URI, Publishers.Columns.PUBLISHER_ID, Publishers.Columns.PUBLISHER_NAME, BggContract.PATH_PUBLISHERS, GamesPublishers.PUBLISHER_ID)
+
+        val scores = assertCollectionsMatch(ids, dao.loadCollections()) { dao.loadCollection(it) }
+        dao.updateWhitmoreScores(scores)
+
+        assertEquals(scores, dao.loadPublishers(PublisherDao.SortType.NAME).associate { it.id to it.whitmoreScore }.filterKeys { it in scores })
+    }
+
+    /**
+     * Checks that each of the [ids] has the same linked collection in [collections] as [loadCollection] returns, and
+     * the same stats calculated from it, with and without expansions and accessories. Returns the Whitmore scores.
+     */
+    private suspend fun assertCollectionsMatch(
+        ids: List<Int>,
+        collections: Map<Int, List<BriefGameEntity>>,
+        loadCollection: suspend (Int) -> List<BriefGameEntity>,
+    ): Map<Int, Int> {
+        assertTrue(collections.values.any { it.size > 1 })
+        return ids.associateWith { id ->
+            val expected = loadCollection(id)
+            val actual = collections[id].orEmpty()
+            // items tied on rating, favorite, and name may come back in either order
+            assertEquals("ID $id", expected.sortedBy { it.internalId }, actual.sortedBy { it.internalId })
+            assertEquals("ID $id", expected.map { it.personalRating }, actual.map { it.personalRating })
+            listOf(false, true).forEach { includeExpansions ->
+                listOf(false, true).forEach { includeAccessories ->
+                    val expectedStats = PersonStatsEntity.fromLinkedCollection(expected, includeExpansions, includeAccessories)
+                    val actualStats = PersonStatsEntity.fromLinkedCollection(actual, includeExpansions, includeAccessories)
+                    assertEquals("ID $id", expectedStats.whitmoreScore, actualStats.whitmoreScore)
+                    assertEquals("ID $id", expectedStats.whitmoreScoreWithExpansions, actualStats.whitmoreScoreWithExpansions)
+                    assertEquals("ID $id", expectedStats.averageRating, actualStats.averageRating, 1e-9)
+                    assertEquals("ID $id", expectedStats.playCount, actualStats.playCount)
+                    assertEquals("ID $id", expectedStats.hIndex, actualStats.hIndex)
+                }
+            }
+            PersonStatsEntity.fromLinkedCollection(actual, includeExpansions = false, includeAccessories = false).whitmoreScore
+        }
+    }
+
+    /**
+     * Fills the database with a synthetic collection of games of every subtype, some rated, starred, and played, and
+     * people (or companies) linked to one to three games each. Returns the IDs of the people, including some with no
+     * games.
+     */
+    private fun insertRandomData(uri: Uri, idColumn: String, nameColumn: String, linkPath: String, linkIdColumn: String): List<Int> {
+        val random = Random(SyntheticData.DEFAULT_SEED)
+        val items = SyntheticData().collection(COLLECTION_SIZE)
+        resolver.insertCollection(items)
+        val subtypes = GameEntity.Subtype.values().map { it.code }
+        val gameIds = items.map { it.gameId }.distinct()
+        val updates = gameIds.map {
+            ContentProviderOperation.newUpdate(Games.buildGameUri(it))
+                .withValue(Games.Columns.SUBTYPE, subtypes[random.nextInt(subtypes.size)])
+                .withValue(Games.Columns.STARRED, random.nextInt(10) == 0)
+                .withValue(Games.Columns.NUM_PLAYS, if (random.nextBoolean()) 0 else random.nextInt(1, 40))
+                .build()
+        } + items.map {
+            ContentProviderOperation.newUpdate(Collection.CONTENT_URI)
+                .withSelection("${Collection.Columns.COLLECTION_ID}=?", arrayOf(it.collectionId.toString()))
+                // whole ratings, so items often tie on the rating sort
+                .withValue(Collection.Columns.RATING, if (random.nextInt(3) == 0) 0.0 else random.nextInt(1, 11).toDouble())
+                .build()
+        }
+        resolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(updates))
+        val ids = (1..PERSON_COUNT).toList()
+        val people = ids.map {
+            ContentProviderOperation.newInsert(uri).withValue(idColumn, it).withValue(nameColumn, "Person $it").build()
+        }
+        resolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(people))
+        // the last few are linked to no games
+        val links = gameIds.flatMap { gameId ->
+            List(random.nextInt(1, 4)) { random.nextInt(PERSON_COUNT - 5) + 1 }.distinct().map {
+                ContentProviderOperation.newInsert(Games.buildPathUri(gameId, linkPath)).withValue(linkIdColumn, it).build()
+            }
+        }
+        resolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(links))
+        return ids
+    }
+
+    companion object {
+        private const val COLLECTION_SIZE = 400
+        private const val PERSON_COUNT = 40
+    }
+}
@@ -0,0 +1,388 @@
+package com.boardgamegeek.db
+
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
+import android.content.Context
+import android.provider.BaseColumns
+import androidx.core.content.contentValuesOf
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.benchmark.Benchmarks
+import com.boardgamegeek.db.PlayDao.PlaysSortBy
+import com.boardgamegeek.entities.PlayEntity
+import com.boardgamegeek.extensions.applyBatch
+import com.boardgamegeek.extensions.loadList
+import com.boardgamegeek.provider.BggContract
+import com.boardgamegeek.provider.BggContract.Companion.QUERY_KEY_LIMIT
+import com.boardgamegeek.provider.BggContract.Companion.QUERY_KEY_OFFSET
+import com.boardgamegeek.provider.BggContract.PlayPlayers
+import com.boardgamegeek.provider.BggContract.Plays
+import com.boardgamegeek.provider.BggDatabase.Tables
+import com.boardgamegeek.provider.BggProvider
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertPlays
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import kotlin.random.Random
+
+/**
+ * Compares the set-based renames of players and locations to the play-by-play updates they replaced, which are kept
+ * here as the reference, and checks that keyset paging visits every play in the lists' order.
+ */
+@RunWith(RobolectricTestRunner::class)
+class PlayDaoTest {
+    private lateinit var resolver: ContentResolver
+    private lateinit var playDao: PlayDao
+
+    @Before
+    fun setUp() {
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        resolver = context.contentResolver
+        playDao = PlayDao(context)
+    }
+
+    @Test
+    fun renamePlayer_matchesRenamingEachPlay() = runBlocking {
+        val plays = plays(500)
+        val oldName = nonUserName(plays)
+
+        val expected = renameAndSnapshot(plays) { renamePlayerPerPlay(oldName, NEW_NAME) }
+        val actual = renameAndSnapshot(plays) { playDao.renamePlayer(oldName, NEW_NAME) }
+
+        assertTrue(expected.uploadPlayIds.isNotEmpty())
+        assertEquals(expected, actual)
+    }
+
+    @Test
+    fun renameLocation_matchesRenamingEachPlay() = runBlocking {
+        val plays = plays(500)
+        val oldLocation = plays.first { it.location.isNotEmpty() }.location
+
+        val expected = renameAndSnapshot(plays) { renameLocationPerPlay(oldLocation, NEW_NAME) }
+        val actual = renameAndSnapshot(plays) { playDao.renameLocation(oldLocation, NEW_NAME) }
+
+        assertTrue(expected.uploadPlayIds.isNotEmpty())
+        assertEquals(expected, actual)
+    }
+
+    @Test
+    fun loadPlaysPage_pagesThroughEveryPlayInOrder() = runBlocking {
+        val plays = pagingPlays(500)
+        resolver.insertPlays(plays)
+
+        listOf(PlaysSortBy.DATE, PlaysSortBy.LOCATION, PlaysSortBy.GAME, PlaysSortBy.LENGTH).forEach { sortBy ->
+            val query = playDao.createPlaysQuery(sortBy)
+            val expected = playDao.loadPlays(query.uri, query.selection).sortedWith(pageComparator(sortBy)).map { it.internalId }
+
+            val forward = mutableListOf<PlayDao.PlaysPage>()
+            var page = playDao.loadPlaysPage(query, null, PageDirection.FROM, PAGE_SIZE)
+            while (page.plays.isNotEmpty()) {
+                forward += page
+                page = playDao.loadPlaysPage(query, page.lastKey, PageDirection.AFTER, PAGE_SIZE)
+            }
+            val backward = mutableListOf<PlayDao.PlaysPage>()
+            page = forward.last()
+            while (page.plays.isNotEmpty()) {
+                backward += page
+                page = playDao.loadPlaysPage(query, page.firstKey, PageDirection.BEFORE, PAGE_SIZE)
+            }
+
+            assertEquals("$sortBy", expected, forward.flatMap { it.plays }.map { it.internalId })
+            assertEquals("$sortBy", expected, backward.asReversed().flatMap { it.plays }.map { it.internalId })
+        }
+    }
+
+    @Test
+    fun loadPlaysPage_breaksDateTiesByPlayIdLikeTheDefaultSort() = runBlocking {
+        resolver.insertPlays(pagingPlays(500))
+        val query = playDao.createPlaysQuery(PlaysSortBy.DATE)
+
+        val paged = playDao.loadPlaysPage(query, null, PageDirection.FROM, Int.MAX_VALUE).plays
+        val sorted = playDao.loadPlays(query.uri, query.selection, PlaysSortBy.DATE)
+
+        assertEquals(sorted.map { it.dateForDatabase() to it.playId }, paged.map { it.dateForDatabase() to it.playId })
+    }
+
+    @Test
+    fun sumQuantity_matchesThePlaysTheQuerySelects() = runBlocking {
+        val plays = pagingPlays(500)
+        resolver.insertPlays(plays, includePlayers = true)
+        val shown = plays.filter { it.deleteTimestamp == 0L }
+        val play = shown.first { it.location.isNotEmpty() }
+        val playerName = nonUserName(shown)
+        val username = shown.flatMap { it.players }.first { it.username.isNotBlank() }.username
+
+        assertEquals(shown.sumOf { it.quantity }, playDao.sumQuantity(playDao.createPlaysQuery(PlaysSortBy.DATE)))
+        assertEquals(
+            shown.filter { it.gameId == play.gameId }.sumOf { it.quantity },
+            playDao.sumQuantity(playDao.createGamePlaysQuery(play.gameId)!!),
+        )
+        assertEquals(
+            shown.filter { it.location == play.location }.sumOf { it.quantity },
+            playDao.sumQuantity(playDao.createLocationPlaysQuery(play.location)),
+        )
+        assertEquals(
+            shown.filter { it.players.any { player -> player.username.isBlank() && player.name == playerName } }.sumOf { it.quantity },
+            playDao.sumQuantity(playDao.createPlayerNamePlaysQuery(playerName)!!),
+        )
+        assertEquals(
+            shown.filter { it.players.any { player -> player.username == username } }.sumOf { it.quantity },
+            playDao.sumQuantity(playDao.createUsernamePlaysQuery(username)!!),
+        )
+        assertEquals(0, playDao.sumQuantity(playDao.createLocationPlaysQuery("Nowhere")))
+    }
+
+    /**
+     * Times paging through 20,000 plays a page at a time, seeking to each page's key and skipping an offset to it, and
+     * writes the timings to `play-paging.json`.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*PlayDaoTest' -Pbenchmark=true
+     */
+    @Test
+    fun timePaging() = runBlocking {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        resolver.insertPlays(pagingPlays(BENCHMARK_SIZE))
+        val query = playDao.createPlaysQuery(PlaysSortBy.DATE)
+        var keysetIds = emptyList<Long>()
+        var offsetIds = emptyList<Long>()
+        val timings = listOf(
+            Benchmarks.time("keyset", BENCHMARK_SIZE, iterations = 3) {
+                keysetIds = runBlocking { pageByKey(query) }
+            },
+            Benchmarks.time("offset", BENCHMARK_SIZE, iterations = 3) {
+                offsetIds = runBlocking { pageByOffset(query) }
+            },
+        )
+        assertEquals(keysetIds, offsetIds)
+        Benchmarks.writeJson("play-paging.json", timings)
+    }
+
+    /**
+     * Times renaming a player and a location across 20,000 plays, both ways, and writes the timings to `play-rename.json`.
+     * Each run renames back to the name the last one started from, so every run touches the same plays.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*PlayDaoTest' -Pbenchmark=true
+     */
+    @Test
+    fun timeRenames() = runBlocking {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        val plays = plays(BENCHMARK_SIZE)
+        resolver.insertPlays(plays, includePlayers = true)
+        val playerName = nonUserName(plays)
+        val location = plays.first { it.location.isNotEmpty() }.location
+        var names = playerName to NEW_NAME
+        var locations = location to NEW_NAME
+        fun swap(pair: Pair<String, String>) = pair.second to pair.first
+        val timings = listOf(
+            Benchmarks.time("renamePlayerPerPlay", BENCHMARK_SIZE, iterations = 3) {
+                runBlocking { renamePlayerPerPlay(names.first, names.second) }
+                names = swap(names)
+            },
+            Benchmarks.time("renamePlayer", BENCHMARK_SIZE, iterations = 3) {
+                runBlocking { playDao.renamePlayer(names.first, names.second) }
+                names = swap(names)
+            },
+            Benchmarks.time("renameLocationPerPlay", BENCHMARK_SIZE, iterations = 3) {
+                runBlocking { renameLocationPerPlay(locations.first, locations.second) }
+                locations = swap(locations)
+            },
+            Benchmarks.time("renameLocation", BENCHMARK_SIZE, iterations = 3) {
+                runBlocking { playDao.renameLocation(locations.first, locations.second) }
+                locations = swap(locations)
+            },
+        )
+        Benchmarks.writeJson("play-rename.json", timings)
+    }
+
+    /**
+     * Synthetic plays, some being edited, some pending an update, and some pending deletion. Each player appears in a
+     * play only once, as the old code renamed only the first match in each play.
+     */
+    private fun plays(size: Int): List<PlayEntity> {
+        val random = Random(SyntheticData.DEFAULT_SEED)
+        val data = SyntheticData()
+        return data.plays(size, size / 10, data.players(10)).map {
+            it.copy(
+                dirtyTimestamp = if (random.nextInt(10) == 0) 1L else 0L,
+                updateTimestamp = if (random.nextInt(10) == 0) 1L else 0L,
+                deleteTimestamp = if (random.nextInt(20) == 0) 1L else 0L,
+                _players = it.players.distinctBy { player -> player.name },
+            )
+        }
+    }
+
+    /**
+     * Synthetic plays crowded into a few dates, so the order often comes down to the play ID, with some drafts that
+     * have no play ID yet and some pending deletion.
+     */
+    private fun pagingPlays(size: Int): List<PlayEntity> {
+        val random = Random(SyntheticData.DEFAULT_SEED)
+        val data = SyntheticData()
+        return data.plays(size, size / 10, data.players(10)).map {
+            it.copy(
+                playId = if (random.nextInt(10) == 0) 0 else it.playId,
+                rawDate = "2020-01-%02d".format(random.nextInt(1, 11)),
+                deleteTimestamp = if (random.nextInt(20) == 0) 1L else 0L,
+                _players = it.players.distinctBy { player -> player.name },
+            )
+        }
+    }
+
+    /**
+     * The order [PlayDao.loadPlaysPage] pages through plays sorted by [sortBy].
+     */
+    private fun pageComparator(sortBy: PlaysSortBy): Comparator<PlayEntity> {
+        val bySortValue: Comparator<PlayEntity> = when (sortBy) {
+            PlaysSortBy.LOCATION -> compareBy { it.location }
+            PlaysSortBy.GAME -> compareBy { it.gameName }
+            PlaysSortBy.LENGTH -> compareByDescending { it.length }
+            else -> compareBy { 0 }
+        }
+        return bySortValue
+            .thenByDescending { it.dateForDatabase() }
+            .thenByDescending { it.playId }
+            .thenByDescending { it.internalId }
+    }
+
+    private suspend fun pageByKey(query: PlayDao.PlaysQuery): List<Long> {
+        val ids = mutableListOf<Long>()
+        var page = playDao.loadPlaysPage(query, null, PageDirection.FROM, PAGE_SIZE)
+        while (page.plays.isNotEmpty()) {
+            page.plays.mapTo(ids) { it.internalId }
+            page = playDao.loadPlaysPage(query, page.lastKey, PageDirection.AFTER, PAGE_SIZE)
+        }
+        return ids
+    }
+
+    /**
+     * How the list would page with LIMIT and OFFSET, loading the same columns in the same order.
+     */
+    private suspend fun pageByOffset(query: PlayDao.PlaysQuery): List<Long> {
+        val ids = mutableListOf<Long>()
+        var offset = 0
+        while (true) {
+            val uri = query.uri.buildUpon()
+                .appendQueryParameter(QUERY_KEY_LIMIT, PAGE_SIZE.toString())
+                .appendQueryParameter(QUERY_KEY_OFFSET, offset.toString())
+                .build()
+            val page = resolver.loadList(
+                uri,
+                OFFSET_PROJECTION,
+                query.selection.first,
+                query.selection.second,
+                "${Tables.PLAYS}.${Plays.Columns.DATE} DESC, IFNULL(${Tables.PLAYS}.${Plays.Columns.PLAY_ID},0) DESC, ${Tables.PLAYS}.${BaseColumns._ID} DESC",
+            ) { it.getLong(0) }
+            if (page.isEmpty()) return ids
+            ids += page
+            offset += page.size
+        }
+    }
+
+    private fun nonUserName(plays: List<PlayEntity>) = plays.flatMap { it.players }.first { it.username.isBlank() }.name
+
+    private data class Snapshot(
+        val uploadPlayIds: Set<Int>,
+        val plays: Set<List<Any?>>,
+        val players: Set<List<Any?>>,
+    )
+
+    /**
+     * Inserts [plays] into an empty database and [rename]s, returning what the rename touched. Plays are identified by
+     * their play ID, as the internal IDs differ from one insert to the next, and timestamps only by whether they're set.
+     */
+    private suspend fun renameAndSnapshot(plays: List<PlayEntity>, rename: suspend () -> Collection<Long>): Snapshot {
+        resolver.delete(Plays.CONTENT_URI, null, null)
+        resolver.insertPlays(plays, includePlayers = true)
+        val uploadInternalIds = rename().toSet()
+        val playIdsByInternalId = resolver.loadList(Plays.CONTENT_URI, arrayOf(BaseColumns._ID, Plays.Columns.PLAY_ID)) {
+            it.getLong(0) to it.getInt(1)
+        }.toMap()
+        val playRows = resolver.loadList(
+            Plays.CONTENT_URI,
+            arrayOf(Plays.Columns.PLAY_ID, Plays.Columns.LOCATION, Plays.Columns.UPDATE_TIMESTAMP, Plays.Columns.DIRTY_TIMESTAMP),
+        ) { listOf(it.getInt(0), it.getString(1), it.getLong(2) > 0, it.getLong(3) > 0) }
+        val playerRows = resolver.loadList(
+            Plays.buildPlayersUri(),
+            arrayOf(Plays.Columns.PLAY_ID, PlayPlayers.Columns.NAME, PlayPlayers.Columns.USER_NAME),
+        ) { listOf(it.getInt(0), it.getString(1), it.getString(2)) }
+        return Snapshot(uploadInternalIds.mapNotNull { playIdsByInternalId[it] }.toSet(), playRows.toSet(), playerRows.toSet())
+    }
+
+    /**
+     * How [PlayDao.renamePlayer] used to work, one batch per play, without moving the player's colors.
+     */
+    private suspend fun renamePlayerPerPlay(oldName: String, newName: String): List<Long> {
+        val internalIds = mutableListOf<Long>()
+        playDao.loadPlaysByPlayerName(oldName, true).forEach { play ->
+            play.players.find { it.username.isBlank() && it.name == oldName }?.let { player ->
+                val batch = arrayListOf<ContentProviderOperation>()
+                if (play.updateTimestamp == 0L && play.dirtyTimestamp == 0L) {
+                    batch += ContentProviderOperation
+                        .newUpdate(Plays.buildPlayUri(play.internalId))
+                        .withValue(Plays.Columns.UPDATE_TIMESTAMP, System.currentTimeMillis())
+                        .build()
+                }
+                batch += ContentProviderOperation
+                    .newUpdate(Plays.buildPlayerUri(play.internalId, player.internalId))
+                    .withValue(PlayPlayers.Columns.NAME, newName)
+                    .build()
+                resolver.applyBatch(batch)
+                if (play.dirtyTimestamp == 0L) internalIds += play.internalId
+            }
+        }
+        return internalIds
+    }
+
+    /**
+     * How [PlayDao.renameLocation] used to work, one update per play.
+     */
+    private suspend fun renameLocationPerPlay(oldLocationName: String, newLocationName: String): List<Long> {
+        val internalIds = mutableListOf<Long>()
+        playDao.loadPlaysByLocation(oldLocationName).forEach { play ->
+            if (play.dirtyTimestamp > 0) {
+                playDao.update(play.internalId, contentValuesOf(Plays.Columns.LOCATION to newLocationName))
+            } else if (play.updateTimestamp > 0) {
+                if (playDao.update(play.internalId, contentValuesOf(Plays.Columns.LOCATION to newLocationName)))
+                    internalIds += play.internalId
+            } else {
+                val values = contentValuesOf(Plays.Columns.LOCATION to newLocationName, Plays.Columns.UPDATE_TIMESTAMP to System.currentTimeMillis())
+                if (playDao.update(play.internalId, values))
+                    internalIds += play.internalId
+            }
+        }
+        return internalIds
+    }
+
+    companion object {
+        private const val NEW_NAME = "Renamed"
+        private const val BENCHMARK_SIZE = 20_000
+        private const val PAGE_SIZE = 50
+
+        private val OFFSET_PROJECTION = arrayOf(
+            BaseColumns._ID,
+            Plays.Columns.PLAY_ID,
+            Plays.Columns.DATE,
+            Plays.Columns.OBJECT_ID,
+            Plays.Columns.ITEM_NAME,
+            Plays.Columns.QUANTITY,
+            Plays.Columns.LENGTH,
+            Plays.Columns.LOCATION,
+            Plays.Columns.INCOMPLETE,
+            Plays.Columns.NO_WIN_STATS,
+            Plays.Columns.COMMENTS,
+            Plays.Columns.SYNC_TIMESTAMP,
+            Plays.Columns.PLAYER_COUNT,
+            Plays.Columns.DIRTY_TIMESTAMP,
+            Plays.Columns.UPDATE_TIMESTAMP,
+            Plays.Columns.DELETE_TIMESTAMP,
+            Plays.Columns.START_TIME,
+        )
+    }
+}
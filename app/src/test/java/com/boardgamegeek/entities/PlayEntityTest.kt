@@ -0,0 +1,140 @@
+package com.boardgamegeek.entities
+
+import com.boardgamegeek.testing.SyntheticData
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Checks the sync fingerprint against a corpus of plays that differ in only one field, plays the old newline-joined
+ * 32-bit hash couldn't tell apart, and a large synthetic history.
+ */
+class PlayEntityTest {
+    @Test
+    fun generateSyncFingerprint_ignoresFieldsThatDoNotComeFromTheApi() {
+        val play = SyntheticData().plays(1, 10).first()
+        val local = play.copy(
+            internalId = 99L,
+            playId = 1_000,
+            syncTimestamp = play.syncTimestamp + 1,
+            dirtyTimestamp = 1L,
+            updateTimestamp = 1L,
+            gameName = "Renamed",
+            _players = play.players.map { it.copy(uiId = it.uiId + 1, internalId = 7L, playId = 1_000) },
+        )
+
+        assertEquals(play.generateSyncFingerprint(), local.generateSyncFingerprint())
+    }
+
+    @Test
+    fun generateSyncFingerprint_changesWithEveryField() {
+        SyntheticData().plays(500, 50).forEach { play ->
+            val fingerprint = play.generateSyncFingerprint()
+            mutations(play).forEach { (field, mutated) ->
+                assertNotEquals("Play ${play.playId}, $field", fingerprint, mutated.generateSyncFingerprint())
+            }
+        }
+    }
+
+    @Test
+    fun generateSyncFingerprint_separatesPlaysTheOldHashCodeConfused() {
+        val play = PlayEntity(rawDate = "2020-01-01", gameId = 13, gameName = "Catan", location = "Home")
+        val player = PlayPlayerEntity(name = "Alex", username = "alex", score = "10", isWin = true)
+        val pairs = listOf(
+            // a newline moved from one field to the next
+            play.copy(location = "Home\nClub") to play.copy(location = "Home", comments = "Club\n"),
+            // a player written into the comments
+            play.copy(_players = listOf(player)) to play.copy(comments = "\n" + legacyLines(player).removeSuffix("\n")),
+            // a String.hashCode collision
+            play.copy(comments = "Aa") to play.copy(comments = "BB"),
+            play.copy(_players = listOf(player.copy(name = "Aa"))) to play.copy(_players = listOf(player.copy(name = "BB"))),
+        )
+
+        pairs.forEach { (first, second) ->
+            assertEquals(legacyHashCode(first), legacyHashCode(second))
+            assertNotEquals(first.generateSyncFingerprint(), second.generateSyncFingerprint())
+        }
+    }
+
+    @Test
+    fun generateSyncFingerprint_hasNoCollisionsInALargeHistory() {
+        val data = SyntheticData()
+        val plays = data.plays(CORPUS_SIZE, 1_000, data.players(500))
+        // synthetic plays can repeat by chance, so only distinct content is expected to fingerprint differently
+        val distinctPlays = plays.map { normalized(it) }.toSet()
+
+        val fingerprints = plays.map { it.generateSyncFingerprint() }.toSet()
+
+        assertEquals(distinctPlays.size, fingerprints.size)
+    }
+
+    /**
+     * A copy of [play] for each field the API returns, with only that field changed.
+     */
+    private fun mutations(play: PlayEntity): List<Pair<String, PlayEntity>> {
+        val players = play.players
+        val first = players.first()
+        fun withFirst(player: PlayPlayerEntity) = play.copy(_players = listOf(player) + players.drop(1))
+        return listOfNotNull(
+            "gameId" to play.copy(gameId = play.gameId + 1),
+            "date" to play.copy(rawDate = if (play.dateForDatabase() == "1999-12-31") "1999-12-30" else "1999-12-31"),
+            "quantity" to play.copy(quantity = play.quantity + 1),
+            "length" to play.copy(length = play.length + 1),
+            "incomplete" to play.copy(incomplete = !play.incomplete),
+            "noWinStats" to play.copy(noWinStats = !play.noWinStats),
+            "location" to play.copy(location = play.location + "x"),
+            "comments" to play.copy(comments = play.comments + "x"),
+            "player added" to play.copy(_players = players + first),
+            "player removed" to play.copy(_players = players.drop(1)),
+            if (players.size > 1) "players reordered" to play.copy(_players = players.drop(1) + first) else null,
+            "username" to withFirst(first.copy(username = first.username + "x")),
+            "userId" to withFirst(first.copy(userId = (first.userId ?: 0) + 1)),
+            "userId null" to withFirst(first.copy(userId = if (first.userId == null) 0 else null)),
+            "name" to withFirst(first.copy(name = first.name + "x")),
+            "startingPosition" to withFirst(first.copy(startingPosition = first.startingPosition + "1")),
+            "color" to withFirst(first.copy(color = first.color + "Red")),
+            "score" to withFirst(first.copy(score = first.score + "0")),
+            "isNew" to withFirst(first.copy(isNew = !first.isNew)),
+            "rating" to withFirst(first.copy(rating = first.rating + 0.5)),
+            "isWin" to withFirst(first.copy(isWin = !first.isWin)),
+        )
+    }
+
+    private fun normalized(play: PlayEntity) = play.copy(
+        playId = 0,
+        gameName = "",
+        syncTimestamp = 0L,
+        _players = play.players.map { it.copy(playId = 0, uiId = 0L) },
+    )
+
+    /**
+     * The 32-bit hash of newline-joined fields that the fingerprint replaced.
+     */
+    private fun legacyHashCode(play: PlayEntity): Int {
+        val sb = StringBuilder()
+        sb.append(play.dateForDatabase()).append("\n")
+        sb.append(play.quantity).append("\n")
+        sb.append(play.length).append("\n")
+        sb.append(play.incomplete).append("\n")
+        sb.append(play.noWinStats).append("\n")
+        sb.append(play.location).append("\n")
+        sb.append(play.comments).append("\n")
+        play.players.forEach { sb.append(legacyLines(it)) }
+        return sb.toString().hashCode()
+    }
+
+    private fun legacyLines(player: PlayPlayerEntity) = listOf(
+        player.username,
+        player.userId,
+        player.name,
+        player.startingPosition,
+        player.color,
+        player.score,
+        player.isNew,
+        player.rating,
+        player.isWin,
+    ).joinToString("") { "$it\n" }
+
+    companion object {
+        private const val CORPUS_SIZE = 100_000
+    }
+}
@@ -0,0 +1,74 @@
+package com.boardgamegeek.io
+
+import com.boardgamegeek.benchmark.Benchmarks
+import com.boardgamegeek.io.model.CollectionResponse
+import com.boardgamegeek.testing.SyntheticData
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.simpleframework.xml.core.Persister
+import java.io.File
+
+/**
+ * Parses a synthetic collection response with the streaming parser and with SimpleXML, which built the whole response
+ * before any of it was saved, and writes the timings and peak heap use to `collection-parser.json`. The streaming parser
+ * needs Android's pull parser, so this runs on Robolectric rather than with the JMH benchmarks.
+ *
+ *     ./gradlew testDebugUnitTest --tests '*CollectionResponseParserBenchmarkTest' -Pbenchmark=true
+ */
+@RunWith(RobolectricTestRunner::class)
+class CollectionResponseParserBenchmarkTest {
+    @Before
+    fun setUp() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+    }
+
+    @Test
+    fun timeParsers() {
+        val results = SIZES.flatMap { size ->
+            val fixture = fixture(size)
+            var streamedCount = 0
+            var simpleXmlCount = 0
+            val sizeResults = listOf(
+                Benchmarks.time("streamingParser", size, iterations = 3) { streamedCount = parseStreaming(fixture) },
+                Benchmarks.time("simpleXml", size, iterations = 3) { simpleXmlCount = parseSimpleXml(fixture) },
+                Benchmarks.peakHeap("streamingParser", size) { parseStreaming(fixture) },
+                Benchmarks.peakHeap("simpleXml", size) { parseSimpleXml(fixture) },
+            )
+            assertEquals(size, streamedCount)
+            assertEquals(size, simpleXmlCount)
+            sizeResults
+        }
+        Benchmarks.writeJson("collection-parser.json", results)
+    }
+
+    /**
+     * Writes the fixture next to the results; at 50,000 items it's too big to check in, and the same seed always writes
+     * the same file.
+     */
+    private fun fixture(size: Int): File {
+        val file = Benchmarks.outputFile("collection-$size.xml")
+        file.bufferedWriter().use { writer -> SyntheticData().run { writeCollectionXml(collection(size), writer) } }
+        return file
+    }
+
+    /**
+     * Drops each chunk once it's parsed, as the sync does after saving it.
+     */
+    private fun parseStreaming(file: File) = runBlocking {
+        file.inputStream().buffered().use { stream -> CollectionResponseParser().parse(stream) { } }
+    }
+
+    private fun parseSimpleXml(file: File): Int {
+        val response = file.bufferedReader().use { Persister().read(CollectionResponse::class.java, it, false) }
+        return response.items.size
+    }
+
+    companion object {
+        private val SIZES = listOf(1_000, 10_000, 50_000)
+    }
+}
@@ -0,0 +1,186 @@
+package com.boardgamegeek.io
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Runs the scheduler on virtual time, against a local server that scripts 202, 429, and 503 responses.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class RequestSchedulerTest {
+    private lateinit var server: MockWebServer
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun acquire_letsABurstThroughThenSpacesOutRequests() = runTest {
+        val scheduler = scheduler()
+
+        val times = acquireAll(scheduler, HOST, 6)
+
+        assertEquals(listOf(0L, 0L, 0L, 0L, 1_000L, 2_000L), times)
+        val metrics = scheduler.metrics
+        assertEquals(6L, metrics.requestCount)
+        assertEquals(2, metrics.maxQueueDepth)
+        assertEquals(0, metrics.queueDepth)
+        assertEquals(3_000L, metrics.totalWaitMillis)
+        assertEquals(2_000L, metrics.maxWaitMillis)
+    }
+
+    @Test
+    fun acquire_refillsNoMoreThanTheBurstSizeWhileIdle() = runTest {
+        val scheduler = scheduler()
+        acquireAll(scheduler, HOST, 4)
+
+        advanceTimeBy(60_000L)
+        val start = currentTime
+        val times = acquireAll(scheduler, HOST, 5)
+
+        assertEquals(listOf(0L, 0L, 0L, 0L, 1_000L), times.map { it - start })
+    }
+
+    @Test
+    fun acquire_budgetsEachHostSeparately() = runTest {
+        val scheduler = scheduler()
+        acquireAll(scheduler, HOST, 4)
+
+        assertEquals(listOf(0L, 0L, 0L, 0L), acquireAll(scheduler, OTHER_HOST, 4))
+    }
+
+    @Test
+    fun backOff_holdsOnlyThatHost() = runTest {
+        val scheduler = scheduler()
+
+        scheduler.backOff(HOST, 5_000L)
+
+        assertEquals(listOf(0L), acquireAll(scheduler, OTHER_HOST, 1))
+        assertEquals(listOf(5_000L), acquireAll(scheduler, HOST, 1))
+    }
+
+    @Test
+    fun call_retriesAThrottledRequestAfterRetryAfter() = runTest {
+        server.enqueue(MockResponse().setResponseCode(429).setHeader("Retry-After", "30"))
+        server.enqueue(MockResponse().setBody("OK"))
+        val scheduler = scheduler()
+
+        val code = call(scheduler).use { it.code }
+
+        assertEquals(200, code)
+        assertEquals(2, server.requestCount)
+        assertEquals(1L, scheduler.metrics.retryCount)
+        // the Retry-After header is longer than the fixed back-off
+        assertEquals(30_000L, currentTime)
+    }
+
+    @Test
+    fun call_retriesWhileTheResponseIsBeingProcessed() = runTest {
+        repeat(3) { server.enqueue(MockResponse().setResponseCode(202)) }
+        server.enqueue(MockResponse().setBody("OK"))
+        val scheduler = scheduler()
+
+        val code = call(scheduler).use { it.code }
+
+        assertEquals(200, code)
+        assertEquals(4, server.requestCount)
+        assertEquals(3L, scheduler.metrics.retryCount)
+        // three 2 second back-offs, during which the tokens the retries take are refilled
+        assertEquals(3 * 2_000L, currentTime)
+    }
+
+    @Test
+    fun call_givesUpWhenTheBackOffStops() = runTest {
+        repeat(2) { server.enqueue(MockResponse().setResponseCode(503)) }
+        val scheduler = scheduler()
+
+        val code = call(scheduler).use { it.code }
+
+        assertEquals(503, code)
+        assertEquals(2, server.requestCount)
+        assertEquals(5_000L, currentTime)
+    }
+
+    @Test
+    fun call_doesNotRetryProcessingWhenAskedNotTo() = runTest {
+        server.enqueue(MockResponse().setResponseCode(202))
+        val scheduler = scheduler()
+
+        val code = call(scheduler, retry202Response = false).use { it.code }
+
+        assertEquals(202, code)
+        assertEquals(1, server.requestCount)
+        assertEquals(0L, currentTime)
+    }
+
+    private fun TestScope.scheduler() = RequestScheduler(
+        clock = { testScheduler.currentTime },
+        dispatcher = StandardTestDispatcher(testScheduler),
+        createBackOffs = {
+            RequestScheduler.RetryBackOffs(
+                processing = FixedBackOff(intervalMillis = 2_000, maxBackOffCount = 5),
+                throttled = FixedBackOff(intervalMillis = 5_000, maxBackOffCount = 1),
+                rejected = FixedBackOff(intervalMillis = 5_000, maxBackOffCount = 1),
+            )
+        },
+    )
+
+    /**
+     * Acquires [count] tokens for [host] at once, returning the virtual time each one was granted, in order.
+     */
+    private suspend fun TestScope.acquireAll(scheduler: RequestScheduler, host: String, count: Int): List<Long> {
+        val times = LongArray(count)
+        val jobs = List(count) { i -> launch { scheduler.acquire(host).also { times[i] = currentTime } } }
+        jobs.forEach { it.join() }
+        return times.toList()
+    }
+
+    private suspend fun call(scheduler: RequestScheduler, retry202Response: Boolean = true): Response {
+        val request = Request.Builder().url(server.url("/xmlapi2/thing?id=13")).build()
+        return scheduler.callFactory(OkHttpClient(), retry202Response).newCall(request).await()
+    }
+
+    private suspend fun Call.await(): Response = suspendCancellableCoroutine { continuation ->
+        enqueue(object : Callback {
+            override fun onFailure(call: Call, e: IOException) {
+                continuation.resumeWithException(e)
+            }
+
+            override fun onResponse(call: Call, response: Response) {
+                continuation.resume(response)
+            }
+        })
+    }
+
+    companion object {
+        private const val HOST = "boardgamegeek.com"
+        private const val OTHER_HOST = "api.geekdo.com"
+    }
+}
@@ -0,0 +1,81 @@
+package com.boardgamegeek.io
+
+import com.boardgamegeek.util.PerformanceCounters
+import okhttp3.ResponseBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import retrofit2.Call
+import retrofit2.Converter
+import retrofit2.Retrofit
+import retrofit2.http.GET
+import java.lang.reflect.Type
+import java.util.concurrent.TimeUnit
+
+/**
+ * Serves a body slowly, so the transfer takes far longer than the conversion, and checks that only the conversion is
+ * counted as parsing.
+ */
+class TimingConverterFactoryTest {
+    private lateinit var server: MockWebServer
+
+    private interface TestService {
+        @GET("/")
+        fun body(): Call<String>
+    }
+
+    /**
+     * Reads the body as a string, taking a known amount of time to "parse" it.
+     */
+    private class SlowStringConverterFactory : Converter.Factory() {
+        override fun responseBodyConverter(type: Type, annotations: Array<out Annotation>, retrofit: Retrofit) =
+            Converter<ResponseBody, String> { body ->
+                body.string().also { Thread.sleep(PARSE_MILLIS) }
+            }
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun responseBodyConverter_timesOnlyTheConversion() {
+        val body = "x".repeat(BODY_SIZE)
+        // 10 chunks, 100 ms apart
+        server.enqueue(MockResponse().setBody(body).throttleBody(BODY_SIZE / 10L, 100L, TimeUnit.MILLISECONDS))
+        val service = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(TimingConverterFactory())
+            .addConverterFactory(SlowStringConverterFactory())
+            .build()
+            .create(TestService::class.java)
+        val startNanos = PerformanceCounters.parseNanos.get()
+
+        val startedAt = System.nanoTime()
+        val result = service.body().execute().body()
+        val elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)
+        val parseMillis = TimeUnit.NANOSECONDS.toMillis(PerformanceCounters.parseNanos.get() - startNanos)
+
+        assertEquals(body, result)
+        assertTrue("Took $elapsedMillis ms", elapsedMillis >= TRANSFER_MILLIS)
+        assertTrue("Parsed in $parseMillis ms", parseMillis in PARSE_MILLIS until TRANSFER_MILLIS / 2)
+    }
+
+    companion object {
+        private const val BODY_SIZE = 10_000
+        private const val PARSE_MILLIS = 50L
+        // the first chunk isn't delayed
+        private const val TRANSFER_MILLIS = 900L
+    }
+}
@@ -0,0 +1,111 @@
+package com.boardgamegeek.pref
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.benchmark.Benchmarks
+import com.boardgamegeek.extensions.*
+import org.junit.Assert.*
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Edits a preferences file on the main thread and checks the snapshot that's shared for it.
+ */
+@RunWith(RobolectricTestRunner::class)
+class PreferenceSnapshotTest {
+    private lateinit var context: Context
+    private lateinit var name: String
+    private lateinit var prefs: SharedPreferences
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        // snapshots are shared for the life of the process, so each test gets a file of its own
+        name = "snapshot_test_${files.incrementAndGet()}"
+        prefs = context.preferences(name)
+    }
+
+    @Test
+    fun of_defaultsToSyncingOwnedGames() {
+        val snapshot = PreferenceSnapshot.of(context, name)
+
+        assertEquals(setOf(COLLECTION_STATUS_OWN), snapshot.syncStatuses)
+        assertFalse(snapshot.isCollectionSetToSync)
+        assertFalse(snapshot.syncPlays)
+        assertFalse(snapshot.syncBuddies)
+    }
+
+    @Test
+    fun of_seesEditsAppliedOnTheMainThread() {
+        PreferenceSnapshot.of(context, name)
+
+        prefs.setSyncStatuses(arrayOf(COLLECTION_STATUS_OWN, COLLECTION_STATUS_PLAYED))
+        prefs[PREFERENCES_KEY_SYNC_BUDDIES] = true
+        val snapshot = PreferenceSnapshot.of(context, name)
+
+        assertEquals(setOf(COLLECTION_STATUS_OWN, COLLECTION_STATUS_PLAYED), snapshot.syncStatuses)
+        assertTrue(snapshot.isStatusSetToSync(COLLECTION_STATUS_PLAYED))
+        assertTrue(snapshot.isCollectionSetToSync)
+        assertTrue(snapshot.syncBuddies)
+    }
+
+    @Test
+    fun of_sharesOneSnapshotUntilTheFileChanges() {
+        val snapshot = PreferenceSnapshot.of(context, name)
+
+        assertSame(snapshot, PreferenceSnapshot.of(context, name))
+        prefs[PREFERENCES_KEY_SYNC_PLAYS] = true
+        assertNotSame(snapshot, PreferenceSnapshot.of(context, name))
+        assertFalse(snapshot.syncPlays)
+    }
+
+    @Test
+    fun addListener_isToldOfEachChangeUntilRemoved() {
+        val changes = mutableListOf<Pair<String?, PreferenceSnapshot>>()
+        val listener = PreferenceSnapshot.Listener { key, snapshot -> changes += key to snapshot }
+        PreferenceSnapshot.addListener(context, listener, name)
+
+        prefs[PREFERENCES_KEY_SYNC_PLAYS] = true
+        PreferenceSnapshot.removeListener(context, listener, name)
+        prefs[PREFERENCES_KEY_SYNC_BUDDIES] = true
+
+        assertEquals(listOf(PREFERENCES_KEY_SYNC_PLAYS), changes.map { it.first })
+        assertTrue(changes.single().second.syncPlays)
+        assertFalse(changes.single().second.syncBuddies)
+    }
+
+    /**
+     * Times checking whether a status is set to sync, as the collection's hot paths do, reading the preferences each time
+     * and reading a shared snapshot, and writes the timings to `preference-snapshot.json`.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*PreferenceSnapshotTest' -Pbenchmark=true
+     */
+    @Test
+    fun timeReads() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        prefs.setSyncStatuses(arrayOf(COLLECTION_STATUS_OWN, COLLECTION_STATUS_PLAYED, COLLECTION_STATUS_WISHLIST))
+        val statuses = listOf(COLLECTION_STATUS_OWN, COLLECTION_STATUS_PREORDERED, COLLECTION_STATUS_PLAYED)
+        var preferenceCount = 0
+        var snapshotCount = 0
+        val timings = listOf(
+            Benchmarks.time("sharedPreferences", READS) {
+                preferenceCount = (0 until READS).count { prefs.isStatusSetToSync(statuses[it % statuses.size]) }
+            },
+            Benchmarks.time("snapshot", READS) {
+                snapshotCount = (0 until READS).count { PreferenceSnapshot.of(context, name).isStatusSetToSync(statuses[it % statuses.size]) }
+            },
+        )
+        assertEquals(preferenceCount, snapshotCount)
+        Benchmarks.writeJson("preference-snapshot.json", timings)
+    }
+
+    companion object {
+        private const val READS = 100_000
+        private val files = AtomicInteger()
+    }
+}
@@ -0,0 +1,81 @@
+package com.boardgamegeek.provider
+
+import android.app.SearchManager
+import android.content.ContentResolver
+import android.content.Context
+import android.net.Uri
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.benchmark.Benchmarks
+import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Plays
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertCollection
+import com.boardgamegeek.testing.insertPlays
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Times the provider against a database filled with synthetic data, and writes the timings to `provider.json`. Robolectric
+ * runs a desktop build of SQLite, so only compare these timings to each other, not to a device.
+ *
+ *     ./gradlew testDebugUnitTest --tests '*BggProviderBenchmarkTest' -Pbenchmark=true
+ */
+@RunWith(RobolectricTestRunner::class)
+class BggProviderBenchmarkTest {
+    private lateinit var resolver: ContentResolver
+
+    @Before
+    fun setUp() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        resolver = ApplicationProvider.getApplicationContext<Context>().contentResolver
+    }
+
+    @Test
+    fun timeProvider() {
+        val timings = SIZES.flatMap { size ->
+            val data = SyntheticData()
+            val items = data.collection(size)
+            val plays = data.plays(size * 5, size)
+            clear()
+            val insertTimings = listOf(
+                Benchmarks.time("insertCollection", size, iterations = 3) {
+                    clear()
+                    resolver.insertCollection(items)
+                },
+                Benchmarks.time("insertPlays", size * 5, iterations = 3) {
+                    resolver.delete(Plays.CONTENT_URI, null, null)
+                    resolver.insertPlays(plays)
+                },
+            )
+            insertTimings + listOf(
+                Benchmarks.time("queryCollection", size) {
+                    resolver.query(Collection.CONTENT_URI, null, null, null, Collection.DEFAULT_SORT)?.use { while (it.moveToNext()) it.getString(0) }
+                },
+                Benchmarks.time("queryPlays", size * 5) {
+                    resolver.query(Plays.CONTENT_URI, null, null, null, Plays.DEFAULT_SORT)?.use { while (it.moveToNext()) it.getString(0) }
+                },
+                Benchmarks.time("searchSuggestions", size) {
+                    resolver.query(Uri.parse("content://${BggContract.CONTENT_AUTHORITY}/${SearchManager.SUGGEST_URI_PATH_QUERY}/ca"), null, null, null, null)?.use {
+                        while (it.moveToNext()) it.getString(0)
+                    }
+                },
+            )
+        }
+        Benchmarks.writeJson("provider.json", timings)
+    }
+
+    private fun clear() {
+        resolver.delete(Plays.CONTENT_URI, null, null)
+        resolver.delete(Collection.CONTENT_URI, null, null)
+        resolver.delete(BggContract.Games.CONTENT_URI, null, null)
+    }
+
+    companion object {
+        private val SIZES = listOf(100, 1_000, 5_000)
+    }
+}
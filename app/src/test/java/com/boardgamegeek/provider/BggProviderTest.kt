@@ -0,0 +1,200 @@
+package com.boardgamegeek.provider
+
+import android.app.SearchManager
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
+import android.content.Context
+import android.database.sqlite.SQLiteQueryBuilder
+import android.net.Uri
+import androidx.core.content.contentValuesOf
+import androidx.core.os.bundleOf
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.entities.PlayEntity
+import com.boardgamegeek.provider.BggContract.Designers
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggContract.PlayPlayers
+import com.boardgamegeek.provider.BggContract.Plays
+import com.boardgamegeek.provider.BggDatabase.GamesDesigners
+import com.boardgamegeek.provider.BggDatabase.Tables
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertCollection
+import com.boardgamegeek.testing.insertPlays
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class BggProviderTest {
+    private lateinit var resolver: ContentResolver
+
+    @Before
+    fun setUp() {
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        resolver = ApplicationProvider.getApplicationContext<Context>().contentResolver
+    }
+
+    @Test
+    fun applyBatch_rollsBackEverythingWhenAnOperationFails() {
+        val batch = arrayListOf(
+            ContentProviderOperation.newInsert(Games.CONTENT_URI)
+                .withValue(Games.Columns.GAME_ID, 1)
+                .withValue(Games.Columns.GAME_NAME, "Valid")
+                .withValue(Games.Columns.GAME_SORT_NAME, "Valid")
+                .withValue(Games.Columns.UPDATED_LIST, 1L)
+                .build(),
+            // missing the required name
+            ContentProviderOperation.newInsert(Games.CONTENT_URI)
+                .withValue(Games.Columns.GAME_ID, 2)
+                .withValue(Games.Columns.UPDATED_LIST, 1L)
+                .build(),
+        )
+
+        assertThrows(Exception::class.java) { resolver.applyBatch(BggContract.CONTENT_AUTHORITY, batch) }
+        assertEquals(0, gameCount())
+    }
+
+    @Test
+    fun applyBatch_insertsALargeCollection() {
+        val items = SyntheticData().collection(2_000)
+
+        resolver.insertCollection(items)
+
+        assertEquals(items.distinctBy { it.gameId }.size, gameCount())
+        resolver.query(BggContract.Collection.CONTENT_URI, arrayOf(BggContract.Collection.Columns.COLLECTION_ID), null, null, null).use {
+            assertEquals(items.size, it?.count)
+        }
+    }
+
+    @Test
+    fun plays_keepGamePlayStatsInStep() {
+        resolver.insertCollection(listOf(CollectionItemEntity(gameId = 1, gameName = "Game", collectionName = "Game", sortName = "Game")))
+
+        resolver.insertPlays(
+            listOf(
+                PlayEntity(playId = 1, rawDate = "2020-01-01", gameId = 1, gameName = "Game", quantity = 2),
+                PlayEntity(playId = 2, rawDate = "2022-06-15", gameId = 1, gameName = "Game"),
+                PlayEntity(playId = 3, rawDate = "2023-03-03", gameId = 2, gameName = "Other Game"),
+            )
+        )
+
+        resolver.query(Games.buildGameUri(1), arrayOf(Games.Columns.NUM_PLAYS, Games.Columns.LAST_PLAYED_DATE), null, null, null).use {
+            assertNotNull(it)
+            assertTrue(it!!.moveToFirst())
+            assertEquals(3, it.getInt(0))
+            assertEquals("2022-06-15", it.getString(1))
+        }
+    }
+
+    @Test
+    fun games_takePlayStatsFromExistingPlays() {
+        resolver.insertPlays(
+            listOf(
+                PlayEntity(playId = 1, rawDate = "2020-01-01", gameId = 1, gameName = "Game", quantity = 2),
+                PlayEntity(playId = 2, rawDate = "2022-06-15", gameId = 1, gameName = "Game"),
+            )
+        )
+
+        resolver.insertCollection(listOf(CollectionItemEntity(gameId = 1, gameName = "Game", collectionName = "Game", sortName = "Game")))
+
+        resolver.query(Games.buildGameUri(1), arrayOf(Games.Columns.NUM_PLAYS, Games.Columns.LAST_PLAYED_DATE), null, null, null).use {
+            assertNotNull(it)
+            assertTrue(it!!.moveToFirst())
+            assertEquals(3, it.getInt(0))
+            assertEquals("2022-06-15", it.getString(1))
+        }
+    }
+
+    @Test
+    fun searchSuggestions_matchCollectionNamesByPrefix() {
+        resolver.insertCollection(
+            listOf(
+                CollectionItemEntity(gameId = 1, gameName = "Catan", collectionName = "Catan", sortName = "Catan"),
+                CollectionItemEntity(gameId = 2, gameName = "Carcassonne", collectionName = "Carcassonne", sortName = "Carcassonne"),
+                CollectionItemEntity(gameId = 3, gameName = "Azul", collectionName = "Azul", sortName = "Azul"),
+            )
+        )
+
+        assertEquals(listOf("Carcassonne", "Catan"), suggestions("ca"))
+        assertEquals(listOf("Azul"), suggestions("azu"))
+        assertEquals(emptyList<String>(), suggestions("zz"))
+    }
+
+    @Test
+    fun searchSuggestions_matchCreditsOnceTheirGameIsIndexed() {
+        resolver.insertCollection(listOf(CollectionItemEntity(gameId = 13, gameName = "Catan", collectionName = "Catan", sortName = "Catan")))
+        resolver.insert(Designers.CONTENT_URI, contentValuesOf(Designers.Columns.DESIGNER_ID to 11, Designers.Columns.DESIGNER_NAME to "Klaus Teuber"))
+        resolver.insert(Games.buildPathUri(13, BggContract.PATH_DESIGNERS), contentValuesOf(GamesDesigners.DESIGNER_ID to 11))
+
+        assertEquals(emptyList<String>(), suggestions("teub"))
+
+        resolver.call(Games.CONTENT_URI, BggContract.METHOD_INDEX_SEARCH_SUGGESTIONS, null, bundleOf(BggContract.EXTRA_GAME_IDS to intArrayOf(13)))
+
+        assertEquals(listOf("Catan"), suggestions("teub"))
+        assertEquals(listOf("Catan"), suggestions("cat"))
+    }
+
+    /**
+     * Explains the queries behind the collection, plays, and play players URIs, with the selections the DAOs use, and
+     * fails if any of them scans a table other than the one it reads in full, or needs SQLite to build an index on the fly.
+     */
+    @Test
+    fun queryPlans_searchJoinedAndFilteredTablesByIndex() {
+        val db = BggDatabase(ApplicationProvider.getApplicationContext()).readableDatabase
+        val queries = listOf(
+            // CollectionProvider
+            PlannedQuery(Tables.COLLECTION_JOIN_GAMES, scansAll = true),
+            PlannedQuery(Tables.COLLECTION_JOIN_GAMES, "${Tables.COLLECTION}.${BggContract.Collection.Columns.GAME_ID}=13"),
+            PlannedQuery(Tables.COLLECTION_JOIN_GAMES, "${Tables.COLLECTION}.${BggContract.Collection.Columns.COLLECTION_ID}=1"),
+            PlannedQuery(Tables.COLLECTION_JOIN_GAMES, "${BggContract.Collection.Columns.COLLECTION_DIRTY_TIMESTAMP}>0"),
+            // PlaysProvider
+            PlannedQuery(Tables.PLAYS, "${Plays.Columns.PLAY_ID}=1"),
+            PlannedQuery(Tables.PLAYS_JOIN_GAMES, scansAll = true),
+            PlannedQuery(Tables.PLAYS_JOIN_GAMES, scansAll = true, groupBy = Plays.Columns.OBJECT_ID),
+            PlannedQuery(Tables.PLAYS_JOIN_GAMES, "${Tables.PLAYS}.${Plays.Columns.OBJECT_ID}=13"),
+            PlannedQuery(Tables.PLAYS_JOIN_GAMES, "${Tables.PLAYS}.${Plays.Columns.PLAY_ID}=1"),
+            PlannedQuery(Tables.PLAYS_JOIN_GAMES, "${Plays.Columns.LOCATION}='Home'"),
+            PlannedQuery(Tables.PLAYS_JOIN_GAMES, "${Plays.Columns.DATE}>='2020-01-01'"),
+            // PlaysPlayersProvider
+            PlannedQuery(Tables.PLAY_PLAYERS, "${PlayPlayers.Columns._PLAY_ID}=1"),
+            PlannedQuery(Tables.PLAY_PLAYERS_JOIN_PLAYS_JOIN_GAMES, scansAll = true, groupBy = PlayPlayers.Columns.COLOR),
+            PlannedQuery(Tables.PLAY_PLAYERS_JOIN_PLAYS_JOIN_GAMES, "${PlayPlayers.Columns._PLAY_ID}=1"),
+            PlannedQuery(Tables.PLAY_PLAYERS_JOIN_PLAYS_JOIN_GAMES, "${Tables.PLAYS}.${Plays.Columns.OBJECT_ID}=13"),
+            PlannedQuery(Tables.PLAY_PLAYERS_JOIN_PLAYS_JOIN_USERS, scansAll = true, groupBy = PlayPlayers.Columns.USER_NAME),
+            PlannedQuery(Tables.PLAY_PLAYERS_JOIN_PLAYS_JOIN_USERS, "${Tables.PLAY_PLAYERS}.${PlayPlayers.Columns.USER_NAME}='user'"),
+            PlannedQuery(Tables.PLAY_PLAYERS_JOIN_PLAYS_JOIN_USERS, "${Tables.PLAY_PLAYERS}.${PlayPlayers.Columns.NAME}='Name'"),
+        )
+
+        queries.forEach { query ->
+            val sql = SQLiteQueryBuilder.buildQueryString(false, query.tables, null, query.where, query.groupBy, null, null, null)
+            val plan = db.rawQuery("EXPLAIN QUERY PLAN $sql", null).use { cursor ->
+                generateSequence { if (cursor.moveToNext()) cursor.getString(cursor.getColumnIndexOrThrow("detail")) else null }.toList()
+            }
+            val drivingTable = query.tables.substringBefore(' ')
+            plan.forEach { detail ->
+                val scannedTable = SCAN.find(detail)?.groupValues?.get(2)
+                val isAllowedScan = query.scansAll && scannedTable == drivingTable
+                assertFalse("$sql\n${plan.joinToString("\n")}", (scannedTable != null && !isAllowedScan) || detail.contains("AUTOMATIC"))
+            }
+        }
+    }
+
+    private class PlannedQuery(val tables: String, val where: String? = null, val scansAll: Boolean = false, val groupBy: String? = null)
+
+    private fun gameCount() = resolver.query(Games.CONTENT_URI, arrayOf(Games.Columns.GAME_ID), null, null, null).use { it?.count ?: 0 }
+
+    private fun suggestions(query: String): List<String> {
+        val uri = Uri.parse("content://${BggContract.CONTENT_AUTHORITY}/${SearchManager.SUGGEST_URI_PATH_QUERY}/$query")
+        return resolver.query(uri, arrayOf(SearchManager.SUGGEST_COLUMN_TEXT_1), null, null, null).use { cursor ->
+            generateSequence { if (cursor?.moveToNext() == true) cursor.getString(0) else null }.toList()
+        }
+    }
+
+    companion object {
+        // "SCAN plays" in newer versions of SQLite, "SCAN TABLE plays" in older ones
+        private val SCAN = Regex("^SCAN (TABLE )?(\\w+)")
+    }
+}
@@ -0,0 +1,179 @@
+package com.boardgamegeek.repository
+
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.benchmark.Benchmarks
+import com.boardgamegeek.db.CollectionDao
+import com.boardgamegeek.db.GameDao
+import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.entities.GameEntity
+import com.boardgamegeek.entities.GameForPlayStatEntity
+import com.boardgamegeek.entities.GameRankEntity
+import com.boardgamegeek.entities.PlayStatsEntity
+import com.boardgamegeek.extensions.COLLECTION_STATUS_OWN
+import com.boardgamegeek.extensions.COLLECTION_STATUS_PLAYED
+import com.boardgamegeek.extensions.preferences
+import com.boardgamegeek.extensions.setSyncStatuses
+import com.boardgamegeek.io.BggService
+import com.boardgamegeek.io.PhpApi
+import com.boardgamegeek.pref.SyncPrefs
+import com.boardgamegeek.provider.BggContract
+import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggContract.Plays
+import com.boardgamegeek.provider.BggProvider
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertCollection
+import com.boardgamegeek.testing.insertPlays
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import retrofit2.Retrofit
+import kotlin.random.Random
+
+/**
+ * Compares the play stats games, which look up owned games by ID, to the scan of the whole collection they replaced.
+ */
+@RunWith(RobolectricTestRunner::class)
+class PlayRepositoryTest {
+    private lateinit var context: Context
+    private lateinit var resolver: ContentResolver
+
+    @Before
+    fun setUp() {
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        context = ApplicationProvider.getApplicationContext()
+        resolver = context.contentResolver
+        val statuses = arrayOf(COLLECTION_STATUS_OWN, COLLECTION_STATUS_PLAYED)
+        SyncPrefs.getPrefs(context).setSyncStatuses(statuses)
+        context.preferences().setSyncStatuses(statuses)
+    }
+
+    @Test
+    fun loadForStats_matchesScanningTheCollection() = runBlocking {
+        SEEDS.forEach { seed ->
+            clear()
+            insertRandomData(seed, collectionSize = 300, playCount = 1_500)
+            // a new repository for each seed, so nothing is served from the cache of the last one
+            val repository = repository()
+            FLAGS.forEach { (includeIncompletePlays, includeExpansions, includeAccessories) ->
+                val expected = loadForStatsByScanning(includeIncompletePlays, includeExpansions, includeAccessories)
+                val actual = repository.loadForStats(includeIncompletePlays, includeExpansions, includeAccessories)
+                val case = "seed $seed, flags $includeIncompletePlays/$includeExpansions/$includeAccessories"
+
+                assertEquals(case, expected, actual)
+                assertStatsEqual(case, PlayStatsEntity(expected, true), PlayStatsEntity(actual, true))
+            }
+        }
+    }
+
+    /**
+     * Times both ways of finding the owned games for a profile with 10,000 games and 50,000 plays, and writes the timings
+     * to `play-stats-load.json`.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*PlayRepositoryTest' -Pbenchmark=true
+     */
+    @Test
+    fun timeLoadForStats() = runBlocking {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        insertRandomData(SyntheticData.DEFAULT_SEED, collectionSize = 10_000, playCount = 50_000)
+        val timings = listOf(
+            Benchmarks.time("scanCollection", 10_000, iterations = 3) {
+                runBlocking { loadForStatsByScanning(includeIncompletePlays = true, includeExpansions = true, includeAccessories = true) }
+            },
+            Benchmarks.time("lookUpOwnedRanks", 10_000, iterations = 3) {
+                // a new repository each time, to time the query rather than the cache
+                runBlocking { repository().loadForStats(includeIncompletePlays = true, includeExpansions = true, includeAccessories = true) }
+            },
+        )
+        Benchmarks.writeJson("play-stats-load.json", timings)
+    }
+
+    /**
+     * Fills the database with a collection with duplicate, deleted, unranked, and unowned items, of games of every
+     * subtype, and plays of those games and of games that aren't in the collection, some of them incomplete.
+     */
+    private fun insertRandomData(seed: Long, collectionSize: Int, playCount: Int) {
+        val random = Random(seed)
+        val data = SyntheticData(seed)
+        val items = data.collection(collectionSize)
+        resolver.insertCollection(items)
+        val subtypes = GameEntity.Subtype.values().map { it.code } + listOf<String?>(null)
+        val gameUpdates = items.distinctBy { it.gameId }.map {
+            ContentProviderOperation.newUpdate(Games.buildGameUri(it.gameId))
+                .withValue(Games.Columns.GAME_RANK, it.rank.takeIf { rank -> rank != CollectionItemEntity.RANK_UNKNOWN })
+                .withValue(Games.Columns.SUBTYPE, subtypes[random.nextInt(subtypes.size)])
+                .build()
+        }
+        resolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(gameUpdates))
+        val deletions = items.filter { random.nextInt(10) == 0 }.map {
+            ContentProviderOperation.newUpdate(Collection.CONTENT_URI)
+                .withSelection("${Collection.Columns.COLLECTION_ID}=?", arrayOf(it.collectionId.toString()))
+                .withValue(Collection.Columns.COLLECTION_DELETE_TIMESTAMP, System.currentTimeMillis())
+                .build()
+        }
+        resolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(deletions))
+        // game IDs past the collection are played but not in it
+        val plays = data.plays(playCount, collectionSize + collectionSize / 10).map { it.copy(incomplete = random.nextInt(8) == 0) }
+        resolver.insertPlays(plays)
+    }
+
+    /**
+     * The owned status and rank as they were found before, by scanning every collection item for each played game.
+     */
+    private suspend fun loadForStatsByScanning(
+        includeIncompletePlays: Boolean,
+        includeExpansions: Boolean,
+        includeAccessories: Boolean,
+    ): List<GameForPlayStatEntity> {
+        val games = GameDao(context).loadGamesForPlayStats(includeIncompletePlays, includeExpansions, includeAccessories).filter { it.playCount > 0 }
+        val items = CollectionDao(context).load()
+        return games.map {
+            val isOwned = items.any { item -> item.gameId == it.id && item.own }
+            if (it.bggRank == GameRankEntity.RANK_UNKNOWN) {
+                items.find { item -> item.gameId == it.id && item.own }?.let { item ->
+                    it.copy(isOwned = isOwned, bggRank = item.rank)
+                } ?: it
+            } else {
+                it.copy(isOwned = isOwned)
+            }
+        }
+    }
+
+    private fun assertStatsEqual(case: String, expected: PlayStatsEntity, actual: PlayStatsEntity) {
+        assertEquals(case, expected.numberOfPlays, actual.numberOfPlays)
+        assertEquals(case, expected.numberOfPlayedGames, actual.numberOfPlayedGames)
+        assertEquals(case, expected.numberOfDollars, actual.numberOfDollars)
+        assertEquals(case, expected.top100Count, actual.top100Count)
+        assertEquals(case, expected.hIndex, actual.hIndex)
+        assertEquals(case, expected.getHIndexGames(), actual.getHIndexGames())
+        assertEquals(case, expected.friendless, actual.friendless)
+        assertEquals(case, expected.cfm, actual.cfm, 0.0)
+        assertEquals(case, expected.utilization, actual.utilization, 0.0)
+    }
+
+    private fun repository(): PlayRepository {
+        val retrofit = Retrofit.Builder().baseUrl("https://localhost/").build()
+        return PlayRepository(context, retrofit.create(BggService::class.java), retrofit.create(PhpApi::class.java))
+    }
+
+    private fun clear() {
+        resolver.delete(Plays.CONTENT_URI, null, null)
+        resolver.delete(Collection.CONTENT_URI, null, null)
+        resolver.delete(Games.CONTENT_URI, null, null)
+    }
+
+    companion object {
+        private val SEEDS = listOf(1L, 2L, 3L, 42L, SyntheticData.DEFAULT_SEED)
+        private val FLAGS = listOf(true, false).flatMap { incomplete ->
+            listOf(true, false).flatMap { expansions -> listOf(true, false).map { accessories -> Triple(incomplete, expansions, accessories) } }
+        }
+    }
+}
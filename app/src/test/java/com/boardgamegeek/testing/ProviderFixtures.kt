@@ -0,0 +1,75 @@
+package com.boardgamegeek.testing
+
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
+import com.boardgamegeek.entities.CollectionItemEntity
+import com.boardgamegeek.entities.PlayEntity
+import com.boardgamegeek.provider.BggContract
+import com.boardgamegeek.provider.BggContract.Collection
+import com.boardgamegeek.provider.BggContract.Games
+import com.boardgamegeek.provider.BggContract.PlayPlayers
+import com.boardgamegeek.provider.BggContract.Plays
+
+/**
+ * Inserts the games of the [items], then the items themselves, in one batch each.
+ */
+fun ContentResolver.insertCollection(items: List<CollectionItemEntity>, timestamp: Long = System.currentTimeMillis()) {
+    val games = items.distinctBy { it.gameId }.map {
+        ContentProviderOperation.newInsert(Games.CONTENT_URI)
+            .withValue(Games.Columns.GAME_ID, it.gameId)
+            .withValue(Games.Columns.GAME_NAME, it.gameName)
+            .withValue(Games.Columns.GAME_SORT_NAME, it.sortName)
+            .withValue(Games.Columns.YEAR_PUBLISHED, it.gameYearPublished)
+            .withValue(Games.Columns.UPDATED_LIST, timestamp)
+            .build()
+    }
+    applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(games))
+    val collection = items.map {
+        ContentProviderOperation.newInsert(Collection.CONTENT_URI)
+            .withValue(Collection.Columns.GAME_ID, it.gameId)
+            .withValue(Collection.Columns.COLLECTION_ID, it.collectionId)
+            .withValue(Collection.Columns.COLLECTION_NAME, it.collectionName)
+            .withValue(Collection.Columns.COLLECTION_SORT_NAME, it.sortName)
+            .withValue(Collection.Columns.STATUS_OWN, it.own)
+            .withValue(Collection.Columns.UPDATED_LIST, timestamp)
+            .build()
+    }
+    applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(collection))
+}
+
+/**
+ * Inserts the [plays] in one batch, with their players if [includePlayers] is set.
+ */
+fun ContentResolver.insertPlays(plays: List<PlayEntity>, includePlayers: Boolean = false) {
+    val operations = arrayListOf<ContentProviderOperation>()
+    plays.forEach {
+        val playIndex = operations.size
+        operations += ContentProviderOperation.newInsert(Plays.CONTENT_URI)
+            .withValue(Plays.Columns.PLAY_ID, it.playId)
+            .withValue(Plays.Columns.DATE, it.dateForDatabase())
+            .withValue(Plays.Columns.QUANTITY, it.quantity)
+            .withValue(Plays.Columns.LENGTH, it.length)
+            .withValue(Plays.Columns.INCOMPLETE, it.incomplete)
+            .withValue(Plays.Columns.NO_WIN_STATS, it.noWinStats)
+            .withValue(Plays.Columns.LOCATION, it.location)
+            .withValue(Plays.Columns.ITEM_NAME, it.gameName)
+            .withValue(Plays.Columns.OBJECT_ID, it.gameId)
+            .withValue(Plays.Columns.SYNC_TIMESTAMP, it.syncTimestamp)
+            .withValue(Plays.Columns.UPDATE_TIMESTAMP, it.updateTimestamp)
+            .withValue(Plays.Columns.DIRTY_TIMESTAMP, it.dirtyTimestamp)
+            .withValue(Plays.Columns.DELETE_TIMESTAMP, it.deleteTimestamp)
+            .build()
+        if (includePlayers) {
+            it.players.forEach { player ->
+                operations += ContentProviderOperation.newInsert(Plays.buildPlayerUri())
+                    .withValueBackReference(PlayPlayers.Columns._PLAY_ID, playIndex)
+                    .withValue(PlayPlayers.Columns.USER_NAME, player.username)
+                    .withValue(PlayPlayers.Columns.NAME, player.name)
+                    .withValue(PlayPlayers.Columns.SCORE, player.score)
+                    .withValue(PlayPlayers.Columns.WIN, player.isWin)
+                    .build()
+            }
+        }
+    }
+    applyBatch(BggContract.CONTENT_AUTHORITY, operations)
+}
@@ -0,0 +1,200 @@
+package com.boardgamegeek.testing
+
+import com.boardgamegeek.entities.*
+import java.text.SimpleDateFormat
+import java.util.Locale
+import java.util.TimeZone
+import kotlin.random.Random
+
+/**
+ * Builds synthetic collections, plays, and players of any size. The same seed always produces the same data, so results
+ * from different commits can be compared.
+ */
+class SyntheticData(seed: Long = DEFAULT_SEED) {
+    private val random = Random(seed)
+
+    /**
+     * A collection of [size] items. About one in ten games appears twice, as a second copy would.
+     */
+    fun collection(size: Int): List<CollectionItemEntity> {
+        val gameCount = (size * 9 / 10).coerceAtLeast(1)
+        return List(size) { index ->
+            val gameId = if (index < gameCount) index + 1 else random.nextInt(gameCount) + 1
+            val name = name(gameId)
+            val minPlayers = random.nextInt(1, 5)
+            CollectionItemEntity(
+                internalId = index + 1L,
+                gameId = gameId,
+                gameName = name,
+                collectionId = index + 1,
+                collectionName = name,
+                sortName = name.removePrefix("The "),
+                gameYearPublished = random.nextInt(1950, 2024),
+                collectionYearPublished = random.nextInt(1950, 2024),
+                averageRating = random.nextRating(),
+                rating = if (random.nextInt(3) == 0) 0.0 else random.nextRating(),
+                own = random.nextInt(4) != 0,
+                previouslyOwned = random.nextInt(10) == 0,
+                forTrade = random.nextInt(12) == 0,
+                wantInTrade = random.nextInt(12) == 0,
+                wantToPlay = random.nextInt(6) == 0,
+                wantToBuy = random.nextInt(10) == 0,
+                wishList = random.nextInt(8) == 0,
+                wishListPriority = random.nextInt(1, 6),
+                preOrdered = random.nextInt(40) == 0,
+                lastModifiedDate = timestamp(),
+                lastViewedDate = timestamp(),
+                numberOfPlays = plays(),
+                pricePaid = random.nextInt(0, 10_000) / 100.0,
+                currentValue = random.nextInt(0, 10_000) / 100.0,
+                acquisitionDate = timestamp(),
+                acquiredFrom = STORES[random.nextInt(STORES.size)],
+                inventoryLocation = LOCATIONS[random.nextInt(LOCATIONS.size)],
+                comment = if (random.nextInt(5) == 0) "Comment on $name" else "",
+                playingTime = random.nextInt(1, 13) * 15,
+                minimumAge = random.nextInt(6, 15),
+                rank = if (random.nextInt(5) == 0) CollectionItemEntity.RANK_UNKNOWN else random.nextInt(1, 20_000),
+                geekRating = random.nextRating(),
+                averageWeight = random.nextInt(100, 500) / 100.0,
+                isFavorite = random.nextInt(20) == 0,
+                lastPlayDate = timestamp(),
+                minPlayerCount = minPlayers,
+                maxPlayerCount = minPlayers + random.nextInt(0, 5),
+            )
+        }
+    }
+
+    /**
+     * Writes [items] as an XML API 2 collection response, with the stats and private info the sync requests.
+     */
+    fun writeCollectionXml(items: List<CollectionItemEntity>, out: Appendable) {
+        val dateFormat = SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).apply { timeZone = TimeZone.getTimeZone("UTC") }
+        fun Boolean.flag() = if (this) "1" else "0"
+        out.append("""<?xml version="1.0" encoding="utf-8" standalone="yes"?>""").append('\n')
+        out.append("""<items totalitems="${items.size}" termsofuse="https://boardgamegeek.com/xmlapi/termsofuse" pubdate="Sat, 01 Jan 2022 00:00:00 +0000">""").append('\n')
+        items.forEach { item ->
+            out.append("""<item objecttype="thing" objectid="${item.gameId}" subtype="boardgame" collid="${item.collectionId}">""")
+            out.append("""<name sortindex="${item.collectionName.length - item.sortName.length + 1}">${item.collectionName}</name>""")
+            out.append("<yearpublished>${item.collectionYearPublished}</yearpublished>")
+            out.append("<image>https://example.com/${item.gameId}.jpg</image><thumbnail>https://example.com/${item.gameId}_t.jpg</thumbnail>")
+            out.append("""<stats minplayers="${item.minPlayerCount}" maxplayers="${item.maxPlayerCount}" minplaytime="${item.playingTime}" maxplaytime="${item.playingTime}" playingtime="${item.playingTime}" numowned="${random.nextInt(10, 100_000)}">""")
+            out.append("""<rating value="${if (item.rating == 0.0) "N/A" else item.rating.toString()}"><usersrated value="${random.nextInt(10, 100_000)}"/>""")
+            out.append("""<average value="${item.averageRating}"/><bayesaverage value="${item.geekRating}"/><stddev value="1.5"/><median value="0"/></rating></stats>""")
+            out.append("""<status own="${item.own.flag()}" prevowned="${item.previouslyOwned.flag()}" fortrade="${item.forTrade.flag()}" want="${item.wantInTrade.flag()}" """)
+            out.append("""wanttoplay="${item.wantToPlay.flag()}" wanttobuy="${item.wantToBuy.flag()}" wishlist="${item.wishList.flag()}" wishlistpriority="${item.wishListPriority}" """)
+            out.append("""preordered="${item.preOrdered.flag()}" lastmodified="${dateFormat.format(item.lastModifiedDate)}"/>""")
+            out.append("<numplays>${item.numberOfPlays}</numplays>")
+            out.append("""<privateinfo pp_currency="USD" pricepaid="${item.pricePaid}" cv_currency="USD" currvalue="${item.currentValue}" quantity="1" """)
+            out.append("""acquisitiondate="${dateFormat.format(item.acquisitionDate).substringBefore(' ')}" acquiredfrom="${item.acquiredFrom}" inventorylocation="${item.inventoryLocation}"/>""")
+            if (item.comment.isNotEmpty()) out.append("<comment>${item.comment}</comment>")
+            out.append("</item>\n")
+        }
+        out.append("</items>\n")
+    }
+
+    /**
+     * A pool of [size] players, about half of whom are users.
+     */
+    fun players(size: Int): List<PlayerEntity> = List(size) { index ->
+        PlayerEntity(
+            name = "${FIRST_NAMES[index % FIRST_NAMES.size]} ${index / FIRST_NAMES.size + 1}",
+            username = if (random.nextBoolean()) "user${index + 1}" else "",
+            playCount = plays(),
+            winCount = random.nextInt(0, 20),
+        )
+    }
+
+    /**
+     * [size] plays of games with IDs 1 to [gameCount], each with [playersPerPlay] players drawn from [players].
+     */
+    fun plays(
+        size: Int,
+        gameCount: Int,
+        players: List<PlayerEntity> = players(PLAYER_POOL_SIZE),
+        playersPerPlay: IntRange = 1..6,
+    ): List<PlayEntity> = List(size) { index ->
+        val gameId = random.nextInt(gameCount) + 1
+        val playPlayers = List(random.nextInt(playersPerPlay.first, playersPerPlay.last + 1)) {
+            val player = players[random.nextInt(players.size)]
+            PlayPlayerEntity(
+                name = player.name,
+                username = player.username,
+                score = random.nextInt(0, 150).toString(),
+                isWin = it == 0,
+                playId = index + 1,
+                uiId = it.toLong(),
+            )
+        }
+        PlayEntity(
+            playId = index + 1,
+            rawDate = "%04d-%02d-%02d".format(random.nextInt(2000, 2024), random.nextInt(1, 13), random.nextInt(1, 29)),
+            gameId = gameId,
+            gameName = name(gameId),
+            quantity = if (random.nextInt(10) == 0) 2 else 1,
+            length = random.nextInt(0, 13) * 15,
+            location = LOCATIONS[random.nextInt(LOCATIONS.size)],
+            syncTimestamp = timestamp(),
+            _players = playPlayers,
+        )
+    }
+
+    /**
+     * The per-game play counts of [plays], as the play stats are calculated from, owning the games in [collection].
+     */
+    fun gamesForPlayStats(plays: List<PlayEntity>, collection: List<CollectionItemEntity>): List<GameForPlayStatEntity> {
+        val owned = collection.filter { it.own }.map { it.gameId }.toSet()
+        val playCounts = plays.groupBy { it.gameId }.mapValues { (_, list) -> list.sumOf { it.quantity } }
+        val gameIds = playCounts.keys + owned
+        return gameIds.sorted().map {
+            GameForPlayStatEntity(it, name(it), playCounts[it] ?: 0, random.nextInt(1, 20_000), it in owned)
+        }
+    }
+
+    /**
+     * [paragraphs] paragraphs of forum-style markup, mixing tags, links, emoticons, and plain text.
+     */
+    fun markup(paragraphs: Int): String = buildString {
+        repeat(paragraphs) {
+            when (random.nextInt(8)) {
+                0 -> append("[b]${name(random.nextInt(1, 1_000))}[/b] is great :) ")
+                1 -> append("[i]Played it ${random.nextInt(1, 50)} times[/i] :thumbsup: ")
+                2 -> append("[url=https://example.com/${random.nextInt(1_000)}]a link[/url] ")
+                3 -> append("[thing=${random.nextInt(1, 300_000)}]${name(random.nextInt(1, 1_000))}[/thing] ")
+                4 -> append("[q]Quoting someone ;) [/q] ")
+                5 -> append("[color=#FF0000]red text[/color] [size=12]sized[/size] ")
+                6 -> append("[o]spoiler :d10-6: :star: [/o] ")
+                else -> append("Plain text with no markup at all, just words. ")
+            }
+            append('\n')
+        }
+    }
+
+    /**
+     * A readable, deterministic name for a game ID.
+     */
+    fun name(gameId: Int): String {
+        val prefix = if (gameId % 7 == 0) "The " else ""
+        val first = SYLLABLES[gameId % SYLLABLES.size]
+        val second = SYLLABLES[(gameId / SYLLABLES.size) % SYLLABLES.size]
+        return "$prefix${first.replaceFirstChar { it.uppercase() }}$second ${gameId / (SYLLABLES.size * SYLLABLES.size) + 1}"
+    }
+
+    private fun plays() = if (random.nextInt(3) == 0) 0 else random.nextInt(1, 120)
+
+    private fun timestamp() = EPOCH + random.nextLong(0, YEAR_MILLIS * 10)
+
+    private fun Random.nextRating() = nextInt(100, 1_000) / 100.0
+
+    companion object {
+        const val DEFAULT_SEED = 1_234L
+        const val PLAYER_POOL_SIZE = 50
+
+        private const val EPOCH = 1_388_534_400_000L // 2014-01-01
+        private const val YEAR_MILLIS = 365L * 24 * 60 * 60 * 1_000
+
+        private val SYLLABLES = listOf("cat", "an", "tic", "ar", "bor", "ia", "ter", "ra", "gem", "pan", "dem", "ic", "wing", "span", "az", "ul")
+        private val FIRST_NAMES = listOf("Alex", "Blake", "Casey", "Drew", "Emery", "Finley", "Gray", "Harper", "Jordan", "Kai")
+        private val STORES = listOf("", "Local game store", "Online", "Convention", "Trade")
+        private val LOCATIONS = listOf("", "Home", "Shelf A", "Shelf B", "Club", "Closet")
+    }
+}
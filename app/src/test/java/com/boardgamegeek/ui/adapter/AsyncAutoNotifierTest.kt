@@ -0,0 +1,169 @@
+package com.boardgamegeek.ui.adapter
+
+import android.os.Looper
+import android.view.View
+import android.view.ViewGroup
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.RecyclerView
+import com.boardgamegeek.benchmark.Benchmarks
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import java.util.concurrent.Executor
+import kotlin.random.Random
+
+/**
+ * Sets lists on an adapter whose diffs run only when the test runs them, and checks what the adapter is told and when.
+ */
+@RunWith(RobolectricTestRunner::class)
+class AsyncAutoNotifierTest {
+    private data class Item(val id: Int, val name: String)
+
+    private val diffs = ArrayDeque<Runnable>()
+    private val events = mutableListOf<String>()
+    private lateinit var adapter: TestAdapter
+
+    private class TestAdapter(diffExecutor: Executor) : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+        var items by AsyncAutoNotifier<Item>(this, { old, new -> old.id == new.id }, diffExecutor)
+
+        override fun getItemCount() = items.size
+
+        override fun onCreateViewHolder(parent: ViewGroup, viewType: Int) = object : RecyclerView.ViewHolder(View(parent.context)) {}
+
+        override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {}
+    }
+
+    @Before
+    fun setUp() {
+        adapter = TestAdapter { diffs += it }
+        adapter.registerAdapterDataObserver(object : RecyclerView.AdapterDataObserver() {
+            override fun onChanged() {
+                events += "changed"
+            }
+
+            override fun onItemRangeChanged(positionStart: Int, itemCount: Int, payload: Any?) {
+                events += "changed $positionStart+$itemCount"
+            }
+
+            override fun onItemRangeInserted(positionStart: Int, itemCount: Int) {
+                events += "inserted $positionStart+$itemCount"
+            }
+
+            override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+                events += "removed $positionStart+$itemCount"
+            }
+
+            override fun onItemRangeMoved(fromPosition: Int, toPosition: Int, itemCount: Int) {
+                events += "moved $fromPosition>$toPosition"
+            }
+        })
+    }
+
+    @Test
+    fun setValue_insertsIntoAnEmptyListWithoutDiffing() {
+        adapter.items = items(5)
+
+        assertEquals(items(5), adapter.items)
+        assertEquals(listOf("inserted 0+5"), events)
+        assertEquals(0, diffs.size)
+    }
+
+    @Test
+    fun setValue_keepsTheOldListUntilTheDiffIsDispatched() {
+        adapter.items = items(5)
+        events.clear()
+        val newItems = items(5).filter { it.id != 3 }
+
+        adapter.items = newItems
+        assertEquals(items(5), adapter.items)
+        assertEquals(emptyList<String>(), events)
+        runDiffs()
+
+        assertEquals(newItems, adapter.items)
+        assertEquals(listOf("removed 2+1"), events)
+    }
+
+    @Test
+    fun setValue_onlyNotifiesChangedRowsWhenNothingMoves() {
+        adapter.items = items(5)
+        events.clear()
+
+        adapter.items = items(5).map { if (it.id == 2 || it.id == 3) it.copy(name = "Renamed") else it }
+        runDiffs()
+
+        assertEquals(listOf("changed 1+2"), events)
+    }
+
+    @Test
+    fun setValue_dropsADiffFinishedAfterANewerList() {
+        adapter.items = items(5)
+        events.clear()
+
+        adapter.items = items(4)
+        adapter.items = items(6)
+        runDiffs()
+
+        assertEquals(items(6), adapter.items)
+        assertEquals(listOf("inserted 5+1"), events)
+    }
+
+    /**
+     * Times how long the main thread is busy when a list of a few thousand shuffled and edited items replaces another,
+     * diffing on the main thread as [AutoUpdatableAdapter.autoNotify] does and only dispatching a diff made elsewhere as
+     * [AsyncAutoNotifier] does, and writes the timings to `adapter-diff.json`.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*AsyncAutoNotifierTest' -Pbenchmark=true
+     */
+    @Test
+    fun timeMainThread() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        val timings = SIZES.flatMap { size ->
+            val random = Random(size)
+            val old = items(size)
+            val new = old.shuffled(random).filter { random.nextInt(10) != 0 }.map { if (random.nextInt(10) == 0) it.copy(name = "Renamed") else it }
+            val compare = { a: Item, b: Item -> a.id == b.id }
+            listOf(
+                Benchmarks.time("autoNotify", size, setUp = { resetTo(old) }) {
+                    DiffUtil.calculateDiff(object : DiffUtil.Callback() {
+                        override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int) = compare(old[oldItemPosition], new[newItemPosition])
+
+                        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int) = old[oldItemPosition] == new[newItemPosition]
+
+                        override fun getOldListSize() = old.size
+
+                        override fun getNewListSize() = new.size
+                    }).dispatchUpdatesTo(adapter)
+                },
+                // the diff itself runs on a background thread, and setting the list only queues it, so just the dispatch is timed
+                Benchmarks.time("asyncAutoNotify", size, setUp = {
+                    resetTo(old)
+                    adapter.items = new
+                    diffs.removeFirst().run()
+                }) {
+                    shadowOf(Looper.getMainLooper()).idle()
+                },
+            )
+        }
+        Benchmarks.writeJson("adapter-diff.json", timings)
+    }
+
+    private fun resetTo(items: List<Item>) {
+        adapter.items = emptyList()
+        adapter.items = items
+    }
+
+    private fun runDiffs() {
+        while (diffs.isNotEmpty()) diffs.removeFirst().run()
+        shadowOf(Looper.getMainLooper()).idle()
+    }
+
+    private fun items(count: Int) = (1..count).map { Item(it, "Item $it") }
+
+    companion object {
+        private val SIZES = listOf(1_000, 5_000)
+    }
+}
@@ -0,0 +1,180 @@
+package com.boardgamegeek.ui.viewmodel
+
+import android.app.Application
+import android.content.ContentProviderOperation
+import android.net.Uri
+import android.os.Looper
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.R
+import com.boardgamegeek.entities.CollectionViewEntity
+import com.boardgamegeek.entities.CollectionViewFilterEntity
+import com.boardgamegeek.io.BggService
+import com.boardgamegeek.io.GeekdoApi
+import com.boardgamegeek.io.RequestScheduler
+import com.boardgamegeek.provider.BggContract
+import com.boardgamegeek.provider.BggContract.Buddies
+import com.boardgamegeek.provider.BggContract.PlayerColors
+import com.boardgamegeek.provider.BggProvider
+import com.boardgamegeek.repository.CollectionViewRepository
+import com.boardgamegeek.repository.GameRepository
+import com.boardgamegeek.repository.ImageRepository
+import com.boardgamegeek.repository.UserRepository
+import com.boardgamegeek.testing.SyntheticData
+import com.boardgamegeek.testing.insertCollection
+import com.boardgamegeek.util.SyncMetricsRecorder
+import com.boardgamegeek.util.ThumbnailStore
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import retrofit2.Retrofit
+import kotlin.random.Random
+
+/**
+ * Exports collection views, game colors, and user colors to a file, clears them, and imports the file again, with more
+ * games and users than fit in one import chunk.
+ */
+@RunWith(RobolectricTestRunner::class)
+class DataPortViewModelTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var application: Application
+    private lateinit var collectionViewRepository: CollectionViewRepository
+    private lateinit var gameRepository: GameRepository
+    private lateinit var userRepository: UserRepository
+    private lateinit var viewModel: DataPortViewModel
+
+    @Before
+    fun setUp() {
+        Robolectric.setupContentProvider(BggProvider::class.java, BggContract.CONTENT_AUTHORITY)
+        application = ApplicationProvider.getApplicationContext()
+        val retrofit = Retrofit.Builder().baseUrl("https://localhost/").build()
+        val imageRepository = ImageRepository(application, retrofit.create(GeekdoApi::class.java), ThumbnailStore(application, OkHttpClient()))
+        collectionViewRepository = CollectionViewRepository(application)
+        gameRepository = GameRepository(application, retrofit.create(BggService::class.java), imageRepository)
+        userRepository = UserRepository(application, retrofit.create(BggService::class.java))
+        viewModel = DataPortViewModel(
+            application,
+            collectionViewRepository,
+            gameRepository,
+            userRepository,
+            SyncMetricsRecorder(application, RequestScheduler()),
+        )
+    }
+
+    @Test
+    fun collectionViews_surviveARoundTrip() = runBlocking {
+        listOf(
+            CollectionViewEntity(0L, "Owned", sortType = 1, starred = true, filters = listOf(CollectionViewFilterEntity(1, "1:2"))),
+            CollectionViewEntity(0L, "Unplayed", sortType = 5, filters = listOf(CollectionViewFilterEntity(1, "1"), CollectionViewFilterEntity(7, "0"))),
+            CollectionViewEntity(0L, "By rating", sortType = 12),
+        ).forEach { collectionViewRepository.insertView(it) }
+        val expected = loadViews()
+        val file = Uri.fromFile(folder.newFile("views.json"))
+
+        viewModel.exportCollectionViews(file)
+        awaitMessage(R.string.msg_export_success)
+        collectionViewRepository.delete()
+        viewModel.importCollectionViews(file)
+        awaitMessage(R.string.msg_import_success)
+
+        assertEquals(expected, loadViews())
+    }
+
+    @Test
+    fun gameColors_surviveARoundTrip() = runBlocking {
+        val random = Random(SyntheticData.DEFAULT_SEED)
+        val items = SyntheticData().collection(GAME_COUNT)
+        application.contentResolver.insertCollection(items)
+        gameRepository.updateColors(items.map { it.gameId }.distinct().associateWith { List(random.nextInt(1, 5)) { i -> COLORS[(it + i) % COLORS.size] }.distinct() })
+        val expected = loadGameColors()
+        val file = Uri.fromFile(folder.newFile("games.json"))
+
+        viewModel.exportGames(file)
+        awaitMessage(R.string.msg_export_success)
+        gameRepository.updateColors(expected.mapValues { emptyList() })
+        assertTrue(loadGameColors().isEmpty())
+        viewModel.importGames(file)
+        awaitMessage(R.string.msg_import_success)
+
+        assertTrue(expected.size > GAME_COUNT / 2)
+        assertEquals(expected, loadGameColors())
+    }
+
+    @Test
+    fun userColors_surviveARoundTrip() = runBlocking {
+        val random = Random(SyntheticData.DEFAULT_SEED)
+        val usernames = List(USER_COUNT) { "user${it + 1}" }
+        val buddies = usernames.mapIndexed { index, username ->
+            ContentProviderOperation.newInsert(Buddies.CONTENT_URI)
+                .withValue(Buddies.Columns.BUDDY_ID, index + 1)
+                .withValue(Buddies.Columns.BUDDY_NAME, username)
+                .withValue(Buddies.Columns.UPDATED_LIST, 1L)
+                .build()
+        }
+        application.contentResolver.applyBatch(BggContract.CONTENT_AUTHORITY, ArrayList(buddies))
+        userRepository.updateColors(usernames.associateWith { List(random.nextInt(1, 5)) { i -> (i + 1) to COLORS[random.nextInt(COLORS.size)] } })
+        val expected = loadUserColors()
+        val file = Uri.fromFile(folder.newFile("users.json"))
+
+        viewModel.exportUsers(file)
+        awaitMessage(R.string.msg_export_success)
+        application.contentResolver.delete(PlayerColors.CONTENT_URI, null, null)
+        assertTrue(loadUserColors().isEmpty())
+        viewModel.importUsers(file)
+        awaitMessage(R.string.msg_import_success)
+
+        assertEquals(USER_COUNT, expected.size)
+        assertEquals(expected, loadUserColors())
+    }
+
+    private suspend fun loadViews() = collectionViewRepository.load(includeDefault = false, includeFilters = true)
+        .map { it.copy(id = 0L) }
+        .sortedBy { it.name }
+
+    private suspend fun loadGameColors(): Map<Int, List<String>> {
+        val colors = mutableMapOf<Int, List<String>>()
+        gameRepository.streamPlayColors { gameId, gameColors -> colors[gameId] = gameColors.sorted() }
+        return colors
+    }
+
+    private suspend fun loadUserColors(): Map<String, List<Pair<Int, String>>> {
+        val colors = mutableMapOf<String, List<Pair<Int, String>>>()
+        userRepository.streamColors { username, userColors -> colors[username] = userColors }
+        return colors
+    }
+
+    /**
+     * Runs the main looper until the view model posts a message, which it does once an export or import is done, and
+     * checks that it's the one expected.
+     */
+    private fun awaitMessage(expectedResId: Int) {
+        val deadline = System.currentTimeMillis() + TIMEOUT_MILLIS
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle()
+            viewModel.message.value?.getContentIfNotHandled()?.let {
+                assertEquals(application.getString(expectedResId), it)
+                return
+            }
+            Thread.sleep(10)
+        }
+        fail("No message after $TIMEOUT_MILLIS ms")
+    }
+
+    companion object {
+        private const val GAME_COUNT = 250
+        private const val USER_COUNT = 150
+        private const val TIMEOUT_MILLIS = 30_000L
+        private val COLORS = listOf("Red", "Blue", "Green", "Yellow", "Black", "White", "Purple", "Orange")
+    }
+}
@@ -0,0 +1,140 @@
+package com.boardgamegeek.util
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs the cache against the app's cache directory with a clock the test moves past the endpoint's time to live and
+ * max staleness.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ResponseCacheTest {
+    private lateinit var directory: File
+    private lateinit var cache: ResponseCache
+    private val clock = AtomicLong(1_000_000L)
+    private val fetches = AtomicInteger()
+
+    @Before
+    fun setUp() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        directory = File(context.cacheDir, "responses")
+        cache = ResponseCache(context) { clock.get() }
+        runBlocking { cache.clear() }
+    }
+
+    @Test
+    fun get_servesAFreshResponseWithoutFetching() = runBlocking {
+        assertEquals(listOf("first"), cache.get(ENDPOINT, "a") { fetch("first") })
+
+        clock.addAndGet(TIME_TO_LIVE - 1)
+
+        assertEquals(listOf("first"), cache.get(ENDPOINT, "a") { fetch("second") })
+        assertEquals(1, fetches.get())
+    }
+
+    @Test
+    fun get_keysResponsesByTheirParameters() = runBlocking {
+        cache.get(ENDPOINT, "a", 1) { fetch("a1") }
+        cache.get(ENDPOINT, "a", 2) { fetch("a2") }
+
+        assertEquals(listOf("a1"), cache.get(ENDPOINT, "a", 1) { fetch("unexpected") })
+        assertEquals(listOf("a2"), cache.get(ENDPOINT, "a", 2) { fetch("unexpected") })
+        assertEquals(2, fetches.get())
+    }
+
+    @Test
+    fun get_servesAStaleResponseWhileFetchingTheNextOne() = runBlocking {
+        cache.get(ENDPOINT, "a") { fetch("first") }
+        clock.addAndGet(TIME_TO_LIVE)
+
+        assertEquals(listOf("first"), cache.get(ENDPOINT, "a") { fetch("second") })
+
+        // once the refresh is written, the next request gets it without fetching again
+        val deadline = System.currentTimeMillis() + TIMEOUT_MILLIS
+        var value = listOf("first")
+        while (value == listOf("first") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+            value = cache.get(ENDPOINT, "a") { throw IOException("Already refreshing") }
+        }
+        assertEquals(listOf("second"), value)
+        assertEquals(2, fetches.get())
+    }
+
+    @Test
+    fun get_waitsOnTheNetworkOnceAResponseIsTooStale() = runBlocking {
+        cache.get(ENDPOINT, "a") { fetch("first") }
+        clock.addAndGet(MAX_STALE)
+
+        assertEquals(listOf("second"), cache.get(ENDPOINT, "a") { fetch("second") })
+        assertEquals(listOf("second"), cache.get(ENDPOINT, "a") { fetch("third") })
+        assertEquals(2, fetches.get())
+    }
+
+    @Test
+    fun get_fallsBackToATooStaleResponseWhenTheNetworkFails() = runBlocking {
+        cache.get(ENDPOINT, "a") { fetch("first") }
+        clock.addAndGet(MAX_STALE * 10)
+
+        assertThrows(IOException::class.java) {
+            runBlocking { cache.get(ENDPOINT, "b") { throw IOException("Offline") } }
+        }
+        assertEquals(listOf("first"), cache.get(ENDPOINT, "a") { throw IOException("Offline") })
+    }
+
+    @Test
+    fun get_evictsTheOldestResponsesPastTheLimit() = runBlocking {
+        val count = ResponseCache.MAX_ENTRIES + 10
+        val known = mutableSetOf<String>()
+        repeat(count) { i ->
+            cache.get(ENDPOINT, i) { fetch("item $i") }
+            // files written within the same second can share a modified time, so give each its own
+            directory.listFiles().orEmpty().filter { it.name !in known }.forEach {
+                it.setLastModified(BASE_MODIFIED_MILLIS + i * 1_000L)
+                known += it.name
+            }
+        }
+
+        assertEquals(ResponseCache.MAX_ENTRIES, directory.listFiles().orEmpty().size)
+        (10 until count).forEach { i ->
+            assertEquals(listOf("item $i"), cache.get(ENDPOINT, i) { throw IOException("Evicted $i") })
+        }
+        fetches.set(0)
+        (0 until 10).forEach { i -> cache.get(ENDPOINT, i) { fetch("item $i") } }
+        assertEquals(10, fetches.get())
+    }
+
+    @Test
+    fun clear_deletesEveryResponse() = runBlocking {
+        cache.get(ENDPOINT, "a") { fetch("first") }
+        cache.get(ENDPOINT, "b") { fetch("first") }
+
+        cache.clear()
+
+        assertEquals(0, directory.listFiles().orEmpty().size)
+        assertEquals(listOf("second"), cache.get(ENDPOINT, "a") { fetch("second") })
+        assertEquals(3, fetches.get())
+    }
+
+    private fun fetch(value: String): List<String> {
+        fetches.incrementAndGet()
+        return listOf(value)
+    }
+
+    companion object {
+        private const val TIME_TO_LIVE = 60_000L
+        private const val MAX_STALE = TIME_TO_LIVE * 4
+        private const val BASE_MODIFIED_MILLIS = 1_600_000_000_000L
+        private const val TIMEOUT_MILLIS = 10_000L
+        private val ENDPOINT = ResponseCache.endpoint<List<String>>("test", TIME_TO_LIVE)
+    }
+}
@@ -0,0 +1,151 @@
+package com.boardgamegeek.util
+
+import android.os.Looper
+import com.boardgamegeek.util.StartupOrchestrator.Stage
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Starts the orchestrator on Robolectric's main looper, which only runs the idle handler that schedules the deferred
+ * initializers when the test idles it, with a clock that each initializer moves forward by a known amount.
+ */
+@RunWith(RobolectricTestRunner::class)
+class StartupOrchestratorTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val clock = AtomicLong(1_000L)
+    private val runOrder: MutableList<String> = Collections.synchronizedList(mutableListOf())
+
+    @Test
+    fun start_runsCriticalInitializersInDependencyOrderRightAway() {
+        val orchestrator = orchestrator()
+            .add("analytics", Stage.CRITICAL, listOf("prefs")) { run("analytics") }
+            .add("prefs", Stage.CRITICAL) { run("prefs") }
+            .add("theme", Stage.CRITICAL, listOf("prefs")) { run("theme") }
+            .add("sync", Stage.DEFERRED) { run("sync") }
+            .add("images", Stage.LAZY) { run("images") }
+
+        orchestrator.start()
+
+        assertEquals(listOf("prefs", "analytics", "theme"), runOrder)
+        assertTrue(orchestrator.timings.all { it.stage == Stage.CRITICAL && it.thread == Thread.currentThread().name })
+    }
+
+    @Test
+    fun start_defersInitializersUntilTheMainThreadIsIdle() {
+        val traceFile = folder.newFile("startup.csv")
+        val orchestrator = orchestrator(traceFile)
+            .add("prefs", Stage.CRITICAL) { run("prefs") }
+            .add("sync", Stage.DEFERRED, listOf("prefs", "work")) { run("sync") }
+            .add("work", Stage.DEFERRED) { run("work") }
+            .add("icons", Stage.DEFERRED) { run("icons") }
+
+        orchestrator.start()
+        assertEquals(listOf("prefs"), runOrder)
+
+        shadowOf(Looper.getMainLooper()).idle()
+        awaitTrace(traceFile)
+
+        assertEquals(setOf("prefs", "sync", "work", "icons"), runOrder.toSet())
+        assertTrue(runOrder.indexOf("work") < runOrder.indexOf("sync"))
+        orchestrator.timings.filter { it.stage == Stage.DEFERRED }.forEach {
+            assertNotEquals(it.name, Thread.currentThread().name, it.thread)
+        }
+    }
+
+    @Test
+    fun require_runsALazyInitializerAndItsDependenciesOnce() {
+        val orchestrator = orchestrator()
+            .add("prefs", Stage.CRITICAL) { run("prefs") }
+            .add("database", Stage.LAZY, listOf("prefs")) { run("database") }
+            .add("images", Stage.LAZY, listOf("database")) { run("images") }
+        orchestrator.start()
+
+        orchestrator.require("images")
+        orchestrator.require("images")
+        orchestrator.require("database")
+
+        assertEquals(listOf("prefs", "database", "images"), runOrder)
+        assertThrows(IllegalArgumentException::class.java) { orchestrator.require("missing") }
+    }
+
+    @Test
+    fun start_rejectsACycle() {
+        val orchestrator = orchestrator()
+            .add("a", Stage.LAZY, listOf("c")) { run("a") }
+            .add("b", Stage.LAZY, listOf("a")) { run("b") }
+            .add("c", Stage.CRITICAL, listOf("b")) { run("c") }
+
+        assertThrows(IllegalArgumentException::class.java) { orchestrator.start() }
+        assertTrue(runOrder.isEmpty())
+    }
+
+    @Test
+    fun start_rejectsMissingAndDeferredDependenciesOfEarlierStages() {
+        assertThrows(IllegalArgumentException::class.java) {
+            orchestrator().add("a", Stage.CRITICAL, listOf("missing")) { }.start()
+        }
+        assertThrows(IllegalArgumentException::class.java) {
+            orchestrator().add("a", Stage.DEFERRED) { }.add("b", Stage.CRITICAL, listOf("a")) { }.start()
+        }
+        assertThrows(IllegalArgumentException::class.java) {
+            orchestrator().add("a", Stage.DEFERRED) { }.add("b", Stage.LAZY, listOf("a")) { }.start()
+        }
+        assertThrows(IllegalArgumentException::class.java) {
+            orchestrator().add("a", Stage.CRITICAL) { }.add("a", Stage.LAZY) { }
+        }
+    }
+
+    @Test
+    fun start_writesEachTimingToTheTrace() {
+        val traceFile = folder.newFile("startup.csv")
+        orchestrator(traceFile)
+            .add("prefs", Stage.CRITICAL) { run("prefs", millis = 20L) }
+            .add("sync", Stage.DEFERRED) { run("sync", millis = 5L) }
+            .start()
+
+        shadowOf(Looper.getMainLooper()).idle()
+        val lines = awaitTrace(traceFile)
+
+        assertEquals("name,stage,thread,start_ms,duration_ms", lines.first())
+        val rows = lines.drop(1).map { it.split(",") }
+        assertEquals(listOf("prefs", "sync"), rows.map { it[0] })
+        assertEquals(listOf("CRITICAL", "DEFERRED"), rows.map { it[1] })
+        assertEquals(listOf("0", "20"), rows.map { it[3] })
+        assertEquals(listOf("20", "5"), rows.map { it[4] })
+    }
+
+    private fun orchestrator(traceFile: File? = null) = StartupOrchestrator({ traceFile }, { clock.get() })
+
+    private fun run(name: String, millis: Long = 1L) {
+        runOrder += name
+        clock.addAndGet(millis)
+    }
+
+    /**
+     * Waits for the deferred initializers to finish, which is when the trace is written, and returns its lines.
+     */
+    private fun awaitTrace(file: File): List<String> {
+        val deadline = System.currentTimeMillis() + TIMEOUT_MILLIS
+        while (System.currentTimeMillis() < deadline) {
+            // the trace is short enough to be written in one go, when its writer is closed
+            if (file.length() > 0) return file.readLines()
+            Thread.sleep(10)
+        }
+        fail("No trace written after $TIMEOUT_MILLIS ms")
+        return emptyList()
+    }
+
+    companion object {
+        private const val TIMEOUT_MILLIS = 10_000L
+    }
+}
@@ -0,0 +1,132 @@
+package com.boardgamegeek.util
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.io.FixedBackOff
+import com.boardgamegeek.io.RequestScheduler
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.shadows.ShadowSystemClock
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures steps that add known amounts to [PerformanceCounters], move Robolectric's clock, and retry a request against
+ * a local server, and checks what's recorded.
+ */
+@RunWith(RobolectricTestRunner::class)
+class SyncMetricsRecorderTest {
+    private lateinit var server: MockWebServer
+    private lateinit var scheduler: RequestScheduler
+    private lateinit var recorder: SyncMetricsRecorder
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        scheduler = RequestScheduler(
+            createBackOffs = {
+                RequestScheduler.RetryBackOffs(
+                    processing = FixedBackOff(intervalMillis = 10, maxBackOffCount = 1),
+                    throttled = FixedBackOff(intervalMillis = 10, maxBackOffCount = 1),
+                    rejected = FixedBackOff(intervalMillis = 10, maxBackOffCount = 1),
+                )
+            },
+        )
+        recorder = SyncMetricsRecorder(ApplicationProvider.getApplicationContext<Context>(), scheduler) { STARTED_AT }
+        runBlocking { recorder.clear() }
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun measure_recordsTheCostOfTheStep() = runBlocking {
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(MockResponse().setBody("OK"))
+
+        val result = recorder.measure("SyncCollection", "owned") {
+            PerformanceCounters.networkBytes.addAndGet(2_048L)
+            PerformanceCounters.parseNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(30L))
+            PerformanceCounters.dbWriteNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(45L))
+            PerformanceCounters.rowsWritten.addAndGet(120L)
+            ShadowSystemClock.advanceBy(Duration.ofMillis(250L))
+            call().use { it.code }
+        }
+
+        assertEquals(200, result)
+        assertEquals(
+            listOf(SyncMetricsRecorder.SyncMetric("SyncCollection", "owned", STARTED_AT, 250L, 2_048L, 30L, 45L, 120L, 1L, true)),
+            recorder.load(),
+        )
+    }
+
+    @Test
+    fun measure_recordsAFailedStep() = runBlocking {
+        recorder.measure("SyncPlays", "upload", isSuccess = { it > 0 }) { 0 }
+        assertThrows(IOException::class.java) {
+            runBlocking { recorder.measure<Unit>("SyncPlays", "download") { throw IOException("Offline") } }
+        }
+
+        val metrics = recorder.load()
+
+        assertEquals(listOf("upload", "download"), metrics.map { it.step })
+        assertTrue(metrics.none { it.succeeded })
+    }
+
+    @Test
+    fun measure_keepsOnlyTheMostRecentSteps() = runBlocking {
+        val count = SyncMetricsRecorder.MAX_ROWS.toInt() + 5
+        repeat(count) { recorder.measure("SyncGames", "step $it") { } }
+
+        val metrics = recorder.load()
+
+        assertEquals(SyncMetricsRecorder.MAX_ROWS.toInt(), metrics.size)
+        assertEquals("step 5", metrics.first().step)
+        assertEquals("step ${count - 1}", metrics.last().step)
+    }
+
+    @Test
+    fun export_writesEachStepAsCsv() = runBlocking {
+        recorder.measure("SyncBuddies", "list") { ShadowSystemClock.advanceBy(Duration.ofMillis(10L)) }
+        recorder.measure("SyncBuddies", "details", isSuccess = { false }) { }
+
+        val output = ByteArrayOutputStream()
+        recorder.export(output)
+        val lines = output.toString(Charsets.UTF_8.name()).lines().filter { it.isNotEmpty() }
+
+        assertEquals(
+            "worker,step,started_at,wall_ms,network_bytes,parse_ms,db_write_ms,rows_written,retry_count,succeeded",
+            lines.first(),
+        )
+        assertEquals(listOf("SyncBuddies,list,$STARTED_AT,10,0,0,0,0,0,1", "SyncBuddies,details,$STARTED_AT,0,0,0,0,0,0,0"), lines.drop(1))
+    }
+
+    @Test
+    fun clear_deletesEveryStep() = runBlocking {
+        recorder.measure("SyncGames", "stale") { }
+
+        recorder.clear()
+
+        assertTrue(recorder.load().isEmpty())
+    }
+
+    private fun call() = scheduler.callFactory(OkHttpClient()).newCall(Request.Builder().url(server.url("/xmlapi2/collection")).build()).execute()
+
+    companion object {
+        private const val STARTED_AT = 1_700_000_000_000L
+    }
+}
@@ -0,0 +1,178 @@
+package com.boardgamegeek.util
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.boardgamegeek.benchmark.Benchmarks
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.mockwebserver.SocketPolicy
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.lang.management.ManagementFactory
+import kotlin.random.Random
+
+/**
+ * Fills the store from a local image server that serves each thumbnail as a few kilobytes of bytes that are the same
+ * for each ID, whatever path they're requested by.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ThumbnailStoreTest {
+    private lateinit var context: Context
+    private lateinit var server: MockWebServer
+    private lateinit var store: ThumbnailStore
+    private val httpClient = OkHttpClient()
+    private var maxSizeBytes = Long.MAX_VALUE
+    @Volatile
+    private var isOffline = false
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        server = MockWebServer()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (isOffline) return MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START)
+                val id = request.requestUrl?.pathSegments?.lastOrNull()?.toIntOrNull() ?: return MockResponse().setResponseCode(404)
+                return MockResponse().setBody(Buffer().write(image(id)))
+            }
+        }
+        server.start()
+        store = createStore()
+        store.clear()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun fetch_keepsTheBytesAsDownloaded() {
+        val file = store.fetch(url(1))
+
+        assertArrayEquals(image(1), file?.readBytes())
+        assertEquals(image(1).size.toLong(), store.metrics.bytesWritten)
+    }
+
+    @Test
+    fun fetch_storesAnImageServedFromSeveralUrlsOnce() {
+        store.fetch(url(1))
+        store.fetch(url(1, path = "mirror"))
+
+        val metrics = store.metrics
+
+        assertEquals(2, metrics.entryCount)
+        assertEquals(1, metrics.fileCount)
+        assertEquals(image(1).size.toLong(), metrics.bytesWritten)
+    }
+
+    @Test
+    fun fetch_evictsTheLeastRecentlyUsedPastTheBudget() {
+        // room for 1, 2, and 3, then for 1, 3, and 4 once 2 is evicted
+        maxSizeBytes = maxOf(size(1, 2, 3), size(1, 3, 4))
+        (1..3).forEach { store.fetch(url(it)) }
+
+        assertNotNull(store.get(url(1)))
+        store.fetch(url(4))
+
+        assertNull(store.get(url(2)))
+        listOf(1, 3, 4).forEach { assertNotNull(store.get(url(it))) }
+        assertEquals(size(1, 3, 4), store.metrics.sizeBytes)
+    }
+
+    @Test
+    fun get_servesFlushedThumbnailsOfflineAfterARestart() {
+        (1..5).forEach { store.fetch(url(it)) }
+        store.flush()
+        isOffline = true
+
+        val restartedStore = createStore()
+
+        (1..5).forEach { assertArrayEquals(image(it), restartedStore.get(url(it))?.readBytes()) }
+        assertNull(restartedStore.get(url(6)))
+        assertNull(restartedStore.fetch(url(6)))
+        assertEquals(5L, restartedStore.metrics.hitCount)
+        assertEquals(1L, restartedStore.metrics.missCount)
+        assertEquals(0L, restartedStore.metrics.bytesWritten)
+    }
+
+    data class FillResult(
+        val thumbnails: Int,
+        val bytesDownloaded: Long,
+        val bytesWritten: Long,
+        val cpuMillisPer1000: Double,
+        val wallMillisPer1000: Double,
+        val offlineHitRate: Double,
+    )
+
+    /**
+     * Fills the store with 1,000 thumbnails, a tenth of them served again from a second URL, as a sync would, then goes
+     * offline and loads them, and 250 that were never synced, as the image loader would. Writes the bytes written, the CPU time of the
+     * filling thread, and the offline hit rate to `thumbnail-store.json`.
+     *
+     *     ./gradlew testDebugUnitTest --tests '*ThumbnailStoreTest' -Pbenchmark=true
+     */
+    @Test
+    fun timeFill() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Benchmarks.isEnabled)
+        val ids = (1..THUMBNAIL_COUNT) + (1..THUMBNAIL_COUNT / 10)
+        val urls = (1..THUMBNAIL_COUNT).map { url(it) } + (1..THUMBNAIL_COUNT / 10).map { url(it, path = "mirror") }
+        val threads = ManagementFactory.getThreadMXBean()
+
+        val startCpuNanos = threads.currentThreadCpuTime
+        val startNanos = System.nanoTime()
+        urls.forEach { store.fetch(it) }
+        store.flush()
+        val cpuNanos = threads.currentThreadCpuTime - startCpuNanos
+        val wallNanos = System.nanoTime() - startNanos
+        isOffline = true
+
+        val offlineStore = createStore()
+        val offlineUrls = (1..THUMBNAIL_COUNT + THUMBNAIL_COUNT / 4).map { url(it) }
+        val offlineHits = offlineUrls.count { (offlineStore.get(it) ?: offlineStore.fetch(it)) != null }
+        val bytesWritten = store.metrics.bytesWritten
+
+        assertEquals(THUMBNAIL_COUNT, offlineHits)
+        assertEquals(size(*(1..THUMBNAIL_COUNT).toList().toIntArray()), bytesWritten)
+        val perThousand = 1_000.0 / urls.size / 1_000_000.0
+        Benchmarks.writeJson(
+            "thumbnail-store.json",
+            listOf(
+                FillResult(
+                    urls.size,
+                    size(*ids.toIntArray()),
+                    bytesWritten,
+                    cpuNanos * perThousand,
+                    wallNanos * perThousand,
+                    offlineHits.toDouble() / offlineUrls.size,
+                )
+            ),
+        )
+    }
+
+    private fun createStore() = ThumbnailStore(context, httpClient) { maxSizeBytes }
+
+    private fun url(id: Int, path: String = "thumbnails") = server.url("/$path/$id").toString()
+
+    private fun size(vararg ids: Int) = ids.sumOf { image(it).size.toLong() }
+
+    private fun image(id: Int): ByteArray {
+        val random = Random(id)
+        return random.nextBytes(random.nextInt(MIN_IMAGE_BYTES, MAX_IMAGE_BYTES))
+    }
+
+    companion object {
+        private const val THUMBNAIL_COUNT = 1_000
+        private const val MIN_IMAGE_BYTES = 2_000
+        private const val MAX_IMAGE_BYTES = 8_000
+    }
+}
@@ -0,0 +1,75 @@
+package com.boardgamegeek.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Compares the converter to the golden output in `markup/xml_api_markup.txt`, which was written by the regex-based
+ * converter it replaced, and to `markup/xml_api_markup_changes.txt`, which holds the cases where it deliberately differs
+ * from that converter. Each case is a `=== name` line followed by the markup, then its HTML after `--- html` and its
+ * stripped text after `--- strip`.
+ */
+class XmlApiMarkupConverterTest {
+    private val converter = XmlApiMarkupConverter(SPOILER)
+
+    @Test
+    fun toHtml_matchesGoldenOutput() {
+        cases.forEach { assertEquals(it.name, it.html, converter.toHtml(it.input)) }
+    }
+
+    @Test
+    fun strip_matchesGoldenOutput() {
+        cases.forEach { assertEquals(it.name, it.stripped, converter.strip(it.input)) }
+    }
+
+    @Test
+    fun toHtml_matchesDeliberateChanges() {
+        changedCases.forEach { assertEquals(it.name, it.html, converter.toHtml(it.input)) }
+    }
+
+    @Test
+    fun strip_matchesDeliberateChanges() {
+        changedCases.forEach { assertEquals(it.name, it.stripped, converter.strip(it.input)) }
+    }
+
+    @Test
+    fun toHtml_servesTheSameOutputFromTheCache() {
+        cases.forEach { assertEquals(it.name, converter.toHtml(it.input), converter.toHtml(it.input)) }
+    }
+
+    @Test
+    fun emptyText_convertsToEmptyText() {
+        assertEquals("", converter.toHtml(""))
+        assertEquals("", converter.strip(""))
+    }
+
+    private class Case(val name: String, val input: String, val html: String, val stripped: String)
+
+    private val cases: List<Case> by lazy { readCases(FIXTURE) }
+
+    private val changedCases: List<Case> by lazy { readCases(CHANGES_FIXTURE) }
+
+    private fun readCases(fixture: String): List<Case> {
+        val text = javaClass.getResourceAsStream(fixture)!!.bufferedReader().use { it.readText() }
+        return text.split(Regex("\n(?=$CASE_PREFIX)")).map { block ->
+            val name = block.substringBefore('\n').removePrefix(CASE_PREFIX)
+            val body = block.substringAfter('\n')
+            Case(
+                name,
+                body.substringBefore(HTML_SEPARATOR),
+                body.substringAfter(HTML_SEPARATOR).substringBefore(STRIP_SEPARATOR),
+                body.substringAfter(STRIP_SEPARATOR).trimEnd('\n'),
+            )
+        }.also { assertTrue("No cases in $fixture", it.isNotEmpty()) }
+    }
+
+    companion object {
+        private const val SPOILER = "Spoiler"
+        private const val FIXTURE = "/markup/xml_api_markup.txt"
+        private const val CHANGES_FIXTURE = "/markup/xml_api_markup_changes.txt"
+        private const val CASE_PREFIX = "=== "
+        private const val HTML_SEPARATOR = "\n--- html\n"
+        private const val STRIP_SEPARATOR = "\n--- strip\n"
+    }
+}
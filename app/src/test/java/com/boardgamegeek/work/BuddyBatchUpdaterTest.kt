@@ -0,0 +1,138 @@
+package com.boardgamegeek.work
+
+import com.boardgamegeek.entities.UserEntity
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+import kotlin.time.Duration.Companion.days
+
+/**
+ * Updates buddies with a stand-in for [com.boardgamegeek.repository.UserRepository.fetch] that takes a known amount of
+ * (virtual) time, counting how many downloads run at once and what's saved.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class BuddyBatchUpdaterTest {
+    private var activeFetches = 0
+    private var maxActiveFetches = 0
+    private val fetchedUsernames = mutableListOf<String>()
+    private val savedChunks = mutableListOf<List<String>>()
+
+    @Test
+    fun update_fetchesNoMoreThanTheConcurrencyAtOnce() = runTest {
+        val usernames = usernames(40)
+
+        val count = updater(concurrency = CONCURRENCY).update(usernames, { false }) { fail("Unexpected error $it") }
+
+        assertEquals(40, count)
+        assertEquals(CONCURRENCY, maxActiveFetches)
+        assertEquals(usernames, savedChunks.flatten().sorted())
+        assertEquals(listOf(16, 16, 8), savedChunks.map { it.size })
+        // each chunk of 16 takes 6 rounds of 3 fetches, the last of 8 takes 3 rounds
+        assertEquals((6 + 6 + 3) * (PAUSE_MILLIS + FETCH_MILLIS), currentTime)
+    }
+
+    @Test
+    fun update_skipsAndReportsABuddyThatFails() = runTest {
+        val errors = mutableListOf<Exception>()
+
+        val count = updater(concurrency = CONCURRENCY, failingUsername = "user05").update(usernames(10), { false }) { errors += it }
+
+        assertEquals(9, count)
+        assertEquals(1, errors.size)
+        assertEquals(usernames(10) - "user05", savedChunks.flatten().sorted())
+    }
+
+    @Test
+    fun update_savesTheBuddiesFetchedBeforeBeingCanceled() = runTest {
+        val updater = updater(concurrency = 4)
+        val job = launch { updater.update(usernames(16), { false }) { fail("Unexpected error $it") } }
+
+        // two rounds of 4 fetches finish, and a third is pausing before its requests
+        advanceTimeBy(2 * (PAUSE_MILLIS + FETCH_MILLIS) + PAUSE_MILLIS / 2)
+        job.cancelAndJoin()
+
+        assertEquals(8, fetchedUsernames.size)
+        assertEquals(listOf(usernames(8)), savedChunks.map { it.sorted() })
+    }
+
+    @Test
+    fun update_stopsBetweenChunks() = runTest {
+        val count = updater(concurrency = CONCURRENCY).update(usernames(40), { savedChunks.isNotEmpty() }) { fail("Unexpected error $it") }
+
+        assertEquals(16, count)
+        assertEquals(16, fetchedUsernames.size)
+    }
+
+    @Test
+    fun staleBuddies_skipsFreshAndUnupdatedBuddies() {
+        val buddies = listOf(
+            buddy("stale1", daysAgo = 30),
+            buddy("fresh1", daysAgo = 1),
+            buddy("unupdated1", daysAgo = null),
+            buddy("stale2", daysAgo = 8),
+            buddy("fresh2", daysAgo = 6),
+            buddy("stale3", daysAgo = 10),
+        )
+
+        assertEquals(
+            listOf("stale1", "stale2", "stale3"),
+            BuddyBatchUpdater.staleBuddies(buddies, 7.days, sliceCount = 1, sliceMaxSize = 100, now = NOW),
+        )
+        // 5 updated buddies in 2 slices
+        assertEquals(
+            listOf("stale1", "stale2"),
+            BuddyBatchUpdater.staleBuddies(buddies, 7.days, sliceCount = 2, sliceMaxSize = 100, now = NOW),
+        )
+        assertEquals(
+            listOf("stale1"),
+            BuddyBatchUpdater.staleBuddies(buddies, 7.days, sliceCount = 1, sliceMaxSize = 1, now = NOW),
+        )
+    }
+
+    private fun updater(concurrency: Int, failingUsername: String = "") = BuddyBatchUpdater(
+        concurrency,
+        PAUSE_MILLIS,
+        fetchBuddy = { username ->
+            activeFetches++
+            maxActiveFetches = maxOf(maxActiveFetches, activeFetches)
+            try {
+                delay(FETCH_MILLIS)
+                if (username == failingUsername) throw IllegalStateException("No user $username")
+                fetchedUsernames += username
+                buddy(username, daysAgo = 0)
+            } finally {
+                activeFetches--
+            }
+        },
+        saveBuddies = { users ->
+            savedChunks += users.map { it.userName }
+            users.size
+        },
+    )
+
+    private fun usernames(count: Int) = (1..count).map { "user%02d".format(it) }
+
+    private fun buddy(username: String, daysAgo: Int?) = UserEntity(
+        internalId = 0L,
+        id = 0,
+        userName = username,
+        firstName = "",
+        lastName = "",
+        avatarUrlRaw = "",
+        updatedTimestamp = daysAgo?.let { NOW - TimeUnit.DAYS.toMillis(it.toLong()) } ?: 0L,
+    )
+
+    companion object {
+        private const val CONCURRENCY = 3
+        private const val PAUSE_MILLIS = 500L
+        private const val FETCH_MILLIS = 1_000L
+        private const val NOW = 1_700_000_000_000L
+    }
+}
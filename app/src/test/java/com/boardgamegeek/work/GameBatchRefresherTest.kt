@@ -0,0 +1,151 @@
+package com.boardgamegeek.work
+
+import com.boardgamegeek.io.BggService
+import com.boardgamegeek.io.ResponseSize
+import com.boardgamegeek.io.TrafficCountingInterceptor
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import retrofit2.Retrofit
+import retrofit2.converter.simplexml.SimpleXmlConverterFactory
+import java.util.Collections
+
+/**
+ * Refreshes games against a local stand-in for the thing endpoint, which rejects requests for too many IDs and pads
+ * each game to a known size, counting the requests made and the (virtual) time spent pausing between them.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class GameBatchRefresherTest {
+    private lateinit var server: MockWebServer
+    private lateinit var api: BggService
+    private val requestedIds = Collections.synchronizedList(mutableListOf<List<Int>>())
+    private var maxIdsPerRequest = Int.MAX_VALUE
+    private var failingGameId = 0
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val ids = request.requestUrl?.queryParameter("id").orEmpty().split(",").map { it.trim().toInt() }
+                requestedIds += ids
+                return when {
+                    ids.size > maxIdsPerRequest -> MockResponse().setResponseCode(414)
+                    failingGameId in ids -> MockResponse().setResponseCode(500)
+                    else -> MockResponse().setBody(thingXml(ids))
+                }
+            }
+        }
+        server.start()
+        val client = OkHttpClient.Builder().addNetworkInterceptor(TrafficCountingInterceptor()).build()
+        api = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(SimpleXmlConverterFactory.createNonStrict())
+            .client(client)
+            .build()
+            .create(BggService::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun refresh_splitsBatchesTheServerRejects() = runTest {
+        maxIdsPerRequest = 8
+        val refresher = refresher(maxGamesPerRequest = 20)
+
+        val count = refresher.refresh(games(40), { false }) { fail("Unexpected error $it") }
+
+        assertEquals(40, count)
+        assertEquals((1..40).toList(), acceptedIds().sorted())
+        // 20 and 10 are rejected, then 5 grows back toward 8 and drops to 4 whenever it passes it
+        assertTrue("${server.requestCount} requests", server.requestCount < 15)
+        assertPausedBeforeEachRequest()
+    }
+
+    @Test
+    fun refresh_keepsResponsesUnderTheByteLimit() = runTest {
+        val maxResponseBytes = 5L * GAME_BYTES
+        val refresher = refresher(maxGamesPerRequest = 20, maxResponseBytes = maxResponseBytes)
+
+        val count = refresher.refresh(games(40), { false }) { fail("Unexpected error $it") }
+
+        assertEquals(40, count)
+        assertEquals(20, requestedIds.first().size)
+        requestedIds.drop(1).forEach { ids -> assertTrue("${ids.size} games", ids.size * GAME_BYTES <= maxResponseBytes) }
+        assertTrue(refresher.gamesPerRequest <= 5)
+        assertPausedBeforeEachRequest()
+    }
+
+    @Test
+    fun refresh_skipsAndReportsOnlyTheGameThatFails() = runTest {
+        failingGameId = 13
+        val errors = mutableListOf<Exception>()
+        val refresher = refresher(maxGamesPerRequest = 20)
+
+        val count = refresher.refresh(games(20), { false }) { errors += it }
+
+        assertEquals(19, count)
+        assertEquals(1, errors.size)
+        assertEquals((1..20).filter { it != failingGameId }, acceptedIds().sorted())
+        assertPausedBeforeEachRequest()
+    }
+
+    @Test
+    fun refresh_stopsBetweenRequests() = runTest {
+        var stop = false
+        val refresher = refresher(maxGamesPerRequest = 5) { gameIds, responseSize ->
+            api.things(gameIds.joinToString(), 1, responseSize).games.size.also { stop = true }
+        }
+
+        val count = refresher.refresh(games(20), { stop }) { fail("Unexpected error $it") }
+
+        assertEquals(5, count)
+        assertEquals(1, server.requestCount)
+    }
+
+    private fun refresher(
+        maxGamesPerRequest: Int,
+        maxResponseBytes: Long = Long.MAX_VALUE,
+        refreshGames: suspend (IntArray, ResponseSize) -> Int = { gameIds, responseSize ->
+            api.things(gameIds.joinToString(), 1, responseSize).games.size
+        },
+    ) = GameBatchRefresher(maxGamesPerRequest, maxResponseBytes, PAUSE_MILLIS, refreshGames)
+
+    private fun TestScope.assertPausedBeforeEachRequest() {
+        assertEquals(server.requestCount * PAUSE_MILLIS, currentTime)
+    }
+
+    private fun acceptedIds() = requestedIds.filter { it.size <= maxIdsPerRequest && failingGameId !in it }.flatten()
+
+    private fun games(count: Int) = (1..count).map { it to "Game $it" }
+
+    private fun thingXml(ids: List<Int>) = buildString {
+        append("""<?xml version="1.0" encoding="utf-8"?><items termsofuse="https://boardgamegeek.com/xmlapi/termsofuse">""")
+        ids.forEach { id ->
+            val item = """<item type="boardgame" id="$id"><description>%s</description><yearpublished value="2000"/>""" +
+                    """<minplayers value="1"/><maxplayers value="4"/><playingtime value="60"/><minplaytime value="30"/>""" +
+                    """<maxplaytime value="60"/><minage value="10"/></item>"""
+            // pad the description so every game is the same size
+            append(item.format("x".repeat(GAME_BYTES - item.length + 2)))
+        }
+        append("</items>")
+    }
+
+    companion object {
+        private const val PAUSE_MILLIS = 2_000L
+        private const val GAME_BYTES = 10_000
+    }
+}